@@ -0,0 +1,109 @@
+package org.example.benchmark;
+
+import org.example.config.GridConfig;
+import org.example.simulation.ObservationModel;
+import org.example.simulation.Pad;
+import org.example.simulation.PadGridState;
+import org.example.simulation.PadSelector;
+import org.example.simulation.Simulation;
+import org.example.simulation.SimulationResult;
+import org.example.simulation.StepBuffers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths of the Bayesian grid filter, parameterized by grid size and
+ * movement angle. Every invocation starts from the subject priors, as the
+ * offline simulation does before each angle.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BayesianFilterBenchmark {
+
+    @Param({"5x3", "16x16", "32x32"})
+    public String gridSize;
+
+    @Param({"-90", "10", "45", "90"})
+    public double angle;
+
+    private Simulation simulation;
+    private StepBuffers buffers;
+    private ObservationModel observationModel;
+    private PadGridState correctionState;
+    private double[] predicted;
+    private PadSelector selector;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        GridConfig gridConfig = Fixtures.grid(gridSize);
+        simulation = Fixtures.simulation(gridConfig);
+        buffers = simulation.newStepBuffers(3);
+        selector = new PadSelector(3);
+
+        observationModel = new ObservationModel();
+        observationModel.loadkTable(Fixtures.kTable(gridConfig));
+        correctionState = new PadGridState(gridConfig);
+        correctionState.setInitialProbs(Fixtures.uniformPriors(gridConfig));
+
+        // estado tras la prediccion, para medir solo la correccion
+        simulation.updateProbsAfterMovement(angle);
+        predicted = simulation.getState().probability().clone();
+        simulation.resetToInitialProbs();
+    }
+
+    @Benchmark
+    public SimulationResult runStep() {
+        simulation.resetToInitialProbs();
+        return simulation.runStep("synthetic", angle);
+    }
+
+    @Benchmark
+    public StepBuffers runStepInto() {
+        simulation.resetToInitialProbs();
+        simulation.runStepInto(angle, buffers);
+        return buffers;
+    }
+
+    @Benchmark
+    public double[] updateProbsAfterMovement() {
+        simulation.resetToInitialProbs();
+        simulation.updateProbsAfterMovement(angle);
+        return simulation.getState().probability();
+    }
+
+    @Benchmark
+    public double[] applyCorrectionPhase() {
+        double[] probs = correctionState.probability();
+        System.arraycopy(predicted, 0, probs, 0, probs.length);
+        observationModel.applyCorrectionPhase(correctionState, angle);
+        return probs;
+    }
+
+    @Benchmark
+    public List<Pad> selectPads() {
+        return simulation.selectPads(3);
+    }
+
+    @Benchmark
+    public PadSelector selectPadsInto() {
+        simulation.selectPads(selector);
+        return selector;
+    }
+}
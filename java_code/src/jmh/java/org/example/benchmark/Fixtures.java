@@ -0,0 +1,50 @@
+package org.example.benchmark;
+
+import org.example.config.GridConfig;
+import org.example.simulation.Simulation;
+
+import java.util.Arrays;
+
+/**
+ * Synthetic inputs shared by the benchmarks so they run without the
+ * subject CSV files and on grids larger than the default layout.
+ */
+final class Fixtures {
+    static final int ANGLE_SAMPLES = 37;
+
+    private Fixtures() {
+        // Utility class
+    }
+
+    /**
+     * Parses a grid size written as {@code <rows>x<cols>}, e.g. {@code 5x3}.
+     */
+    static GridConfig grid(String size) {
+        String[] parts = size.split("x");
+        return GridConfig.of(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+    }
+
+    static double[] uniformPriors(GridConfig gridConfig) {
+        double[] priors = new double[gridConfig.getPadCount()];
+        Arrays.fill(priors, 1.0 / priors.length);
+        return priors;
+    }
+
+    /**
+     * Smooth, strictly positive Ks table with one row per pad.
+     */
+    static double[][] kTable(GridConfig gridConfig) {
+        int nPads = gridConfig.getPadCount();
+        double[][] kTable = new double[nPads][ANGLE_SAMPLES];
+        for (int i = 0; i < nPads; i++) {
+            for (int j = 0; j < ANGLE_SAMPLES; j++) {
+                kTable[i][j] = 0.5 + 0.5 * Math.sin(0.3 * i + 0.1 * j);
+            }
+        }
+        return kTable;
+    }
+
+    static Simulation simulation(GridConfig gridConfig) {
+        return new Simulation(gridConfig, 1.0, 0.05, uniformPriors(gridConfig), kTable(gridConfig));
+    }
+}
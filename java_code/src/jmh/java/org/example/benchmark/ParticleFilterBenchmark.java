@@ -0,0 +1,65 @@
+package org.example.benchmark;
+
+import org.example.config.GridConfig;
+import org.example.simulation.ParticleFilter;
+import org.example.simulation.StepBuffers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recursive steps of the particle filter, parameterized by grid size and
+ * particle count, sequential and on the common fork-join pool. The state is
+ * carried between invocations, with a small movement per step, as in
+ * trajectory mode.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParticleFilterBenchmark {
+
+    @Param({"5x3", "32x32"})
+    public String gridSize;
+
+    @Param({"1000", "10000", "100000"})
+    public int particles;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private ParticleFilter filter;
+    private StepBuffers buffers;
+    private double angle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        GridConfig gridConfig = Fixtures.grid(gridSize);
+        filter = new ParticleFilter(gridConfig, 0.05, Fixtures.uniformPriors(gridConfig),
+                Fixtures.kTable(gridConfig), particles, 1);
+        filter.setParallel(parallel);
+        buffers = filter.newStepBuffers(3);
+    }
+
+    @Benchmark
+    public StepBuffers runStepInto() {
+        // vaivén de -45 a 45 grados en pasos de 0.5
+        double next = angle + 0.5 > 45 ? -45 : angle + 0.5;
+        filter.runStepInto(next - angle, next, buffers);
+        angle = next;
+        return buffers;
+    }
+}
@@ -0,0 +1,138 @@
+package org.example.benchmark;
+
+import org.example.realTimeExecution.Coord;
+import org.example.realTimeExecution.Quaternion;
+import org.example.realTimeExecution.QuaternionOps;
+import org.example.realTimeExecution.TwistAngleExtractor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Quaternion operations applied to every IMU sample during calibration and
+ * export. The grid size does not affect these kernels, so they are only
+ * parameterized by the rotation angle of the sample. The {@code *Bulk}
+ * benchmarks run a block of samples through {@link QuaternionOps} and report
+ * the time per sample, next to the same loop with one object per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuaternionBenchmark {
+
+    @Param({"-90", "10", "45", "90"})
+    public double angle;
+
+    private static final int BULK = 4096;
+
+    private Quaternion sample;
+    private Quaternion reference;
+    private TwistAngleExtractor twist;
+    private Quaternion[] samples;
+    private double[] packed;
+    private double[] calibrated;
+    private double[] euler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        double half = Math.toRadians(angle) / 2.0;
+        // rotacion sobre el eje X (pronacion/supinacion) con una pequeña componente en Z
+        sample = new Quaternion(Math.cos(half), Math.sin(half), 0.05, 0.02);
+        reference = new Quaternion(0.98, 0.1, -0.1, 0.1);
+        twist = new TwistAngleExtractor(1, 0, 0);
+        twist.setReference(reference);
+        samples = new Quaternion[BULK];
+        packed = new double[4 * BULK];
+        calibrated = new double[4 * BULK];
+        euler = new double[3 * BULK];
+        for (int i = 0; i < BULK; i++) {
+            double h = half * i / BULK;
+            samples[i] = new Quaternion(Math.cos(h), Math.sin(h), 0.05, 0.02);
+            packed[4 * i] = Math.cos(h);
+            packed[4 * i + 1] = Math.sin(h);
+            packed[4 * i + 2] = 0.05;
+            packed[4 * i + 3] = 0.02;
+        }
+    }
+
+    @Benchmark
+    public Quaternion multiplication() {
+        return sample.multiplication(reference);
+    }
+
+    @Benchmark
+    public Quaternion calibrate() {
+        return sample.multiplication(reference.inversion());
+    }
+
+    @Benchmark
+    public Coord toEulerAngles() {
+        return sample.toEulerAngles();
+    }
+
+    /**
+     * Pronation-supination angle of a calibrated sample through the full
+     * Euler conversion, as {@code Main} does it.
+     */
+    @Benchmark
+    public double pronationEuler() {
+        return sample.multiplication(reference.inversion()).toEulerAngles().getX();
+    }
+
+    /**
+     * Same angle as the twist around the forearm axis, straight from the raw sample.
+     */
+    @Benchmark
+    public double pronationTwist() {
+        return twist.angleDegrees(sample.getW(), sample.getX(), sample.getY(), sample.getZ());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK)
+    public double calibrateAndConvertObjects() {
+        Quaternion inverse = reference.inversion();
+        double sum = 0;
+        for (Quaternion q : samples) {
+            sum += q.multiplication(inverse).toEulerAngles().getX();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK)
+    public double[] calibrateAndConvertBulk() {
+        QuaternionOps.multiplyByInverse(packed, 0, calibrated, 0, BULK, reference);
+        QuaternionOps.toEulerAngles(calibrated, 0, euler, 0, BULK);
+        return euler;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK)
+    public double[] calibrateBulk() {
+        QuaternionOps.multiplyByInverse(packed, 0, calibrated, 0, BULK, reference);
+        return calibrated;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK)
+    public double[] normalizeBulk() {
+        System.arraycopy(packed, 0, calibrated, 0, packed.length);
+        QuaternionOps.normalize(calibrated, 0, BULK);
+        return calibrated;
+    }
+}
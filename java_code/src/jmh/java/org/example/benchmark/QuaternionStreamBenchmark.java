@@ -0,0 +1,89 @@
+package org.example.benchmark;
+
+import org.example.realTimeExecution.Quaternion;
+import org.example.realTimeExecution.QuaternionStreamParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the IMU frame decoding, in frames per second, over an
+ * in-memory stream of {@value #FRAMES} {@code Q<id>,w,x,y,z} lines like the
+ * ones sent by the Arduinos. {@code scanner} reproduces the previous
+ * {@code Scanner} + {@code split} + {@code Double.parseDouble} path as a
+ * reference for {@code byteParser}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuaternionStreamBenchmark {
+    static final int FRAMES = 10_000;
+
+    private byte[] stream;
+    private QuaternionStreamParser parser;
+    private double checksum;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < FRAMES; i++) {
+            sb.append(String.format(Locale.US, "Q%d,%.4f,%.4f,%.4f,%.4f\r\n", 1 + (i & 1),
+                    random.nextDouble(), random.nextDouble() - 0.5, random.nextDouble() - 0.5, random.nextDouble() - 0.5));
+        }
+        stream = sb.toString().getBytes(StandardCharsets.US_ASCII);
+        parser = new QuaternionStreamParser((id, w, x, y, z) -> checksum += w + x + y + z);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public double byteParser() throws IOException {
+        ByteArrayInputStream in = new ByteArrayInputStream(stream);
+        while (parser.readFrom(in) > 0) {
+            // se consume todo el flujo
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public List<Quaternion> scanner() {
+        List<Quaternion> data = new ArrayList<>();
+        try (Scanner scanner = new Scanner(new ByteArrayInputStream(stream))) {
+            while (scanner.hasNextLine()) {
+                String line = scanner.nextLine().trim();
+                if (line.startsWith("Q")) {
+                    String[] parts = line.substring(1).split(",");
+                    if (parts.length == 5) {
+                        Integer.parseInt(parts[0]);
+                        data.add(new Quaternion(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]),
+                                Double.parseDouble(parts[3]), Double.parseDouble(parts[4])));
+                    }
+                }
+            }
+        }
+        return data;
+    }
+}
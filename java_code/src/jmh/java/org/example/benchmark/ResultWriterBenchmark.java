@@ -0,0 +1,82 @@
+package org.example.benchmark;
+
+import org.example.config.GridConfig;
+import org.example.io.ResultWriter;
+import org.example.simulation.Simulation;
+import org.example.simulation.SimulationResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * CSV persistence of one simulation step, written to a temporary directory
+ * with the mirror disabled. Each operation waits for the asynchronous writer,
+ * so the score is the full format-and-write time of one step.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultWriterBenchmark {
+
+    @Param({"5x3", "16x16", "32x32"})
+    public String gridSize;
+
+    @Param({"-90", "10", "45", "90"})
+    public double angle;
+
+    private Path outputDir;
+    private ResultWriter writer;
+    private ResultWriter consolidated;
+    private SimulationResult result;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        GridConfig gridConfig = Fixtures.grid(gridSize);
+        Simulation simulation = Fixtures.simulation(gridConfig);
+        result = simulation.runStep("synthetic", angle);
+        outputDir = Files.createTempDirectory("neurofes-bench");
+        writer = new ResultWriter(outputDir, null);
+        consolidated = ResultWriter.consolidated(outputDir.resolve("results.csv"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        writer.close();
+        consolidated.close();
+        try (Stream<Path> files = Files.walk(outputDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void writeResults() {
+        writer.writeResults(result);
+        writer.flush();
+    }
+
+    @Benchmark
+    public void writeConsolidated() {
+        consolidated.writeResults(result);
+        consolidated.flush();
+    }
+}
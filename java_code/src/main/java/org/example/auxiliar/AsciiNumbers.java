@@ -0,0 +1,216 @@
+package org.example.auxiliar;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Parses decimal numbers directly from ASCII bytes without creating
+ * {@link String} instances. Used by the CSV table loaders and the IMU stream
+ * parser, where {@code String.split} plus {@link Double#parseDouble(String)}
+ * dominated the cost. {@link #appendFixed} does the reverse for the result
+ * writers, in place of {@code String.format("%.8f")}.
+ * <p>
+ * Values with at most 15 significant digits and a small decimal exponent are
+ * converted exactly with a single floating-point division or multiplication,
+ * which yields the same correctly rounded result as
+ * {@link Double#parseDouble(String)}. Longer or larger decimals, and any input
+ * outside the plain decimal syntax ({@code NaN}, {@code Infinity}, hex floats,
+ * {@code d}/{@code f} suffixes), are handed to the JDK parser, so results are
+ * bit-identical to it and the same inputs are rejected.
+ */
+public final class AsciiNumbers {
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final int MAX_EXACT_DIGITS = 15;
+    private static final long[] LONG_POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+    /**
+     * Largest scaled value formatted without the JDK: below it the product
+     * {@code value * 10^decimals} is exact to well under one unit.
+     */
+    private static final double MAX_FAST_SCALED = 1e15;
+
+    private AsciiNumbers() {
+        // Utility class
+    }
+
+    /**
+     * Parses the number in {@code buf[start, end)}. Plain decimals (optional
+     * sign, fractional part with {@code '.'} and exponent with
+     * {@code 'e'}/{@code 'E'}) are parsed in place; any other syntax goes
+     * through {@link Double#parseDouble(String)}. Surrounding spaces are
+     * ignored.
+     *
+     * @throws NumberFormatException if the bytes are not a valid number.
+     */
+    public static double parseDouble(byte[] buf, int start, int end) {
+        while (start < end && buf[start] == ' ') start++;
+        while (end > start && (buf[end - 1] == ' ' || buf[end - 1] == '\r')) end--;
+        if (start >= end) {
+            throw new NumberFormatException("Empty number");
+        }
+
+        int i = start;
+        boolean negative = false;
+        if (buf[i] == '-' || buf[i] == '+') {
+            negative = buf[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean anyDigit = false;
+        boolean dot = false;
+        for (; i < end; i++) {
+            byte b = buf[i];
+            if (b >= '0' && b <= '9') {
+                anyDigit = true;
+                if (mantissa == 0 && b == '0') {
+                    // ceros a la izquierda no cuentan como cifras significativas
+                    if (dot) scale--;
+                    continue;
+                }
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                    if (dot) scale--;
+                } else {
+                    digits++;
+                    if (!dot) scale++;
+                }
+            } else if (b == '.' && !dot) {
+                dot = true;
+            } else {
+                break;
+            }
+        }
+        if (!anyDigit) {
+            return parseWithJdk(buf, start, end);
+        }
+
+        if (i < end) {
+            if (buf[i] != 'e' && buf[i] != 'E') {
+                return parseWithJdk(buf, start, end);
+            }
+            i++;
+            boolean expNegative = false;
+            if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+                expNegative = buf[i] == '-';
+                i++;
+            }
+            if (i == end) {
+                return parseWithJdk(buf, start, end);
+            }
+            int exp = 0;
+            for (; i < end; i++) {
+                byte b = buf[i];
+                if (b < '0' || b > '9') {
+                    return parseWithJdk(buf, start, end);
+                }
+                if (exp < 10_000) {
+                    exp = exp * 10 + (b - '0');
+                }
+            }
+            scale += expNegative ? -exp : exp;
+        }
+
+        if (digits <= MAX_EXACT_DIGITS) {
+            double value;
+            if (mantissa == 0) {
+                value = 0.0;
+            } else if (scale == 0) {
+                value = mantissa;
+            } else if (scale < 0 && -scale < POWERS_OF_TEN.length) {
+                value = mantissa / POWERS_OF_TEN[-scale];
+            } else if (scale > 0 && scale + digits <= MAX_EXACT_DIGITS) {
+                value = mantissa * POWERS_OF_TEN[scale];
+            } else {
+                return parseWithJdk(buf, start, end);
+            }
+            return negative ? -value : value;
+        }
+        return parseWithJdk(buf, start, end);
+    }
+
+    private static double parseWithJdk(byte[] buf, int start, int end) {
+        return Double.parseDouble(new String(buf, start, end - start, StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Parses the decimal integer in {@code buf[start, end)}.
+     *
+     * @throws NumberFormatException if the bytes are not a valid integer.
+     */
+    public static int parseInt(byte[] buf, int start, int end) {
+        while (start < end && buf[start] == ' ') start++;
+        while (end > start && (buf[end - 1] == ' ' || buf[end - 1] == '\r')) end--;
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+        if (i >= end || end - i > 9) {
+            throw new NumberFormatException("Invalid integer: " + new String(buf, start, end - start));
+        }
+        int value = 0;
+        for (; i < end; i++) {
+            byte b = buf[i];
+            if (b < '0' || b > '9') {
+                throw new NumberFormatException("Invalid integer: " + new String(buf, start, end - start));
+            }
+            value = value * 10 + (b - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Appends {@code value} with exactly {@code decimals} fractional digits,
+     * producing the same text as {@code String.format(Locale.US, "%.<decimals>f", value)}.
+     * <p>
+     * The value is scaled and rounded with integer arithmetic. The JDK rounds
+     * half-up from the shortest decimal representation of the double, which can
+     * differ from rounding the binary value only when the scaled value lies
+     * within a couple of ulps of a tie; those values, non-finite values and
+     * very large magnitudes are delegated to {@link String#format}.
+     *
+     * @param decimals number of fractional digits, between 0 and 9.
+     * @return {@code out}.
+     * @throws IllegalArgumentException if {@code decimals} is out of range.
+     */
+    public static StringBuilder appendFixed(StringBuilder out, double value, int decimals) {
+        if (decimals < 0 || decimals >= LONG_POWERS_OF_TEN.length) {
+            throw new IllegalArgumentException("Unsupported number of decimals: " + decimals);
+        }
+        double magnitude = Math.abs(value);
+        long pow = LONG_POWERS_OF_TEN[decimals];
+        double scaled = magnitude * pow;
+        if (scaled < MAX_FAST_SCALED) {
+            long whole = (long) scaled;
+            double fraction = scaled - whole;
+            // error of the product plus distance to the JDK's shortest digits
+            double margin = 1e-6 + scaled * 4.5e-16;
+            if (Math.abs(fraction - 0.5) > margin) {
+                long rounded = fraction > 0.5 ? whole + 1 : whole;
+                if (Double.doubleToRawLongBits(value) < 0) {
+                    out.append('-'); // -0.0 and values rounding to zero keep the sign, as in Formatter
+                }
+                out.append(rounded / pow);
+                if (decimals > 0) {
+                    out.append('.');
+                    long digits = rounded % pow;
+                    for (long p = pow / 10; p > digits && p > 1; p /= 10) {
+                        out.append('0');
+                    }
+                    out.append(digits);
+                }
+                return out;
+            }
+        }
+        return out.append(String.format(Locale.US, "%." + decimals + "f", value));
+    }
+}
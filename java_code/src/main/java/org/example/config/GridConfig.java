@@ -25,6 +25,22 @@ public final class GridConfig {
         return new GridConfig(5, 3);
     }
 
+    /**
+     * Creates a grid configuration with explicit dimensions, used for research
+     * grids larger than the default layout.
+     *
+     * @param rows number of pad rows
+     * @param cols number of pad columns
+     * @return a grid configuration with the requested dimensions
+     * @throws IllegalArgumentException if either dimension is not positive
+     */
+    public static GridConfig of(int rows, int cols) {
+        if (rows <= 0 || cols <= 0) {
+            throw new IllegalArgumentException("Grid dimensions must be positive: " + rows + "x" + cols);
+        }
+        return new GridConfig(rows, cols);
+    }
+
     /**
      * Number of rows in the pad grid.
      *
@@ -51,4 +67,26 @@ public final class GridConfig {
     public int getPadCount() {
         return rows * cols;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GridConfig)) {
+            return false;
+        }
+        GridConfig other = (GridConfig) o;
+        return rows == other.rows && cols == other.cols;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * rows + cols;
+    }
+
+    @Override
+    public String toString() {
+        return "GridConfig{" + rows + "x" + cols + "}";
+    }
 }
@@ -20,12 +20,26 @@ public final class RuntimeConfig {
     private final int stimulationDelayMillis;
     private final int restDelayMillis;
     private final int imuReadDurationMillis;
+    private final int calibrationWindowMillis;
+    private final double calibrationToleranceDegrees;
+    private final int calibrationMinSamples;
+    private final int fusionPeriodMillis;
+    private final int fusionMaxGapMillis;
+    private final int controlPeriodMillis;
+    private final int controlLatencyBudgetMillis;
+    private final int controlTopPads;
+    private final double controlMovementResolutionDegrees;
+    private final double controlMovementThreshold;
+    private final double controlProbMin;
+    private final int controlParticleCount;
+    private final long controlParticleSeed;
     private final String initialAnglesFilePrefix;
     private final String finalAnglesFilePrefix;
     private final String initialAnglesPlotPrefix;
     private final String finalAnglesPlotPrefix;
     private final String imuDataFolder;
     private final String initialAnglesPlotFile;
+    private final String sessionJournalFile;
 
     private RuntimeConfig(String handImuPort,
                           String armImuPort,
@@ -38,12 +52,26 @@ public final class RuntimeConfig {
                           int stimulationDelayMillis,
                           int restDelayMillis,
                           int imuReadDurationMillis,
+                          int calibrationWindowMillis,
+                          double calibrationToleranceDegrees,
+                          int calibrationMinSamples,
+                          int fusionPeriodMillis,
+                          int fusionMaxGapMillis,
+                          int controlPeriodMillis,
+                          int controlLatencyBudgetMillis,
+                          int controlTopPads,
+                          double controlMovementResolutionDegrees,
+                          double controlMovementThreshold,
+                          double controlProbMin,
+                          int controlParticleCount,
+                          long controlParticleSeed,
                           String initialAnglesFilePrefix,
                           String finalAnglesFilePrefix,
                           String initialAnglesPlotPrefix,
                           String finalAnglesPlotPrefix,
                           String imuDataFolder,
-                          String initialAnglesPlotFile) {
+                          String initialAnglesPlotFile,
+                          String sessionJournalFile) {
         this.handImuPort = handImuPort;
         this.armImuPort = armImuPort;
         this.fesPort = fesPort;
@@ -55,12 +83,26 @@ public final class RuntimeConfig {
         this.stimulationDelayMillis = stimulationDelayMillis;
         this.restDelayMillis = restDelayMillis;
         this.imuReadDurationMillis = imuReadDurationMillis;
+        this.calibrationWindowMillis = calibrationWindowMillis;
+        this.calibrationToleranceDegrees = calibrationToleranceDegrees;
+        this.calibrationMinSamples = calibrationMinSamples;
+        this.fusionPeriodMillis = fusionPeriodMillis;
+        this.fusionMaxGapMillis = fusionMaxGapMillis;
+        this.controlPeriodMillis = controlPeriodMillis;
+        this.controlLatencyBudgetMillis = controlLatencyBudgetMillis;
+        this.controlTopPads = controlTopPads;
+        this.controlMovementResolutionDegrees = controlMovementResolutionDegrees;
+        this.controlMovementThreshold = controlMovementThreshold;
+        this.controlProbMin = controlProbMin;
+        this.controlParticleCount = controlParticleCount;
+        this.controlParticleSeed = controlParticleSeed;
         this.initialAnglesFilePrefix = initialAnglesFilePrefix;
         this.finalAnglesFilePrefix = finalAnglesFilePrefix;
         this.initialAnglesPlotPrefix = initialAnglesPlotPrefix;
         this.finalAnglesPlotPrefix = finalAnglesPlotPrefix;
         this.imuDataFolder = imuDataFolder;
         this.initialAnglesPlotFile = initialAnglesPlotFile;
+        this.sessionJournalFile = sessionJournalFile;
     }
 
     /**
@@ -81,12 +123,26 @@ public final class RuntimeConfig {
                 2000,
                 3000,
                 7000,
+                500,
+                0.5,
+                20,
+                10,
+                100,
+                20,
+                50,
+                3,
+                0.5,
+                1.0,
+                0.05,
+                0,
+                1L,
                 "initialAngles_Channel_",
                 "finalAngles_Channel_",
                 "C:\\Users\\alemo\\IdeaProjects\\getIMU\\initialAngles_Channel_",
                 "C:\\Users\\alemo\\IdeaProjects\\getIMU\\finalAngles_Channel_",
                 "C:/Users/alemo/IdeaProjects/getIMU/data/",
-                "C:\\Users\\alemo\\IdeaProjects\\getIMU\\initial_angles.csv"
+                "C:\\Users\\alemo\\IdeaProjects\\getIMU\\initial_angles.csv",
+                "session_journal.bin"
         );
     }
 
@@ -174,6 +230,133 @@ public final class RuntimeConfig {
         return imuReadDurationMillis;
     }
 
+    /**
+     * Length of the window averaged by the continuous IMU acquisition to
+     * obtain a resting or stimulated orientation.
+     *
+     * @return window length in milliseconds
+     */
+    public int getCalibrationWindowMillis() {
+        return calibrationWindowMillis;
+    }
+
+    /**
+     * Standard error of the mean orientation below which an IMU capture may
+     * stop before its full duration.
+     *
+     * @return tolerance in degrees
+     */
+    public double getCalibrationToleranceDegrees() {
+        return calibrationToleranceDegrees;
+    }
+
+    /**
+     * Minimum number of IMU samples averaged before a capture may stop early.
+     *
+     * @return minimum sample count
+     */
+    public int getCalibrationMinSamples() {
+        return calibrationMinSamples;
+    }
+
+    /**
+     * Period of the common clock onto which the hand and arm IMU streams are
+     * interpolated before being paired.
+     *
+     * @return clock period in milliseconds
+     */
+    public int getFusionPeriodMillis() {
+        return fusionPeriodMillis;
+    }
+
+    /**
+     * Largest gap between two consecutive samples of one IMU across which
+     * the fused stream still interpolates; longer gaps drop the frames.
+     *
+     * @return maximum gap in milliseconds
+     */
+    public int getFusionMaxGapMillis() {
+        return fusionMaxGapMillis;
+    }
+
+    /**
+     * Period of the closed-loop controller that turns the measured angle
+     * into a stimulation mask.
+     *
+     * @return tick period in milliseconds
+     */
+    public int getControlPeriodMillis() {
+        return controlPeriodMillis;
+    }
+
+    /**
+     * Maximum age of the IMU sample a control tick may act on; older samples
+     * leave the current mask unchanged.
+     *
+     * @return latency budget in milliseconds
+     */
+    public int getControlLatencyBudgetMillis() {
+        return controlLatencyBudgetMillis;
+    }
+
+    /**
+     * Number of pads selected by the Bayesian filter on each control tick.
+     *
+     * @return number of active pads
+     */
+    public int getControlTopPads() {
+        return controlTopPads;
+    }
+
+    /**
+     * Grid the measured angle is rounded to before the prediction step of each
+     * control tick, so the transition kernels of the live loop stay cached.
+     *
+     * @return resolution in degrees; {@code 0} disables rounding
+     */
+    public double getControlMovementResolutionDegrees() {
+        return controlMovementResolutionDegrees;
+    }
+
+    /**
+     * Distance used by the closed-loop filter to build the displacement region
+     * of each pad.
+     *
+     * @return movement threshold in centimeters
+     */
+    public double getControlMovementThreshold() {
+        return controlMovementThreshold;
+    }
+
+    /**
+     * Minimum probability for a pad to be selected by the closed-loop filter.
+     *
+     * @return probability threshold
+     */
+    public double getControlProbMin() {
+        return controlProbMin;
+    }
+
+    /**
+     * Number of particles of the closed-loop filter; {@code 0} uses the pad
+     * grid instead of a particle filter.
+     *
+     * @return particle count, or {@code 0} for the grid
+     */
+    public int getControlParticleCount() {
+        return controlParticleCount;
+    }
+
+    /**
+     * Seed of the particle filter, so a replayed session draws the same
+     * particles as the live one.
+     *
+     * @return random seed
+     */
+    public long getControlParticleSeed() {
+        return controlParticleSeed;
+    }
+
     public String getInitialAnglesFilePrefix() {
         return initialAnglesFilePrefix;
     }
@@ -197,4 +380,14 @@ public final class RuntimeConfig {
     public String getInitialAnglesPlotFile() {
         return initialAnglesPlotFile;
     }
+
+    /**
+     * Binary journal with the raw IMU samples, stimulator commands and filter
+     * outputs of a real-time session (see {@code io.SessionJournal}).
+     *
+     * @return journal path, replaced at the start of each session
+     */
+    public String getSessionJournalFile() {
+        return sessionJournalFile;
+    }
 }
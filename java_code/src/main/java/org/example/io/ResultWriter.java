@@ -1,57 +1,380 @@
 package org.example.io;
 
+import org.example.auxiliar.AsciiNumbers;
 import org.example.model.BayesStepResult;
 import org.example.simulation.Pad;
 import org.example.simulation.SimulationResult;
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 
 /**
  * Handles persistence of simulation results to CSV while keeping {@link org.example.simulation.Simulation}
  * free of IO concerns.
+ * <p>
+ * Writes are asynchronous: {@link #writeResults} only queues the result on a
+ * bounded queue, blocking when it is full, and a dedicated thread formats and
+ * writes it. Numbers are formatted with {@link AsciiNumbers#appendFixed}, which
+ * yields the same text as {@code %.8f}. Each result goes either to one file per
+ * subject and angle, in a local directory and optionally a mirror directory, or
+ * to a single consolidated CSV with {@code Subject}, {@code Angle} and
+ * {@code Tag} columns (see {@link #consolidated(Path)}), or nowhere at all
+ * ({@link #discarding()}).
+ * <p>
+ * The writer is safe for concurrent callers. The first failure is kept and
+ * rethrown by the next {@link #writeResults}, {@link #flush()} or
+ * {@link #close()}: an I/O failure as an {@link UncheckedIOException}, any other
+ * as an {@link IllegalStateException}. Results queued but not yet written are
+ * lost unless the writer is flushed or closed.
  */
-public class ResultWriter {
+public class ResultWriter implements AutoCloseable {
     private static final String EXTERNAL_PATH = "C:\\Users\\alemo\\OneDrive\\Documentos\\CEU SAN PABLO\\QUINTO\\TFG\\Materiales\\Algoritmo";
+    /** Results that can wait in the queue before {@link #writeResults} blocks. */
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+    private static final String CSV_HEADER = "PadID,InitialProb,Displacement,PredictedProb,CorrectedProb";
+    private static final String CONSOLIDATED_HEADER = "Subject,Angle,Tag,PadID,InitialProb,Displacement,PredictedProb,CorrectedProb,TopRank";
+    private static final int DECIMALS = 8;
+    private static final Entry END = new Entry(null, null, null);
+
+    private final Path localDir;
+    private final Path mirrorDir;
+    private final Path consolidatedFile;
+    private final boolean discard;
+    private final BlockingQueue<Entry> queue;
+    private final Thread thread;
+    private final StringBuilder text = new StringBuilder(1 << 16);
+    private final String newLine = System.lineSeparator();
+    private OutputStream consolidated;
+    private volatile Exception failure;
+    private volatile boolean closed;
+    private volatile boolean stopped;
+    private volatile long written;
+
+    /**
+     * Writes each result to the working directory and mirrors it to the
+     * external folder of the original implementation when that folder exists
+     * on this machine.
+     */
+    public ResultWriter() {
+        this(null, Files.isDirectory(Path.of(EXTERNAL_PATH)) ? Path.of(EXTERNAL_PATH) : null);
+    }
+
+    /**
+     * Writes one file per result to explicit locations.
+     *
+     * @param localDir  directory for the local copy; {@code null} uses the
+     *                  working directory.
+     * @param mirrorDir directory of the mirrored copy; {@code null} disables
+     *                  the mirror.
+     */
+    public ResultWriter(Path localDir, Path mirrorDir) {
+        this(localDir, mirrorDir, null, false, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    private ResultWriter(Path localDir, Path mirrorDir, Path consolidatedFile, boolean discard, int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+        }
+        this.localDir = localDir;
+        this.mirrorDir = mirrorDir;
+        this.consolidatedFile = consolidatedFile;
+        this.discard = discard;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.thread = new Thread(this::writeLoop, "result-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Appends every result to {@code file}, one row per pad with the subject,
+     * angle and tag of its step and the rank of the pad among the top pads
+     * ({@code 0} if it is not one of them). The header is written only when the
+     * file is new or empty, so several runs can share the same file.
+     */
+    public static ResultWriter consolidated(Path file) {
+        return new ResultWriter(null, null, file, false, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Accepts results and writes nothing, to time simulations without I/O.
+     */
+    public static ResultWriter discarding() {
+        return new ResultWriter(null, null, null, true, DEFAULT_QUEUE_CAPACITY);
+    }
 
     public void writeResults(SimulationResult simulationResult) {
-        String subject = simulationResult.getSubject();
-        double angleDiff = simulationResult.getAngleDiff();
-        List<BayesStepResult> bayesStepResults = simulationResult.getBayesStepResults();
-        List<Pad> topPads = simulationResult.getTopPads();
-        int rows = bayesStepResults.size();
-
-        String localFilename = String.format(Locale.US, "results_%s_angle_%.1f.csv", subject, angleDiff);
-        String externalFilename = String.format(Locale.US, "%s\\results_%s_angle_%.1f.csv", EXTERNAL_PATH, subject, angleDiff);
-
-        writeCsv(localFilename, bayesStepResults, rows, topPads);
-        writeCsv(externalFilename, bayesStepResults, rows, topPads);
-    }
-
-    private void writeCsv(String filename, List<BayesStepResult> bayesStepResults, int rows, List<Pad> topPads) {
-        try (PrintWriter pw = new PrintWriter(new FileWriter(filename))) {
-            pw.println("PadID,InitialProb,Displacement,PredictedProb,CorrectedProb");
-            for (int i = 0; i < rows; i++) {
-                BayesStepResult row = bayesStepResults.get(i);
-                int padId = row.getPadId();
-                double initP = row.getInitialProb();
-                double disp = row.getDisplacement();
-                double pPred = row.getPredictedProb();
-                double pPost = row.getCorrectedProb();
-                pw.printf(Locale.US, "%d,%.8f,%.8f,%.8f,%.8f%n", padId, initP, disp, pPred, pPost);
-            }
-            pw.println();
-            pw.println("TopPad1,TopPad2,TopPad3");
-            String[] topIds = {"", "", ""};
-            for (int j = 0; j < topPads.size() && j < 3; j++) {
-                topIds[j] = String.valueOf(topPads.get(j).getId());
-            }
-            pw.printf("%s,%s,%s%n", topIds[0], topIds[1], topIds[2]);
-        } catch (IOException e) {
-            e.printStackTrace();
+        writeResults(simulationResult, "");
+    }
+
+    /**
+     * Queues the result, adding {@code tag} to the file name right before the
+     * extension, e.g. {@code results_Subject1_angle_10.0_thr_1.00.csv}, or to
+     * the {@code Tag} column in consolidated mode. Used when several parameter
+     * combinations share the same subject and angle.
+     *
+     * @param simulationResult step to persist; must not be modified afterwards.
+     * @param tag              suffix for the file name; empty keeps the
+     *                         original name.
+     * @throws UncheckedIOException  if an earlier write failed.
+     * @throws IllegalStateException if the writer is closed, an earlier write
+     *                               failed unexpectedly or the caller is
+     *                               interrupted while the queue is full.
+     */
+    public void writeResults(SimulationResult simulationResult, String tag) {
+        checkFailure();
+        enqueue(new Entry(simulationResult, tag, null));
+    }
+
+    /**
+     * Blocks until every result queued so far has been written.
+     *
+     * @throws UncheckedIOException if any write failed.
+     */
+    public void flush() {
+        CountDownLatch done = new CountDownLatch(1);
+        enqueue(new Entry(null, null, done));
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while flushing results", e);
+        }
+        checkFailure();
+    }
+
+    /**
+     * Writes the pending results and stops the I/O thread.
+     *
+     * @throws UncheckedIOException if any write failed.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            put(END);
+            closed = true;
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while closing the result writer", e);
+        }
+        checkFailure();
+    }
+
+    /**
+     * Number of results written so far.
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * Queues {@code entry} unless the writer is closed. Holding the lock across
+     * the check and the put keeps entries from landing behind {@link #END}; if
+     * the I/O thread has already stopped, whatever is left in the queue is
+     * released here instead.
+     */
+    private synchronized void enqueue(Entry entry) {
+        if (closed) {
+            throw new IllegalStateException("Result writer is closed");
+        }
+        put(entry);
+        if (stopped) {
+            releasePending();
+            checkFailure();
+            throw new IllegalStateException("Result writer thread has stopped");
+        }
+    }
+
+    private void put(Entry entry) {
+        try {
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing a result", e);
+        }
+    }
+
+    private void checkFailure() {
+        Exception e = failure;
+        if (e instanceof IOException) {
+            throw new UncheckedIOException("Could not write simulation results", (IOException) e);
+        }
+        if (e != null) {
+            throw new IllegalStateException("Could not write simulation results", e);
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                Entry entry = queue.take();
+                if (entry == END) {
+                    break;
+                }
+                if (entry.barrier != null) {
+                    flushConsolidated();
+                    entry.barrier.countDown();
+                    continue;
+                }
+                try {
+                    write(entry.result, entry.tag);
+                    written++;
+                } catch (IOException | RuntimeException e) {
+                    recordFailure(e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeConsolidated();
+            stopped = true;
+            releasePending();
+        }
+    }
+
+    /**
+     * Drops the entries left in the queue after the I/O thread has stopped,
+     * opening their flush barriers so no caller waits forever.
+     */
+    private void releasePending() {
+        for (Entry entry; (entry = queue.poll()) != null; ) {
+            if (entry.barrier != null) {
+                entry.barrier.countDown();
+            }
+        }
+    }
+
+    private void write(SimulationResult result, String tag) throws IOException {
+        if (discard) {
+            return;
+        }
+        if (consolidatedFile != null) {
+            appendConsolidated(result, tag);
+            return;
+        }
+        String filename = String.format(Locale.US, "results_%s_angle_%.1f%s.csv",
+                result.getSubject(), result.getAngleDiff(), tag);
+        text.setLength(0);
+        formatCsv(result);
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        Files.write(localDir != null ? localDir.resolve(filename) : Path.of(filename), bytes);
+        if (mirrorDir != null) {
+            Files.write(mirrorDir.resolve(filename), bytes);
+        }
+    }
+
+    private void formatCsv(SimulationResult result) {
+        List<BayesStepResult> rows = result.getBayesStepResults();
+        text.append(CSV_HEADER).append(newLine);
+        for (BayesStepResult row : rows) {
+            text.append(row.getPadId()).append(',');
+            AsciiNumbers.appendFixed(text, row.getInitialProb(), DECIMALS).append(',');
+            AsciiNumbers.appendFixed(text, row.getDisplacement(), DECIMALS).append(',');
+            AsciiNumbers.appendFixed(text, row.getPredictedProb(), DECIMALS).append(',');
+            AsciiNumbers.appendFixed(text, row.getCorrectedProb(), DECIMALS).append(newLine);
+        }
+        text.append(newLine);
+        text.append("TopPad1,TopPad2,TopPad3").append(newLine);
+        List<Pad> topPads = result.getTopPads();
+        for (int j = 0; j < 3; j++) {
+            if (j > 0) {
+                text.append(',');
+            }
+            if (j < topPads.size()) {
+                text.append(topPads.get(j).getId());
+            }
+        }
+        text.append(newLine);
+    }
+
+    private void appendConsolidated(SimulationResult result, String tag) throws IOException {
+        if (consolidated == null) {
+            consolidated = Files.newOutputStream(consolidatedFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            if (Files.size(consolidatedFile) == 0) {
+                consolidated.write((CONSOLIDATED_HEADER + newLine).getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+        List<Pad> topPads = result.getTopPads();
+        text.setLength(0);
+        for (BayesStepResult row : result.getBayesStepResults()) {
+            text.append(result.getSubject()).append(',');
+            AsciiNumbers.appendFixed(text, result.getAngleDiff(), 1).append(',');
+            text.append(tag).append(',');
+            text.append(row.getPadId()).append(',');
+            AsciiNumbers.appendFixed(text, row.getInitialProb(), DECIMALS).append(',');
+            AsciiNumbers.appendFixed(text, row.getDisplacement(), DECIMALS).append(',');
+            AsciiNumbers.appendFixed(text, row.getPredictedProb(), DECIMALS).append(',');
+            AsciiNumbers.appendFixed(text, row.getCorrectedProb(), DECIMALS).append(',');
+            text.append(topRank(topPads, row.getPadId())).append(newLine);
+        }
+        consolidated.write(text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int topRank(List<Pad> topPads, int padId) {
+        for (int j = 0; j < topPads.size(); j++) {
+            if (topPads.get(j).getId() == padId) {
+                return j + 1;
+            }
+        }
+        return 0;
+    }
+
+    private void flushConsolidated() {
+        if (consolidated != null) {
+            try {
+                consolidated.flush();
+            } catch (IOException e) {
+                recordFailure(e);
+            }
+        }
+    }
+
+    private void closeConsolidated() {
+        if (consolidated != null) {
+            try {
+                consolidated.close();
+            } catch (IOException e) {
+                recordFailure(e);
+            }
+            consolidated = null;
+        }
+    }
+
+    private void recordFailure(Exception e) {
+        if (failure == null) {
+            failure = e;
+        } else {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * A queued result, or a flush barrier when {@code barrier} is set.
+     */
+    private static final class Entry {
+        private final SimulationResult result;
+        private final String tag;
+        private final CountDownLatch barrier;
+
+        private Entry(SimulationResult result, String tag, CountDownLatch barrier) {
+            this.result = result;
+            this.tag = tag;
+            this.barrier = barrier;
         }
     }
 }
@@ -0,0 +1,232 @@
+package org.example.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only binary journal of a real-time session: raw timestamped IMU
+ * quaternions, stimulator commands, calibration references and the output of
+ * every filter step. Records are encoded into a preallocated
+ * {@link ByteBuffer} and written to a {@link FileChannel} only when the buffer
+ * fills up or on {@link #flush()}, so recording costs no formatting and no
+ * per-record allocation. {@link SessionJournalReader} reads it back.
+ * <p>
+ * Layout, little-endian, {@value #HEADER_BYTES}-byte header followed by the
+ * records in write order:
+ * <pre>
+ * header
+ *      0    4 magic "NFSJ"
+ *      4    2 version ({@value #VERSION})
+ *      6    2 reserved (0)
+ *      8    8 creation time, epoch milliseconds
+ *
+ * record  size  fields after the type byte
+ * IMU         42  stream (1), timestamp ns (8), w x y z (4 x 8)
+ * REFERENCE   42  stream (1), timestamp ns (8), w x y z (4 x 8)
+ * COMMAND  10+n   length n (1), timestamp ns (8), ASCII bytes (n)
+ * STEP     26+n   channel count n (1), tick ns (8), sample timestamp ns (8),
+ *                 angle in degrees (8), channels (n x 1)
+ * </pre>
+ * Timestamps are {@link System#nanoTime()} values. IMU samples of one stream
+ * are in acquisition order, but records of different types are not globally
+ * sorted: samples are usually drained from the acquisition buffers in
+ * batches, after the steps that used them.
+ * <p>
+ * All methods are synchronized so that the acquisition recorder, the control
+ * loop and the stimulator controller can share one journal. Write failures
+ * are reported as {@link UncheckedIOException}.
+ */
+public final class SessionJournal implements AutoCloseable {
+    public static final int HEADER_BYTES = 16;
+    public static final short VERSION = 1;
+    public static final int DEFAULT_BUFFER_BYTES = 1 << 16;
+
+    public static final byte TYPE_IMU = 1;
+    public static final byte TYPE_COMMAND = 2;
+    public static final byte TYPE_STEP = 3;
+    public static final byte TYPE_REFERENCE = 4;
+
+    /** Stream id of the hand IMU. */
+    public static final int STREAM_HAND = 0;
+    /** Stream id of the arm IMU. */
+    public static final int STREAM_ARM = 1;
+
+    static final int MAGIC = 'N' | ('F' << 8) | ('S' << 16) | ('J' << 24);
+    static final int QUATERNION_RECORD_BYTES = 42;
+    static final int MAX_COMMAND_BYTES = 255;
+    static final int MAX_STEP_CHANNELS = 255;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long records;
+    private long bytesWritten;
+    private boolean closed;
+
+    private SessionJournal(FileChannel channel, int bufferBytes) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferBytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Creates a journal with a {@value #DEFAULT_BUFFER_BYTES}-byte buffer.
+     *
+     * @param path destination file, replaced if it exists.
+     * @throws IOException if the file cannot be created.
+     */
+    public static SessionJournal create(Path path) throws IOException {
+        return create(path, DEFAULT_BUFFER_BYTES);
+    }
+
+    /**
+     * Creates a journal.
+     *
+     * @param path        destination file, replaced if it exists.
+     * @param bufferBytes size of the write buffer; must hold the largest record.
+     * @throws IOException if the file cannot be created.
+     */
+    public static SessionJournal create(Path path, int bufferBytes) throws IOException {
+        if (bufferBytes < HEADER_BYTES + 26 + MAX_STEP_CHANNELS) {
+            throw new IllegalArgumentException("Buffer too small for a journal record: " + bufferBytes);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        SessionJournal journal = new SessionJournal(channel, bufferBytes);
+        journal.buffer.putInt(MAGIC)
+                .putShort(VERSION)
+                .putShort((short) 0)
+                .putLong(System.currentTimeMillis());
+        return journal;
+    }
+
+    /**
+     * Records one raw IMU sample.
+     *
+     * @param stream         {@link #STREAM_HAND}, {@link #STREAM_ARM} or another id in {@code 0..255}.
+     * @param timestampNanos acquisition time.
+     */
+    public synchronized void recordImuSample(int stream, long timestampNanos, double w, double x, double y, double z) {
+        putQuaternion(TYPE_IMU, stream, timestampNanos, w, x, y, z);
+    }
+
+    /**
+     * Records the resting orientation that angles of {@code stream} are measured against.
+     */
+    public synchronized void recordReference(int stream, long timestampNanos, double w, double x, double y, double z) {
+        putQuaternion(TYPE_REFERENCE, stream, timestampNanos, w, x, y, z);
+    }
+
+    /**
+     * Records a command sent to the stimulator. The argument order matches
+     * {@link java.util.function.ObjLongConsumer} so the method can be used as a listener.
+     *
+     * @param command        ASCII command, at most {@value #MAX_COMMAND_BYTES} characters.
+     * @param timestampNanos time the command was queued.
+     */
+    public synchronized void recordCommand(String command, long timestampNanos) {
+        int length = command.length();
+        if (length > MAX_COMMAND_BYTES) {
+            throw new IllegalArgumentException("Command longer than " + MAX_COMMAND_BYTES + " characters");
+        }
+        reserve(10 + length);
+        buffer.put(TYPE_COMMAND).put((byte) length).putLong(timestampNanos);
+        for (int i = 0; i < length; i++) {
+            buffer.put((byte) command.charAt(i));
+        }
+        records++;
+    }
+
+    /**
+     * Records the output of one filter step.
+     *
+     * @param tickNanos       time the control tick started.
+     * @param sampleNanos     acquisition time of the sample the step used.
+     * @param angleDegrees    angle fed to the filter.
+     * @param channels        selected channels in list order, each in {@code 1..255}.
+     * @param count           number of valid entries in {@code channels}.
+     */
+    public synchronized void recordStep(long tickNanos, long sampleNanos, double angleDegrees, int[] channels, int count) {
+        if (count > MAX_STEP_CHANNELS) {
+            throw new IllegalArgumentException("Too many channels in one step: " + count);
+        }
+        reserve(26 + count);
+        buffer.put(TYPE_STEP).put((byte) count).putLong(tickNanos).putLong(sampleNanos).putDouble(angleDegrees);
+        for (int i = 0; i < count; i++) {
+            buffer.put((byte) channels[i]);
+        }
+        records++;
+    }
+
+    /**
+     * Writes the buffered records to the file.
+     */
+    public synchronized void flush() {
+        if (closed) {
+            return;
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                bytesWritten += channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write session journal", e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Flushes the pending records and closes the file.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot close session journal", e);
+            }
+        }
+    }
+
+    /**
+     * Records written since creation, including those still buffered.
+     */
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    /**
+     * Bytes already written to the file, header included.
+     */
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    private void putQuaternion(byte type, int stream, long timestampNanos, double w, double x, double y, double z) {
+        reserve(QUATERNION_RECORD_BYTES);
+        buffer.put(type).put((byte) stream).putLong(timestampNanos)
+                .putDouble(w).putDouble(x).putDouble(y).putDouble(z);
+        records++;
+    }
+
+    private void reserve(int bytes) {
+        if (closed) {
+            throw new IllegalStateException("Session journal is closed");
+        }
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package org.example.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sequential reader for the {@link SessionJournal} format. Records are decoded
+ * from a fixed-size buffer and handed to a {@link Visitor} in file order, so
+ * memory use does not depend on the length of the session.
+ * <p>
+ * A journal cut short by a crash ends with an incomplete record; reading stops
+ * before it and {@link #isTruncated()} reports it.
+ */
+public final class SessionJournalReader implements AutoCloseable {
+
+    /**
+     * Receives the decoded records. Unneeded methods can be left as the no-op defaults.
+     */
+    public interface Visitor {
+        default void onImuSample(int stream, long timestampNanos, double w, double x, double y, double z) {
+        }
+
+        default void onReference(int stream, long timestampNanos, double w, double x, double y, double z) {
+        }
+
+        default void onCommand(String command, long timestampNanos) {
+        }
+
+        /**
+         * @param channels buffer reused between calls; only the first {@code count} entries are valid.
+         */
+        default void onStep(long tickNanos, long sampleNanos, double angleDegrees, int[] channels, int count) {
+        }
+    }
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private final int[] channels = new int[SessionJournal.MAX_STEP_CHANNELS];
+    private final byte[] command = new byte[SessionJournal.MAX_COMMAND_BYTES];
+    private final long createdEpochMillis;
+    private boolean truncated;
+
+    /**
+     * Opens a journal and validates its header.
+     *
+     * @throws IOException if the file cannot be read or is not a session journal.
+     */
+    public SessionJournalReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        buffer.limit(0);
+        try {
+            if (!fill(SessionJournal.HEADER_BYTES)) {
+                throw new IOException("Not a session journal (too short): " + path);
+            }
+            int magic = buffer.getInt();
+            short version = buffer.getShort();
+            buffer.getShort();
+            if (magic != SessionJournal.MAGIC) {
+                throw new IOException("Not a session journal: " + path);
+            }
+            if (version != SessionJournal.VERSION) {
+                throw new IOException("Unsupported session journal version " + version + ": " + path);
+            }
+            this.createdEpochMillis = buffer.getLong();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the remaining records.
+     *
+     * @return number of records delivered to {@code visitor}.
+     * @throws IOException if the file cannot be read or contains an unknown record type.
+     */
+    public long read(Visitor visitor) throws IOException {
+        long count = 0;
+        while (fill(1)) {
+            byte type = buffer.get(buffer.position());
+            if (!readRecord(type, visitor)) {
+                truncated = true;
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Creation time stored in the header.
+     */
+    public long getCreatedEpochMillis() {
+        return createdEpochMillis;
+    }
+
+    /**
+     * Whether the file ended in the middle of a record.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Decodes one record starting at the buffer position.
+     *
+     * @return {@code false} if the file ends before the record does.
+     */
+    private boolean readRecord(byte type, Visitor visitor) throws IOException {
+        switch (type) {
+            case SessionJournal.TYPE_IMU:
+            case SessionJournal.TYPE_REFERENCE: {
+                if (!fill(SessionJournal.QUATERNION_RECORD_BYTES)) {
+                    return false;
+                }
+                buffer.get();
+                int stream = buffer.get() & 0xFF;
+                long timestamp = buffer.getLong();
+                double w = buffer.getDouble();
+                double x = buffer.getDouble();
+                double y = buffer.getDouble();
+                double z = buffer.getDouble();
+                if (type == SessionJournal.TYPE_IMU) {
+                    visitor.onImuSample(stream, timestamp, w, x, y, z);
+                } else {
+                    visitor.onReference(stream, timestamp, w, x, y, z);
+                }
+                return true;
+            }
+            case SessionJournal.TYPE_COMMAND: {
+                if (!fill(2)) {
+                    return false;
+                }
+                int length = buffer.get(buffer.position() + 1) & 0xFF;
+                if (!fill(10 + length)) {
+                    return false;
+                }
+                buffer.position(buffer.position() + 2);
+                long timestamp = buffer.getLong();
+                buffer.get(command, 0, length);
+                visitor.onCommand(new String(command, 0, length, StandardCharsets.US_ASCII), timestamp);
+                return true;
+            }
+            case SessionJournal.TYPE_STEP: {
+                if (!fill(2)) {
+                    return false;
+                }
+                int count = buffer.get(buffer.position() + 1) & 0xFF;
+                if (!fill(26 + count)) {
+                    return false;
+                }
+                buffer.position(buffer.position() + 2);
+                long tick = buffer.getLong();
+                long sample = buffer.getLong();
+                double angle = buffer.getDouble();
+                for (int i = 0; i < count; i++) {
+                    channels[i] = buffer.get() & 0xFF;
+                }
+                visitor.onStep(tick, sample, angle, channels, count);
+                return true;
+            }
+            default:
+                throw new IOException("Unknown session journal record type " + type);
+        }
+    }
+
+    /**
+     * Makes sure at least {@code bytes} bytes are available from the buffer position.
+     *
+     * @return {@code false} if the file ends first.
+     */
+    private boolean fill(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        buffer.compact();
+        try {
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            buffer.flip();
+        }
+    }
+}
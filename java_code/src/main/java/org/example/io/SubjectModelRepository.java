@@ -0,0 +1,363 @@
+package org.example.io;
+
+import org.example.auxiliar.AsciiNumbers;
+import org.example.model.SubjectModel;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.DoubleBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Loads and caches the per-subject inputs ({@code initialK_values_<subject>.csv}
+ * and {@code Kstable_<subject>.csv}) as immutable {@link SubjectModel}
+ * instances shared across threads and simulations.
+ * <p>
+ * The cache is bounded by the total size of the cached tables and evicts the
+ * least recently used subject first. Every lookup compares the modification
+ * time of both files with the one seen at load time and reloads the subject
+ * when either changed. When a binary companion ({@code .bin}, see
+ * {@link SubjectTableFormat}) exists next to a CSV it is memory-mapped instead
+ * of parsing the CSV; otherwise CSV files are parsed straight from bytes with
+ * {@link AsciiNumbers}, skipping {@code String.split} and boxed lists. A
+ * binary companion older than its CSV is regenerated first, keeping its
+ * element size, so edits to the CSV are never masked by a stale copy.
+ */
+public class SubjectModelRepository {
+    /** Default bound of the shared repository. */
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static final SubjectModelRepository SHARED = new SubjectModelRepository(Paths.get(""), DEFAULT_MAX_BYTES);
+    private static final Object CONVERSION_LOCK = new Object();
+
+    private final Path baseDir;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+
+    /**
+     * @param baseDir  directory holding the subject files.
+     * @param maxBytes upper bound of the cached table sizes, as reported by
+     *                 {@link SubjectModel#logicalSizeInBytes()}.
+     */
+    public SubjectModelRepository(Path baseDir, long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+        }
+        this.baseDir = baseDir;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Repository over the working directory used by {@link org.example.simulation.Simulation}.
+     */
+    public static SubjectModelRepository shared() {
+        return SHARED;
+    }
+
+    /**
+     * Name of the CSV holding the initial probabilities of {@code subject}.
+     */
+    public static String initialProbsFile(String subject) {
+        return "initialK_values_" + subject + ".csv";
+    }
+
+    /**
+     * Name of the CSV holding the Ks table of {@code subject}.
+     */
+    public static String kTableFile(String subject) {
+        return "Kstable_" + subject + ".csv";
+    }
+
+    /**
+     * Returns the model of {@code subject}, loading it on first use or when
+     * one of its files changed on disk.
+     *
+     * @throws UncheckedIOException if a file cannot be read.
+     */
+    public SubjectModel get(String subject) {
+        Path probsPath = preferBinary(baseDir.resolve(initialProbsFile(subject)));
+        Path kPath = preferBinary(baseDir.resolve(kTableFile(subject)));
+        long probsModified = lastModified(probsPath);
+        long kModified = lastModified(kPath);
+
+        synchronized (this) {
+            Entry entry = entries.get(subject);
+            if (entry != null && entry.probsModified == probsModified && entry.kModified == kModified) {
+                return entry.model;
+            }
+        }
+
+        // se parsea fuera del cerrojo para no serializar la carga de sujetos distintos
+        SubjectModel model = load(subject, probsPath, kPath);
+        synchronized (this) {
+            Entry previous = entries.put(subject, new Entry(model, probsModified, kModified));
+            if (previous != null) {
+                cachedBytes -= previous.model.logicalSizeInBytes();
+            }
+            cachedBytes += model.logicalSizeInBytes();
+            evict();
+        }
+        return model;
+    }
+
+    /**
+     * Drops every cached subject.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        cachedBytes = 0;
+    }
+
+    /**
+     * Number of subjects currently cached.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        // siempre se conserva al menos el sujeto recien cargado
+        while (cachedBytes > maxBytes && entries.size() > 1 && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            cachedBytes -= eldest.model.logicalSizeInBytes();
+            it.remove();
+        }
+    }
+
+    private static SubjectModel load(String subject, Path probsPath, Path kPath) {
+        DoubleBuffer initialProbs = isBinary(probsPath)
+                ? readBinary(probsPath).getValues()
+                : DoubleBuffer.wrap(readColumn(probsPath));
+        if (isBinary(kPath)) {
+            SubjectTableFormat.Table table = readBinary(kPath);
+            return new SubjectModel(subject, initialProbs, table.getValues(), table.getRows(), table.getCols(),
+                    table.getMinAngle(), table.getAngleStep());
+        }
+        Table table = readTable(kPath);
+        return new SubjectModel(subject, initialProbs, DoubleBuffer.wrap(table.values), table.rows, table.cols,
+                table.minAngle, table.angleStep);
+    }
+
+    private static Path preferBinary(Path csvPath) {
+        Path binPath = SubjectTableFormat.binaryPathFor(csvPath);
+        if (!Files.isRegularFile(binPath)) {
+            return csvPath;
+        }
+        if (Files.isRegularFile(csvPath) && lastModified(csvPath) > lastModified(binPath)) {
+            return regenerateBinary(csvPath, binPath);
+        }
+        return binPath;
+    }
+
+    /**
+     * Rewrites the binary companion of a CSV that changed after it was
+     * converted and stamps it with the CSV time. Falls back to the CSV when
+     * the binary file cannot be replaced.
+     */
+    private static Path regenerateBinary(Path csvPath, Path binPath) {
+        synchronized (CONVERSION_LOCK) {
+            // otro hilo puede haberlo regenerado mientras se esperaba el cerrojo
+            FileTime csvModified = modifiedTime(csvPath);
+            if (csvModified.compareTo(modifiedTime(binPath)) <= 0) {
+                return binPath;
+            }
+            try {
+                boolean useFloats = SubjectTableFormat.elementSize(binPath) == Float.BYTES;
+                SubjectTableConverter.convert(csvPath, useFloats);
+                Files.setLastModifiedTime(binPath, csvModified);
+                return binPath;
+            } catch (IOException | UncheckedIOException e) {
+                return csvPath;
+            }
+        }
+    }
+
+    private static boolean isBinary(Path path) {
+        return path.getFileName().toString().endsWith(SubjectTableFormat.EXTENSION);
+    }
+
+    private static SubjectTableFormat.Table readBinary(Path path) {
+        try {
+            return SubjectTableFormat.read(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + path, e);
+        }
+    }
+
+    private static long lastModified(Path path) {
+        return modifiedTime(path).toMillis();
+    }
+
+    private static FileTime modifiedTime(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (NoSuchFileException e) {
+            throw new UncheckedIOException("Missing subject file " + path, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads one value per line.
+     */
+    static double[] readColumn(Path path) {
+        byte[] buf = readAll(path);
+        double[] values = new double[16];
+        int count = 0;
+        int lineStart = 0;
+        for (int i = 0; i <= buf.length; i++) {
+            if (i == buf.length || buf[i] == '\n') {
+                int end = i;
+                if (end > lineStart && buf[end - 1] == '\r') end--;
+                if (end > lineStart) {
+                    if (count == values.length) values = Arrays.copyOf(values, count * 2);
+                    values[count++] = AsciiNumbers.parseDouble(buf, lineStart, end);
+                }
+                lineStart = i + 1;
+            }
+        }
+        return Arrays.copyOf(values, count);
+    }
+
+    /**
+     * Reads a table with a header row and a leading id column, matching
+     * {@link org.example.auxiliar.Utilities#readMatrix(String)}: rows whose
+     * column count differs from the header are skipped.
+     */
+    static Table readTable(Path path) {
+        byte[] buf = readAll(path);
+        int headerEnd = indexOf(buf, 0, (byte) '\n');
+        if (buf.length == 0) {
+            return new Table(new double[0], 0, 0, SubjectModel.DEFAULT_MIN_ANGLE, SubjectModel.DEFAULT_ANGLE_STEP);
+        }
+        int nAngles = countFields(buf, 0, headerEnd) - 1;
+        double[] headerAngles = headerAngles(buf, headerEnd, nAngles);
+
+        double[] values = new double[Math.max(1, nAngles) * 16];
+        int rows = 0;
+        int lineStart = headerEnd + 1;
+        int lineNumber = 1;
+        while (lineStart < buf.length) {
+            int lineEnd = indexOf(buf, lineStart, (byte) '\n');
+            lineNumber++;
+            int end = lineEnd;
+            if (end > lineStart && buf[end - 1] == '\r') end--;
+            if (end > lineStart) {
+                int fields = countFields(buf, lineStart, end);
+                if (fields != nAngles + 1) {
+                    System.out.printf("Línea %d ignorada (columnas=%d, esperaba=%d)\n", lineNumber, fields, nAngles + 1);
+                } else {
+                    if ((rows + 1) * nAngles > values.length) values = Arrays.copyOf(values, values.length * 2);
+                    int fieldStart = indexOf(buf, lineStart, (byte) ',') + 1; // se descarta la columna PadID
+                    for (int j = 0; j < nAngles; j++) {
+                        int fieldEnd = Math.min(indexOf(buf, fieldStart, (byte) ','), end);
+                        values[rows * nAngles + j] = AsciiNumbers.parseDouble(buf, fieldStart, fieldEnd);
+                        fieldStart = fieldEnd + 1;
+                    }
+                    rows++;
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return new Table(Arrays.copyOf(values, rows * nAngles), rows, nAngles, headerAngles[0], headerAngles[1]);
+    }
+
+    /**
+     * First angle and step from header labels such as {@code -90°,-85°,...};
+     * falls back to the MATLAB defaults when the labels are not numeric.
+     */
+    private static double[] headerAngles(byte[] buf, int headerEnd, int nAngles) {
+        double[] angles = {SubjectModel.DEFAULT_MIN_ANGLE, SubjectModel.DEFAULT_ANGLE_STEP};
+        if (nAngles < 2) {
+            return angles;
+        }
+        int first = indexOf(buf, 0, (byte) ',') + 1;
+        int second = Math.min(indexOf(buf, first, (byte) ','), headerEnd) + 1;
+        try {
+            double a0 = AsciiNumbers.parseDouble(buf, first, numberEnd(buf, first, headerEnd));
+            double a1 = AsciiNumbers.parseDouble(buf, second, numberEnd(buf, second, headerEnd));
+            angles[0] = a0;
+            angles[1] = a1 - a0;
+        } catch (NumberFormatException e) {
+            // cabecera sin ángulos numéricos: se mantienen los valores por defecto
+        }
+        return angles;
+    }
+
+    private static int numberEnd(byte[] buf, int start, int limit) {
+        int i = start;
+        while (i < limit) {
+            byte b = buf[i];
+            if ((b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == ' ') {
+                i++;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private static byte[] readAll(Path path) {
+        try {
+            return Files.readAllBytes(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + path, e);
+        }
+    }
+
+    private static int indexOf(byte[] buf, int from, byte b) {
+        for (int i = from; i < buf.length; i++) {
+            if (buf[i] == b) return i;
+        }
+        return buf.length;
+    }
+
+    private static int countFields(byte[] buf, int start, int end) {
+        int fields = 1;
+        for (int i = start; i < end; i++) {
+            if (buf[i] == ',') fields++;
+        }
+        // String.split descarta los campos vacios finales
+        for (int i = end - 1; i >= start && buf[i] == ','; i--) fields--;
+        return fields;
+    }
+
+    static final class Table {
+        final double[] values;
+        final int rows;
+        final int cols;
+        final double minAngle;
+        final double angleStep;
+
+        Table(double[] values, int rows, int cols, double minAngle, double angleStep) {
+            this.values = values;
+            this.rows = rows;
+            this.cols = cols;
+            this.minAngle = minAngle;
+            this.angleStep = angleStep;
+        }
+    }
+
+    private static final class Entry {
+        private final SubjectModel model;
+        private final long probsModified;
+        private final long kModified;
+
+        private Entry(SubjectModel model, long probsModified, long kModified) {
+            this.model = model;
+            this.probsModified = probsModified;
+            this.kModified = kModified;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.example.io;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line converter from the subject CSV files to the binary layout of
+ * {@link SubjectTableFormat}. Each {@code name.csv} is written as
+ * {@code name.bin} next to it, where {@link SubjectModelRepository} picks it up
+ * automatically.
+ * <p>
+ * Usage: {@code java org.example.io.SubjectTableConverter [--float] <csv>...}
+ * <br>
+ * Files named {@code Kstable_*} are read as Ks tables (header row plus PadID
+ * column); any other file is read as a single column of priors.
+ * {@code --float} stores 4-byte values, halving the file size at the cost of
+ * precision.
+ */
+public final class SubjectTableConverter {
+
+    private SubjectTableConverter() {
+        // Utility class
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean useFloats = false;
+        List<Path> inputs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--float")) {
+                useFloats = true;
+            } else {
+                inputs.add(Paths.get(arg));
+            }
+        }
+        if (inputs.isEmpty()) {
+            System.err.println("Usage: SubjectTableConverter [--float] <csv>...");
+            System.exit(1);
+        }
+
+        for (Path csv : inputs) {
+            Path bin = convert(csv, useFloats);
+            System.out.println(csv + " -> " + bin);
+        }
+    }
+
+    /**
+     * Converts one CSV file and returns the path of the binary file written.
+     * The table is written to a temporary file and moved over the previous
+     * one, so readers that still map the old file are not affected.
+     */
+    public static Path convert(Path csv, boolean useFloats) throws IOException {
+        Path bin = SubjectTableFormat.binaryPathFor(csv);
+        Path tmp = bin.resolveSibling(bin.getFileName() + ".tmp");
+        try {
+            if (csv.getFileName().toString().startsWith("Kstable_")) {
+                SubjectModelRepository.Table table = SubjectModelRepository.readTable(csv);
+                SubjectTableFormat.write(tmp, table.values, table.rows, table.cols,
+                        table.minAngle, table.angleStep, useFloats);
+            } else {
+                double[] values = SubjectModelRepository.readColumn(csv);
+                SubjectTableFormat.write(tmp, values, values.length, 1, 0.0, 0.0, useFloats);
+            }
+            Files.move(tmp, bin, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return bin;
+    }
+}
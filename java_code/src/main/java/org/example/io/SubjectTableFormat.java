@@ -0,0 +1,228 @@
+package org.example.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary layout for the subject tables ({@code Kstable_*} and
+ * {@code initialK_values_*}), read through {@link FileChannel#map} so the
+ * values are used in place without parsing or copying.
+ * <p>
+ * Layout, little-endian, {@value #HEADER_BYTES}-byte header followed by the
+ * row-major payload:
+ * <pre>
+ * offset size field
+ *      0    4 magic "NFKT"
+ *      4    2 version ({@value #VERSION})
+ *      6    1 element size in bytes (8 = double, 4 = float)
+ *      7    1 reserved (0)
+ *      8    4 rows (pads)
+ *     12    4 cols (angle samples, 1 for priors)
+ *     16    8 first angle in degrees (double)
+ *     24    8 angle step in degrees (double)
+ *     32    8 CRC32 of the payload (long)
+ *     40      rows * cols elements
+ * </pre>
+ * The header size keeps the payload 8-byte aligned inside the mapping.
+ */
+public final class SubjectTableFormat {
+    public static final String EXTENSION = ".bin";
+    public static final int HEADER_BYTES = 40;
+    public static final short VERSION = 1;
+    private static final int MAGIC = 'N' | ('F' << 8) | ('K' << 16) | ('T' << 24);
+
+    private SubjectTableFormat() {
+        // Utility class
+    }
+
+    /**
+     * Writes a table in the binary layout.
+     *
+     * @param path       destination file, replaced if it exists.
+     * @param values     row-major values, {@code rows * cols} entries.
+     * @param rows       number of rows.
+     * @param cols       number of columns.
+     * @param minAngle   angle of the first column in degrees.
+     * @param angleStep  angle between columns in degrees.
+     * @param useFloats  store 4-byte floats instead of doubles.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(Path path, double[] values, int rows, int cols,
+                             double minAngle, double angleStep, boolean useFloats) throws IOException {
+        if (values.length != rows * cols) {
+            throw new IllegalArgumentException("Expected " + rows + "x" + cols + " values but got " + values.length);
+        }
+        int elementSize = useFloats ? Float.BYTES : Double.BYTES;
+        ByteBuffer payload = ByteBuffer.allocate(values.length * elementSize).order(ByteOrder.LITTLE_ENDIAN);
+        for (double v : values) {
+            if (useFloats) {
+                payload.putFloat((float) v);
+            } else {
+                payload.putDouble(v);
+            }
+        }
+        payload.flip();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC)
+                .putShort(VERSION)
+                .put((byte) elementSize)
+                .put((byte) 0)
+                .putInt(rows)
+                .putInt(cols)
+                .putDouble(minAngle)
+                .putDouble(angleStep)
+                .putLong(crc.getValue());
+        header.flip();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (header.hasRemaining()) channel.write(header);
+            while (payload.hasRemaining()) channel.write(payload);
+        }
+    }
+
+    /**
+     * Maps a table file and validates its header and checksum. Double payloads
+     * are returned as a view over the mapping (no copy); float payloads are
+     * widened into a heap buffer.
+     *
+     * @param path file to read.
+     * @return the mapped table.
+     * @throws IOException if the file cannot be read or is not a valid table.
+     */
+    public static Table read(Path path) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("File too short for a table header: " + path);
+            }
+            // la proyeccion sigue siendo valida tras cerrar el canal
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer buf = mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buf.getInt(0) != MAGIC) {
+            throw new IOException("Not a subject table file (bad magic): " + path);
+        }
+        short version = buf.getShort(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported table version " + version + " in " + path);
+        }
+        int elementSize = buf.get(6);
+        if (elementSize != Double.BYTES && elementSize != Float.BYTES) {
+            throw new IOException("Unsupported element size " + elementSize + " in " + path);
+        }
+        int rows = buf.getInt(8);
+        int cols = buf.getInt(12);
+        double minAngle = buf.getDouble(16);
+        double angleStep = buf.getDouble(24);
+        long checksum = buf.getLong(32);
+
+        long payloadBytes = (long) rows * cols * elementSize;
+        if (rows < 0 || cols < 0 || buf.capacity() - HEADER_BYTES != payloadBytes) {
+            throw new IOException("Table size does not match header (" + rows + "x" + cols + ") in " + path);
+        }
+        ByteBuffer payload = buf.duplicate().position(HEADER_BYTES).slice().order(ByteOrder.LITTLE_ENDIAN);
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if (crc.getValue() != checksum) {
+            throw new IOException("Checksum mismatch in " + path);
+        }
+
+        DoubleBuffer values;
+        if (elementSize == Double.BYTES) {
+            values = payload.asDoubleBuffer();
+        } else {
+            FloatBuffer floats = payload.asFloatBuffer();
+            double[] widened = new double[floats.limit()];
+            for (int i = 0; i < widened.length; i++) {
+                widened[i] = floats.get(i);
+            }
+            values = DoubleBuffer.wrap(widened);
+        }
+        return new Table(values.asReadOnlyBuffer(), rows, cols, minAngle, angleStep);
+    }
+
+    /**
+     * Element size in bytes recorded in the header of a table file, without
+     * mapping the payload.
+     *
+     * @throws IOException if the file cannot be read or is not a valid table.
+     */
+    static int elementSize(Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // lee hasta completar la cabecera o llegar al final
+            }
+        }
+        if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+            throw new IOException("Not a subject table file: " + path);
+        }
+        return header.get(6);
+    }
+
+    /**
+     * Path of the binary companion of a CSV file ({@code name.csv -> name.bin}).
+     */
+    public static Path binaryPathFor(Path csvPath) {
+        String name = csvPath.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot >= 0 ? name.substring(0, dot) : name;
+        return csvPath.resolveSibling(base + EXTENSION);
+    }
+
+    /**
+     * Table values and metadata read from a binary file.
+     */
+    public static final class Table {
+        private final DoubleBuffer values;
+        private final int rows;
+        private final int cols;
+        private final double minAngle;
+        private final double angleStep;
+
+        Table(DoubleBuffer values, int rows, int cols, double minAngle, double angleStep) {
+            this.values = values;
+            this.rows = rows;
+            this.cols = cols;
+            this.minAngle = minAngle;
+            this.angleStep = angleStep;
+        }
+
+        /**
+         * Read-only row-major values.
+         */
+        public DoubleBuffer getValues() {
+            return values;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public int getCols() {
+            return cols;
+        }
+
+        public double getMinAngle() {
+            return minAngle;
+        }
+
+        public double getAngleStep() {
+            return angleStep;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.io;
+
+import org.example.auxiliar.AsciiNumbers;
+import org.example.simulation.StepBuffers;
+import org.example.simulation.TrajectoryRunner;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * {@link TrajectoryRunner.StepSink} that writes one CSV row per step of a
+ * trajectory as soon as it is computed, so long recordings never have to be
+ * kept in memory. Columns are {@code Time,Angle,Movement,TopPad1..TopPadK} and,
+ * when requested, the corrected probability of every pad
+ * ({@code P<padId>}, ordered by pad index). Missing top pads are left empty.
+ * <p>
+ * Writes go straight to a buffered stream on the caller thread; the first
+ * I/O failure is rethrown as an {@link UncheckedIOException}.
+ */
+public class TrajectoryCsvWriter implements TrajectoryRunner.StepSink, AutoCloseable {
+    private static final int DECIMALS = 8;
+
+    private final BufferedWriter writer;
+    private final boolean posteriors;
+    private final StringBuilder text = new StringBuilder(1 << 12);
+    private final String newLine = System.lineSeparator();
+    private boolean headerWritten;
+
+    /**
+     * @param file       destination, created or truncated.
+     * @param posteriors {@code true} to add the corrected probability of every pad.
+     * @throws UncheckedIOException if the file cannot be opened.
+     */
+    public TrajectoryCsvWriter(Path file, boolean posteriors) {
+        try {
+            this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open " + file, e);
+        }
+        this.posteriors = posteriors;
+    }
+
+    @Override
+    public void onStep(long index, double timeSeconds, double angleDegrees, StepBuffers step) {
+        text.setLength(0);
+        if (!headerWritten) {
+            appendHeader(step);
+            headerWritten = true;
+        }
+        AsciiNumbers.appendFixed(text, timeSeconds, 6).append(',');
+        AsciiNumbers.appendFixed(text, angleDegrees, 4).append(',');
+        AsciiNumbers.appendFixed(text, step.angleDiff(), 4);
+        int[] top = step.topPadIds();
+        for (int j = 0; j < step.topK(); j++) {
+            text.append(',');
+            if (j < step.topPadCount()) {
+                text.append(top[j]);
+            }
+        }
+        if (posteriors) {
+            double[] corrected = step.correctedProb();
+            for (int i = 0; i < step.padCount(); i++) {
+                text.append(',');
+                AsciiNumbers.appendFixed(text, corrected[i], DECIMALS);
+            }
+        }
+        text.append(newLine);
+        try {
+            writer.append(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write trajectory step " + index, e);
+        }
+    }
+
+    private void appendHeader(StepBuffers step) {
+        text.append("Time,Angle,Movement");
+        for (int j = 1; j <= step.topK(); j++) {
+            text.append(",TopPad").append(j);
+        }
+        if (posteriors) {
+            for (int i = 1; i <= step.padCount(); i++) {
+                text.append(",P").append(i);
+            }
+        }
+        text.append(newLine);
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close trajectory file", e);
+        }
+    }
+}
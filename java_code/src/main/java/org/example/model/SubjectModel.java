@@ -0,0 +1,146 @@
+package org.example.model;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Immutable, thread-safe inputs of one subject: the initial pad probabilities
+ * and the Ks observation table flattened row-major (pads x angles), whose
+ * columns start at {@link #getMinAngle()} and advance by
+ * {@link #getAngleStep()} degrees. Values are exposed through read-only
+ * {@link DoubleBuffer} views so a single instance can be shared by every
+ * simulation and thread without defensive copies; the buffers may be heap
+ * arrays or memory-mapped files.
+ */
+public final class SubjectModel {
+    /** First angle (degrees) of the tables produced by the MATLAB preprocessing. */
+    public static final double DEFAULT_MIN_ANGLE = -90.0;
+    /** Angle step (degrees) of the tables produced by the MATLAB preprocessing. */
+    public static final double DEFAULT_ANGLE_STEP = 5.0;
+
+    private final String subject;
+    private final int padCount;
+    private final int angleCount;
+    private final DoubleBuffer initialProbs;
+    private final DoubleBuffer kTable;
+    private final double minAngle;
+    private final double angleStep;
+
+    /**
+     * @param subject      subject identifier.
+     * @param initialProbs prior per pad; must not be modified afterwards.
+     * @param kTable       Ks values row-major, {@code padCount * angleCount}
+     *                     entries; must not be modified afterwards.
+     * @param padCount     number of rows of the Ks table.
+     * @param angleCount   number of angle samples per row.
+     */
+    public SubjectModel(String subject, double[] initialProbs, double[] kTable, int padCount, int angleCount) {
+        this(subject, DoubleBuffer.wrap(initialProbs), DoubleBuffer.wrap(kTable), padCount, angleCount,
+                DEFAULT_MIN_ANGLE, DEFAULT_ANGLE_STEP);
+    }
+
+    /**
+     * Wraps buffers that already hold the values, without copying them.
+     *
+     * @param subject      subject identifier.
+     * @param initialProbs prior per pad, from index 0.
+     * @param kTable       Ks values row-major, from index 0.
+     * @param padCount     number of rows of the Ks table.
+     * @param angleCount   number of angle samples per row.
+     * @param minAngle     angle (degrees) of the first Ks column.
+     * @param angleStep    angle (degrees) between consecutive Ks columns.
+     */
+    public SubjectModel(String subject, DoubleBuffer initialProbs, DoubleBuffer kTable, int padCount, int angleCount,
+                        double minAngle, double angleStep) {
+        if (kTable.limit() != padCount * angleCount) {
+            throw new IllegalArgumentException("Ks table of " + subject + " has " + kTable.limit()
+                    + " values, expected " + padCount + "x" + angleCount);
+        }
+        this.subject = subject;
+        this.padCount = padCount;
+        this.angleCount = angleCount;
+        this.initialProbs = initialProbs.asReadOnlyBuffer();
+        this.kTable = kTable.asReadOnlyBuffer();
+        this.minAngle = minAngle;
+        this.angleStep = angleStep;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    /**
+     * Number of pads (rows) of the Ks table.
+     */
+    public int getPadCount() {
+        return padCount;
+    }
+
+    /**
+     * Number of angle samples (columns) of the Ks table.
+     */
+    public int getAngleCount() {
+        return angleCount;
+    }
+
+    /**
+     * Angle (degrees) of the first Ks column.
+     */
+    public double getMinAngle() {
+        return minAngle;
+    }
+
+    /**
+     * Angle (degrees) between consecutive Ks columns.
+     */
+    public double getAngleStep() {
+        return angleStep;
+    }
+
+    /**
+     * Number of initial probabilities available.
+     */
+    public int getInitialProbCount() {
+        return initialProbs.limit();
+    }
+
+    /**
+     * Ks value of {@code pad} (0-based) at angle sample {@code angle}.
+     */
+    public double getK(int pad, int angle) {
+        return kTable.get(pad * angleCount + angle);
+    }
+
+    /**
+     * Read-only, row-major view of the Ks table. Absolute {@code get(int)}
+     * calls on the view are safe from any thread.
+     */
+    public DoubleBuffer kTable() {
+        return kTable.duplicate();
+    }
+
+    /**
+     * Copies the initial probabilities into {@code dest}.
+     *
+     * @return {@code dest}, for chaining.
+     * @throws IllegalArgumentException if {@code dest} does not have one slot
+     *                                  per initial probability.
+     */
+    public double[] copyInitialProbs(double[] dest) {
+        if (dest.length != initialProbs.limit()) {
+            throw new IllegalArgumentException("Initial probabilities of " + subject + " have "
+                    + initialProbs.limit() + " values, expected " + dest.length);
+        }
+        initialProbs.get(0, dest, 0, dest.length);
+        return dest;
+    }
+
+    /**
+     * Logical size of the tables, 8 bytes per value, used to bound caches. It
+     * counts the values whether they live on the heap or in a memory-mapped
+     * file, and excludes tables derived from this model such as the
+     * angle-major copy of the simulation's likelihood table.
+     */
+    public long logicalSizeInBytes() {
+        return (long) Double.BYTES * (initialProbs.limit() + kTable.limit());
+    }
+}
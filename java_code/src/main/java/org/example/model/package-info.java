@@ -3,6 +3,8 @@
  * components without adding side effects.
  * <p>
  * Currently contains {@link org.example.model.BayesStepResult}, which captures
- * the probabilities produced for each pad during a Bayesian update step.
+ * the probabilities produced for each pad during a Bayesian update step, and
+ * {@link org.example.model.SubjectModel}, the immutable per-subject priors and
+ * Ks table shared between simulations.
  */
 package org.example.model;
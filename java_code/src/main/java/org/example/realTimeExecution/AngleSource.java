@@ -0,0 +1,28 @@
+package org.example.realTimeExecution;
+
+/**
+ * Fuente del ángulo de pronosupinación que alimenta a {@link ClosedLoopController}.
+ * Cada tick llama a {@link #update()} y, si hay medida, lee el ángulo y el
+ * instante de adquisición de la muestra de la que procede.
+ * <p>
+ * Solo se usa desde el hilo del controlador.
+ */
+public interface AngleSource {
+
+    /**
+     * Toma la medida más reciente disponible.
+     *
+     * @return {@code false} si todavía no hay ninguna muestra.
+     */
+    boolean update();
+
+    /**
+     * Ángulo en grados de la última medida tomada con {@link #update()}.
+     */
+    double angleDegrees();
+
+    /**
+     * Marca {@link System#nanoTime()} de adquisición de la última medida.
+     */
+    long timestampNanos();
+}
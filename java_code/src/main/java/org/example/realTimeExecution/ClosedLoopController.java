@@ -0,0 +1,530 @@
+package org.example.realTimeExecution;
+
+import org.example.auxiliar.Utilities;
+import org.example.config.GridConfig;
+import org.example.config.RuntimeConfig;
+import org.example.io.SessionJournal;
+import org.example.io.SubjectModelRepository;
+import org.example.model.SubjectModel;
+import org.example.simulation.FilterEngine;
+import org.example.simulation.ParticleFilter;
+import org.example.simulation.Simulation;
+import org.example.simulation.StepBuffers;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Lazo cerrado en tiempo real entre el IMU, el filtro bayesiano y el
+ * estimulador. Un planificador de periodo fijo ejecuta en cada tick:
+ * <ol>
+ *     <li>lectura del ángulo de pronosupinación más reciente ({@link AngleSource});</li>
+ *     <li>reinicio de los priors y un paso de {@link FilterEngine#runStepInto} con ese
+ *     ángulo, igual que en la simulación offline;</li>
+ *     <li>traducción de los pads seleccionados a canales y envío de la máscara
+ *     solo si el conjunto activo ha cambiado.</li>
+ * </ol>
+ * El filtro puede ser la {@link Simulation} de rejilla o un
+ * {@link org.example.simulation.ParticleFilter}. El ángulo de la predicción
+ * se redondea a la resolución de {@link #setMovementResolution(double)}, de modo
+ * que los kernels de transición de la rejilla se reutilizan entre ticks; con
+ * ellos ya cacheados el paso no reserva memoria y la duración del tick la
+ * dominan la lectura y la escritura en el puerto. La corrección usa el ángulo
+ * medido sin redondear.
+ * <p>
+ * Contabilidad de tiempos, con {@code t_n = inicio + n * periodo}:
+ * <ul>
+ *     <li>un tick que termina después de {@code t_n + periodo} cuenta como plazo
+ *     incumplido; si ya empieza con ese retraso no se ejecuta, para que el
+ *     planificador no encadene ticks atrasados sobre datos viejos;</li>
+ *     <li>si la muestra es más antigua que el presupuesto de latencia al empezar
+ *     el tick, se mantiene la máscara anterior;</li>
+ *     <li>la latencia extremo a extremo va desde la adquisición de la muestra hasta
+ *     que se ha escrito la máscara, y se cuentan las veces que supera el presupuesto.</li>
+ * </ul>
+ * El filtro y la fuente de ángulo solo se usan desde el hilo del
+ * controlador; los contadores pueden leerse desde cualquier hilo.
+ * <p>
+ * Sin planificador, {@link #tickAt(long)} ejecuta un tick con un reloj dado;
+ * {@link SessionReplay} lo usa para repetir una sesión grabada más rápido que
+ * en tiempo real.
+ */
+public class ClosedLoopController implements AutoCloseable {
+    private final FilterEngine simulation;
+    private final AngleSource angleSource;
+    private final Consumer<int[][]> maskSink;
+    private final long periodNanos;
+    private final long latencyBudgetNanos;
+    private final StepBuffers step;
+    private final int[][] mask;
+    private final int[] activeChannels;
+    private final int[] candidateChannels;
+    private IntUnaryOperator padToChannel;
+    private double movementResolution;
+    private StepListener stepListener;
+    private int activeCount = -1;
+    private int candidateCount;
+
+    private ScheduledExecutorService scheduler;
+    private long startNanos;
+    private long tickIndex;
+
+    private volatile long ticks;
+    private volatile long steps;
+    private volatile long deadlineMisses;
+    private volatile long skippedTicks;
+    private volatile long staleTicks;
+    private volatile long budgetOverruns;
+    private volatile long maskUpdates;
+    private volatile long failures;
+    private volatile long lastLatencyNanos;
+    private volatile long maxLatencyNanos;
+    private volatile double lastAngle = Double.NaN;
+    private volatile RuntimeException lastError;
+    private volatile int[] publishedChannels = new int[0];
+
+    /**
+     * Controlador con el periodo, el presupuesto de latencia, el número de pads
+     * y la longitud de máscara de {@code config}. Cada pad {@code p} se envía al
+     * canal {@code channelPulseStart - 1 + p} y la predicción usa la resolución
+     * de {@link RuntimeConfig#getControlMovementResolutionDegrees()}.
+     *
+     * @param simulation  filtro con los priors y la tabla Ks del sujeto cargados.
+     * @param angleSource fuente del ángulo medido.
+     * @param maskSink    destino de las máscaras, normalmente un {@link StimulationMaskManager}
+     *                    que envía solo los cambios.
+     * @param config      parámetros de tiempo real.
+     */
+    public ClosedLoopController(FilterEngine simulation, AngleSource angleSource, Consumer<int[][]> maskSink,
+                                RuntimeConfig config) {
+        this(simulation, angleSource, maskSink,
+                TimeUnit.MILLISECONDS.toNanos(config.getControlPeriodMillis()),
+                TimeUnit.MILLISECONDS.toNanos(config.getControlLatencyBudgetMillis()),
+                config.getControlTopPads(), config.getMaskLength());
+        int firstChannel = config.getChannelPulseStart();
+        this.padToChannel = pad -> firstChannel - 1 + pad;
+        setMovementResolution(config.getControlMovementResolutionDegrees());
+    }
+
+    /**
+     * @param simulation         filtro con los priors y la tabla Ks del sujeto cargados.
+     * @param angleSource        fuente del ángulo medido.
+     * @param maskSink           destino de las máscaras.
+     * @param periodNanos        periodo del tick.
+     * @param latencyBudgetNanos antigüedad máxima de la muestra sobre la que se actúa.
+     * @param topPads            pads seleccionados por tick.
+     * @param maskLength         número de canales de la máscara.
+     */
+    public ClosedLoopController(FilterEngine simulation, AngleSource angleSource, Consumer<int[][]> maskSink,
+                                long periodNanos, long latencyBudgetNanos, int topPads, int maskLength) {
+        if (periodNanos <= 0 || latencyBudgetNanos <= 0) {
+            throw new IllegalArgumentException("El periodo y el presupuesto de latencia deben ser positivos");
+        }
+        this.simulation = simulation;
+        this.angleSource = angleSource;
+        this.maskSink = maskSink;
+        this.periodNanos = periodNanos;
+        this.latencyBudgetNanos = latencyBudgetNanos;
+        this.step = simulation.newStepBuffers(topPads);
+        this.mask = new int[maskLength][2];
+        this.activeChannels = new int[topPads];
+        this.candidateChannels = new int[topPads];
+        this.padToChannel = IntUnaryOperator.identity();
+    }
+
+    /**
+     * Cambia la correspondencia entre el id de pad (desde 1) y el canal del
+     * estimulador (desde 1). Los canales fuera de la máscara se ignoran. Debe
+     * llamarse antes de {@link #start()}.
+     */
+    public void setPadToChannel(IntUnaryOperator padToChannel) {
+        this.padToChannel = padToChannel;
+    }
+
+    /**
+     * Cambia la rejilla, en grados, a la que se redondea el ángulo de la
+     * predicción; {@code 0} lo usa sin redondear. Debe llamarse antes de
+     * {@link #start()}.
+     */
+    public void setMovementResolution(double degrees) {
+        if (!(degrees >= 0) || Double.isInfinite(degrees)) {
+            throw new IllegalArgumentException("Resolución no válida: " + degrees);
+        }
+        this.movementResolution = degrees;
+    }
+
+    /**
+     * Registra un oyente que recibe la salida de cada paso del filtro, por
+     * ejemplo {@code journal::recordStep}. Debe llamarse antes de {@link #start()}.
+     */
+    public void setStepListener(StepListener stepListener) {
+        this.stepListener = stepListener;
+    }
+
+    /**
+     * Arranca el planificador. Llamarlo con el controlador en marcha no tiene efecto.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "closed-loop");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            return thread;
+        });
+        startNanos = System.nanoTime();
+        tickIndex = 0;
+        scheduler.scheduleAtFixedRate(this::tick, 0, periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Detiene el planificador y espera a que termine el tick en curso. No
+     * envía ninguna máscara ni detiene la estimulación.
+     */
+    public synchronized void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    public synchronized boolean isRunning() {
+        return scheduler != null;
+    }
+
+    private void tick() {
+        long nominal = startNanos + tickIndex++ * periodNanos;
+        long deadline = nominal + periodNanos;
+        long begin = System.nanoTime();
+        ticks++;
+        if (begin - deadline > 0) {
+            // el planificador recupera ejecuciones atrasadas: se descartan
+            deadlineMisses++;
+            skippedTicks++;
+            return;
+        }
+        try {
+            runTick(begin, begin);
+        } catch (RuntimeException e) {
+            // una excepción cancelaría las ejecuciones siguientes
+            failures++;
+            lastError = e;
+        }
+        if (System.nanoTime() - deadline > 0) {
+            deadlineMisses++;
+        }
+    }
+
+    /**
+     * Ejecuta un tick fuera del planificador como si empezara en {@code nowNanos}:
+     * la antigüedad de la muestra y la latencia se miden respecto a ese reloj,
+     * más el tiempo real que tarde el propio tick. No se contabilizan plazos.
+     * No debe llamarse con el controlador en marcha.
+     */
+    public void tickAt(long nowNanos) {
+        ticks++;
+        try {
+            runTick(nowNanos, System.nanoTime());
+        } catch (RuntimeException e) {
+            failures++;
+            lastError = e;
+        }
+    }
+
+    /**
+     * @param begin     inicio del tick según el reloj del lazo.
+     * @param realBegin inicio del tick según {@link System#nanoTime()}.
+     */
+    private void runTick(long begin, long realBegin) {
+        if (!angleSource.update()) {
+            staleTicks++;
+            return;
+        }
+        long sampleTime = angleSource.timestampNanos();
+        if (begin - sampleTime > latencyBudgetNanos) {
+            staleTicks++;
+            return;
+        }
+        double angle = angleSource.angleDegrees();
+        lastAngle = angle;
+
+        simulation.resetToInitialProbs();
+        double movement = movementResolution > 0
+                ? Math.rint(angle / movementResolution) * movementResolution
+                : angle;
+        simulation.runStepInto(movement, angle, step);
+        steps++;
+
+        collectChannels();
+        if (stepListener != null) {
+            stepListener.onStep(begin, sampleTime, angle, candidateChannels, candidateCount);
+        }
+        if (!sameChannels()) {
+            buildMask();
+            maskSink.accept(mask);
+            System.arraycopy(candidateChannels, 0, activeChannels, 0, candidateCount);
+            activeCount = candidateCount;
+            publishedChannels = Arrays.copyOf(activeChannels, activeCount); // solo cuando cambia
+            maskUpdates++;
+        }
+
+        long latency = begin - sampleTime + (System.nanoTime() - realBegin);
+        lastLatencyNanos = latency;
+        if (latency > maxLatencyNanos) {
+            maxLatencyNanos = latency;
+        }
+        if (latency > latencyBudgetNanos) {
+            budgetOverruns++;
+        }
+    }
+
+    private void collectChannels() {
+        candidateCount = 0;
+        int[] ids = step.topPadIds();
+        for (int j = 0; j < step.topPadCount(); j++) {
+            int channel = padToChannel.applyAsInt(ids[j]);
+            if (channel >= 1 && channel <= mask.length) {
+                candidateChannels[candidateCount++] = channel;
+            }
+        }
+    }
+
+    private boolean sameChannels() {
+        if (candidateCount != activeCount) {
+            return false;
+        }
+        for (int j = 0; j < candidateCount; j++) {
+            if (candidateChannels[j] != activeChannels[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void buildMask() {
+        for (int[] row : mask) {
+            row[0] = 0;
+            row[1] = 0;
+        }
+        // la posición en la lista del estimulador sigue el orden de selección
+        for (int j = 0; j < candidateCount; j++) {
+            int channel = candidateChannels[j];
+            mask[channel - 1][0] = 1;
+            mask[channel - 1][1] = j;
+        }
+    }
+
+    /**
+     * Canales (desde 1) de la última máscara enviada, en orden de lista.
+     */
+    public int[] getActiveChannels() {
+        return publishedChannels.clone();
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Ticks en los que se ejecutó el paso del filtro.
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * Ticks que terminaron, o habrían empezado, después de su plazo.
+     */
+    public long getDeadlineMisses() {
+        return deadlineMisses;
+    }
+
+    /**
+     * Ticks atrasados que no se ejecutaron.
+     */
+    public long getSkippedTicks() {
+        return skippedTicks;
+    }
+
+    /**
+     * Ticks sin muestra o con una muestra más antigua que el presupuesto.
+     */
+    public long getStaleTicks() {
+        return staleTicks;
+    }
+
+    /**
+     * Ticks cuya latencia extremo a extremo superó el presupuesto.
+     */
+    public long getBudgetOverruns() {
+        return budgetOverruns;
+    }
+
+    public long getMaskUpdates() {
+        return maskUpdates;
+    }
+
+    /**
+     * Ticks interrumpidos por una excepción; la última está en {@link #getLastError()}.
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    public RuntimeException getLastError() {
+        return lastError;
+    }
+
+    public long getLastLatencyNanos() {
+        return lastLatencyNanos;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+
+    /**
+     * Último ángulo usado por el filtro, o {@code NaN} si aún no hay ninguno.
+     */
+    public double getLastAngle() {
+        return lastAngle;
+    }
+
+    /**
+     * Construye el filtro del lazo para {@code subject} con los parámetros de
+     * {@code config}: un {@link ParticleFilter} si
+     * {@link RuntimeConfig#getControlParticleCount()} es positivo y, si no, la
+     * {@link Simulation} de rejilla. {@link SessionReplay} lo usa para repetir
+     * una sesión con el mismo filtro que en directo.
+     */
+    public static FilterEngine newFilter(RuntimeConfig config, String subject) {
+        SubjectModel model = SubjectModelRepository.shared().get(subject);
+        if (config.getControlParticleCount() > 0) {
+            return new ParticleFilter(GridConfig.defaultConfig(), config.getControlProbMin(), model,
+                    config.getControlParticleCount(), config.getControlParticleSeed());
+        }
+        return new Simulation(GridConfig.defaultConfig(), config.getControlMovementThreshold(),
+                config.getControlProbMin(), model);
+    }
+
+    /**
+     * Prueba local: calibra el reposo del brazo, arranca la estimulación y deja
+     * que el lazo elija los canales durante el tiempo indicado. La estimulación
+     * solo está activa mientras el filtro selecciona algún canal: el
+     * estimulador no admite una lista vacía, así que sin pads se detiene y se
+     * reanuda con la siguiente selección.
+     */
+    public static void main(String[] args) {
+        RuntimeConfig config = RuntimeConfig.defaultConfig();
+        String subject = Utilities.readString("Sujeto (p. ej. Subject1): ");
+        double frequency = Utilities.readDouble("Establezca la frecuencia: ");
+        double pulseWidth = Utilities.readDouble("Establezca el ancho de pulso: ");
+        double amplitude = Utilities.readDouble("Establezca la intensidad de corriente: ");
+        double seconds = Utilities.readDouble("Duración del lazo cerrado (s): ");
+
+        FilterEngine simulation = newFilter(config, subject);
+        SerialReaderQuaternion armReader = new SerialReaderQuaternion(config.getArmImuPort());
+        FESController fesController = new FESController(config.getFesPort());
+        if (!armReader.openPort()) {
+            System.out.println("Error al abrir los puertos.");
+            return;
+        }
+        // el puerto del brazo se cierra aunque falle la conexión con el estimulador
+        try {
+            if (!fesController.connect()) {
+                System.out.println("Error al abrir los puertos.");
+                return;
+            }
+            try {
+                runSession(config, simulation, armReader, fesController, frequency, pulseWidth, amplitude, seconds);
+            } finally {
+                fesController.disconnect();
+            }
+        } finally {
+            armReader.closePort();
+        }
+    }
+
+    private static void runSession(RuntimeConfig config, FilterEngine simulation, SerialReaderQuaternion armReader,
+                                   FESController fesController, double frequency, double pulseWidth,
+                                   double amplitude, double seconds) {
+        SessionJournal journal = Main.openJournal(config);
+        fesController.setCommandListener(journal::recordCommand);
+        SessionRecorder recorder = new SessionRecorder(journal, Main.JOURNAL_PERIOD_MILLIS);
+        recorder.addStream(SessionJournal.STREAM_ARM, armReader.getRing());
+        recorder.start();
+
+        try (ImuAcquisitionService armImu = new ImuAcquisitionService(armReader)) {
+            fesController.configureChannels(config.getChannelPulseStart(), config.getChannelPulseEnd(), pulseWidth, amplitude);
+            fesController.setFrequency(frequency);
+            fesController.powerOn();
+            try {
+                armImu.start();
+                Thread.sleep(config.getCalibrationWindowMillis());
+                Quaternion rest = armImu.meanOverLast(config.getCalibrationWindowMillis());
+                journal.recordReference(SessionJournal.STREAM_ARM, armImu.now(),
+                        rest.getW(), rest.getX(), rest.getY(), rest.getZ());
+
+                AngleSource angle = new ImuAngleSource(armReader.getRing(), rest, ImuAngleSource.AXIS_X);
+                StimulationMaskManager masks = new StimulationMaskManager(fesController, config.getMaskLength());
+                boolean[] stimulating = new boolean[1];
+                Consumer<int[][]> maskSink = mask -> {
+                    masks.setMask(mask);
+                    // sin esperar las respuestas: el tick no se bloquea en el puerto
+                    if (masks.isEmpty()) {
+                        if (stimulating[0]) {
+                            fesController.submitCommands(List.of(FESController.STOP_STIMULATION));
+                            stimulating[0] = false;
+                        }
+                        return;
+                    }
+                    masks.flush();
+                    if (!stimulating[0]) {
+                        fesController.submitCommands(List.of(FESController.START_STIMULATION));
+                        stimulating[0] = true;
+                    }
+                };
+                try (ClosedLoopController controller = new ClosedLoopController(simulation, angle, maskSink, config)) {
+                    controller.setStepListener(journal::recordStep);
+                    controller.start();
+                    Thread.sleep((long) (seconds * 1000));
+                    controller.stop();
+
+                    System.out.printf("Ticks: %d, pasos: %d, plazos incumplidos: %d, sin datos recientes: %d%n",
+                            controller.getTicks(), controller.getSteps(), controller.getDeadlineMisses(), controller.getStaleTicks());
+                    System.out.printf("Latencia máxima: %.1f ms, presupuesto superado: %d, máscaras enviadas: %d%n",
+                            controller.getMaxLatencyNanos() / 1e6, controller.getBudgetOverruns(), controller.getMaskUpdates());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                try {
+                    fesController.stopStimulation();
+                } finally {
+                    fesController.powerOff();
+                }
+            }
+        } finally {
+            recorder.stop();
+            journal.close();
+        }
+    }
+}
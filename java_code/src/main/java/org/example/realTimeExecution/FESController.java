@@ -3,18 +3,37 @@ package org.example.realTimeExecution;
 import com.fazecast.jSerialComm.SerialPort;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.ObjLongConsumer;
 
 /**
  * Gestiona la comunicación serie con el dispositivo de estimulación funcional (FES).
  * Permite abrir la conexión, enviar comandos de configuración y controlar el inicio o
  * parada de la estimulación sobre distintos canales sin alterar el protocolo empleado
  * por la implementación original.
+ * <p>
+ * Los comandos se envían por un {@link FesCommandPipeline}: se escriben seguidos
+ * y cada respuesta se espera como mucho {@link FesCommandPipeline#DEFAULT_TIMEOUT_MILLIS} ms,
+ * en lugar de dormir 200 ms por comando. {@link #setMask(int[][])} y
+ * {@link #configureChannels(int, int, double, double)} envían todos sus comandos
+ * antes de esperar las respuestas.
  */
 public class FESController {
-    private SerialPort serialPort;
+    private final SerialTransport externalTransport;
+    private SerialTransport transport;
     private String portName;
+    private FesCommandPipeline pipeline;
+    private volatile ObjLongConsumer<String> commandListener;
     private static final int BAUD_RATE = 9600;
+    private static final int READ_TIMEOUT_MILLIS = 5;
+    /** Comando que inicia la estimulación con la lista de canales actual. */
+    static final String START_STIMULATION = "s\r";
+    /** Comando que detiene la estimulación. */
+    static final String STOP_STIMULATION = "p\r";
 
     /**
      * Crea un controlador asociado a un nombre de puerto.
@@ -24,6 +43,20 @@ public class FESController {
     public FESController(String portName) {
 
         this.portName = portName;
+        this.externalTransport = null;
+    }
+
+    /**
+     * Crea un controlador sobre un canal ya abierto, por ejemplo un
+     * {@link FesSimulatorTransport}. {@link #connect()} no abre ningún puerto y
+     * {@link #disconnect()} cierra el canal.
+     *
+     * @param transport canal con el estimulador; su timeout de lectura debe ser
+     *                  menor que {@link FesCommandPipeline#IDLE_GAP_MILLIS}.
+     */
+    public FESController(SerialTransport transport) {
+        this.portName = transport.getName();
+        this.externalTransport = transport;
     }
 
     /**
@@ -34,13 +67,21 @@ public class FESController {
      * @return {@code true} si el puerto se abre correctamente; {@code false} en caso contrario.
      */
     public boolean connect() {
-        serialPort = SerialPort.getCommPort(portName);
+        if (externalTransport != null) {
+            transport = externalTransport;
+            pipeline = new FesCommandPipeline(transport);
+            System.out.println("Conectado al dispositivo FES en " + portName);
+            return true;
+        }
+        SerialPort serialPort = SerialPort.getCommPort(portName);
         serialPort.setBaudRate(BAUD_RATE); //velocidad de transmisionde bits
         serialPort.setNumDataBits(8); //8 bits de datos por cada paquete de comunicaion
         serialPort.setNumStopBits(1); //1 bit de parada para idnicar el final de un paquete de datos
         serialPort.setParity(SerialPort.NO_PARITY); //sin paridad (no se detectan errores en la transmisión
 
         if (serialPort.openPort()) {
+            transport = new JSerialCommTransport(serialPort, READ_TIMEOUT_MILLIS);
+            pipeline = new FesCommandPipeline(transport);
             System.out.println("Conectado al dispositivo FES en " + portName);
             return true;
         } else {
@@ -86,7 +127,7 @@ public class FESController {
      * {@link #setMask(int[][])}.
      */
     public void startStimulation() {
-        String command = "s\r";
+        String command = START_STIMULATION;
         try {
             sendCommand(command);
         } catch (IOException e) {
@@ -99,7 +140,7 @@ public class FESController {
      * Detiene la estimulación en curso.
      */
     public void stopStimulation() {
-        String command = "p\r";
+        String command = STOP_STIMULATION;
         try {
             sendCommand(command);
         } catch (IOException e) {
@@ -114,8 +155,13 @@ public class FESController {
      * Postcondición: los comandos posteriores requerirán una nueva llamada a {@link #connect()}.
      */
     public void disconnect() {
-        if (serialPort != null && serialPort.isOpen()) {
-            serialPort.closePort();
+        if (pipeline != null) {
+            pipeline.close();
+            pipeline = null;
+        }
+        if (transport != null) {
+            transport.close();
+            transport = null;
             System.out.println("Conexion cerrada");
         }
     }
@@ -128,25 +174,65 @@ public class FESController {
      */
     public void setMask(int[][] mask) {
 
+        List<String> commands = new ArrayList<>();
+        List<Integer> channels = new ArrayList<>();
         for (int j = 0; j < mask.length; j++) {
             if (mask[j][0] == 1) { // Canal activo
                 String command = "e lc " + (j + 1) + " " + mask[j][1] + "\r";  // Canal y estado
+                System.out.println("Preparando comando: " + command);
+                commands.add(command);
+                channels.add(j + 1);
+            }
+        }
+        List<CompletableFuture<String>> responses = submitCommands(commands);
 
-                try {
-                    System.out.println("Preparando comando: " + command);
-                    sendCommand(command);
+        // todos los comandos ya están en cola: se espera una sola vez por el conjunto
+        for (int k = 0; k < commands.size(); k++) {
+            String command = commands.get(k);
+            try {
+                awaitResponse(responses.get(k));
 
-                    // Para depuración (opcional)
-                    System.out.println("Comando enviado: " + command);
-                    System.out.println("Canal " + (j + 1) + " añadido a la lista !!!\n");
-                } catch (IOException e) {
-                    throw new RuntimeException("Error enviando comando al canal " + j, e);
-                }
+                // Para depuración (opcional)
+                System.out.println("Comando enviado: " + command);
+                System.out.println("Canal " + channels.get(k) + " añadido a la lista !!!\n");
+            } catch (IOException e) {
+                throw new RuntimeException("Error enviando comando al canal " + channels.get(k), e);
             }
         }
 
     }
 
+    /**
+     * Configura el ancho de pulso y la corriente de los canales
+     * {@code firstChannel..lastChannel}, enviando todos los comandos antes de
+     * esperar las respuestas.
+     *
+     * @param firstChannel primer canal, incluido.
+     * @param lastChannel  último canal, incluido.
+     * @param pulseWidth   ancho de pulso en microsegundos.
+     * @param amplitude    amplitud en miliamperios.
+     * @throws IllegalArgumentException si algún valor está fuera de rango.
+     */
+    public void configureChannels(int firstChannel, int lastChannel, double pulseWidth, double amplitude) {
+        int pulseValue = pulseWidthValue(pulseWidth);
+        int currentValue = currentValue(amplitude);
+        List<String> commands = new ArrayList<>();
+        for (int channel = firstChannel; channel <= lastChannel; channel++) {
+            commands.add("w " + channel + " tp " + pulseValue + "\r");
+            commands.add("w " + channel + " ap " + currentValue + "\r");
+        }
+        List<CompletableFuture<String>> responses = submitCommands(commands);
+        try {
+            for (CompletableFuture<String> response : responses) {
+                awaitResponse(response);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error al configurar los canales", e);
+        }
+        System.out.println("Canales " + firstChannel + "-" + lastChannel + " configurados: " + pulseWidth
+                + " ms (valor: " + pulseValue + "), " + amplitude + " mA (valor: " + currentValue + ")");
+    }
+
     /**
      * Configura la frecuencia global de estimulación.
      *
@@ -177,13 +263,7 @@ public class FESController {
      * @throws IllegalArgumentException si el ancho de pulso es inferior al mínimo admitido.
      */
     public void setPulseWidth(int channel, double pulseWidth) {
-        // Convierte el ancho de pulso (mínimo 27.6 ms, paso de 2.4 ms)
-        int pulseValue = (int) ((pulseWidth - 27.6) / 2.4);
-
-        if (pulseValue < 0) {
-            throw new IllegalArgumentException("El ancho de pulso debe ser mayor o igual a 27.6 ms");
-        }
-
+        int pulseValue = pulseWidthValue(pulseWidth);
         String command = "w " + channel + " tp " + pulseValue + "\r";
 
         try {
@@ -202,13 +282,7 @@ public class FESController {
      * @throws IllegalArgumentException si la amplitud es negativa.
      */
     public void setCurrent(int channel, double amplitude) {
-        // Convierte la amplitud (paso de 0.78 mA)
-        int currentValue = (int) (amplitude / 0.78);
-
-        if (currentValue < 0) {
-            throw new IllegalArgumentException("La amplitud debe ser mayor o igual a 0");
-        }
-
+        int currentValue = currentValue(amplitude);
         String command = "w " + channel + " ap " + currentValue + "\r";
 
         try {
@@ -219,6 +293,26 @@ public class FESController {
         }
     }
 
+    private static int pulseWidthValue(double pulseWidth) {
+        // Convierte el ancho de pulso (mínimo 27.6 ms, paso de 2.4 ms)
+        int pulseValue = (int) ((pulseWidth - 27.6) / 2.4);
+
+        if (pulseValue < 0) {
+            throw new IllegalArgumentException("El ancho de pulso debe ser mayor o igual a 27.6 ms");
+        }
+        return pulseValue;
+    }
+
+    private static int currentValue(double amplitude) {
+        // Convierte la amplitud (paso de 0.78 mA)
+        int currentValue = (int) (amplitude / 0.78);
+
+        if (currentValue < 0) {
+            throw new IllegalArgumentException("La amplitud debe ser mayor o igual a 0");
+        }
+        return currentValue;
+    }
+
     /**
      * Envía un comando textual al FES y muestra la respuesta devuelta por el dispositivo.
      *
@@ -226,23 +320,70 @@ public class FESController {
      * @throws IOException si ocurre un problema al escribir por el puerto serie.
      */
     private void sendCommand(String command) throws IOException {
-        serialPort.writeBytes(command.getBytes(), command.length()); //convierte el comando en un array de bits y lo envia por el puerto serie, indica la cantidad de bytes a enviar
-        try {
-            Thread.sleep(200); // Pequeña espera para recibir la respuesta
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        awaitResponse(submitCommand(command));
+    }
+
+    /**
+     * Encola un comando sin esperar la respuesta.
+     */
+    private CompletableFuture<String> submitCommand(String command) {
+        if (pipeline == null) {
+            throw new IllegalStateException("El puerto " + portName + " no está conectado");
         }
+        notifyCommand(command);
+        return pipeline.submit(command);
+    }
 
-        byte[] buffer = new byte[20];  // Tamaño del buffer mayor para que cubra cualquier respuesta posible
-        int numBytes = serialPort.readBytes(buffer, buffer.length); // Lee los bytes desde el puerto serie
+    /**
+     * Encola varios comandos para escribirlos juntos, sin esperar las respuestas.
+     */
+    List<CompletableFuture<String>> submitCommands(List<String> commands) {
+        if (pipeline == null) {
+            throw new IllegalStateException("El puerto " + portName + " no está conectado");
+        }
+        for (String command : commands) {
+            notifyCommand(command);
+        }
+        return pipeline.submitAll(commands);
+    }
 
-        if (numBytes > 0) {
-            String response = new String(buffer, 0, numBytes, StandardCharsets.UTF_8).trim();  // Convierte bytes a string
-            System.out.println("Respuesta: \"" + response + "\"");
+    /**
+     * Registra un oyente que recibe cada comando, con su marca
+     * {@link System#nanoTime()}, al encolarse; por ejemplo
+     * {@code journal::recordCommand} de un {@link org.example.io.SessionJournal}.
+     * {@code null} lo desactiva.
+     */
+    public void setCommandListener(ObjLongConsumer<String> commandListener) {
+        this.commandListener = commandListener;
+    }
 
+    private void notifyCommand(String command) {
+        ObjLongConsumer<String> listener = commandListener;
+        if (listener != null) {
+            listener.accept(command, System.nanoTime());
+        }
+    }
 
-        } else {
-            System.out.println("No se recibió respuesta del dispositivo.");
+    /**
+     * Espera la respuesta de un comando encolado y la muestra por consola.
+     *
+     * @throws IOException si el comando no pudo escribirse en el puerto serie.
+     */
+    private static void awaitResponse(CompletableFuture<String> pending) throws IOException {
+        try {
+            String response = pending.get();
+            System.out.println("Respuesta: \"" + response + "\"");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                System.out.println("No se recibió respuesta del dispositivo.");
+            } else if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else {
+                throw new IOException(e.getCause());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Espera de respuesta interrumpida", e);
         }
     }
 
@@ -0,0 +1,387 @@
+package org.example.realTimeExecution;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Canal asíncrono de comandos hacia el estimulador. Los comandos se encolan y
+ * un hilo escritor los envía seguidos, agrupando en una sola escritura los que
+ * ya estén en cola; un hilo lector separa las respuestas y completa, en orden
+ * FIFO, el {@link CompletableFuture} de cada comando. Sustituye la espera fija
+ * de 200 ms por comando por un timeout explícito que solo se agota si el
+ * dispositivo no contesta.
+ * <p>
+ * Se asume una respuesta por comando, terminada en {@code \r} o {@code \n}; una
+ * respuesta sin terminador se da por completa tras {@value #IDLE_GAP_MILLIS} ms
+ * sin recibir bytes. Un comando sin respuesta dentro del timeout se completa
+ * con {@link java.util.concurrent.TimeoutException} y deja de esperar su
+ * respuesta. Como el protocolo no identifica las respuestas, si el dispositivo
+ * omite una, los comandos que estaban en vuelo en ese momento quedan
+ * desplazados una posición hasta que el canal se vacía. Con
+ * {@code maxInFlight = 1} el canal funciona en modo petición-respuesta y ese
+ * desplazamiento no puede ocurrir.
+ * <p>
+ * {@link #submitAll(List)} encola varios comandos como un bloque que se
+ * escribe de una vez, sin intercalar comandos de otros hilos.
+ * <p>
+ * Si la lectura del puerto falla (por ejemplo porque se ha desconectado) el
+ * canal queda roto: los comandos pendientes y los que se envíen después se
+ * completan con esa {@link IOException}.
+ * <p>
+ * {@link #submit(String)} y {@link #submitAll(List)} pueden llamarse desde cualquier hilo.
+ */
+public class FesCommandPipeline implements AutoCloseable {
+    /** Timeout por defecto de cada respuesta, igual a la antigua espera fija. */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 200;
+    /** Comandos sin respuesta admitidos a la vez por defecto. */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 8;
+    /** Silencio tras el que una respuesta sin terminador se da por completa. */
+    public static final long IDLE_GAP_MILLIS = 20;
+
+    private static final Command STOP = new Command(new byte[0], List.of());
+
+    private final SerialTransport transport;
+    private final int maxInFlight;
+    private final long timeoutMillis;
+    private final Semaphore permits;
+    private final BlockingQueue<Command> queue = new LinkedBlockingQueue<>();
+    private final ConcurrentLinkedDeque<CompletableFuture<String>> inFlight = new ConcurrentLinkedDeque<>();
+    private final Thread writer;
+    private final Thread reader;
+    private volatile boolean running = true;
+    private volatile IOException failure;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong unmatched = new AtomicLong();
+
+    /**
+     * Pipeline con los valores por defecto.
+     */
+    public FesCommandPipeline(SerialTransport transport) {
+        this(transport, DEFAULT_MAX_IN_FLIGHT, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param transport     canal con el estimulador; su timeout de lectura debe
+     *                      ser menor que {@link #IDLE_GAP_MILLIS}.
+     * @param maxInFlight   comandos enviados sin respuesta admitidos a la vez.
+     * @param timeoutMillis espera máxima de cada respuesta desde que se escribe el comando.
+     */
+    public FesCommandPipeline(SerialTransport transport, int maxInFlight, long timeoutMillis) {
+        if (maxInFlight <= 0 || timeoutMillis <= 0) {
+            throw new IllegalArgumentException("maxInFlight y el timeout deben ser positivos");
+        }
+        this.transport = transport;
+        this.maxInFlight = maxInFlight;
+        this.timeoutMillis = timeoutMillis;
+        this.permits = new Semaphore(maxInFlight);
+        this.writer = new Thread(this::writeLoop, "fes-writer-" + transport.getName());
+        this.reader = new Thread(this::readLoop, "fes-reader-" + transport.getName());
+        writer.setDaemon(true);
+        reader.setDaemon(true);
+        writer.start();
+        reader.start();
+    }
+
+    /**
+     * Encola un comando.
+     *
+     * @param command comando completo, con su terminador {@code \r}.
+     * @return respuesta del dispositivo sin espacios ni terminadores; falla con
+     *         {@link java.util.concurrent.TimeoutException} si no llega a tiempo
+     *         o con {@link IOException} si no se pudo escribir.
+     */
+    public CompletableFuture<String> submit(String command) {
+        return submitAll(List.of(command)).get(0);
+    }
+
+    /**
+     * Encola varios comandos que se escriben juntos en una sola escritura. Si
+     * son más que {@code maxInFlight} se reparten en bloques de ese tamaño.
+     *
+     * @param commands comandos completos, cada uno con su terminador {@code \r}.
+     * @return una respuesta por comando, en el mismo orden.
+     */
+    public List<CompletableFuture<String>> submitAll(List<String> commands) {
+        List<CompletableFuture<String>> responses = new ArrayList<>(commands.size());
+        for (int from = 0; from < commands.size(); from += maxInFlight) {
+            int to = Math.min(commands.size(), from + maxInFlight);
+            List<CompletableFuture<String>> group = new ArrayList<>(to - from);
+            StringBuilder bytes = new StringBuilder();
+            for (int i = from; i < to; i++) {
+                CompletableFuture<String> response = new CompletableFuture<>();
+                group.add(response);
+                responses.add(response);
+                bytes.append(commands.get(i));
+            }
+            if (!running) {
+                IOException error = failure != null ? failure : new IOException("Canal de comandos cerrado");
+                for (CompletableFuture<String> future : group) {
+                    future.completeExceptionally(error);
+                }
+            } else {
+                queue.add(new Command(bytes.toString().getBytes(StandardCharsets.US_ASCII), group));
+            }
+        }
+        if (!running) {
+            // el canal se cerró o se rompió mientras se encolaba
+            failPending(failure != null ? failure : new CancellationException("Canal de comandos cerrado"));
+        }
+        return responses;
+    }
+
+    /**
+     * Detiene los hilos y cancela los comandos pendientes. No cierra el transporte.
+     */
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        stopWriter();
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failPending(new CancellationException("Canal de comandos cerrado"));
+    }
+
+    /**
+     * Error de lectura que rompió el canal, o {@code null} si no ha fallado.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Comandos escritos en el puerto.
+     */
+    public long getSent() {
+        return sent.get();
+    }
+
+    /**
+     * Escrituras realizadas en el puerto; cada una puede llevar varios comandos.
+     */
+    public long getWrites() {
+        return writes.get();
+    }
+
+    /**
+     * Comandos que no recibieron respuesta a tiempo.
+     */
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    /**
+     * Respuestas recibidas sin ningún comando esperándolas.
+     */
+    public long getUnmatchedResponses() {
+        return unmatched.get();
+    }
+
+    private void writeLoop() {
+        List<Command> batch = new ArrayList<>();
+        byte[] out = new byte[256];
+        Command first = null;
+        try {
+            while (true) {
+                first = queue.take();
+                if (first == STOP) {
+                    return;
+                }
+                permits.acquire(first.responses.size());
+                batch.add(first);
+                // se agrupan los comandos ya encolados mientras queden huecos
+                Command next;
+                while ((next = queue.peek()) != null && next != STOP && permits.tryAcquire(next.responses.size())) {
+                    batch.add(queue.poll());
+                }
+
+                int length = 0;
+                int commands = 0;
+                for (int i = 0; i < batch.size(); i++) {
+                    Command c = batch.get(i);
+                    if (c.isDone()) { // cancelado por el llamador antes de enviarse
+                        permits.release(c.responses.size());
+                        batch.remove(i--);
+                        continue;
+                    }
+                    if (length + c.bytes.length > out.length) {
+                        out = Arrays.copyOf(out, Math.max(out.length * 2, length + c.bytes.length));
+                    }
+                    System.arraycopy(c.bytes, 0, out, length, c.bytes.length);
+                    length += c.bytes.length;
+                    commands += c.responses.size();
+                    // se registra antes de escribir para no perder una respuesta rápida
+                    for (CompletableFuture<String> f : c.responses) {
+                        inFlight.add(f);
+                        f.whenComplete((response, error) -> {
+                            inFlight.remove(f);
+                            permits.release();
+                        });
+                    }
+                }
+                if (batch.isEmpty()) {
+                    continue;
+                }
+                try {
+                    transport.write(out, length);
+                    sent.addAndGet(commands);
+                    writes.incrementAndGet();
+                    for (Command c : batch) {
+                        for (CompletableFuture<String> f : c.responses) {
+                            f.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                                    .whenComplete((response, error) -> {
+                                        if (error instanceof TimeoutException) {
+                                            timeouts.incrementAndGet();
+                                        }
+                                    });
+                        }
+                    }
+                } catch (IOException e) {
+                    for (Command c : batch) {
+                        c.fail(e);
+                    }
+                }
+                batch.clear();
+                first = null;
+            }
+        } catch (InterruptedException e) {
+            // cierre mientras se esperaba un hueco: el comando no llegó a enviarse
+            if (first != null && batch.isEmpty()) {
+                first.fail(new CancellationException("Canal de comandos cerrado"));
+            }
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void stopWriter() {
+        queue.add(STOP);
+        writer.interrupt();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void failPending(Throwable error) {
+        for (Command c; (c = queue.poll()) != null; ) {
+            c.fail(error);
+        }
+        for (CompletableFuture<String> f; (f = inFlight.poll()) != null; ) {
+            f.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Rompe el canal desde el hilo lector: detiene el escritor y completa todos
+     * los comandos pendientes con {@code error}.
+     */
+    private void fail(IOException error) {
+        failure = error;
+        running = false;
+        stopWriter();
+        failPending(error);
+    }
+
+    private void readLoop() {
+        byte[] buffer = new byte[256];
+        byte[] line = new byte[256];
+        int lineLength = 0;
+        long lastByte = System.nanoTime();
+        long idleGap = TimeUnit.MILLISECONDS.toNanos(IDLE_GAP_MILLIS);
+        while (running) {
+            int n;
+            try {
+                n = transport.read(buffer, buffer.length);
+            } catch (IOException e) {
+                if (running) {
+                    fail(e);
+                }
+                return;
+            }
+            if (n < 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (n == 0) {
+                if (lineLength > 0 && now - lastByte >= idleGap) {
+                    complete(line, lineLength);
+                    lineLength = 0;
+                }
+                continue;
+            }
+            lastByte = now;
+            for (int i = 0; i < n; i++) {
+                byte b = buffer[i];
+                if (b == '\r' || b == '\n') {
+                    if (lineLength > 0) {
+                        complete(line, lineLength);
+                        lineLength = 0;
+                    }
+                } else {
+                    if (lineLength == line.length) {
+                        line = Arrays.copyOf(line, line.length * 2);
+                    }
+                    line[lineLength++] = b;
+                }
+            }
+        }
+    }
+
+    private void complete(byte[] line, int length) {
+        String response = new String(line, 0, length, StandardCharsets.UTF_8).trim();
+        if (response.isEmpty()) {
+            return;
+        }
+        CompletableFuture<String> f;
+        while ((f = inFlight.poll()) != null) {
+            if (f.complete(response)) {
+                return;
+            }
+        }
+        unmatched.incrementAndGet();
+    }
+
+    private static final class Command {
+        private final byte[] bytes;
+        private final List<CompletableFuture<String>> responses;
+
+        private Command(byte[] bytes, List<CompletableFuture<String>> responses) {
+            this.bytes = bytes;
+            this.responses = responses;
+        }
+
+        private boolean isDone() {
+            for (CompletableFuture<String> f : responses) {
+                if (!f.isDone()) return false;
+            }
+            return true;
+        }
+
+        private void fail(Throwable error) {
+            for (CompletableFuture<String> f : responses) {
+                f.completeExceptionally(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package org.example.realTimeExecution;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Estimulador FES simulado en el propio proceso. Interpreta los comandos que
+ * envía {@link FESController} ({@code on2}, {@code off2}, {@code s}, {@code p},
+ * {@code e lc <canal> <pos>}, {@code e fl <pos>}, {@code e tg <valor>} y
+ * {@code w <canal> tp|tn|ap|an <valor>}), guarda el estado resultante y
+ * contesta a cada comando con {@value #OK} o {@value #ERROR} pasada la latencia
+ * configurada. Las respuestas salen en el orden de los comandos.
+ * <p>
+ * Es más estricto que el dispositivo: rechaza canales o posiciones fuera de
+ * rango e iniciar la estimulación sin alimentación o sin lista de canales, de
+ * modo que los errores de secuencia se ven en {@link #getErrors()}.
+ * <p>
+ * Admite un hilo escritor y un hilo lector a la vez; los getters pueden
+ * llamarse desde cualquier hilo.
+ */
+public class FesSimulatorTransport implements SerialTransport {
+    /** Respuesta a un comando aceptado. */
+    public static final String OK = "OK";
+    /** Respuesta a un comando rechazado. */
+    public static final String ERROR = "ERR";
+    /** Canales del estimulador. */
+    public static final int CHANNELS = 32;
+
+    private static final String[] PARAMETERS = {"tp", "tn", "ap", "an"};
+
+    private final String name;
+    private final long latencyNanos;
+    private final long readTimeoutNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition responseQueued = lock.newCondition();
+    private final ArrayDeque<Response> responses = new ArrayDeque<>();
+    private final StringBuilder pending = new StringBuilder();
+    private long lastDue;
+    private boolean closed;
+    private int dropResponseEvery;
+
+    private boolean powered;
+    private boolean stimulating;
+    private final int[] list = new int[CHANNELS];
+    private int endOfList = -1;
+    private int frequency;
+    private final int[][] parameters = new int[CHANNELS + 1][PARAMETERS.length];
+    private long commands;
+    private long errors;
+    private long dropped;
+
+    /**
+     * @param name                  nombre del puerto simulado.
+     * @param responseLatencyMicros tiempo entre recibir un comando y responderlo.
+     * @param readTimeoutMillis     espera máxima de cada lectura sin respuestas.
+     */
+    public FesSimulatorTransport(String name, long responseLatencyMicros, int readTimeoutMillis) {
+        if (responseLatencyMicros < 0 || readTimeoutMillis < 0) {
+            throw new IllegalArgumentException("La latencia y el timeout no pueden ser negativos");
+        }
+        this.name = name;
+        this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(responseLatencyMicros);
+        this.readTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(readTimeoutMillis);
+    }
+
+    /**
+     * Deja sin respuesta uno de cada {@code n} comandos, para comprobar los
+     * timeouts del canal. El comando se aplica igualmente. 0 lo desactiva.
+     */
+    public void setDropResponseEvery(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n no puede ser negativo: " + n);
+        }
+        lock.lock();
+        try {
+            dropResponseEvery = n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int length) {
+        lock.lock();
+        try {
+            long deadline = System.nanoTime() + readTimeoutNanos;
+            while (!closed) {
+                long now = System.nanoTime();
+                Response head = responses.peek();
+                if (head != null && head.due - now <= 0) {
+                    return drain(buffer, length, now);
+                }
+                if (now - deadline >= 0) {
+                    return 0;
+                }
+                long wait = deadline - now;
+                if (head != null) {
+                    wait = Math.min(wait, head.due - now);
+                }
+                try {
+                    responseQueued.awaitNanos(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return 0;
+                }
+            }
+            return -1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] buffer, int length) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            for (int i = 0; i < length; i++) {
+                char c = (char) (buffer[i] & 0xFF);
+                if (c == '\r' || c == '\n') {
+                    if (pending.length() > 0) {
+                        receive(pending.toString().trim(), now);
+                        pending.setLength(0);
+                    }
+                } else {
+                    pending.append(c);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            responseQueued.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isPowered() {
+        lock.lock();
+        try {
+            return powered;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isStimulating() {
+        lock.lock();
+        try {
+            return stimulating;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lista de canales que se estimulan, por posición, hasta la marca de fin.
+     */
+    public int[] getActiveChannels() {
+        lock.lock();
+        try {
+            return Arrays.copyOf(list, endOfList + 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Último valor de {@code e tg}.
+     */
+    public int getFrequency() {
+        lock.lock();
+        try {
+            return frequency;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Último valor enviado con {@code w <canal> <parametro> <valor>}.
+     *
+     * @param parameter {@code tp}, {@code tn}, {@code ap} o {@code an}.
+     */
+    public int getParameter(int channel, String parameter) {
+        int index = Arrays.asList(PARAMETERS).indexOf(parameter);
+        if (channel < 1 || channel > CHANNELS || index < 0) {
+            throw new IllegalArgumentException("Parámetro no válido: " + channel + " " + parameter);
+        }
+        lock.lock();
+        try {
+            return parameters[channel][index];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Comandos recibidos.
+     */
+    public long getCommands() {
+        lock.lock();
+        try {
+            return commands;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Comandos rechazados.
+     */
+    public long getErrors() {
+        lock.lock();
+        try {
+            return errors;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Respuestas omitidas con {@link #setDropResponseEvery(int)}.
+     */
+    public long getDroppedResponses() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void receive(String command, long now) {
+        commands++;
+        boolean accepted = execute(command.split("\\s+"));
+        if (!accepted) {
+            errors++;
+        }
+        if (dropResponseEvery > 0 && commands % dropResponseEvery == 0) {
+            dropped++;
+            return;
+        }
+        // latencia constante: las respuestas no se adelantan unas a otras
+        long due = Math.max(now + latencyNanos, lastDue);
+        lastDue = due;
+        byte[] bytes = ((accepted ? OK : ERROR) + "\r\n").getBytes(StandardCharsets.US_ASCII);
+        responses.add(new Response(bytes, due));
+        responseQueued.signalAll();
+    }
+
+    private boolean execute(String[] t) {
+        switch (t[0]) {
+            case "on2":
+                powered = t.length == 1;
+                return t.length == 1;
+            case "off2":
+                powered = false;
+                stimulating = false;
+                return t.length == 1;
+            case "s":
+                if (t.length != 1 || !powered || endOfList < 0) {
+                    return false;
+                }
+                stimulating = true;
+                return true;
+            case "p":
+                stimulating = false;
+                return t.length == 1;
+            case "e":
+                return executeList(t);
+            case "w":
+                return executeParameter(t);
+            default:
+                return false;
+        }
+    }
+
+    private boolean executeList(String[] t) {
+        if (t.length == 4 && t[1].equals("lc")) {
+            int channel = parse(t[2], 1, CHANNELS);
+            int position = parse(t[3], 0, CHANNELS - 1);
+            if (channel < 0 || position < 0) {
+                return false;
+            }
+            list[position] = channel;
+            return true;
+        }
+        if (t.length == 3 && t[1].equals("fl")) {
+            int position = parse(t[2], 0, CHANNELS - 1);
+            if (position < 0) {
+                return false;
+            }
+            endOfList = position;
+            return true;
+        }
+        if (t.length == 3 && t[1].equals("tg")) {
+            int value = parse(t[2], 1, Integer.MAX_VALUE);
+            if (value < 0) {
+                return false;
+            }
+            frequency = value;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean executeParameter(String[] t) {
+        if (t.length != 4) {
+            return false;
+        }
+        int channel = parse(t[1], 1, CHANNELS);
+        int index = Arrays.asList(PARAMETERS).indexOf(t[2]);
+        int value = parse(t[3], 0, Integer.MAX_VALUE);
+        if (channel < 0 || index < 0 || value < 0) {
+            return false;
+        }
+        parameters[channel][index] = value;
+        return true;
+    }
+
+    /**
+     * @return el entero, o -1 si no es un entero en {@code [min, max]}.
+     */
+    private static int parse(String s, int min, int max) {
+        try {
+            int value = Integer.parseInt(s);
+            return value >= min && value <= max ? value : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private int drain(byte[] buffer, int length, long now) {
+        int n = 0;
+        Response head;
+        while (n < length && (head = responses.peek()) != null && head.due - now <= 0) {
+            int count = Math.min(length - n, head.bytes.length - head.offset);
+            System.arraycopy(head.bytes, head.offset, buffer, n, count);
+            head.offset += count;
+            n += count;
+            if (head.offset == head.bytes.length) {
+                responses.poll();
+            }
+        }
+        return n;
+    }
+
+    private static final class Response {
+        private final byte[] bytes;
+        private final long due;
+        private int offset;
+
+        private Response(byte[] bytes, long due) {
+            this.bytes = bytes;
+            this.due = due;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.example.realTimeExecution;
+
+/**
+ * Destino de los fotogramas emitidos por {@link ImuStreamSynchronizer}.
+ */
+@FunctionalInterface
+public interface FusedFrameSink {
+
+    /**
+     * Entrega un fotograma fusionado. La instancia se reutiliza en la llamada
+     * siguiente: si hay que conservarla, se copian sus valores.
+     *
+     * @param frame orientaciones de mano y brazo en un mismo instante.
+     */
+    void onFrame(FusedImuFrame frame);
+}
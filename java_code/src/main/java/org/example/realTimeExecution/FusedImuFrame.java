@@ -0,0 +1,64 @@
+package org.example.realTimeExecution;
+
+/**
+ * Orientaciones de mano y brazo interpoladas a un mismo instante del reloj
+ * común, junto con la rotación de la mano relativa al brazo
+ * ({@code mano * inverse(brazo)}, como {@link Main#calculateRotation}).
+ * <p>
+ * {@link ImuStreamSynchronizer} reutiliza una única instancia para todos los
+ * fotogramas; los componentes se leen como primitivos y los métodos
+ * {@code to*} crean un {@link Quaternion} solo cuando hace falta.
+ */
+public final class FusedImuFrame {
+    private long timestampNanos;
+    final double[] hand = new double[4];
+    final double[] arm = new double[4];
+    final double[] relative = new double[4];
+
+    FusedImuFrame() {
+    }
+
+    /**
+     * Instante del fotograma en la base de {@link System#nanoTime()}.
+     */
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    void setTimestampNanos(long timestampNanos) {
+        this.timestampNanos = timestampNanos;
+    }
+
+    /**
+     * Componente {@code c} (0 = w, 1 = x, 2 = y, 3 = z) de la orientación de la mano.
+     */
+    public double hand(int c) {
+        return hand[c];
+    }
+
+    /**
+     * Componente {@code c} (0 = w, 1 = x, 2 = y, 3 = z) de la orientación del brazo.
+     */
+    public double arm(int c) {
+        return arm[c];
+    }
+
+    /**
+     * Componente {@code c} (0 = w, 1 = x, 2 = y, 3 = z) de la rotación relativa.
+     */
+    public double relative(int c) {
+        return relative[c];
+    }
+
+    public Quaternion toHand() {
+        return new Quaternion(hand[0], hand[1], hand[2], hand[3]);
+    }
+
+    public Quaternion toArm() {
+        return new Quaternion(arm[0], arm[1], arm[2], arm[3]);
+    }
+
+    public Quaternion toRelative() {
+        return new Quaternion(relative[0], relative[1], relative[2], relative[3]);
+    }
+}
@@ -0,0 +1,212 @@
+package org.example.realTimeExecution;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Servicio de adquisición continua de un IMU. Un hilo de larga duración lee el
+ * puerto sin pausas y vuelca cada muestra, con su marca {@link System#nanoTime()},
+ * en el {@link QuaternionRingBuffer} del lector. Los llamadores piden después
+ * ventanas temporales ("media de los últimos 500 ms", "muestras entre t0 y t1")
+ * sin detener la captura, de modo que no se pierden muestras entre ventanas ni
+ * se paga el arranque de un hilo por medición.
+ * <p>
+ * Las consultas pueden hacerse desde cualquier hilo. La ventana disponible
+ * está limitada por la capacidad del búfer circular del lector.
+ */
+public class ImuAcquisitionService implements AutoCloseable {
+    private final SerialReaderQuaternion reader;
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * @param reader lector con el puerto ya abierto mediante {@link SerialReaderQuaternion#openPort()}.
+     */
+    public ImuAcquisitionService(SerialReaderQuaternion reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Arranca el hilo de captura. Llamarlo con el servicio en marcha no tiene efecto.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(() -> reader.readWhile(() -> running), "imu-" + reader.getPortName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Detiene la captura y espera a que el hilo termine (como mucho el timeout
+     * de lectura del puerto). No cierra el puerto.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Instante actual en la misma base de tiempos que las muestras.
+     */
+    public long now() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Muestras recibidas con marca de tiempo en {@code [t0Nanos, t1Nanos]}.
+     */
+    public QuaternionSnapshot snapshotBetween(long t0Nanos, long t1Nanos) {
+        QuaternionRingBuffer ring = reader.getRing();
+        long from = ring.sequenceAt(t0Nanos);
+        long to = ring.sequenceAt(t1Nanos + 1);
+        int expected = (int) Math.max(1, Math.min(to - from + 1, ring.capacity()));
+        return ring.snapshotBetween(t0Nanos, t1Nanos, new QuaternionSnapshot(expected));
+    }
+
+    /**
+     * Muestras entre {@code t0Nanos} y {@code t1Nanos} como cuaterniones.
+     */
+    public List<Quaternion> samplesBetween(long t0Nanos, long t1Nanos) {
+        QuaternionSnapshot samples = snapshotBetween(t0Nanos, t1Nanos);
+        List<Quaternion> data = new ArrayList<>(samples.size());
+        for (int i = 0; i < samples.size(); i++) {
+            data.add(samples.toQuaternion(i));
+        }
+        return data;
+    }
+
+    /**
+     * Cuaternión medio de las muestras entre {@code t0Nanos} y {@code t1Nanos},
+     * alineadas al mismo hemisferio y renormalizado como en
+     * {@link SerialReaderQuaternion#calculateMeanQuaternion()}. Sin muestras
+     * devuelve un cuaternión nulo e informa por consola.
+     */
+    public Quaternion meanBetween(long t0Nanos, long t1Nanos) {
+        QuaternionSnapshot samples = snapshotBetween(t0Nanos, t1Nanos);
+        int size = samples.size();
+        if (size == 0) {
+            System.out.println("No hay datos disponibles en el puerto " + reader.getPortName() + " para calcular la media");
+            return new Quaternion();
+        }
+        OnlineQuaternionMean estimator = new OnlineQuaternionMean();
+        for (int i = 0; i < size; i++) {
+            estimator.add(samples.w(i), samples.x(i), samples.y(i), samples.z(i));
+        }
+        return estimator.mean();
+    }
+
+    /**
+     * Cuaternión medio de los últimos {@code windowMillis} milisegundos.
+     */
+    public Quaternion meanOverLast(long windowMillis) {
+        long t1 = now();
+        return meanBetween(t1 - TimeUnit.MILLISECONDS.toNanos(windowMillis), t1);
+    }
+
+    /**
+     * Promedia las muestras que llegan a partir de ahora hasta que la media
+     * converge ({@link OnlineQuaternionMean#hasConverged(double, int)}) o pasan
+     * {@code maxMillis}. Sustituye a las capturas de duración fija cuando el
+     * sujeto está quieto.
+     *
+     * @param maxMillis        duración máxima de la captura.
+     * @param toleranceDegrees error estándar angular admitido.
+     * @param minSamples       muestras mínimas antes de poder parar.
+     * @return estimador con las muestras usadas; su media es el resultado.
+     * @throws InterruptedException si se interrumpe la espera.
+     */
+    public OnlineQuaternionMean awaitConvergedMean(long maxMillis, double toleranceDegrees, int minSamples)
+            throws InterruptedException {
+        return awaitConvergedMeans(maxMillis, toleranceDegrees, minSamples, OnlineQuaternionMean.Method.COMPONENT,
+                this)[0];
+    }
+
+    /**
+     * Como {@link #awaitConvergedMean(long, double, int)}, pero captura a la
+     * vez varios IMU durante la misma ventana: termina cuando convergen todos
+     * o pasan {@code maxMillis}. Así la mano y el brazo se promedian sobre el
+     * mismo intervalo.
+     *
+     * @param method forma de obtener el cuaternión medio de cada IMU.
+     * @param imus   servicios en marcha que se capturan.
+     * @return un estimador por servicio, en el mismo orden.
+     * @throws InterruptedException si se interrumpe la espera.
+     */
+    public static OnlineQuaternionMean[] awaitConvergedMeans(long maxMillis, double toleranceDegrees, int minSamples,
+                                                             OnlineQuaternionMean.Method method,
+                                                             ImuAcquisitionService... imus)
+            throws InterruptedException {
+        OnlineQuaternionMean[] estimators = new OnlineQuaternionMean[imus.length];
+        long[] cursors = new long[imus.length];
+        for (int k = 0; k < imus.length; k++) {
+            estimators[k] = new OnlineQuaternionMean(method);
+            cursors[k] = imus[k].reader.getRing().writeSequence();
+        }
+        QuaternionSnapshot chunk = new QuaternionSnapshot(1024);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxMillis);
+        while (System.nanoTime() - deadline < 0) {
+            boolean converged = true;
+            boolean pending = false;
+            for (int k = 0; k < imus.length; k++) {
+                imus[k].reader.getRing().snapshotSince(cursors[k], chunk);
+                for (int i = 0; i < chunk.size(); i++) {
+                    estimators[k].add(chunk.w(i), chunk.x(i), chunk.y(i), chunk.z(i));
+                }
+                cursors[k] = chunk.nextSequence();
+                converged &= estimators[k].hasConverged(toleranceDegrees, minSamples);
+                pending |= chunk.size() == chunk.capacity();
+            }
+            if (converged) {
+                break;
+            }
+            if (!pending) {
+                Thread.sleep(1);
+            }
+        }
+        return estimators;
+    }
+
+    /**
+     * Espera hasta que el servicio haya recibido al menos una muestra posterior
+     * a {@code timestampNanos}, o hasta agotar {@code timeoutMillis}.
+     *
+     * @return {@code true} si llegó la muestra.
+     * @throws InterruptedException si se interrumpe la espera.
+     */
+    public boolean awaitSampleAfter(long timestampNanos, long timeoutMillis) throws InterruptedException {
+        QuaternionRingBuffer ring = reader.getRing();
+        long deadline = now() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (ring.sequenceAt(timestampNanos + 1) == ring.writeSequence()) {
+            if (now() - deadline >= 0) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    public SerialReaderQuaternion getReader() {
+        return reader;
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.realTimeExecution;
+
+/**
+ * {@link AngleSource} que lee la última muestra del búfer de un IMU y devuelve
+ * un ángulo de Euler de su rotación respecto a una orientación de referencia
+ * ({@code muestra * inverse(referencia)}, como {@link Main#calculateRotation}).
+ * Con la referencia en reposo y el IMU del brazo da la pronosupinación medida
+ * en {@link Main}. Las operaciones son las de {@link QuaternionOps} y no
+ * reservan memoria por lectura.
+ */
+public class ImuAngleSource implements AngleSource {
+    /** Rotación en el eje x (roll). */
+    public static final int AXIS_X = 0;
+    /** Rotación en el eje y (pitch). */
+    public static final int AXIS_Y = 1;
+    /** Rotación en el eje z (yaw). */
+    public static final int AXIS_Z = 2;
+
+    private final QuaternionRingBuffer ring;
+    private final QuaternionSnapshot latest = new QuaternionSnapshot(1);
+    private final int axis;
+    // inverso de la referencia, calculado una sola vez
+    private final double[] inverse = new double[4];
+    // producto calibrado y sus ángulos de Euler
+    private final double[] scratch = new double[7];
+    private double angle;
+    private long timestamp;
+
+    /**
+     * @param ring      búfer del IMU.
+     * @param reference orientación que corresponde a 0 grados.
+     * @param axis      {@link #AXIS_X}, {@link #AXIS_Y} o {@link #AXIS_Z}.
+     */
+    public ImuAngleSource(QuaternionRingBuffer ring, Quaternion reference, int axis) {
+        if (axis < AXIS_X || axis > AXIS_Z) {
+            throw new IllegalArgumentException("Eje no válido: " + axis);
+        }
+        this.ring = ring;
+        this.axis = axis;
+        setReference(reference);
+    }
+
+    /**
+     * Cambia la orientación que corresponde a 0 grados, por ejemplo tras
+     * recalibrar. Se usa desde el mismo hilo que {@link #update()}.
+     */
+    public void setReference(Quaternion reference) {
+        QuaternionOps.inverse(reference.getW(), reference.getX(), reference.getY(), reference.getZ(), inverse, 0);
+    }
+
+    @Override
+    public boolean update() {
+        ring.snapshotLatest(1, latest);
+        if (latest.size() == 0) {
+            return false;
+        }
+        // q * r^-1
+        QuaternionOps.multiply(latest.w(0), latest.x(0), latest.y(0), latest.z(0),
+                inverse[0], inverse[1], inverse[2], inverse[3], scratch, 0);
+        QuaternionOps.toEulerAngles(scratch[0], scratch[1], scratch[2], scratch[3], scratch, 4);
+        angle = scratch[4 + axis];
+        timestamp = latest.timestamp(0);
+        return true;
+    }
+
+    @Override
+    public double angleDegrees() {
+        return angle;
+    }
+
+    @Override
+    public long timestampNanos() {
+        return timestamp;
+    }
+}
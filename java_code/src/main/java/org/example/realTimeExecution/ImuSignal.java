@@ -0,0 +1,54 @@
+package org.example.realTimeExecution;
+
+/**
+ * Orientación de un IMU en función del tiempo, usada por
+ * {@link ImuSimulatorTransport} para generar tramas.
+ */
+@FunctionalInterface
+public interface ImuSignal {
+
+    /**
+     * Escribe en {@code out} la orientación {@code w, x, y, z} en el instante indicado.
+     *
+     * @param seconds segundos desde el inicio de la simulación.
+     * @param out     destino, al menos 4 posiciones.
+     */
+    void orientationAt(double seconds, double[] out);
+
+    /**
+     * Orientación fija.
+     */
+    static ImuSignal constant(Quaternion q) {
+        double w = q.getW(), x = q.getX(), y = q.getY(), z = q.getZ();
+        return (seconds, out) -> {
+            out[0] = w;
+            out[1] = x;
+            out[2] = y;
+            out[3] = z;
+        };
+    }
+
+    /**
+     * Oscilación sinusoidal alrededor de un eje, como una pronación-supinación
+     * repetida.
+     *
+     * @param axis         {@link ImuAngleSource#AXIS_X}, {@link ImuAngleSource#AXIS_Y} o {@link ImuAngleSource#AXIS_Z}.
+     * @param amplitudeDeg amplitud del ángulo en grados.
+     * @param frequencyHz  frecuencia de la oscilación.
+     */
+    static ImuSignal oscillation(int axis, double amplitudeDeg, double frequencyHz) {
+        if (axis < ImuAngleSource.AXIS_X || axis > ImuAngleSource.AXIS_Z) {
+            throw new IllegalArgumentException("Eje no válido: " + axis);
+        }
+        double amplitude = Math.toRadians(amplitudeDeg);
+        double omega = 2 * Math.PI * frequencyHz;
+        return (seconds, out) -> {
+            double half = amplitude * Math.sin(omega * seconds) / 2;
+            out[0] = Math.cos(half);
+            out[1] = 0;
+            out[2] = 0;
+            out[3] = 0;
+            out[1 + axis] = Math.sin(half);
+        };
+    }
+}
@@ -0,0 +1,179 @@
+package org.example.realTimeExecution;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sensor IMU simulado en el propio proceso. Genera tramas
+ * {@code Q<id>,w,x,y,z\n} con cuatro decimales, como el firmware de los
+ * sensores, a partir de un {@link ImuSignal} y a la frecuencia indicada, que
+ * puede llegar a varios kHz. Permite ejecutar la adquisición, la fusión y el
+ * control en lazo cerrado sin hardware y a tasas mayores que las reales.
+ * <p>
+ * Las tramas se generan al leer, según el reloj {@link System#nanoTime()}: cada
+ * lectura devuelve todas las tramas vencidas que quepan en el búfer, o espera a
+ * la siguiente como mucho el timeout de lectura. Si el lector se retrasa, las
+ * tramas se acumulan como en el búfer de un puerto real.
+ * <p>
+ * Lo usa un único hilo lector.
+ */
+public class ImuSimulatorTransport implements SerialTransport {
+    /** Longitud máxima de una trama generada. */
+    private static final int MAX_FRAME_BYTES = 64;
+    /** Campos de una trama mal formada: cinco campos, uno no numérico. */
+    private static final byte[] MALFORMED_FIELDS = ",x,0,0,0\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final String name;
+    private final int sensorId;
+    private final ImuSignal signal;
+    private final double rateHz;
+    private final long readTimeoutNanos;
+    private final long startNanos;
+    private final double[] orientation = new double[4];
+    private volatile boolean closed;
+    private int malformedEvery;
+
+    private long framesSent;
+    private long malformedSent;
+
+    /**
+     * @param name              nombre del puerto simulado.
+     * @param sensorId          identificador que aparece tras la {@code Q}.
+     * @param signal            orientación del sensor en el tiempo.
+     * @param rateHz            tramas por segundo.
+     * @param readTimeoutMillis espera máxima de cada lectura sin tramas.
+     */
+    public ImuSimulatorTransport(String name, int sensorId, ImuSignal signal, double rateHz, int readTimeoutMillis) {
+        if (rateHz <= 0) {
+            throw new IllegalArgumentException("La frecuencia debe ser positiva: " + rateHz);
+        }
+        if (readTimeoutMillis < 0) {
+            throw new IllegalArgumentException("El timeout no puede ser negativo: " + readTimeoutMillis);
+        }
+        this.name = name;
+        this.sensorId = sensorId;
+        this.signal = signal;
+        this.rateHz = rateHz;
+        this.readTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(readTimeoutMillis);
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Sustituye una de cada {@code n} tramas por una trama con un campo no
+     * numérico, para comprobar que el parser las descarta. 0 lo desactiva.
+     */
+    public void setMalformedEvery(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n no puede ser negativo: " + n);
+        }
+        this.malformedEvery = n;
+    }
+
+    @Override
+    public int read(byte[] buffer, int length) {
+        long deadline = System.nanoTime() + readTimeoutNanos;
+        while (!closed) {
+            long now = System.nanoTime();
+            long due = (long) ((now - startNanos) * rateHz / 1e9) + 1;
+            if (framesSent < due && length >= MAX_FRAME_BYTES) {
+                int n = 0;
+                while (framesSent < due && n + MAX_FRAME_BYTES <= length) {
+                    n = writeFrame(buffer, n);
+                }
+                return n;
+            }
+            if (now - deadline >= 0) {
+                return 0;
+            }
+            long nextFrame = startNanos + (long) Math.ceil(framesSent * 1e9 / rateHz);
+            LockSupport.parkNanos(Math.max(1, Math.min(nextFrame, deadline) - now));
+        }
+        return -1;
+    }
+
+    /**
+     * Los sensores no reciben comandos: lo escrito se descarta.
+     */
+    @Override
+    public void write(byte[] buffer, int length) {
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Tramas generadas, incluidas las mal formadas.
+     */
+    public long getFramesSent() {
+        return framesSent;
+    }
+
+    /**
+     * Tramas mal formadas generadas con {@link #setMalformedEvery(int)}.
+     */
+    public long getMalformedSent() {
+        return malformedSent;
+    }
+
+    private int writeFrame(byte[] buffer, int pos) {
+        double seconds = framesSent / rateHz;
+        framesSent++;
+        buffer[pos++] = 'Q';
+        pos = writeInt(buffer, pos, sensorId);
+        if (malformedEvery > 0 && framesSent % malformedEvery == 0) {
+            malformedSent++;
+            for (byte b : MALFORMED_FIELDS) {
+                buffer[pos++] = b;
+            }
+            return pos;
+        }
+        signal.orientationAt(seconds, orientation);
+        for (int c = 0; c < 4; c++) {
+            buffer[pos++] = ',';
+            pos = writeFixed4(buffer, pos, orientation[c]);
+        }
+        buffer[pos++] = '\n';
+        return pos;
+    }
+
+    /**
+     * Escribe {@code value} con cuatro decimales.
+     */
+    private static int writeFixed4(byte[] buffer, int pos, double value) {
+        long scaled = Math.round(value * 10_000);
+        if (scaled < 0) {
+            buffer[pos++] = '-';
+            scaled = -scaled;
+        }
+        pos = writeInt(buffer, pos, scaled / 10_000);
+        buffer[pos++] = '.';
+        long fraction = scaled % 10_000;
+        for (long div = 1_000; div > 0; div /= 10) {
+            buffer[pos++] = (byte) ('0' + (fraction / div) % 10);
+        }
+        return pos;
+    }
+
+    private static int writeInt(byte[] buffer, int pos, long value) {
+        if (value < 0) {
+            buffer[pos++] = '-';
+            value = -value;
+        }
+        long div = 1;
+        while (div * 10 <= value) {
+            div *= 10;
+        }
+        for (; div > 0; div /= 10) {
+            buffer[pos++] = (byte) ('0' + (value / div) % 10);
+        }
+        return pos;
+    }
+}
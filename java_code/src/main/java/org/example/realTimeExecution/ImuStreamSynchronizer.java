@@ -0,0 +1,273 @@
+package org.example.realTimeExecution;
+
+/**
+ * Alinea en el tiempo las muestras de los IMU de mano y brazo. Ambos
+ * {@link QuaternionRingBuffer} se leen de forma incremental con un cursor
+ * propio, y las dos series se interpolan con SLERP sobre un reloj común de
+ * periodo fijo usando la marca {@link System#nanoTime()} de adquisición de
+ * cada muestra. Por cada instante del reloj se emite un {@link FusedImuFrame}
+ * con las dos orientaciones y la rotación relativa de la mano respecto al brazo.
+ * <p>
+ * A diferencia de emparejar las muestras por índice, los dos sensores pueden
+ * tener frecuencias distintas o perder tramas sin que se desalineen. Solo se
+ * guardan las dos muestras que rodean el instante actual de cada serie, por lo
+ * que el coste en memoria no depende de la duración de la ventana.
+ * <p>
+ * Un instante se emite cuando ambas series tienen una muestra posterior; si uno
+ * de los sensores deja de enviar datos, {@link #poll} espera sin emitir. Los
+ * instantes que caen en un hueco mayor que {@code maxGapNanos} de cualquiera de
+ * las series se descartan en vez de interpolarse.
+ * <p>
+ * La instancia pertenece a un único consumidor; los productores de los búferes
+ * pueden seguir escribiendo mientras tanto.
+ */
+public class ImuStreamSynchronizer {
+    private static final int CHUNK = 256;
+
+    private final Cursor hand;
+    private final Cursor arm;
+    private final long periodNanos;
+    private final long maxGapNanos;
+    private final FusedImuFrame frame = new FusedImuFrame();
+    private boolean started;
+    private long nextTick;
+    private long frames;
+    private long skippedFrames;
+
+    /**
+     * Sincronizador que empieza por las muestras que lleguen a partir de ahora.
+     *
+     * @param hand        búfer del IMU de la mano.
+     * @param arm         búfer del IMU del brazo.
+     * @param periodNanos periodo del reloj común.
+     * @param maxGapNanos hueco máximo entre dos muestras de una serie que se interpola.
+     */
+    public ImuStreamSynchronizer(QuaternionRingBuffer hand, QuaternionRingBuffer arm,
+                                 long periodNanos, long maxGapNanos) {
+        if (periodNanos <= 0) {
+            throw new IllegalArgumentException("El periodo debe ser positivo: " + periodNanos);
+        }
+        if (maxGapNanos <= 0) {
+            throw new IllegalArgumentException("El hueco máximo debe ser positivo: " + maxGapNanos);
+        }
+        this.hand = new Cursor(hand);
+        this.arm = new Cursor(arm);
+        this.periodNanos = periodNanos;
+        this.maxGapNanos = maxGapNanos;
+    }
+
+    /**
+     * Reposiciona ambos cursores para que el primer instante emitido sea
+     * {@code timestampNanos}, siempre que las muestras sigan en los búferes.
+     */
+    public void startAt(long timestampNanos) {
+        hand.seek(timestampNanos);
+        arm.seek(timestampNanos);
+        nextTick = timestampNanos;
+        started = true;
+    }
+
+    /**
+     * Emite todos los instantes disponibles.
+     *
+     * @return número de fotogramas entregados a {@code sink}.
+     */
+    public int poll(FusedFrameSink sink) {
+        return poll(Long.MAX_VALUE, sink);
+    }
+
+    /**
+     * Emite los instantes disponibles hasta {@code untilNanos} inclusive.
+     *
+     * @return número de fotogramas entregados a {@code sink}.
+     */
+    public int poll(long untilNanos, FusedFrameSink sink) {
+        if (!started) {
+            // sin posición explícita el reloj arranca cuando ambas series tienen datos
+            if (!hand.peekFirst() || !arm.peekFirst()) {
+                return 0;
+            }
+            nextTick = Math.max(hand.nextTimestamp, arm.nextTimestamp);
+            started = true;
+        }
+        int emitted = 0;
+        while (nextTick - untilNanos <= 0) {
+            if (!hand.advanceTo(nextTick) || !arm.advanceTo(nextTick)) {
+                break; // falta una muestra posterior en alguna serie
+            }
+            if (hand.interpolate(nextTick, maxGapNanos, frame.hand)
+                    && arm.interpolate(nextTick, maxGapNanos, frame.arm)) {
+                relative(frame.hand, frame.arm, frame.relative);
+                frame.setTimestampNanos(nextTick);
+                sink.onFrame(frame);
+                emitted++;
+            } else {
+                skippedFrames++;
+            }
+            nextTick += periodNanos;
+        }
+        frames += emitted;
+        return emitted;
+    }
+
+    /**
+     * Instante del próximo fotograma, o {@link Long#MIN_VALUE} si el reloj
+     * aún no ha arrancado.
+     */
+    public long getNextTimestamp() {
+        return started ? nextTick : Long.MIN_VALUE;
+    }
+
+    /**
+     * Fotogramas emitidos desde la creación.
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Instantes descartados por caer en un hueco de alguna serie.
+     */
+    public long getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    /**
+     * Muestras sobrescritas en los búferes antes de que el sincronizador las leyera.
+     */
+    public long getLostSamples() {
+        return hand.lost + arm.lost;
+    }
+
+    /**
+     * {@code hand * inverse(arm)}, con las mismas fórmulas que
+     * {@link Quaternion#multiplication} y {@link Quaternion#inversion}.
+     */
+    private static void relative(double[] h, double[] a, double[] out) {
+        double squared = a[0] * a[0] + a[1] * a[1] + a[2] * a[2] + a[3] * a[3];
+        double iw = a[0] / squared;
+        double ix = -a[1] / squared;
+        double iy = -a[2] / squared;
+        double iz = -a[3] / squared;
+        out[0] = h[0] * iw - h[1] * ix - h[2] * iy - h[3] * iz;
+        out[1] = h[0] * ix + h[1] * iw + h[2] * iz - h[3] * iy;
+        out[2] = h[0] * iy - h[1] * iz + h[2] * iw + h[3] * ix;
+        out[3] = h[0] * iz + h[1] * iy - h[2] * ix + h[3] * iw;
+    }
+
+    /**
+     * Lectura incremental de un búfer que conserva la muestra anterior
+     * ({@code prev*}) y la siguiente ({@code next*}) al instante en curso.
+     */
+    private static final class Cursor {
+        private final QuaternionRingBuffer ring;
+        private final QuaternionSnapshot chunk = new QuaternionSnapshot(CHUNK);
+        private int chunkIndex;
+        private long sequence;
+        private long lost;
+
+        private boolean hasPrev;
+        private long prevTimestamp;
+        private double prevW, prevX, prevY, prevZ;
+        private boolean hasNext;
+        private long nextTimestamp;
+        private double nextW, nextX, nextY, nextZ;
+
+        private Cursor(QuaternionRingBuffer ring) {
+            this.ring = ring;
+            this.sequence = ring.writeSequence();
+        }
+
+        private void seek(long timestampNanos) {
+            // una muestra antes del instante para poder interpolarlo
+            sequence = Math.max(0, ring.sequenceAt(timestampNanos) - 1);
+            chunk.setRange(sequence, 0, 0);
+            chunkIndex = 0;
+            hasPrev = false;
+            hasNext = false;
+        }
+
+        /**
+         * Carga la primera muestra si aún no hay ninguna.
+         */
+        private boolean peekFirst() {
+            return hasNext || pull();
+        }
+
+        /**
+         * Avanza hasta que la muestra siguiente no sea anterior a {@code t}.
+         *
+         * @return {@code false} si todavía no ha llegado esa muestra.
+         */
+        private boolean advanceTo(long t) {
+            while (!hasNext || nextTimestamp - t < 0) {
+                if (!pull()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Interpola la orientación en {@code t}, que debe cumplir
+         * {@code prev <= t <= next} tras {@link #advanceTo}.
+         *
+         * @return {@code false} si {@code t} no está cubierto o cae en un hueco.
+         */
+        private boolean interpolate(long t, long maxGapNanos, double[] out) {
+            if (nextTimestamp == t) {
+                normalize(nextW, nextX, nextY, nextZ, out);
+                return true;
+            }
+            if (!hasPrev || prevTimestamp - t > 0) {
+                return false;
+            }
+            long gap = nextTimestamp - prevTimestamp;
+            if (gap > maxGapNanos) {
+                return false;
+            }
+            double frac = (double) (t - prevTimestamp) / gap;
+            Quaternion.slerp(prevW, prevX, prevY, prevZ, nextW, nextX, nextY, nextZ, frac, out);
+            return true;
+        }
+
+        /**
+         * Desplaza la muestra siguiente a anterior y lee una nueva.
+         */
+        private boolean pull() {
+            if (chunkIndex == chunk.size()) {
+                ring.snapshotSince(sequence, chunk);
+                chunkIndex = 0;
+                lost += chunk.lost();
+                sequence = chunk.nextSequence();
+                if (chunk.size() == 0) {
+                    return false;
+                }
+            }
+            if (hasNext) {
+                hasPrev = true;
+                prevTimestamp = nextTimestamp;
+                prevW = nextW;
+                prevX = nextX;
+                prevY = nextY;
+                prevZ = nextZ;
+            }
+            int i = chunkIndex++;
+            hasNext = true;
+            nextTimestamp = chunk.timestamp(i);
+            nextW = chunk.w(i);
+            nextX = chunk.x(i);
+            nextY = chunk.y(i);
+            nextZ = chunk.z(i);
+            return true;
+        }
+
+        private static void normalize(double w, double x, double y, double z, double[] out) {
+            double n = Math.sqrt(w * w + x * x + y * y + z * z);
+            out[0] = w / n;
+            out[1] = x / n;
+            out[2] = y / n;
+            out[3] = z / n;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.realTimeExecution;
+
+import com.fazecast.jSerialComm.SerialPort;
+
+import java.io.IOException;
+
+/**
+ * {@link SerialTransport} sobre un {@link SerialPort} de jSerialComm ya abierto.
+ * Configura lecturas semibloqueantes con el timeout indicado.
+ */
+public class JSerialCommTransport implements SerialTransport {
+    private final SerialPort port;
+
+    /**
+     * @param port              puerto abierto.
+     * @param readTimeoutMillis espera máxima de cada lectura.
+     */
+    public JSerialCommTransport(SerialPort port, int readTimeoutMillis) {
+        this.port = port;
+        port.setComPortTimeouts(SerialPort.TIMEOUT_READ_SEMI_BLOCKING, readTimeoutMillis, 0);
+    }
+
+    @Override
+    public int read(byte[] buffer, int length) throws IOException {
+        if (!port.isOpen()) {
+            return -1;
+        }
+        int n = port.readBytes(buffer, length);
+        if (n < 0) {
+            throw new IOException("Error de lectura en el puerto " + getName());
+        }
+        return n;
+    }
+
+    @Override
+    public void write(byte[] buffer, int length) throws IOException {
+        int written = port.writeBytes(buffer, length);
+        if (written != length) {
+            throw new IOException("Escritura incompleta en el puerto " + getName() + " (" + written + " de " + length + " bytes)");
+        }
+    }
+
+    @Override
+    public String getName() {
+        return port.getSystemPortName();
+    }
+
+    @Override
+    public void close() {
+        if (port.isOpen()) {
+            port.closePort();
+        }
+    }
+}
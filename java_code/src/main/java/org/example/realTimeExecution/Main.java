@@ -2,10 +2,17 @@ package org.example.realTimeExecution;
 
 import org.example.auxiliar.Utilities;
 import org.example.config.RuntimeConfig;
+import org.example.io.SessionJournal;
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Ejecuta el flujo completo de calibración y estimulación en tiempo real:
@@ -13,6 +20,20 @@ import java.io.IOException;
  * iniciales, activa cada canal y guarda las mediciones antes y durante la estimulación.
  * Mantiene el mismo orden de operaciones y tiempos de espera definidos en la
  * implementación original.
+ * <p>
+ * Cada IMU se lee de forma continua con un {@link ImuAcquisitionService}; las
+ * orientaciones en reposo y durante la estimulación son la media de Markley
+ * ({@link OnlineQuaternionMean}) de ambos IMU sobre la misma captura, que
+ * termina en cuanto las dos medias convergen a
+ * {@link RuntimeConfig#getCalibrationToleranceDegrees()} o a los
+ * {@link RuntimeConfig#getCalibrationWindowMillis()} ms, en lugar de capturas
+ * ciegas de {@link RuntimeConfig#getImuReadDurationMillis()} ms con hilos
+ * nuevos por medición. Los CSV para graficar emparejan mano y brazo por
+ * marca de tiempo de adquisición mediante {@link ImuStreamSynchronizer}.
+ * <p>
+ * Además de los TXT/CSV, la sesión completa (muestras crudas de ambos IMU y
+ * comandos al estimulador) se graba en el {@link SessionJournal} de
+ * {@link RuntimeConfig#getSessionJournalFile()}, que {@link SessionReplay} puede repetir.
  *
  * Precondiciones operativas:
  * <ul>
@@ -21,6 +42,9 @@ import java.io.IOException;
  * </ul>
  */
 public class Main {
+    /** Periodo con el que se copian las muestras de los IMU al diario de sesión. */
+    static final long JOURNAL_PERIOD_MILLIS = 100;
+
     /**
      * Punto de entrada de la aplicación de ejecución en tiempo real.
      */
@@ -36,192 +60,216 @@ public class Main {
         double pulseWidth = Utilities.readDouble("Establezca el ancho de pulso: ");
         double amplitude = Utilities.readDouble("Establezca la intensidad de corriente: ");
 
-        if (handReader.openPort() && armReader.openPort() && fesController.connect()) {
-
-            for(int channel = runtimeConfig.getChannelPulseStart(); channel <= runtimeConfig.getChannelPulseEnd(); channel++) {
-                fesController.setPulseWidth(channel, pulseWidth);
-                fesController.setCurrent(channel, amplitude);
+        // los puertos que lleguen a abrirse se cierran aunque falle la apertura de otro
+        try {
+            if (handReader.openPort() && armReader.openPort() && fesController.connect()) {
+                runSweep(runtimeConfig, handReader, armReader, fesController, frequency, pulseWidth, amplitude);
+            } else {
+                System.out.println("Error al abrir los puertos.");
             }
+        } finally {
+            handReader.closePort();
+            armReader.closePort();
+            fesController.disconnect();
+        }
+    }
+
+    /**
+     * Barrido de canales con los puertos ya abiertos. La fuente de
+     * alimentación se apaga y la adquisición y el diario se cierran aunque
+     * el barrido termine con una excepción.
+     */
+    private static void runSweep(RuntimeConfig runtimeConfig, SerialReaderQuaternion handReader,
+                                 SerialReaderQuaternion armReader, FESController fesController,
+                                 double frequency, double pulseWidth, double amplitude) {
+        SessionJournal journal = openJournal(runtimeConfig);
+        fesController.setCommandListener(journal::recordCommand);
+        SessionRecorder recorder = new SessionRecorder(journal, JOURNAL_PERIOD_MILLIS);
+        recorder.addStream(SessionJournal.STREAM_HAND, handReader.getRing());
+        recorder.addStream(SessionJournal.STREAM_ARM, armReader.getRing());
+        recorder.start();
+
+        //adquisición continua de ambos IMUs durante todo el barrido
+        ImuAcquisitionService handImu = new ImuAcquisitionService(handReader);
+        ImuAcquisitionService armImu = new ImuAcquisitionService(armReader);
+        try {
+            fesController.configureChannels(runtimeConfig.getChannelPulseStart(), runtimeConfig.getChannelPulseEnd(), pulseWidth, amplitude);
             fesController.setFrequency(frequency);
 
 
             System.out.println("Encendiendo fuente de alimentacion.......");
             fesController.powerOn();
+            try {
+                StimulationMaskManager maskManager = new StimulationMaskManager(fesController, runtimeConfig.getMaskLength());
 
-            for(int i = runtimeConfig.getStimulationLoopStartIndex(); i < runtimeConfig.getStimulationLoopEndIndex(); i++) {
-
-                System.out.println("\n----------- Canal " + (i + 1) + " -----------");
-
-                //1. Tomar medidas iniciales
-                handReader.clearData();
-                armReader.clearData();
-
-                System.out.println("Tomando mediadas inciales del canal " + (i + 1) + " antes de la estimulación");
-
-                //creo hilos para los dos IMUs
-                Thread handThread = new Thread(handReader);
-                Thread armThread = new Thread(armReader);
-                //inicio ambos hilos
-                handThread.start();
-                armThread.start();
-
-                try {
-                    // Esperar a que ambos hilos terminen antes de continuar
-                    handThread.join();
-                    armThread.join();
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-
-                Quaternion Qglobal1 = handReader.getMeanQuartenion();
-                Quaternion Qglobal2 = armReader.getMeanQuartenion();
+                handImu.start();
+                armImu.start();
 
-                Coord Qglobal1_euler= Qglobal1.toEulerAngles();
-                Coord Qglobal2_euler= Qglobal2.toEulerAngles();
+                for(int i = runtimeConfig.getStimulationLoopStartIndex(); i < runtimeConfig.getStimulationLoopEndIndex(); i++) {
 
+                    System.out.println("\n----------- Canal " + (i + 1) + " -----------");
 
+                    //1. Tomar medidas iniciales: media en reposo hasta que converge
+                    System.out.println("Tomando mediadas inciales del canal " + (i + 1) + " antes de la estimulación");
 
-                // Imprimir los valores medios obtenidos
-                //System.out.println("Mean quartenion for the initial hand position:");
-                //System.out.printf("W: %.2f, X: %.2f, Y: %.2f, Z: %.2f\n", Qglobal1.getW(), Qglobal1.getX(), Qglobal1.getY(), Qglobal1.getZ());
-                System.out.println("Mean euler angle for the initial hand position:");
-                System.out.printf("X=%.2f°, Y=%.2f°, Z=%.2f°\n", Qglobal1_euler.getX(), Qglobal1_euler.getY(), Qglobal1_euler.getZ());
+                    long restStart = handImu.now();
+                    Quaternion[] restMeans = convergedMeans(handImu, armImu, runtimeConfig);
+                    long restEnd = handImu.now();
+                    Quaternion Qglobal1 = restMeans[0];
+                    Quaternion Qglobal2 = restMeans[1];
+                    QuaternionSnapshot handRestSamples = handImu.snapshotBetween(restStart, restEnd);
+                    QuaternionSnapshot armRestSamples = armImu.snapshotBetween(restStart, restEnd);
 
-                //System.out.println("Mean quartenion for the initial arm position:");
-                //System.out.printf("W: %.2f, X: %.2f, Y: %.2f, Z: %.2f\n", Qglobal2.getW(), Qglobal2.getX(), Qglobal2.getY(), Qglobal2.getZ());
-                System.out.println("Mean euler angle for the initial arm position:");
-                System.out.printf("X=%.2f°, Y=%.2f°, Z=%.2f°\n", Qglobal2_euler.getX(), Qglobal2_euler.getY(), Qglobal2_euler.getZ());
+                    Coord Qglobal1_euler= Qglobal1.toEulerAngles();
+                    Coord Qglobal2_euler= Qglobal2.toEulerAngles();
 
-                saveData(runtimeConfig.getInitialAnglesFilePrefix() + (i + 1) + ".txt", handReader, armReader, Qglobal1, Qglobal2, Qglobal1_euler, Qglobal2_euler, null, null);
-                saveDataToPlot(runtimeConfig.getInitialAnglesPlotPrefix() + (i + 1) + ".csv", handReader, armReader);
 
 
-                //2.Activar canal i
-                int[][] mask = new int[runtimeConfig.getMaskLength()][2];
-                for (int j = 0; j < mask.length; j++) {
-                    mask[j][0] = 0; //resto de canales a 0
-                    mask[j][1] = 0;
-                }
-                mask[i][0] = 1; // Solo el canal actual
-                mask[i][1] = 0;
+                    // Imprimir los valores medios obtenidos
+                    //System.out.println("Mean quartenion for the initial hand position:");
+                    //System.out.printf("W: %.2f, X: %.2f, Y: %.2f, Z: %.2f\n", Qglobal1.getW(), Qglobal1.getX(), Qglobal1.getY(), Qglobal1.getZ());
+                    System.out.println("Mean euler angle for the initial hand position:");
+                    System.out.printf("X=%.2f°, Y=%.2f°, Z=%.2f°\n", Qglobal1_euler.getX(), Qglobal1_euler.getY(), Qglobal1_euler.getZ());
 
-                //3. Mandar máscara
-                fesController.setMask(mask);
+                    //System.out.println("Mean quartenion for the initial arm position:");
+                    //System.out.printf("W: %.2f, X: %.2f, Y: %.2f, Z: %.2f\n", Qglobal2.getW(), Qglobal2.getX(), Qglobal2.getY(), Qglobal2.getZ());
+                    System.out.println("Mean euler angle for the initial arm position:");
+                    System.out.printf("X=%.2f°, Y=%.2f°, Z=%.2f°\n", Qglobal2_euler.getX(), Qglobal2_euler.getY(), Qglobal2_euler.getZ());
 
+                    saveData(runtimeConfig.getInitialAnglesFilePrefix() + (i + 1) + ".txt", handRestSamples, armRestSamples, Qglobal1, Qglobal2, Qglobal1_euler, Qglobal2_euler, null, null);
+                    saveDataToPlot(runtimeConfig.getInitialAnglesPlotPrefix() + (i + 1) + ".csv", handImu, armImu, restStart, restEnd, runtimeConfig);
 
-                //4. Activar la estimulacion
-                System.out.println("Iniciando estimulación en el canal " + (i + 1));
-                fesController.startStimulation();
 
-                try {
-                    Thread.sleep(runtimeConfig.getStimulationDelayMillis()); //esperar un segundo dos segundos de tomar las nuevas mediciones
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+                    //2.Activar canal i: solo el canal actual
+                    maskManager.setActiveChannels(new int[]{i + 1}, 1);
 
-                System.out.println("Tomando medidas durante le estimulación en el canal " + (i + 1) + "..............");
+                    //3. Mandar máscara (solo los comandos que cambian respecto al canal anterior)
+                    awaitFlush(maskManager.flush());
 
-                //5. Grabar durante la estimulacion
-                handReader.clearData();
-                armReader.clearData();
 
-                //Volver a iniciar los hilos
-                handThread = new Thread(handReader);
-                armThread = new Thread(armReader);
+                    //4. Activar la estimulacion
+                    System.out.println("Iniciando estimulación en el canal " + (i + 1));
+                    fesController.startStimulation();
+                    long stimulationStart = handImu.now();
 
-                handThread.start();
-                armThread.start();
+                    sleep(runtimeConfig.getStimulationDelayMillis()); //esperar a que el movimiento se estabilice antes de medir
 
-                //6. Para estimulacion y reset la mascara a 0
-                fesController.stopStimulation();
-                for (int j = 0; j < mask.length; j++) mask[j][0] = 0; // Resetear máscara
-                fesController.setMask(mask);
+                    System.out.println("Tomando medidas durante le estimulación en el canal " + (i + 1) + "..............");
 
-                try {
-                    // Esperar a que ambos hilos terminen antes de continuar
-                    handThread.join();
-                    armThread.join();
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+                    //5. Media con el canal activo hasta que converge; se guardan todas las muestras de la estimulación
+                    Quaternion[] stimulationMeans = convergedMeans(handImu, armImu, runtimeConfig);
+                    long stimulationEnd = handImu.now();
+                    Quaternion Q1 = stimulationMeans[0];
+                    Quaternion Q2 = stimulationMeans[1];
+                    QuaternionSnapshot handStimSamples = handImu.snapshotBetween(stimulationStart, stimulationEnd);
+                    QuaternionSnapshot armStimSamples = armImu.snapshotBetween(stimulationStart, stimulationEnd);
 
-                Quaternion Q1 = handReader.getMeanQuartenion();
-                Quaternion Q2 = armReader.getMeanQuartenion();
+                    //6. Para estimulacion y reset la mascara a 0
+                    fesController.stopStimulation();
+                    maskManager.clear(); // Resetear máscara; la lista se reescribe al activar el siguiente canal
 
-                Coord Q1_euler = Q1.toEulerAngles();
-                Coord Q2_euler = Q2.toEulerAngles();
+                    Coord Q1_euler = Q1.toEulerAngles();
+                    Coord Q2_euler = Q2.toEulerAngles();
 
-                Q1 = calculateRotation(Qglobal1,Q1);
-                Q2 = calculateRotation(Qglobal2,Q2);
+                    Q1 = calculateRotation(Qglobal1,Q1);
+                    Q2 = calculateRotation(Qglobal2,Q2);
 
-                // Imprimir los valores medios obtenidos
-                //System.out.println("Mean quartenions for the hand during FES:");
-                //System.out.printf("W: %.2f, X: %.2f, Y: %.2f, Z: %.2f\n", Q1.getW(), Q1.getX(), Q1.getY(), Q1.getZ());
-                System.out.println("Mean euler angle for the hand during FES:");
-                System.out.printf("X=%.2f°, Y=%.2f°, Z=%.2f°\n", Q1_euler.getX(), Q1_euler.getY(), Q1_euler.getZ());
+                    // Imprimir los valores medios obtenidos
+                    //System.out.println("Mean quartenions for the hand during FES:");
+                    //System.out.printf("W: %.2f, X: %.2f, Y: %.2f, Z: %.2f\n", Q1.getW(), Q1.getX(), Q1.getY(), Q1.getZ());
+                    System.out.println("Mean euler angle for the hand during FES:");
+                    System.out.printf("X=%.2f°, Y=%.2f°, Z=%.2f°\n", Q1_euler.getX(), Q1_euler.getY(), Q1_euler.getZ());
 
 
-                //System.out.println("Mean quartenions for the arm during FES:");
-                //System.out.printf("W: %.2f, X: %.2f, Y: %.2f, Z: %.2f\n", Q2.getW(), Q2.getX(), Q2.getY(), Q2.getZ());
-                System.out.println("Mean euler angle for the arm during FES:");
-                System.out.printf("X=%.2f°, Y=%.2f°, Z=%.2f°\n", Q2_euler.getX(), Q2_euler.getY(), Q2_euler.getZ());
+                    //System.out.println("Mean quartenions for the arm during FES:");
+                    //System.out.printf("W: %.2f, X: %.2f, Y: %.2f, Z: %.2f\n", Q2.getW(), Q2.getX(), Q2.getY(), Q2.getZ());
+                    System.out.println("Mean euler angle for the arm during FES:");
+                    System.out.printf("X=%.2f°, Y=%.2f°, Z=%.2f°\n", Q2_euler.getX(), Q2_euler.getY(), Q2_euler.getZ());
 
 
-                //7. Esperar 3 segundos
-                try {
-                    Thread.sleep(runtimeConfig.getRestDelayMillis());
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+                    //7. Esperar 3 segundos
+                    sleep(runtimeConfig.getRestDelayMillis());
 
 
-                //Calcular rotaciones y guardar datos
-                Quaternion Q1_2 = calculateRotation(Q2, Q1);
-                Coord rotationAngles = Q1_2.toEulerAngles();
+                    //Calcular rotaciones y guardar datos
+                    Quaternion Q1_2 = calculateRotation(Q2, Q1);
+                    Coord rotationAngles = Q1_2.toEulerAngles();
 
-                Quaternion Q2_calibrated = calculateRotation(Qglobal2, Q2);
-                Coord pronSupAngles = Q2_calibrated.toEulerAngles();
-                saveData(runtimeConfig.getFinalAnglesFilePrefix() + (i + 1) + ".txt", handReader, armReader, Q1, Q2, Q1_euler,Q2_euler, rotationAngles, pronSupAngles);
-                saveDataToPlot(runtimeConfig.getFinalAnglesPlotPrefix() + (i + 1) + ".csv", handReader, armReader);
+                    Quaternion Q2_calibrated = calculateRotation(Qglobal2, Q2);
+                    Coord pronSupAngles = Q2_calibrated.toEulerAngles();
+                    saveData(runtimeConfig.getFinalAnglesFilePrefix() + (i + 1) + ".txt", handStimSamples, armStimSamples, Q1, Q2, Q1_euler,Q2_euler, rotationAngles, pronSupAngles);
+                    saveDataToPlot(runtimeConfig.getFinalAnglesPlotPrefix() + (i + 1) + ".csv", handImu, armImu, stimulationStart, stimulationEnd, runtimeConfig);
 
 
-                System.out.println("Channel  " + (i + 1) + ":");
-                System.out.println("Hand rotation relative to the arm at the channel " + (i+1));
-                /*System.out.printf("Quaternion: W=%.4f, X=%.4f, Y=%.4f, Z=%.4f\n",
-                        Q1_2.getW(), Q1_2.getX(),
-                        Q1_2.getY(), Q1_2.getZ());*/
-                System.out.printf("Euler Angles: X=%.2f°, Y=%.2f°, Z=%.2f°\n",
-                        rotationAngles.getX(), rotationAngles.getY(), rotationAngles.getZ());
+                    System.out.println("Channel  " + (i + 1) + ":");
+                    System.out.println("Hand rotation relative to the arm at the channel " + (i+1));
+                    /*System.out.printf("Quaternion: W=%.4f, X=%.4f, Y=%.4f, Z=%.4f\n",
+                            Q1_2.getW(), Q1_2.getX(),
+                            Q1_2.getY(), Q1_2.getZ());*/
+                    System.out.printf("Euler Angles: X=%.2f°, Y=%.2f°, Z=%.2f°\n",
+                            rotationAngles.getX(), rotationAngles.getY(), rotationAngles.getZ());
 
 
-                System.out.println("Arm rotation at the channel " + (i+1));
-                /*System.out.printf("Quaternion: W=%.4f, X=%.4f, Y=%.4f, Z=%.4f\n",
-                        Q2_calibrated.getW(), Q2_calibrated.getX(),
-                        Q2_calibrated.getY(), Q2_calibrated.getZ());*/
-                System.out.printf("Euler Angles: X=%.2f°, Y=%.2f°, Z=%.2f°\n",
-                        pronSupAngles.getX(), pronSupAngles.getY(), pronSupAngles.getZ());
-
-                handReader.clearData();
-                armReader.clearData();
+                    System.out.println("Arm rotation at the channel " + (i+1));
+                    /*System.out.printf("Quaternion: W=%.4f, X=%.4f, Y=%.4f, Z=%.4f\n",
+                            Q2_calibrated.getW(), Q2_calibrated.getX(),
+                            Q2_calibrated.getY(), Q2_calibrated.getZ());*/
+                    System.out.printf("Euler Angles: X=%.2f°, Y=%.2f°, Z=%.2f°\n",
+                            pronSupAngles.getX(), pronSupAngles.getY(), pronSupAngles.getZ());
 
 
+                }
+            } finally {
+                System.out.println("Apagando fuente de alimentación......");
+                fesController.powerOff();
             }
-            System.out.println("Apagando fuente de alimentación......");
-            fesController.powerOff();;
-            handReader.closePort();
-            armReader.closePort();
-            fesController.disconnect();
+        } finally {
+            handImu.stop();
+            armImu.stop();
+            recorder.stop();
+            journal.close();
+        }
+    }
 
+    /**
+     * Espera a que el estimulador responda a los comandos de una máscara. Como
+     * en el resto de comandos del {@link FESController}, una respuesta que no
+     * llega a tiempo solo se informa y el barrido continúa.
+     *
+     * @throws UncheckedIOException si los comandos no pudieron escribirse.
+     */
+    static void awaitFlush(CompletableFuture<Void> flush) {
+        try {
+            flush.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                System.out.println("No se recibió respuesta del dispositivo.");
+            } else if (e.getCause() instanceof IOException) {
+                throw new UncheckedIOException((IOException) e.getCause());
+            } else {
+                throw e;
+            }
+        }
+    }
 
-        } else {
-            System.out.println("Error al abrir los puertos.");
+    /**
+     * Crea el diario de sesión configurado, sustituyendo el anterior.
+     *
+     * @throws UncheckedIOException si no se puede crear el archivo.
+     */
+    static SessionJournal openJournal(RuntimeConfig config) {
+        try {
+            return SessionJournal.create(Path.of(config.getSessionJournalFile()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo crear el diario de sesión " + config.getSessionJournalFile(), e);
         }
     }
 
     /**
      * Guarda en un archivo de texto las muestras completas y los ángulos medios de mano y brazo.
+     * Los ángulos de las muestras se calculan en bloque con {@link QuaternionOps}.
      */
-    public static void saveData(String fileName, SerialReaderQuaternion handReader, SerialReaderQuaternion armReader, Quaternion handMean, Quaternion armMean, Coord handMeanEuler, Coord armMeanEuler, Coord rotationAngle, Coord pronSupAngle) {
+    public static void saveData(String fileName, QuaternionSnapshot handSamples, QuaternionSnapshot armSamples, Quaternion handMean, Quaternion armMean, Coord handMeanEuler, Coord armMeanEuler, Coord rotationAngle, Coord pronSupAngle) {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
             if(rotationAngle != null && pronSupAngle != null){
                 writer.write("Euler Angles for hand rotation relative to Arm):");
@@ -237,10 +285,9 @@ public class Main {
             writer.write("Mean euler angle for the hand position:");
             writer.write(String.format("X=%.2f°, Y=%.2f°, Z=%.2f°\n", handMeanEuler.getX(), handMeanEuler.getY(), handMeanEuler.getZ()));
 
-            for(Quaternion q : handReader.getData()){
-                Coord euler = q.toEulerAngles();
-                writer.write(String.format("Roll (x-axis): %.2f°, Pitch (y-axis): %.2f°, Yaw (z-axis): %.2f°\n", euler.getX(), euler.getY(), euler.getZ()));
-            }
+            double[] scratch = new double[4 * Math.max(handSamples.size(), armSamples.size())];
+            double[] euler = QuaternionOps.toEulerAngles(handSamples, scratch, null);
+            writeEulerSamples(writer, euler, handSamples.size());
 
 
             writer.write("\nArm data:\n");
@@ -250,27 +297,56 @@ public class Main {
             writer.write("Mean euler angle for the arm position:");
             writer.write(String.format("X=%.2f°, Y=%.2f°, Z=%.2f°\n", armMeanEuler.getX(), armMeanEuler.getY(),armMeanEuler.getZ()));
 
-            for(Quaternion q : armReader.getData()){
-                Coord euler = q.toEulerAngles();
-                writer.write(String.format("Roll (x-axis): %.2f°, Pitch (y-axis): %.2f°, Yaw (z-axis): %.2f°\n", euler.getX(), euler.getY(), euler.getZ()));
-            }
+            euler = QuaternionOps.toEulerAngles(armSamples, scratch, euler);
+            writeEulerSamples(writer, euler, armSamples.size());
             //System.out.println("Data saved to " + fileName);
         } catch (IOException ex) {
             ex.printStackTrace();
         }
     }
 
+    /**
+     * Escribe una línea por terna {@code roll, pitch, yaw} de {@code euler}.
+     */
+    static void writeEulerSamples(BufferedWriter writer, double[] euler, int count) throws IOException {
+        for (int i = 0, p = 0; i < count; i++, p += 3) {
+            writer.write(String.format("Roll (x-axis): %.2f°, Pitch (y-axis): %.2f°, Yaw (z-axis): %.2f°\n", euler[p], euler[p + 1], euler[p + 2]));
+        }
+    }
+
     /**
      * Exporta datos de ambas IMU en un CSV con columnas listas para graficar roll, pitch y yaw.
+     * Las dos series se alinean con un {@link ImuStreamSynchronizer} sobre un reloj común de
+     * {@link RuntimeConfig#getFusionPeriodMillis()} ms entre {@code t0Nanos} y {@code t1Nanos};
+     * la columna {@code timestamp} son los segundos de adquisición desde {@code t0Nanos}.
      */
-    public static void saveDataToPlot(String simpleFileName, SerialReaderQuaternion handReader, SerialReaderQuaternion armReader) {
+    public static void saveDataToPlot(String simpleFileName, ImuAcquisitionService handImu, ImuAcquisitionService armImu,
+                                      long t0Nanos, long t1Nanos, RuntimeConfig config) {
+        // el último instante necesita una muestra posterior de cada sensor
+        awaitSampleAfter(handImu, t1Nanos, config.getFusionMaxGapMillis());
+        awaitSampleAfter(armImu, t1Nanos, config.getFusionMaxGapMillis());
+        saveDataToPlot(simpleFileName, handImu.getReader().getRing(), armImu.getReader().getRing(),
+                t0Nanos, t1Nanos, config);
+    }
+
+    /**
+     * Igual que {@link #saveDataToPlot(String, ImuAcquisitionService, ImuAcquisitionService, long, long, RuntimeConfig)}
+     * sobre muestras ya capturadas en los búferes de ambos sensores, sin esperar otras nuevas.
+     */
+    static void saveDataToPlot(String simpleFileName, QuaternionRingBuffer handRing, QuaternionRingBuffer armRing,
+                               long t0Nanos, long t1Nanos, RuntimeConfig config) {
+        ImuStreamSynchronizer synchronizer = new ImuStreamSynchronizer(handRing, armRing,
+                TimeUnit.MILLISECONDS.toNanos(config.getFusionPeriodMillis()),
+                TimeUnit.MILLISECONDS.toNanos(config.getFusionMaxGapMillis()));
+        synchronizer.startAt(t0Nanos);
+
         try (BufferedWriter simpleWriter = new BufferedWriter(new FileWriter(simpleFileName))) {
 
             // Escribir la cabecera del archivo simplificado
             simpleWriter.write("timestamp roll_hand pitch_hand yaw_hand roll_arm pitch_arm yaw_arm\n");
 
             // Guardar las muestras de la mano y del brazo en el mismo archivo
-            saveSimplifiedSampleData(simpleWriter, handReader, armReader);
+            saveSimplifiedSampleData(simpleWriter, synchronizer, t0Nanos, t1Nanos);
 
         } catch (IOException e) {
             e.printStackTrace();
@@ -278,33 +354,80 @@ public class Main {
     }
 
     /**
-     * Escribe en el {@link BufferedWriter} una fila por muestra sincronizando mano y brazo.
+     * Escribe en el {@link BufferedWriter} una fila por fotograma fusionado de mano y brazo.
      */
-    private static void saveSimplifiedSampleData(BufferedWriter br, SerialReaderQuaternion handReader, SerialReaderQuaternion armReader) throws IOException {
-        long startTime = System.currentTimeMillis();  // Marca de tiempo de inicio
-
-        // Suponemos que ambos lectores tienen el mismo número de datos, de lo contrario necesitaríamos manejar el caso donde uno tiene más datos que el otro
-        int handDataSize = handReader.getData().size();
-        int armDataSize = armReader.getData().size();
-        int dataSize = Math.min(handDataSize, armDataSize);  // Aseguramos que no tratemos de acceder a datos fuera de rango
-
-        for (int i = 0; i < dataSize; i++) {
-            // Convertir el cuaternión de la mano a ángulos de Euler
-            Quaternion handQuaternion = handReader.getData().get(i);
-            Coord handEuler = handQuaternion.toEulerAngles();
+    private static void saveSimplifiedSampleData(BufferedWriter br, ImuStreamSynchronizer synchronizer,
+                                                 long t0Nanos, long t1Nanos) throws IOException {
+        double[] euler = new double[6]; // roll, pitch y yaw de mano y brazo
+        try {
+            synchronizer.poll(t1Nanos, frame -> {
+                QuaternionOps.toEulerAngles(frame.hand(0), frame.hand(1), frame.hand(2), frame.hand(3), euler, 0);
+                QuaternionOps.toEulerAngles(frame.arm(0), frame.arm(1), frame.arm(2), frame.arm(3), euler, 3);
+                double time = (frame.getTimestampNanos() - t0Nanos) / 1e9; // segundos desde el inicio de la ventana
+                try {
+                    // Escribir los datos simplificados en el archivo CSV
+                    br.write(String.format("%.4f %.2f %.2f %.2f %.2f %.2f %.2f\n",
+                            time, euler[0], euler[1], euler[2], euler[3], euler[4], euler[5]));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (synchronizer.getSkippedFrames() > 0 || synchronizer.getLostSamples() > 0) {
+            System.out.println("Sincronización IMU: " + synchronizer.getSkippedFrames() + " instantes sin datos, "
+                    + synchronizer.getLostSamples() + " muestras perdidas");
+        }
+    }
 
-            // Convertir el cuaternión del brazo a ángulos de Euler
-            Quaternion armQuaternion = armReader.getData().get(i);
-            Coord armEuler = armQuaternion.toEulerAngles();
+    /**
+     * Media de mano y brazo sobre las muestras que llegan a partir de ahora,
+     * con {@link ImuAcquisitionService#awaitConvergedMeans}. Sin muestras de un
+     * IMU su media es un cuaternión nulo y se informa por consola, como en
+     * {@link ImuAcquisitionService#meanBetween(long, long)}.
+     *
+     * @return medias de la mano y del brazo, en ese orden.
+     */
+    static Quaternion[] convergedMeans(ImuAcquisitionService handImu, ImuAcquisitionService armImu,
+                                       RuntimeConfig config) {
+        ImuAcquisitionService[] imus = {handImu, armImu};
+        Quaternion[] means = new Quaternion[imus.length];
+        OnlineQuaternionMean[] estimators;
+        try {
+            estimators = ImuAcquisitionService.awaitConvergedMeans(config.getCalibrationWindowMillis(),
+                    config.getCalibrationToleranceDegrees(), config.getCalibrationMinSamples(),
+                    OnlineQuaternionMean.Method.MARKLEY, imus);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            estimators = new OnlineQuaternionMean[]{new OnlineQuaternionMean(), new OnlineQuaternionMean()};
+        }
+        for (int k = 0; k < imus.length; k++) {
+            if (estimators[k].getCount() == 0) {
+                System.out.println("No hay datos disponibles en el puerto " + imus[k].getReader().getPortName()
+                        + " para calcular la media");
+            }
+            means[k] = estimators[k].mean();
+        }
+        return means;
+    }
 
-            long currentTime = System.currentTimeMillis();
-            double time = (currentTime - startTime) / 1000.0; // Convertir a segundos
+    private static void awaitSampleAfter(ImuAcquisitionService imu, long timestampNanos, long timeoutMillis) {
+        try {
+            imu.awaitSampleAfter(timestampNanos, timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-            // Escribir los datos simplificados en el archivo CSV
-            br.write(String.format("%.4f %.2f %.2f %.2f %.2f %.2f %.2f\n",
-                    time, handEuler.getX(), handEuler.getY(), handEuler.getZ(), armEuler.getX(), armEuler.getY(), armEuler.getZ()));
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
         }
     }
+
     /**
      * Calcula la rotación relativa entre una medida y su referencia global.
      *
@@ -0,0 +1,219 @@
+package org.example.realTimeExecution;
+
+/**
+ * Estimador incremental del cuaternión medio de una serie de muestras, con
+ * coste O(1) por muestra y sin guardar las muestras.
+ * <p>
+ * Cada muestra se alinea con el hemisferio de la media actual antes de
+ * acumularla ({@code q} y {@code -q} representan la misma orientación), y la
+ * media se devuelve renormalizada. Con {@link Method#MARKLEY} se acumula además
+ * la matriz 4x4 {@code sum(q q^T)} y la media es su autovector dominante
+ * (Markley et al., 2007), que no depende del signo de las muestras.
+ * <p>
+ * La dispersión se sigue con el algoritmo de Welford sobre las componentes
+ * alineadas. A partir de ella {@link #standardErrorDegrees()} aproxima el
+ * error angular de la media, lo que permite terminar una captura en cuanto la
+ * estimación converge ({@link #hasConverged(double, int)}).
+ * <p>
+ * No es seguro entre hilos.
+ */
+public class OnlineQuaternionMean {
+
+    /**
+     * Forma de obtener el cuaternión medio.
+     */
+    public enum Method {
+        /** Media de las componentes alineadas, renormalizada. */
+        COMPONENT,
+        /** Autovector dominante de la matriz acumulada {@code sum(q q^T)}. */
+        MARKLEY
+    }
+
+    private static final int POWER_ITERATIONS = 100;
+    private static final double POWER_TOLERANCE = 1e-12;
+
+    private final Method method;
+    private long count;
+    private final double[] mean = new double[4];
+    private final double[] m2 = new double[4];
+    // triángulo superior de sum(q q^T): ww wx wy wz xx xy xz yy yz zz
+    private final double[] outer = new double[10];
+
+    /**
+     * Estimador por media de componentes alineadas.
+     */
+    public OnlineQuaternionMean() {
+        this(Method.COMPONENT);
+    }
+
+    public OnlineQuaternionMean(Method method) {
+        this.method = method;
+    }
+
+    /**
+     * Añade una muestra.
+     */
+    public void add(double w, double x, double y, double z) {
+        double n = Math.sqrt(w * w + x * x + y * y + z * z);
+        if (n == 0 || Double.isNaN(n)) {
+            return; // muestra inválida: no aporta orientación
+        }
+        w /= n;
+        x /= n;
+        y /= n;
+        z /= n;
+        if (count > 0 && w * mean[0] + x * mean[1] + y * mean[2] + z * mean[3] < 0) {
+            w = -w;
+            x = -x;
+            y = -y;
+            z = -z;
+        }
+
+        count++;
+        welford(0, w);
+        welford(1, x);
+        welford(2, y);
+        welford(3, z);
+
+        if (method == Method.MARKLEY) {
+            outer[0] += w * w;
+            outer[1] += w * x;
+            outer[2] += w * y;
+            outer[3] += w * z;
+            outer[4] += x * x;
+            outer[5] += x * y;
+            outer[6] += x * z;
+            outer[7] += y * y;
+            outer[8] += y * z;
+            outer[9] += z * z;
+        }
+    }
+
+    /**
+     * Añade una muestra.
+     */
+    public void add(Quaternion q) {
+        add(q.getW(), q.getX(), q.getY(), q.getZ());
+    }
+
+    private void welford(int c, double v) {
+        double delta = v - mean[c];
+        mean[c] += delta / count;
+        m2[c] += delta * (v - mean[c]);
+    }
+
+    /**
+     * Número de muestras válidas acumuladas.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Escribe en {@code out} el cuaternión medio unitario (w, x, y, z). Sin
+     * muestras escribe ceros.
+     *
+     * @return {@code out}, para encadenar.
+     */
+    public double[] mean(double[] out) {
+        if (count == 0) {
+            out[0] = out[1] = out[2] = out[3] = 0;
+            return out;
+        }
+        double n = Math.sqrt(mean[0] * mean[0] + mean[1] * mean[1] + mean[2] * mean[2] + mean[3] * mean[3]);
+        for (int c = 0; c < 4; c++) {
+            out[c] = mean[c] / n;
+        }
+        if (method == Method.MARKLEY) {
+            dominantEigenvector(out);
+        }
+        return out;
+    }
+
+    /**
+     * Cuaternión medio unitario; nulo si no hay muestras.
+     */
+    public Quaternion mean() {
+        double[] q = mean(new double[4]);
+        return new Quaternion(q[0], q[1], q[2], q[3]);
+    }
+
+    /**
+     * Varianza total de las componentes alineadas (traza de la covarianza).
+     */
+    public double variance() {
+        if (count < 2) {
+            return 0;
+        }
+        return (m2[0] + m2[1] + m2[2] + m2[3]) / (count - 1);
+    }
+
+    /**
+     * Dispersión angular aproximada de las muestras respecto a la media, en grados.
+     */
+    public double angularSpreadDegrees() {
+        // para desviaciones pequeñas |dq| ~ theta / 2
+        return Math.toDegrees(2 * Math.sqrt(variance()));
+    }
+
+    /**
+     * Error estándar angular aproximado de la media, en grados; infinito con
+     * menos de dos muestras.
+     */
+    public double standardErrorDegrees() {
+        if (count < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Math.toDegrees(2 * Math.sqrt(variance() / count));
+    }
+
+    /**
+     * Indica si la media es estable: al menos {@code minSamples} muestras y un
+     * error estándar por debajo de {@code toleranceDegrees}.
+     */
+    public boolean hasConverged(double toleranceDegrees, int minSamples) {
+        return count >= Math.max(2, minSamples) && standardErrorDegrees() <= toleranceDegrees;
+    }
+
+    /**
+     * Descarta todas las muestras acumuladas.
+     */
+    public void reset() {
+        count = 0;
+        for (int c = 0; c < 4; c++) {
+            mean[c] = 0;
+            m2[c] = 0;
+        }
+        for (int k = 0; k < outer.length; k++) {
+            outer[k] = 0;
+        }
+    }
+
+    // iteración de potencias partiendo de la media alineada, que ya está muy
+    // cerca del autovector dominante cuando las muestras están concentradas
+    private void dominantEigenvector(double[] v) {
+        double[] o = outer;
+        for (int it = 0; it < POWER_ITERATIONS; it++) {
+            double a = o[0] * v[0] + o[1] * v[1] + o[2] * v[2] + o[3] * v[3];
+            double b = o[1] * v[0] + o[4] * v[1] + o[5] * v[2] + o[6] * v[3];
+            double c = o[2] * v[0] + o[5] * v[1] + o[7] * v[2] + o[8] * v[3];
+            double d = o[3] * v[0] + o[6] * v[1] + o[8] * v[2] + o[9] * v[3];
+            double n = Math.sqrt(a * a + b * b + c * c + d * d);
+            if (n == 0) {
+                return;
+            }
+            a /= n;
+            b /= n;
+            c /= n;
+            d /= n;
+            double change = Math.abs(a - v[0]) + Math.abs(b - v[1]) + Math.abs(c - v[2]) + Math.abs(d - v[3]);
+            v[0] = a;
+            v[1] = b;
+            v[2] = c;
+            v[3] = d;
+            if (change < POWER_TOLERANCE) {
+                return;
+            }
+        }
+    }
+}
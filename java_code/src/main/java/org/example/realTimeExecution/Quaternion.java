@@ -58,6 +58,63 @@ public class Quaternion {
 
     }
 
+    /**
+     * Interpolación esférica (SLERP) entre el cuaternión actual y {@code q}.
+     *
+     * @param q destino de la interpolación.
+     * @param t fracción en {@code [0, 1]}: 0 devuelve {@code this} y 1 devuelve {@code q}.
+     * @return cuaternión unitario interpolado.
+     */
+    public Quaternion slerp(Quaternion q, double t) {
+        double[] out = new double[4];
+        slerp(w, x, y, z, q.w, q.x, q.y, q.z, t, out);
+        return new Quaternion(out[0], out[1], out[2], out[3]);
+    }
+
+    /**
+     * SLERP sobre componentes primitivos, sin crear objetos. Los extremos se
+     * normalizan y {@code b} se lleva al hemisferio de {@code a}, de modo que se
+     * recorre siempre el arco más corto; con extremos casi iguales se usa la
+     * interpolación lineal normalizada para evitar dividir por {@code sin(~0)}.
+     *
+     * @param t   fracción en {@code [0, 1]}.
+     * @param out destino de {@code w, x, y, z}, al menos 4 posiciones.
+     */
+    public static void slerp(double aw, double ax, double ay, double az,
+                             double bw, double bx, double by, double bz,
+                             double t, double[] out) {
+        double na = Math.sqrt(aw * aw + ax * ax + ay * ay + az * az);
+        double nb = Math.sqrt(bw * bw + bx * bx + by * by + bz * bz);
+        double dot = (aw * bw + ax * bx + ay * by + az * bz) / (na * nb);
+        double sb = 1.0 / nb;
+        if (dot < 0) { // q y -q son la misma orientación
+            dot = -dot;
+            sb = -sb;
+        }
+        double ka;
+        double kb;
+        if (dot > 0.9995) {
+            ka = 1 - t;
+            kb = t;
+        } else {
+            double theta = Math.acos(dot);
+            double sinTheta = Math.sin(theta);
+            ka = Math.sin((1 - t) * theta) / sinTheta;
+            kb = Math.sin(t * theta) / sinTheta;
+        }
+        ka /= na;
+        kb *= sb;
+        double rw = ka * aw + kb * bw;
+        double rx = ka * ax + kb * bx;
+        double ry = ka * ay + kb * by;
+        double rz = ka * az + kb * bz;
+        double n = Math.sqrt(rw * rw + rx * rx + ry * ry + rz * rz);
+        out[0] = rw / n;
+        out[1] = rx / n;
+        out[2] = ry / n;
+        out[3] = rz / n;
+    }
+
     /**
      * Convierte el cuaternión en ángulos de Euler expresados en grados (roll,
      * pitch, yaw) utilizando la convención de rotaciones aplicada en el resto
@@ -82,6 +139,22 @@ public class Quaternion {
         return c;
     }
 
+    /**
+     * Construye el cuaternión unitario de unos ángulos de Euler en grados, con
+     * la misma convención que {@link #toEulerAngles()}
+     * ({@code q = yaw(z) * pitch(y) * roll(x)}).
+     */
+    public static Quaternion fromEulerAngles(double rollDeg, double pitchDeg, double yawDeg) {
+        double cr = Math.cos(Math.toRadians(rollDeg) / 2), sr = Math.sin(Math.toRadians(rollDeg) / 2);
+        double cp = Math.cos(Math.toRadians(pitchDeg) / 2), sp = Math.sin(Math.toRadians(pitchDeg) / 2);
+        double cy = Math.cos(Math.toRadians(yawDeg) / 2), sy = Math.sin(Math.toRadians(yawDeg) / 2);
+        return new Quaternion(
+                cr * cp * cy + sr * sp * sy,
+                sr * cp * cy - cr * sp * sy,
+                cr * sp * cy + sr * cp * sy,
+                cr * cp * sy - sr * sp * cy);
+    }
+
     public double getW() {
         return w;
     }
@@ -0,0 +1,161 @@
+package org.example.realTimeExecution;
+
+/**
+ * Operaciones de cuaterniones sobre componentes primitivos, sin crear objetos.
+ * Usan exactamente las mismas fórmulas que {@link Quaternion#multiplication},
+ * {@link Quaternion#inversion} y {@link Quaternion#toEulerAngles()}, por lo que
+ * los resultados coinciden bit a bit con los de la clase.
+ * <p>
+ * Las variantes masivas trabajan sobre arrays empaquetados: cuatro posiciones
+ * consecutivas {@code w, x, y, z} por cuaternión y tres {@code roll, pitch, yaw}
+ * por terna de ángulos. Los desplazamientos y {@code count} cuentan
+ * cuaterniones (o ternas), no posiciones del array. {@link QuaternionSnapshot#copyTo}
+ * empaqueta las muestras de un búfer en este formato.
+ */
+public final class QuaternionOps {
+
+    private QuaternionOps() {
+        // Utility class
+    }
+
+    /**
+     * {@code a * b}, escrito en {@code out[pos..pos+3]}.
+     */
+    public static void multiply(double aw, double ax, double ay, double az,
+                                double bw, double bx, double by, double bz,
+                                double[] out, int pos) {
+        out[pos] = aw * bw - ax * bx - ay * by - az * bz;
+        out[pos + 1] = aw * bx + ax * bw + ay * bz - az * by;
+        out[pos + 2] = aw * by - ax * bz + ay * bw + az * bx;
+        out[pos + 3] = aw * bz + ax * by - ay * bx + az * bw;
+    }
+
+    /**
+     * {@code q^-1 = q* / |q|^2}, escrito en {@code out[pos..pos+3]}.
+     */
+    public static void inverse(double w, double x, double y, double z, double[] out, int pos) {
+        double squared = w * w + x * x + y * y + z * z;
+        out[pos] = w / squared;
+        out[pos + 1] = -x / squared;
+        out[pos + 2] = -y / squared;
+        out[pos + 3] = -z / squared;
+    }
+
+    /**
+     * Ángulos de Euler en grados ({@code roll, pitch, yaw}), escritos en
+     * {@code out[pos..pos+2]}.
+     */
+    public static void toEulerAngles(double w, double x, double y, double z, double[] out, int pos) {
+        out[pos] = Math.toDegrees(Math.atan2(2.0 * (w * x + y * z), 1.0 - 2.0 * (x * x + y * y)));
+        out[pos + 1] = Math.toDegrees(Math.asin(2.0 * (w * y - z * x)));
+        out[pos + 2] = Math.toDegrees(Math.atan2(2.0 * (w * z + x * y), 1.0 - 2.0 * (y * y + z * z)));
+    }
+
+    /**
+     * Calibra un tramo de cuaterniones respecto a una referencia:
+     * {@code dst[i] = src[i] * r^-1}, como {@link Main#calculateRotation}. El
+     * inverso se calcula una sola vez. {@code src} y {@code dst} pueden ser el
+     * mismo array con el mismo desplazamiento.
+     *
+     * @param src     cuaterniones empaquetados de origen.
+     * @param srcFrom primer cuaternión de origen.
+     * @param dst     destino empaquetado.
+     * @param dstFrom primer cuaternión de destino.
+     * @param count   número de cuaterniones.
+     */
+    public static void multiplyByInverse(double[] src, int srcFrom, double[] dst, int dstFrom, int count,
+                                         double rw, double rx, double ry, double rz) {
+        checkRange(src, srcFrom, count, 4);
+        checkRange(dst, dstFrom, count, 4);
+        double squared = rw * rw + rx * rx + ry * ry + rz * rz;
+        double iw = rw / squared;
+        double ix = -rx / squared;
+        double iy = -ry / squared;
+        double iz = -rz / squared;
+        int s = srcFrom * 4;
+        int d = dstFrom * 4;
+        for (int i = 0; i < count; i++, s += 4, d += 4) {
+            double qw = src[s], qx = src[s + 1], qy = src[s + 2], qz = src[s + 3];
+            dst[d] = qw * iw - qx * ix - qy * iy - qz * iz;
+            dst[d + 1] = qw * ix + qx * iw + qy * iz - qz * iy;
+            dst[d + 2] = qw * iy - qx * iz + qy * iw + qz * ix;
+            dst[d + 3] = qw * iz + qx * iy - qy * ix + qz * iw;
+        }
+    }
+
+    /**
+     * Versión de {@link #multiplyByInverse(double[], int, double[], int, int, double, double, double, double)}
+     * con la referencia como {@link Quaternion}.
+     */
+    public static void multiplyByInverse(double[] src, int srcFrom, double[] dst, int dstFrom, int count,
+                                         Quaternion reference) {
+        multiplyByInverse(src, srcFrom, dst, dstFrom, count,
+                reference.getW(), reference.getX(), reference.getY(), reference.getZ());
+    }
+
+    /**
+     * Normaliza en el sitio los cuaterniones {@code [from, from + count)}. Los
+     * de norma cero se dejan como están.
+     */
+    public static void normalize(double[] q, int from, int count) {
+        checkRange(q, from, count, 4);
+        int end = (from + count) * 4;
+        for (int p = from * 4; p < end; p += 4) {
+            double w = q[p], x = q[p + 1], y = q[p + 2], z = q[p + 3];
+            double norm = Math.sqrt(w * w + x * x + y * y + z * z);
+            if (norm > 0) {
+                q[p] = w / norm;
+                q[p + 1] = x / norm;
+                q[p + 2] = y / norm;
+                q[p + 3] = z / norm;
+            }
+        }
+    }
+
+    /**
+     * Convierte un tramo de cuaterniones en ternas {@code roll, pitch, yaw} en grados.
+     *
+     * @param src     cuaterniones empaquetados.
+     * @param srcFrom primer cuaternión.
+     * @param dst     ternas empaquetadas de destino.
+     * @param dstFrom primera terna de destino.
+     * @param count   número de cuaterniones.
+     */
+    public static void toEulerAngles(double[] src, int srcFrom, double[] dst, int dstFrom, int count) {
+        checkRange(src, srcFrom, count, 4);
+        checkRange(dst, dstFrom, count, 3);
+        int s = srcFrom * 4;
+        int d = dstFrom * 3;
+        for (int i = 0; i < count; i++, s += 4, d += 3) {
+            toEulerAngles(src[s], src[s + 1], src[s + 2], src[s + 3], dst, d);
+        }
+    }
+
+    /**
+     * Ángulos de Euler de todas las muestras de un {@link QuaternionSnapshot}.
+     * Los arrays se reutilizan si tienen tamaño suficiente.
+     *
+     * @param scratch array auxiliar para los cuaterniones empaquetados, o {@code null}.
+     * @param angles  destino de las ternas, o {@code null}.
+     * @return {@code angles} o un array nuevo con al menos {@code 3 * samples.size()} posiciones.
+     */
+    public static double[] toEulerAngles(QuaternionSnapshot samples, double[] scratch, double[] angles) {
+        int n = samples.size();
+        if (scratch == null || scratch.length < 4 * n) {
+            scratch = new double[4 * n];
+        }
+        if (angles == null || angles.length < 3 * n) {
+            angles = new double[3 * n];
+        }
+        samples.copyTo(scratch, 0);
+        toEulerAngles(scratch, 0, angles, 0, n);
+        return angles;
+    }
+
+    private static void checkRange(double[] array, int from, int count, int stride) {
+        if (from < 0 || count < 0 || ((long) from + count) * stride > array.length) {
+            throw new IndexOutOfBoundsException("Tramo [" + from + ", " + (from + count) + ") fuera de un array de "
+                    + array.length / stride + " elementos");
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package org.example.realTimeExecution;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Búfer circular sin bloqueos para un productor (el hilo que lee el puerto) y
+ * consumidores concurrentes. Guarda por muestra w, x, y, z, el identificador
+ * del sensor y una marca {@link System#nanoTime()} en arrays primitivos.
+ * <p>
+ * El productor escribe la ranura y después publica la nueva secuencia con
+ * semántica release; antes de tocar la ranura coloca una barrera store-store,
+ * de modo que ninguna escritura de la muestra {@code N} se hace visible antes
+ * que la secuencia {@code N} publicada por la muestra anterior. Cuando el búfer
+ * está lleno se sobrescribe la muestra más antigua, de modo que la adquisición
+ * nunca se detiene. Los consumidores copian sin cerrojos a un
+ * {@link QuaternionSnapshot} y, tras una barrera load-load, vuelven a leer la
+ * secuencia: si han visto alguna escritura de la muestra {@code N}, esa lectura
+ * devuelve al menos {@code N}, así que las muestras que el productor pudo
+ * sobrescribir mientras tanto se descartan del snapshot y se contabilizan como
+ * perdidas. Es el mismo esquema de validación que un seqlock.
+ * <p>
+ * Solo un hilo puede llamar a {@link #add}; las lecturas pueden hacerse desde
+ * cualquier número de hilos.
+ */
+public class QuaternionRingBuffer implements QuaternionSink {
+    private static final VarHandle WRITE_SEQUENCE;
+
+    static {
+        try {
+            WRITE_SEQUENCE = MethodHandles.lookup().findVarHandle(QuaternionRingBuffer.class, "writeSequence", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final double[] components;
+    private final long[] timestamps;
+    private final int[] sensorIds;
+    @SuppressWarnings("unused") // se accede mediante WRITE_SEQUENCE
+    private volatile long writeSequence;
+
+    /**
+     * @param capacity número de muestras retenidas; se redondea a la siguiente
+     *                 potencia de dos.
+     */
+    public QuaternionRingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 28)) {
+            throw new IllegalArgumentException("Capacidad fuera de rango: " + capacity);
+        }
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.components = new double[this.capacity * 4];
+        this.timestamps = new long[this.capacity];
+        this.sensorIds = new int[this.capacity];
+    }
+
+    /**
+     * Añade una muestra con la marca de tiempo actual. Permite usar el búfer
+     * directamente como destino de {@link QuaternionStreamParser}.
+     */
+    @Override
+    public void onQuaternion(int sensorId, double w, double x, double y, double z) {
+        add(sensorId, w, x, y, z, System.nanoTime());
+    }
+
+    /**
+     * Añade una muestra. Solo debe llamarse desde el hilo productor.
+     *
+     * @param timestampNanos instante de recepción según {@link System#nanoTime()}.
+     */
+    public void add(int sensorId, double w, double x, double y, double z, long timestampNanos) {
+        long seq = (long) WRITE_SEQUENCE.getOpaque(this);
+        // la publicación de 'seq' no puede quedar detrás de las escrituras de la ranura
+        VarHandle.storeStoreFence();
+        int slot = (int) (seq & mask);
+        int base = slot << 2;
+        components[base] = w;
+        components[base + 1] = x;
+        components[base + 2] = y;
+        components[base + 3] = z;
+        timestamps[slot] = timestampNanos;
+        sensorIds[slot] = sensorId;
+        WRITE_SEQUENCE.setRelease(this, seq + 1);
+    }
+
+    /**
+     * Número total de muestras publicadas desde la creación del búfer. La
+     * siguiente muestra tendrá esta secuencia.
+     */
+    public long writeSequence() {
+        return (long) WRITE_SEQUENCE.getAcquire(this);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Copia en {@code out} las muestras con secuencia mayor o igual que
+     * {@code fromSequence}, empezando por la más antigua disponible y hasta la
+     * capacidad de {@code out}. Las muestras pedidas que ya no están en el
+     * búfer se indican en {@link QuaternionSnapshot#lost()}.
+     *
+     * @return {@code out}, para encadenar.
+     */
+    public QuaternionSnapshot snapshotSince(long fromSequence, QuaternionSnapshot out) {
+        long end = writeSequence();
+        long oldest = Math.max(0, end - capacity);
+        long start = Math.max(fromSequence, oldest);
+        long lost = Math.max(0, oldest - fromSequence);
+        int count = (int) Math.max(0, Math.min(end - start, out.capacity()));
+        copy(start, count, lost, out);
+        return out;
+    }
+
+    /**
+     * Copia en {@code out} las {@code count} muestras más recientes (o las que
+     * haya, si son menos), de la más antigua a la más reciente.
+     *
+     * @return {@code out}, para encadenar.
+     */
+    public QuaternionSnapshot snapshotLatest(int count, QuaternionSnapshot out) {
+        long end = writeSequence();
+        int n = (int) Math.min(Math.min(count, out.capacity()), Math.min(end, capacity));
+        copy(end - n, n, 0, out);
+        return out;
+    }
+
+    /**
+     * Primera secuencia retenida cuya marca de tiempo es mayor o igual que
+     * {@code timestampNanos}, buscada por bisección (las marcas del productor
+     * son crecientes). Devuelve {@link #writeSequence()} si no hay ninguna.
+     * Puede quedar desfasada si el productor sobrescribe la zona buscada; los
+     * snapshots posteriores filtran por marca de tiempo.
+     */
+    public long sequenceAt(long timestampNanos) {
+        long end = writeSequence();
+        // se evita la ranura que el productor puede estar sobrescribiendo
+        long lo = Math.max(0, end - capacity + 1);
+        long hi = end;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (timestamps[(int) (mid & mask)] - timestampNanos < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Copia en {@code out} las muestras retenidas con marca de tiempo en
+     * {@code [t0Nanos, t1Nanos]}, hasta la capacidad de {@code out}.
+     *
+     * @return {@code out}, para encadenar.
+     */
+    public QuaternionSnapshot snapshotBetween(long t0Nanos, long t1Nanos, QuaternionSnapshot out) {
+        snapshotSince(sequenceAt(t0Nanos), out);
+        out.retainBetween(t0Nanos, t1Nanos);
+        return out;
+    }
+
+    private void copy(long start, int count, long lost, QuaternionSnapshot out) {
+        for (int i = 0; i < count; i++) {
+            int slot = (int) ((start + i) & mask);
+            int base = slot << 2;
+            out.set(i, components[base], components[base + 1], components[base + 2], components[base + 3],
+                    timestamps[slot], sensorIds[slot]);
+        }
+        out.setRange(start, count, lost);
+
+        // las lecturas anteriores no pueden reordenarse tras la validación; si se
+        // vio alguna escritura de la muestra N, 'after' vale al menos N
+        VarHandle.loadLoadFence();
+        long after = writeSequence();
+        // la ranura de la secuencia 'after' puede estar escribiéndose ahora mismo
+        long firstSafe = after - capacity + 1;
+        if (count > 0 && start < firstSafe) {
+            int overwritten = (int) Math.min(count, firstSafe - start);
+            out.dropFirst(overwritten, overwritten);
+        }
+    }
+}
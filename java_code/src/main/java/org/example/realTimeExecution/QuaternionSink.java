@@ -0,0 +1,21 @@
+package org.example.realTimeExecution;
+
+/**
+ * Destino de las muestras decodificadas por {@link QuaternionStreamParser}.
+ * Recibe los componentes como primitivos para que el consumidor los guarde
+ * sin crear un {@link Quaternion} por muestra.
+ */
+@FunctionalInterface
+public interface QuaternionSink {
+
+    /**
+     * Entrega una trama {@code Q<id>,w,x,y,z} ya convertida.
+     *
+     * @param sensorId identificador del sensor enviado en la trama.
+     * @param w        componente escalar.
+     * @param x        componente x.
+     * @param y        componente y.
+     * @param z        componente z.
+     */
+    void onQuaternion(int sensorId, double w, double x, double y, double z);
+}
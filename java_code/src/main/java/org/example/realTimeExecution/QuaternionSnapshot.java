@@ -0,0 +1,167 @@
+package org.example.realTimeExecution;
+
+/**
+ * Copia reutilizable de un tramo de muestras de un {@link QuaternionRingBuffer}
+ * en arrays primitivos. Cada muestra conserva su número de secuencia, su
+ * sensor y su marca {@link System#nanoTime()}.
+ * <p>
+ * La instancia pertenece a un único consumidor; rellenarla no reserva memoria.
+ */
+public class QuaternionSnapshot {
+    private final double[] w;
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    private final long[] timestamps;
+    private final int[] sensorIds;
+    private int size;
+    private long firstSequence;
+    private long lost;
+
+    /**
+     * @param capacity número máximo de muestras que puede contener.
+     */
+    public QuaternionSnapshot(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("La capacidad debe ser positiva: " + capacity);
+        }
+        this.w = new double[capacity];
+        this.x = new double[capacity];
+        this.y = new double[capacity];
+        this.z = new double[capacity];
+        this.timestamps = new long[capacity];
+        this.sensorIds = new int[capacity];
+    }
+
+    public int capacity() {
+        return w.length;
+    }
+
+    /**
+     * Número de muestras válidas, de la más antigua a la más reciente.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Secuencia de la primera muestra copiada.
+     */
+    public long firstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * Secuencia siguiente a la última muestra copiada; sirve como cursor para
+     * la próxima lectura incremental.
+     */
+    public long nextSequence() {
+        return firstSequence + size;
+    }
+
+    /**
+     * Muestras pedidas que ya habían sido sobrescritas por el productor.
+     */
+    public long lost() {
+        return lost;
+    }
+
+    public double w(int i) {
+        return w[i];
+    }
+
+    public double x(int i) {
+        return x[i];
+    }
+
+    public double y(int i) {
+        return y[i];
+    }
+
+    public double z(int i) {
+        return z[i];
+    }
+
+    /**
+     * Marca {@link System#nanoTime()} de la muestra {@code i}.
+     */
+    public long timestamp(int i) {
+        return timestamps[i];
+    }
+
+    public int sensorId(int i) {
+        return sensorIds[i];
+    }
+
+    /**
+     * Crea un {@link Quaternion} con la muestra {@code i}.
+     */
+    public Quaternion toQuaternion(int i) {
+        return new Quaternion(w[i], x[i], y[i], z[i]);
+    }
+
+    /**
+     * Copia las muestras en {@code packed} con el formato de {@link QuaternionOps}:
+     * {@code w, x, y, z} consecutivos a partir del cuaternión {@code from}.
+     *
+     * @return {@code packed}.
+     */
+    public double[] copyTo(double[] packed, int from) {
+        if (from < 0 || ((long) from + size) * 4 > packed.length) {
+            throw new IndexOutOfBoundsException("No caben " + size + " cuaterniones a partir de " + from);
+        }
+        for (int i = 0, p = from * 4; i < size; i++, p += 4) {
+            packed[p] = w[i];
+            packed[p + 1] = x[i];
+            packed[p + 2] = y[i];
+            packed[p + 3] = z[i];
+        }
+        return packed;
+    }
+
+    void set(int i, double qw, double qx, double qy, double qz, long timestamp, int sensorId) {
+        w[i] = qw;
+        x[i] = qx;
+        y[i] = qy;
+        z[i] = qz;
+        timestamps[i] = timestamp;
+        sensorIds[i] = sensorId;
+    }
+
+    void setRange(long firstSequence, int size, long lost) {
+        this.firstSequence = firstSequence;
+        this.size = size;
+        this.lost = lost;
+    }
+
+    /**
+     * Descarta las primeras {@code count} muestras, sobrescritas durante la copia.
+     */
+    void dropFirst(int count, long extraLost) {
+        if (count <= 0) {
+            return;
+        }
+        int keep = size - count;
+        System.arraycopy(w, count, w, 0, keep);
+        System.arraycopy(x, count, x, 0, keep);
+        System.arraycopy(y, count, y, 0, keep);
+        System.arraycopy(z, count, z, 0, keep);
+        System.arraycopy(timestamps, count, timestamps, 0, keep);
+        System.arraycopy(sensorIds, count, sensorIds, 0, keep);
+        firstSequence += count;
+        size = keep;
+        lost += extraLost;
+    }
+
+    /**
+     * Recorta por ambos extremos las muestras fuera de {@code [t0Nanos, t1Nanos]}.
+     */
+    void retainBetween(long t0Nanos, long t1Nanos) {
+        int first = 0;
+        while (first < size && timestamps[first] - t0Nanos < 0) first++;
+        int last = size;
+        while (last > first && timestamps[last - 1] - t1Nanos > 0) last--;
+        size = last;
+        dropFirst(first, 0);
+    }
+}
@@ -0,0 +1,174 @@
+package org.example.realTimeExecution;
+
+import org.example.auxiliar.AsciiNumbers;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodificador incremental de las tramas {@code Q<id>,w,x,y,z} que envían los
+ * Arduino de los IMU. Trabaja directamente sobre bytes: una pequeña máquina de
+ * estados localiza el inicio de cada trama, copia su contenido en un búfer
+ * reutilizable y convierte los números con {@link AsciiNumbers}, sin crear
+ * {@link String} ni objetos por muestra.
+ * <p>
+ * Acepta los mismos datos que la lectura anterior basada en {@code Scanner}:
+ * se ignoran los espacios al inicio y al final de la línea, las líneas que no
+ * empiezan por {@code Q} y las tramas que no tienen exactamente cinco campos.
+ * Las tramas con números no válidos o más largas que el búfer se descartan y
+ * se contabilizan en {@link #getMalformedFrames()}.
+ * <p>
+ * Las tramas pueden llegar partidas entre lecturas; el estado se conserva entre
+ * llamadas a {@link #feed(byte[], int, int)}. No es seguro entre hilos: se usa
+ * un parser por puerto.
+ */
+public class QuaternionStreamParser {
+    /** Longitud máxima de una trama sin contar el salto de línea. */
+    public static final int MAX_FRAME_BYTES = 128;
+    private static final int FIELDS = 5;
+
+    private static final int LINE_START = 0;
+    private static final int IN_FRAME = 1;
+    private static final int SKIP_LINE = 2;
+
+    private final QuaternionSink sink;
+    private final byte[] frame = new byte[MAX_FRAME_BYTES];
+    private final byte[] readBuffer;
+    private final int[] commas = new int[FIELDS - 1];
+    private int frameLength;
+    private int state = LINE_START;
+    private long frames;
+    private long malformedFrames;
+
+    /**
+     * @param sink destino de cada muestra decodificada.
+     */
+    public QuaternionStreamParser(QuaternionSink sink) {
+        this(sink, 4096);
+    }
+
+    /**
+     * @param sink           destino de cada muestra decodificada.
+     * @param readBufferSize tamaño del búfer usado por {@link #readFrom(InputStream)}.
+     */
+    public QuaternionStreamParser(QuaternionSink sink, int readBufferSize) {
+        this.sink = sink;
+        this.readBuffer = new byte[readBufferSize];
+    }
+
+    /**
+     * Procesa {@code len} bytes de {@code buf} a partir de {@code off} y entrega
+     * al sink cada trama completa que encuentre.
+     */
+    public void feed(byte[] buf, int off, int len) {
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            byte b = buf[i];
+            switch (state) {
+                case LINE_START:
+                    if (b == 'Q') {
+                        frameLength = 0;
+                        state = IN_FRAME;
+                    } else if (b != '\n' && !isBlank(b)) {
+                        state = SKIP_LINE;
+                    }
+                    break;
+                case IN_FRAME:
+                    if (b == '\n') {
+                        parseFrame();
+                        state = LINE_START;
+                    } else if (frameLength < MAX_FRAME_BYTES) {
+                        frame[frameLength++] = b;
+                    } else {
+                        malformedFrames++;
+                        state = SKIP_LINE;
+                    }
+                    break;
+                default:
+                    if (b == '\n') {
+                        state = LINE_START;
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Lee una vez de {@code in} en el búfer interno y procesa lo leído.
+     *
+     * @return número de bytes leídos, o {@code -1} al final del flujo.
+     * @throws IOException si falla la lectura.
+     */
+    public int readFrom(InputStream in) throws IOException {
+        int n = in.read(readBuffer, 0, readBuffer.length);
+        if (n > 0) {
+            feed(readBuffer, 0, n);
+        }
+        return n;
+    }
+
+    /**
+     * Búfer interno de lectura, para quien lee directamente del puerto.
+     */
+    public byte[] getReadBuffer() {
+        return readBuffer;
+    }
+
+    /**
+     * Número de tramas entregadas al sink.
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * Número de tramas descartadas por números no válidos o longitud excesiva.
+     */
+    public long getMalformedFrames() {
+        return malformedFrames;
+    }
+
+    /**
+     * Descarta una trama a medias, por ejemplo al reabrir el puerto.
+     */
+    public void reset() {
+        state = LINE_START;
+        frameLength = 0;
+    }
+
+    private void parseFrame() {
+        int end = frameLength;
+        while (end > 0 && isBlank(frame[end - 1])) end--;
+        // String.split descarta los campos vacíos finales
+        while (end > 0 && frame[end - 1] == ',') end--;
+
+        int found = 0;
+        for (int i = 0; i < end; i++) {
+            if (frame[i] == ',') {
+                if (found == commas.length) {
+                    return; // más de cinco campos: se ignora, como antes
+                }
+                commas[found++] = i;
+            }
+        }
+        if (found != commas.length) {
+            return;
+        }
+
+        try {
+            int sensorId = AsciiNumbers.parseInt(frame, 0, commas[0]);
+            double w = AsciiNumbers.parseDouble(frame, commas[0] + 1, commas[1]);
+            double x = AsciiNumbers.parseDouble(frame, commas[1] + 1, commas[2]);
+            double y = AsciiNumbers.parseDouble(frame, commas[2] + 1, commas[3]);
+            double z = AsciiNumbers.parseDouble(frame, commas[3] + 1, end);
+            frames++;
+            sink.onQuaternion(sensorId, w, x, y, z);
+        } catch (NumberFormatException e) {
+            malformedFrames++;
+        }
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+}
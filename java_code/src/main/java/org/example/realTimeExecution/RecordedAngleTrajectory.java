@@ -0,0 +1,197 @@
+package org.example.realTimeExecution;
+
+import org.example.config.GridConfig;
+import org.example.io.SubjectModelRepository;
+import org.example.io.TrajectoryCsvWriter;
+import org.example.model.SubjectModel;
+import org.example.simulation.AngleTrajectory;
+import org.example.simulation.ParticleFilter;
+import org.example.simulation.Simulation;
+import org.example.simulation.TrajectoryRunner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * {@link AngleTrajectory} que lee una sesión grabada con
+ * {@link Main#saveDataToPlot} (archivos {@code initialAngles_Channel_*.csv} o
+ * {@code finalAngles_Channel_*.csv}) línea a línea, sin cargarla en memoria.
+ * <p>
+ * El ángulo de cada fila es el de Euler del eje elegido para la rotación
+ * {@code muestra * inverse(referencia)} del IMU del brazo o de la mano, igual
+ * que {@link ImuAngleSource} y la pronosupinación de {@link Main}. La
+ * referencia es la primera fila válida, que corresponde a 0 grados. Se saltan
+ * la cabecera, las filas incompletas y las que retroceden en el tiempo. A
+ * diferencia de {@link RecordedImuSignal} se conservan las filas con el mismo
+ * instante, frecuentes porque el tiempo se guarda con cuatro decimales: cada
+ * fila es una muestra del filtro.
+ */
+public final class RecordedAngleTrajectory implements AngleTrajectory, AutoCloseable {
+    private final BufferedReader reader;
+    private final Path file;
+    private final int column;
+    private final int axis;
+    private final double[] scratch = new double[8];
+    private boolean hasReference;
+    // inverso de la referencia
+    private double rw, rx, ry, rz;
+    private double time;
+    private double angle;
+
+    /**
+     * @param file archivo escrito por {@link Main#saveDataToPlot}.
+     * @param hand {@code true} para las columnas de la mano, {@code false} para las del brazo.
+     * @param axis {@link ImuAngleSource#AXIS_X}, {@link ImuAngleSource#AXIS_Y} o {@link ImuAngleSource#AXIS_Z}.
+     * @throws UncheckedIOException si no se puede abrir el archivo.
+     */
+    public RecordedAngleTrajectory(Path file, boolean hand, int axis) {
+        if (axis < ImuAngleSource.AXIS_X || axis > ImuAngleSource.AXIS_Z) {
+            throw new IllegalArgumentException("Eje no válido: " + axis);
+        }
+        try {
+            this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir " + file, e);
+        }
+        this.file = file;
+        this.column = hand ? 1 : 4;
+        this.axis = axis;
+    }
+
+    /**
+     * Pronosupinación del brazo: eje x, como {@code pronSupAngles} en {@link Main}.
+     */
+    public static RecordedAngleTrajectory pronoSupination(Path file) {
+        return new RecordedAngleTrajectory(file, false, ImuAngleSource.AXIS_X);
+    }
+
+    @Override
+    public boolean next() {
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // los archivos se escriben con el separador decimal del sistema
+                String[] fields = line.trim().replace(',', '.').split("\\s+");
+                if (fields.length < 7) {
+                    continue;
+                }
+                double t;
+                Quaternion q;
+                try {
+                    t = Double.parseDouble(fields[0]);
+                    q = Quaternion.fromEulerAngles(Double.parseDouble(fields[column]),
+                            Double.parseDouble(fields[column + 1]), Double.parseDouble(fields[column + 2]));
+                } catch (NumberFormatException e) {
+                    continue; // cabecera
+                }
+                if (!hasReference) {
+                    Quaternion inverse = q.inversion();
+                    rw = inverse.getW();
+                    rx = inverse.getX();
+                    ry = inverse.getY();
+                    rz = inverse.getZ();
+                    hasReference = true;
+                } else if (t < time) {
+                    continue;
+                }
+                time = t;
+                QuaternionOps.multiply(q.getW(), q.getX(), q.getY(), q.getZ(), rw, rx, ry, rz, scratch, 0);
+                QuaternionOps.toEulerAngles(scratch[0], scratch[1], scratch[2], scratch[3], scratch, 4);
+                angle = scratch[4 + axis];
+                return true;
+            }
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer " + file, e);
+        }
+    }
+
+    @Override
+    public double timeSeconds() {
+        return time;
+    }
+
+    @Override
+    public double angleDegrees() {
+        return angle;
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo cerrar " + file, e);
+        }
+    }
+
+    /**
+     * Ejecuta el filtro bayesiano de forma recursiva sobre sesiones grabadas e
+     * informa de cuántas veces más rápido que el tiempo real ha ido.
+     * <p>
+     * Uso: {@code RecordedAngleTrajectory <sujeto> <archivo>... [-o salida.csv] [-p partículas]}.
+     * Cada archivo empieza desde las probabilidades iniciales; con {@code -o}
+     * los pasos de todos los archivos se escriben en un único CSV y con
+     * {@code -p} se usa un {@link ParticleFilter} en lugar de la rejilla.
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Uso: RecordedAngleTrajectory <sujeto> <archivo>... [-o salida.csv] [-p partículas]");
+            return;
+        }
+        String subject = args[0];
+        List<Path> files = new ArrayList<>();
+        Path output = null;
+        int particles = 0;
+        for (int i = 1; i < args.length; i++) {
+            if ("-o".equals(args[i]) && i + 1 < args.length) {
+                output = Path.of(args[++i]);
+            } else if ("-p".equals(args[i]) && i + 1 < args.length) {
+                particles = Integer.parseInt(args[++i]);
+            } else {
+                files.add(Path.of(args[i]));
+            }
+        }
+
+        SubjectModel model = SubjectModelRepository.shared().get(subject);
+        TrajectoryRunner runner;
+        if (particles > 0) {
+            runner = new TrajectoryRunner(new ParticleFilter(GridConfig.defaultConfig(), 0.05, model, particles, 1), 3);
+        } else {
+            // la predicción se redondea a medio grado para reutilizar los núcleos en caché
+            runner = new TrajectoryRunner(new Simulation(GridConfig.defaultConfig(), 1, 0.05, model), 3, 0.5);
+        }
+        try (TrajectoryCsvWriter writer = output != null ? new TrajectoryCsvWriter(output, true) : null) {
+            for (Path file : files) {
+                runner.reset();
+                // primer y último instante de la sesión
+                double[] span = new double[2];
+                long start = System.nanoTime();
+                long steps;
+                try (RecordedAngleTrajectory trajectory = pronoSupination(file)) {
+                    steps = runner.run(trajectory, (index, t, angle, step) -> {
+                        if (index == 0) {
+                            span[0] = t;
+                        }
+                        span[1] = t;
+                        if (writer != null) {
+                            writer.onStep(index, t, angle, step);
+                        }
+                    });
+                }
+                double wall = (System.nanoTime() - start) / 1e9;
+                double session = span[1] - span[0];
+                System.out.printf(Locale.US, "%s: %d pasos (%.0f pasos/s), %.3f s de sesión en %.4f s (x%.0f tiempo real)%n",
+                        file.getFileName(), steps, wall > 0 ? steps / wall : 0, session, wall,
+                        wall > 0 ? session / wall : 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.example.realTimeExecution;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * {@link ImuSignal} que reproduce una sesión grabada con
+ * {@link Main#saveDataToPlot}, es decir un archivo
+ * {@code initialAngles_Channel_*.csv} o {@code finalAngles_Channel_*.csv} con
+ * las columnas {@code timestamp roll_hand pitch_hand yaw_hand roll_arm pitch_arm yaw_arm}.
+ * Los ángulos de Euler se convierten a cuaterniones y entre dos filas se
+ * interpola con SLERP, de modo que la grabación puede reproducirse a cualquier
+ * frecuencia. Al llegar al final vuelve a empezar.
+ */
+public final class RecordedImuSignal implements ImuSignal {
+    private final double[] times;
+    private final double[] quaternions;
+    private final int size;
+    private final double duration;
+
+    private RecordedImuSignal(double[] times, double[] quaternions, int size) {
+        this.times = times;
+        this.quaternions = quaternions;
+        this.size = size;
+        this.duration = times[size - 1] - times[0];
+    }
+
+    /**
+     * Lee un archivo de ángulos.
+     *
+     * @param file archivo escrito por {@link Main#saveDataToPlot}.
+     * @param hand {@code true} para las columnas de la mano, {@code false} para las del brazo.
+     * @throws UncheckedIOException     si no se puede leer el archivo.
+     * @throws IllegalArgumentException si no contiene al menos una fila válida.
+     */
+    public static RecordedImuSignal fromPlotFile(Path file, boolean hand) {
+        int column = hand ? 1 : 4;
+        double[] times = new double[256];
+        double[] quaternions = new double[4 * 256];
+        int size = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // los archivos se escriben con el separador decimal del sistema
+                String[] fields = line.trim().replace(',', '.').split("\\s+");
+                if (fields.length < 7) {
+                    continue;
+                }
+                double t;
+                Quaternion q;
+                try {
+                    t = Double.parseDouble(fields[0]);
+                    q = Quaternion.fromEulerAngles(Double.parseDouble(fields[column]),
+                            Double.parseDouble(fields[column + 1]), Double.parseDouble(fields[column + 2]));
+                } catch (NumberFormatException e) {
+                    continue; // cabecera
+                }
+                if (size > 0 && t <= times[size - 1]) {
+                    continue;
+                }
+                if (size == times.length) {
+                    times = Arrays.copyOf(times, size * 2);
+                    quaternions = Arrays.copyOf(quaternions, 4 * size * 2);
+                }
+                times[size] = t;
+                quaternions[4 * size] = q.getW();
+                quaternions[4 * size + 1] = q.getX();
+                quaternions[4 * size + 2] = q.getY();
+                quaternions[4 * size + 3] = q.getZ();
+                size++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer " + file, e);
+        }
+        if (size == 0) {
+            throw new IllegalArgumentException("El archivo no contiene muestras: " + file);
+        }
+        return new RecordedImuSignal(times, quaternions, size);
+    }
+
+    @Override
+    public void orientationAt(double seconds, double[] out) {
+        if (size == 1 || duration <= 0) {
+            copy(0, out);
+            return;
+        }
+        double t = times[0] + (seconds % duration);
+        int i = Arrays.binarySearch(times, 0, size, t);
+        if (i >= 0) {
+            copy(i, out);
+            return;
+        }
+        int next = Math.min(-i - 1, size - 1);
+        int prev = Math.max(next - 1, 0);
+        double frac = (t - times[prev]) / (times[next] - times[prev]);
+        int a = 4 * prev;
+        int b = 4 * next;
+        Quaternion.slerp(quaternions[a], quaternions[a + 1], quaternions[a + 2], quaternions[a + 3],
+                quaternions[b], quaternions[b + 1], quaternions[b + 2], quaternions[b + 3], frac, out);
+    }
+
+    /**
+     * Número de filas leídas.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Duración de la grabación en segundos.
+     */
+    public double getDurationSeconds() {
+        return duration;
+    }
+
+    private void copy(int i, double[] out) {
+        System.arraycopy(quaternions, 4 * i, out, 0, 4);
+    }
+}
@@ -9,20 +9,37 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
+import java.util.function.BooleanSupplier;
 
 /**
  * Hilo de lectura que captura cuaterniones de un sensor IMU a través de un puerto serie.
  * Además permite calcular medias y guardar las muestras en diferentes formatos.
  * Mantiene los datos en memoria hasta que el llamador los consulta o los limpia
  * con {@link #clearData()}.
+ * <p>
+ * Las tramas se decodifican con {@link QuaternionStreamParser} directamente
+ * desde los bytes del puerto y se guardan, con su marca de tiempo, en un
+ * {@link QuaternionRingBuffer}, sin crear objetos por muestra en el hilo de
+ * adquisición. Otros hilos pueden leer las muestras mientras continúa la
+ * captura; {@link #clearData()} solo mueve el cursor de lectura, por lo que
+ * puede llamarse desde cualquier hilo.
  */
 public class SerialReaderQuaternion implements Runnable{
-    private SerialPort serialPort;
+    /** Muestras retenidas por defecto: unos 20 s a la tasa máxima de tramas a 115200 baudios. */
+    public static final int DEFAULT_RING_CAPACITY = 1 << 16;
+    private static final int READ_TIMEOUT_MILLIS = 1000;
+
+    private final SerialPort serialPort;
+    private final SerialTransport externalTransport;
+    private SerialTransport transport;
     private String portName;
-    private List<Quaternion> data;
-    private Quaternion meanQuaternion;
+    private final QuaternionStreamParser parser;
+    private final QuaternionRingBuffer ring;
+    private volatile long dataStart;
+    private volatile Quaternion meanQuaternion;
     private final int readDurationMillis;
+    private final double toleranceDegrees;
+    private final int minSamples;
 
     /**
      * Construye un lector asociado a un puerto serie concreto y configura los parámetros básicos.
@@ -30,13 +47,45 @@ public class SerialReaderQuaternion implements Runnable{
      * @param portName nombre del puerto (por ejemplo, {@code COM10}).
      */
     public SerialReaderQuaternion(String portName) {
-        this.portName = portName;
-        this.serialPort = SerialPort.getCommPort(portName);
+        this(portName, DEFAULT_RING_CAPACITY);
+    }
+
+    /**
+     * Construye un lector con un búfer circular de la capacidad indicada.
+     *
+     * @param portName     nombre del puerto (por ejemplo, {@code COM10}).
+     * @param ringCapacity número de muestras retenidas antes de sobrescribir
+     *                     las más antiguas.
+     */
+    public SerialReaderQuaternion(String portName, int ringCapacity) {
+        this(portName, SerialPort.getCommPort(portName), null, ringCapacity);
         this.serialPort.setBaudRate(115200);
-        this.serialPort.setComPortTimeouts(SerialPort.TIMEOUT_READ_SEMI_BLOCKING, 1000, 0);
-        this.data = new ArrayList<Quaternion>();
+    }
+
+    /**
+     * Construye un lector sobre un canal ya abierto, por ejemplo un
+     * {@link ImuSimulatorTransport}. {@link #openPort()} no abre nada y
+     * {@link #closePort()} cierra el canal.
+     *
+     * @param transport    canal con el sensor.
+     * @param ringCapacity número de muestras retenidas antes de sobrescribir
+     *                     las más antiguas.
+     */
+    public SerialReaderQuaternion(SerialTransport transport, int ringCapacity) {
+        this(transport.getName(), null, transport, ringCapacity);
+    }
+
+    private SerialReaderQuaternion(String portName, SerialPort serialPort, SerialTransport transport, int ringCapacity) {
+        this.portName = portName;
+        this.serialPort = serialPort;
+        this.externalTransport = transport;
+        this.ring = new QuaternionRingBuffer(ringCapacity);
+        this.parser = new QuaternionStreamParser(ring);
         this.meanQuaternion = new Quaternion();
-        this.readDurationMillis = RuntimeConfig.defaultConfig().getImuReadDurationMillis();
+        RuntimeConfig runtimeConfig = RuntimeConfig.defaultConfig();
+        this.readDurationMillis = runtimeConfig.getImuReadDurationMillis();
+        this.toleranceDegrees = runtimeConfig.getCalibrationToleranceDegrees();
+        this.minSamples = runtimeConfig.getCalibrationMinSamples();
     }
 
     /**
@@ -45,7 +94,13 @@ public class SerialReaderQuaternion implements Runnable{
      * @return {@code true} si el puerto se abre correctamente.
      */
     public boolean openPort() {
+        if (externalTransport != null) {
+            transport = externalTransport;
+            System.out.println("Conectado al puerto: " + portName);
+            return true;
+        }
         if (serialPort.openPort()) {
+            transport = new JSerialCommTransport(serialPort, READ_TIMEOUT_MILLIS);
             System.out.println("Conectado al puerto: " + serialPort.getSystemPortName());
             return true;
         } else {
@@ -63,74 +118,67 @@ public class SerialReaderQuaternion implements Runnable{
      */
     public void readData(long durationMillis) {
         long startTime = System.currentTimeMillis();  // Inicio del temporizador
+        readWhile(() -> System.currentTimeMillis() - startTime < durationMillis);
+    }
 
-        try (Scanner scanner = new Scanner(serialPort.getInputStream())) {
-            while (System.currentTimeMillis() - startTime < durationMillis) {
-                if (scanner.hasNextLine()) {
-                    String line = scanner.nextLine().trim();
-                    //System.out.println("Datos recibidos del puerto: " + serialPort.getSystemPortName() + ", " + line);
-
-
-                    // Verificar si la línea contiene datos en formato quaternion
-                    if (line.startsWith("Q")) {
-                        String[] parts = line.substring(1).split(","); // Eliminar "Q" y dividir por comas
-
-                        if (parts.length == 5) {  // Esperamos exactamente 5 elementos (ID, w, x, y, z)
-                            try {
-                                int sensorId = Integer.parseInt(parts[0]);  // ID del sensor (1 o 2)
-                                double w = Double.parseDouble(parts[1]);
-                                double x = Double.parseDouble(parts[2]);
-                                double y = Double.parseDouble(parts[3]);
-                                double z = Double.parseDouble(parts[4]);
-
-                                // Crear el quaternion y agregarlo a la lista
-                                Quaternion q = new Quaternion(w, x, y, z);
-                                data.add(q);
-                            } catch (NumberFormatException e) {
-                                System.out.println("Error al convertir los valores de quaternion: " + line);
-                            }
-                        }
-
-                    }
-                }
+    /**
+     * Lee y decodifica tramas mientras {@code keepReading} devuelva {@code true}.
+     * La condición se evalúa tras cada lectura del puerto, que como mucho
+     * espera el timeout de lectura del canal (1 s en un puerto serie).
+     *
+     * Precondición: el puerto serie debe estar abierto mediante {@link #openPort()}.
+     *
+     * @param keepReading condición de continuación.
+     */
+    public void readWhile(BooleanSupplier keepReading) {
+        byte[] buffer = parser.getReadBuffer();
+        parser.reset();
+
+        while (keepReading.getAsBoolean()) {
+            // lectura semibloqueante: devuelve en cuanto hay bytes o tras el timeout del puerto
+            int n;
+            try {
+                n = transport != null ? transport.read(buffer, buffer.length) : -1;
+            } catch (IOException e) {
+                n = -1;
+            }
+            if (n > 0) {
+                parser.feed(buffer, 0, n);
+            } else if (n < 0) {
+                System.out.println("Error de lectura en el puerto " + portName);
+                break;
             }
-        }catch (Exception e) {
-            e.printStackTrace();
+        }
+        if (parser.getMalformedFrames() > 0) {
+            System.out.println("Tramas de quaternion descartadas: " + parser.getMalformedFrames());
         }
     }
 
-
-
     /**
      * Calcula el cuaternión medio de todas las muestras recibidas y lo almacena internamente.
+     * Las muestras se alinean al mismo hemisferio y la media se renormaliza
+     * (ver {@link OnlineQuaternionMean}).
      *
      * Postcondición: el valor calculado queda accesible mediante
      * {@link #getMeanQuartenion()} hasta que se invoque {@link #clearData()} o
      * se lean nuevas muestras.
      */
     public void calculateMeanQuaternion() {
-        int size = data.size();
-        System.out.println("Number of samples recieved from  port "+ serialPort.getSystemPortName() + ": " + data.size());
-        Quaternion q;
-        if (size == 0 || size < 20) {
+        QuaternionSnapshot samples = ring.snapshotSince(dataStart, new QuaternionSnapshot(Math.max(1, getSampleCount())));
+        int size = samples.size();
+        System.out.println("Number of samples recieved from  port "+ portName + ": " + size);
+        if (size == 0) {
             System.out.println("No hay datos disponibles para calcular la media");
 
         } else {
-            double[] sum = {0, 0, 0, 0};
-
-            for (int i = 0; i < data.size(); i++) {
-
-                q = data.get(i);
-                // double[] values = data[i].get;
-                sum[0] += q.getW();
-                sum[1] += q.getX();
-                sum[2] += q.getY();
-                sum[3] += q.getZ();
+            if (size < minSamples) {
+                System.out.println("Media calculada con solo " + size + " muestras");
+            }
+            OnlineQuaternionMean estimator = new OnlineQuaternionMean();
+            for (int i = 0; i < size; i++) {
+                estimator.add(samples.w(i), samples.x(i), samples.y(i), samples.z(i));
             }
-            meanQuaternion.setW(sum[0] / data.size());
-            meanQuaternion.setX(sum[1] / data.size());
-            meanQuaternion.setY(sum[2] / data.size());
-            meanQuaternion.setZ(sum[3] / data.size());
+            meanQuaternion = estimator.mean();
         }
     }
     /**
@@ -166,10 +214,9 @@ public class SerialReaderQuaternion implements Runnable{
             writer.write(String.format("X: %.2f, Y: %.2f, Z: %.2f\n", c.getX(), c.getY(), c.getZ()));
 
             writer.write("Samples:\n");
-            for(Quaternion q : handReader.getData()){
-                Coord euler = q.toEulerAngles();
-                writer.write(String.format("Roll (x-axis): %.2f°, Pitch (y-axis): %.2f°, Yaw (z-axis): %.2f°\n", euler.getX(), euler.getY(), euler.getZ()));
-            }
+            QuaternionSnapshot handSamples = handReader.getSamples();
+            double[] euler = QuaternionOps.toEulerAngles(handSamples, null, null);
+            Main.writeEulerSamples(writer, euler, handSamples.size());
 
             writer.write("\n********************************************************\n\n");
 
@@ -181,11 +228,9 @@ public class SerialReaderQuaternion implements Runnable{
             writer.write(String.format("X: %.2f, Y: %.2f, Z: %.2f\n", q.getX(), q.getY(), q.getZ()));
 
             writer.write("Samples:\n");
-            for(Quaternion k: armReader.getData()){
-                Coord euler = k.toEulerAngles();
-                writer.write(String.format("Roll (x-axis): %.2f°, Pitch (y-axis): %.2f°, Yaw (z-axis): %.2f°\n", euler.getX(), euler.getY(), euler.getZ()));
-
-            }
+            QuaternionSnapshot armSamples = armReader.getSamples();
+            euler = QuaternionOps.toEulerAngles(armSamples, null, euler);
+            Main.writeEulerSamples(writer, euler, armSamples.size());
 
 
             System.out.println("Data saved to " + fileName);
@@ -195,63 +240,81 @@ public class SerialReaderQuaternion implements Runnable{
     }
 
     /**
-     * Exporta las muestras de ambos sensores en un formato CSV simplificado para graficar.
-     *
-     * @param simpleFileName ruta del archivo CSV a generar.
-     * @param handReader     lector asociado al sensor de la mano.
-     * @param armReader      lector asociado al sensor del brazo.
+     * Exporta las muestras de ambos sensores capturadas desde el último
+     * {@link #clearData()} con {@link Main#saveDataToPlot}, alineadas por su
+     * marca de tiempo en el intervalo que cubren los dos.
      */
-    public static void saveDataToPlot(String simpleFileName, SerialReaderQuaternion handReader, SerialReaderQuaternion armReader) {
-        try (BufferedWriter simpleWriter = new BufferedWriter(new FileWriter(simpleFileName))) {
-
-            // Escribir la cabecera del archivo simplificado
-            simpleWriter.write("timestamp roll_hand pitch_hand yaw_hand roll_arm pitch_arm yaw_arm\n");
-
-            // Guardar las muestras de la mano y del brazo en el mismo archivo
-            saveSimplifiedSampleData(simpleWriter, handReader, armReader);
-
-        } catch (IOException e) {
-            e.printStackTrace();
+    private static void saveDataToPlot(String simpleFileName, SerialReaderQuaternion handReader,
+                                       SerialReaderQuaternion armReader, RuntimeConfig config) {
+        QuaternionSnapshot hand = handReader.getSamples();
+        QuaternionSnapshot arm = armReader.getSamples();
+        if (hand.size() == 0 || arm.size() == 0) {
+            System.out.println("No hay muestras de ambos sensores para " + simpleFileName);
+            return;
         }
+        long t0Nanos = Math.max(hand.timestamp(0), arm.timestamp(0));
+        long t1Nanos = Math.min(hand.timestamp(hand.size() - 1), arm.timestamp(arm.size() - 1));
+        Main.saveDataToPlot(simpleFileName, handReader.getRing(), armReader.getRing(), t0Nanos, t1Nanos, config);
     }
 
     /**
-     * Escribe línea a línea las muestras de ambos sensores sincronizadas para facilitar su trazado.
+     * Devuelve una copia de todas las muestras capturadas hasta el momento.
+     * Crea un {@link Quaternion} por muestra, por lo que conviene llamarlo una
+     * sola vez fuera del bucle de adquisición.
      */
-    private static void saveSimplifiedSampleData(BufferedWriter br, SerialReaderQuaternion handReader, SerialReaderQuaternion armReader) throws IOException {
-        long startTime = System.currentTimeMillis();  // Marca de tiempo de inicio
-
-        // Suponemos que ambos lectores tienen el mismo número de datos, de lo contrario necesitaríamos manejar el caso donde uno tiene más datos que el otro
-        int handDataSize = handReader.getData().size();
-        int armDataSize = armReader.getData().size();
-        int dataSize = Math.min(handDataSize, armDataSize);  // Aseguramos que no tratemos de acceder a datos fuera de rango
-
-        for (int i = 0; i < dataSize; i++) {
-            // Convertir el cuaternión de la mano a ángulos de Euler
-            Quaternion handQuaternion = handReader.getData().get(i);
-            Coord handEuler = handQuaternion.toEulerAngles();
+    public List<Quaternion> getData() {
+        QuaternionSnapshot samples = getSamples();
+        List<Quaternion> data = new ArrayList<>(samples.size());
+        for (int i = 0; i < samples.size(); i++) {
+            data.add(samples.toQuaternion(i));
+        }
+        return data;
+    }
 
-            // Convertir el cuaternión del brazo a ángulos de Euler
-            Quaternion armQuaternion = armReader.getData().get(i);
-            Coord armEuler = armQuaternion.toEulerAngles();
+    /**
+     * Copia en arrays primitivos las muestras capturadas desde el último
+     * {@link #clearData()}, sin crear un objeto por muestra.
+     */
+    public QuaternionSnapshot getSamples() {
+        return ring.snapshotSince(dataStart, new QuaternionSnapshot(Math.max(1, getSampleCount())));
+    }
 
-            long currentTime = System.currentTimeMillis();
-            double time = (currentTime - startTime) / 1000.0; // Convertir a segundos
+    /**
+     * Número de muestras disponibles desde el último {@link #clearData()},
+     * limitado a la capacidad del búfer circular.
+     */
+    public int getSampleCount() {
+        return (int) Math.min(ring.writeSequence() - dataStart, ring.capacity());
+    }
 
-            // Escribir los datos simplificados en el archivo CSV
-            br.write(String.format("%.4f %.2f %.2f %.2f %.2f %.2f %.2f\n",
-                    time, handEuler.getX(), handEuler.getY(), handEuler.getZ(), armEuler.getX(), armEuler.getY(), armEuler.getZ()));
-        }
+    /**
+     * Nombre del puerto serie asociado.
+     */
+    public String getPortName() {
+        return portName;
     }
 
+    /**
+     * Tramas descartadas por estar mal formadas desde la creación del lector.
+     */
+    public long getMalformedFrames() {
+        return parser.getMalformedFrames();
+    }
 
-    
+    /**
+     * Búfer circular con las muestras y sus marcas de tiempo, para consumidores
+     * que leen mientras continúa la captura.
+     */
+    public QuaternionRingBuffer getRing() {
+        return ring;
+    }
 
     /**
-     * Devuelve todas las muestras capturadas hasta el momento.
+     * Secuencia del búfer circular a partir de la cual {@link #getData()}
+     * devuelve muestras.
      */
-    public List<Quaternion> getData() {
-        return data;
+    public long getDataStart() {
+        return dataStart;
     }
 
     /**
@@ -262,26 +325,53 @@ public class SerialReaderQuaternion implements Runnable{
     }
 
     /**
-     * Captura muestras durante el tiempo configurado y actualiza el cuaternión
-     * medio. Debe invocarse tras {@link #openPort()} para garantizar que el
-     * puerto esté listo.
+     * Captura muestras durante el tiempo configurado, o hasta que la media
+     * converge a la tolerancia de {@link RuntimeConfig#getCalibrationToleranceDegrees()},
+     * y actualiza el cuaternión medio. Debe invocarse tras {@link #openPort()}
+     * para garantizar que el puerto esté listo.
      */
     @Override
     public void run() {
-        readData(readDurationMillis);
-        if (!data.isEmpty()) {
+        long startTime = System.currentTimeMillis();
+        OnlineQuaternionMean estimator = new OnlineQuaternionMean();
+        QuaternionSnapshot chunk = new QuaternionSnapshot(1024);
+        long[] cursor = {dataStart};
+        // la captura termina al agotar la duración o en cuanto la media converge
+        readWhile(() -> {
+            cursor[0] = feed(estimator, cursor[0], chunk);
+            return System.currentTimeMillis() - startTime < readDurationMillis
+                    && !estimator.hasConverged(toleranceDegrees, minSamples);
+        });
+        if (getSampleCount() > 0) {
             calculateMeanQuaternion();
 
         }
 
     }
 
+    /**
+     * Pasa al estimador las muestras publicadas desde {@code cursor}.
+     *
+     * @return cursor tras la última muestra procesada.
+     */
+    private long feed(OnlineQuaternionMean estimator, long cursor, QuaternionSnapshot chunk) {
+        do {
+            ring.snapshotSince(cursor, chunk);
+            for (int i = 0; i < chunk.size(); i++) {
+                estimator.add(chunk.w(i), chunk.x(i), chunk.y(i), chunk.z(i));
+            }
+            cursor = chunk.nextSequence();
+        } while (chunk.size() == chunk.capacity());
+        return cursor;
+    }
+
     /**
      * Cierra el puerto serie si estaba abierto.
      */
     public void closePort() {
-        if (serialPort.isOpen()) {
-            serialPort.closePort();
+        if (transport != null) {
+            transport.close();
+            transport = null;
             System.out.println("Puerto cerrado.");
         }
     }
@@ -290,7 +380,7 @@ public class SerialReaderQuaternion implements Runnable{
      * Limpia las muestras almacenadas y reinicia el cuaternión medio.
      */
     public void clearData() {
-        data.clear();  // Limpiar la lista de datos recibidos
+        dataStart = ring.writeSequence();  // Las muestras anteriores dejan de formar parte de los datos
         meanQuaternion = new Quaternion();  // Restablecer la media de los ángulos a 0
     }
 
@@ -319,7 +409,7 @@ public class SerialReaderQuaternion implements Runnable{
             Quaternion Qglobal2 = armReader.getMeanQuartenion();
 
             saveData( "Initial_position.txt", handReader, armReader, Qglobal1, Qglobal2, null, null);
-            saveDataToPlot(runtimeConfig.getInitialAnglesPlotFile(), handReader, armReader);
+            saveDataToPlot(runtimeConfig.getInitialAnglesPlotFile(), handReader, armReader, runtimeConfig);
 
             System.out.println("Mean quaternion for the initial hand position:");
             System.out.printf("W: %.5f, X: %.5f, Y: %.5f, Z: %.5f\n",
@@ -400,7 +490,7 @@ public class SerialReaderQuaternion implements Runnable{
             System.out.printf("Yaw (z-axis): %.2f degrees\n", pronSupAngles.getZ());
 
             saveData("Final_position.txt", handReader, armReader, Q1, Q2, angles, pronSupAngles);
-            saveDataToPlot("C:\\Users\\alemo\\IdeaProjects\\getIMU\\final_angles.csv", handReader, armReader);
+            saveDataToPlot("C:\\Users\\alemo\\IdeaProjects\\getIMU\\final_angles.csv", handReader, armReader, runtimeConfig);
 
             handReader.closePort();
             armReader.closePort();
@@ -0,0 +1,34 @@
+package org.example.realTimeExecution;
+
+import java.io.IOException;
+
+/**
+ * Canal de bytes con un dispositivo serie, con la semántica de lectura de
+ * jSerialComm: {@link #read} espera como mucho el timeout de lectura del
+ * canal y devuelve 0 si no llegó nada.
+ */
+public interface SerialTransport extends AutoCloseable {
+
+    /**
+     * Lee hasta {@code length} bytes en {@code buffer}.
+     *
+     * @return bytes leídos, 0 si venció el timeout o -1 si el canal está cerrado.
+     * @throws IOException si falla la lectura.
+     */
+    int read(byte[] buffer, int length) throws IOException;
+
+    /**
+     * Escribe los {@code length} primeros bytes de {@code buffer}.
+     *
+     * @throws IOException si no se pudieron escribir todos.
+     */
+    void write(byte[] buffer, int length) throws IOException;
+
+    /**
+     * Nombre del puerto, para los mensajes.
+     */
+    String getName();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,141 @@
+package org.example.realTimeExecution;
+
+import org.example.io.SessionJournal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copia al {@link SessionJournal} las muestras crudas de uno o varios
+ * {@link QuaternionRingBuffer}, con su marca de tiempo de adquisición. Un hilo
+ * propio lee los búferes por bloques cada cierto tiempo, de modo que el hilo
+ * de captura no escribe en disco ni espera al cerrojo del diario.
+ * <p>
+ * El periodo debe ser bastante menor que el tiempo que tarda en llenarse un
+ * búfer; las muestras sobrescritas antes de copiarse se cuentan en
+ * {@link #getLostSamples()}.
+ */
+public class SessionRecorder implements AutoCloseable {
+    private static final int CHUNK = 256;
+
+    private final SessionJournal journal;
+    private final long periodMillis;
+    private final List<Stream> streams = new ArrayList<>();
+    private volatile boolean running;
+    private Thread thread;
+    private volatile long samples;
+    private volatile long lostSamples;
+
+    /**
+     * @param journal      diario de destino.
+     * @param periodMillis tiempo entre dos copias de los búferes.
+     */
+    public SessionRecorder(SessionJournal journal, long periodMillis) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("El periodo debe ser positivo: " + periodMillis);
+        }
+        this.journal = journal;
+        this.periodMillis = periodMillis;
+    }
+
+    /**
+     * Añade un búfer; se copian las muestras que lleguen a partir de ahora.
+     * Debe llamarse antes de {@link #start()}.
+     *
+     * @param stream identificador en el diario, por ejemplo {@link SessionJournal#STREAM_ARM}.
+     */
+    public void addStream(int stream, QuaternionRingBuffer ring) {
+        streams.add(new Stream(stream, ring));
+    }
+
+    /**
+     * Arranca el hilo de copia. Llamarlo con el grabador en marcha no tiene efecto.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::recordLoop, "session-recorder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Detiene el hilo, copia las muestras pendientes y vuelca el diario. No lo cierra.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+        drain();
+        journal.flush();
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * Muestras copiadas al diario.
+     */
+    public long getSamples() {
+        return samples;
+    }
+
+    /**
+     * Muestras sobrescritas en los búferes antes de copiarse.
+     */
+    public long getLostSamples() {
+        return lostSamples;
+    }
+
+    private void recordLoop() {
+        while (running) {
+            drain();
+            journal.flush(); // acota lo que se pierde si el proceso termina de golpe
+            try {
+                Thread.sleep(periodMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void drain() {
+        for (Stream s : streams) {
+            do {
+                s.ring.snapshotSince(s.sequence, s.chunk);
+                lostSamples += s.chunk.lost();
+                s.sequence = s.chunk.nextSequence();
+                for (int i = 0; i < s.chunk.size(); i++) {
+                    journal.recordImuSample(s.id, s.chunk.timestamp(i),
+                            s.chunk.w(i), s.chunk.x(i), s.chunk.y(i), s.chunk.z(i));
+                }
+                samples += s.chunk.size();
+            } while (s.chunk.size() == s.chunk.capacity());
+        }
+    }
+
+    private static final class Stream {
+        private final int id;
+        private final QuaternionRingBuffer ring;
+        private final QuaternionSnapshot chunk = new QuaternionSnapshot(CHUNK);
+        private long sequence;
+
+        private Stream(int id, QuaternionRingBuffer ring) {
+            this.id = id;
+            this.ring = ring;
+            this.sequence = ring.writeSequence();
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package org.example.realTimeExecution;
+
+import org.example.config.RuntimeConfig;
+import org.example.io.SessionJournal;
+import org.example.io.SessionJournalReader;
+import org.example.simulation.FilterEngine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Repite una sesión grabada en un {@link SessionJournal}: las muestras del IMU
+ * del brazo vuelven a un {@link QuaternionRingBuffer} con su marca de tiempo
+ * original y un {@link ClosedLoopController} sin planificador ejecuta los ticks
+ * con {@link ClosedLoopController#tickAt(long)} sobre ese reloj, sin esperas.
+ * Las referencias de calibración grabadas se aplican a la fuente de ángulo.
+ * <p>
+ * Hay dos modos:
+ * <ul>
+ *     <li>{@link #replay}: los ticks se ejecutan en los instantes grabados y cada
+ *     paso se compara con el grabado (ángulo exacto y canales en orden). Cada
+ *     tick se repite con el búfer lleno justo hasta la muestra que usó en la
+ *     sesión, aunque en directo llegaran otras antes del tick o el grabador
+ *     las copiara antes que el paso. Sirve como prueba de regresión
+ *     determinista del filtro y del lazo.</li>
+ *     <li>{@link #replayAtPeriod}: los ticks se ejecutan a periodo fijo desde la
+ *     primera muestra, para pasar por el lazo sesiones grabadas sin él (por
+ *     ejemplo con {@link Main}) o probar otros periodos.</li>
+ * </ul>
+ * El diario se lee en un solo recorrido y la memoria no depende de su
+ * duración: los pasos grabados solo se retienen hasta que llegan las muestras
+ * del brazo posteriores a la que usaron, que el grabador copia con algo de
+ * retraso, y las muestras pendientes de entrar al búfer están acotadas por su
+ * capacidad.
+ */
+public class SessionReplay {
+    private static final int RING_CAPACITY = 1024;
+
+    private final Path journal;
+    private final int axis;
+
+    /**
+     * @param journal diario de la sesión.
+     * @param axis    eje del ángulo, como en {@link ImuAngleSource}.
+     */
+    public SessionReplay(Path journal, int axis) {
+        if (axis < ImuAngleSource.AXIS_X || axis > ImuAngleSource.AXIS_Z) {
+            throw new IllegalArgumentException("Eje no válido: " + axis);
+        }
+        this.journal = journal;
+        this.axis = axis;
+    }
+
+    /**
+     * Repite los ticks grabados y compara cada paso.
+     *
+     * @param simulation filtro con los priors y la tabla Ks del sujeto de la sesión,
+     *                   construido como en directo, por ejemplo con
+     *                   {@link ClosedLoopController#newFilter}.
+     * @param config     parámetros del lazo (presupuesto de latencia, pads, canales).
+     * @param maskSink   destino de las máscaras, o {@code null} para descartarlas.
+     * @throws IOException si no se puede leer el diario.
+     */
+    public Result replay(FilterEngine simulation, RuntimeConfig config, Consumer<int[][]> maskSink) throws IOException {
+        return run(simulation, config, maskSink, 0);
+    }
+
+    /**
+     * Ejecuta ticks a periodo fijo sobre las muestras grabadas; no compara pasos.
+     *
+     * @param periodNanos periodo del tick en el reloj de la sesión.
+     * @throws IOException si no se puede leer el diario.
+     */
+    public Result replayAtPeriod(FilterEngine simulation, RuntimeConfig config, long periodNanos,
+                                 Consumer<int[][]> maskSink) throws IOException {
+        if (periodNanos <= 0) {
+            throw new IllegalArgumentException("El periodo debe ser positivo: " + periodNanos);
+        }
+        return run(simulation, config, maskSink, periodNanos);
+    }
+
+    private Result run(FilterEngine simulation, RuntimeConfig config, Consumer<int[][]> maskSink,
+                       long periodNanos) throws IOException {
+        QuaternionRingBuffer ring = new QuaternionRingBuffer(RING_CAPACITY);
+        ImuAngleSource angleSource = new ImuAngleSource(ring, new Quaternion(1, 0, 0, 0), axis);
+        ClosedLoopController controller = new ClosedLoopController(simulation, angleSource,
+                maskSink != null ? maskSink : mask -> { }, config);
+        Player player = new Player(ring, angleSource, controller, periodNanos);
+        controller.setStepListener(player::onReplayedStep);
+
+        long begin = System.nanoTime();
+        boolean truncated;
+        try (SessionJournalReader reader = new SessionJournalReader(journal)) {
+            reader.read(player);
+            truncated = reader.isTruncated();
+        }
+        player.finish();
+        player.result.truncated = truncated;
+        player.result.wallNanos = System.nanoTime() - begin;
+        player.result.failures = controller.getFailures();
+        return player.result;
+    }
+
+    /**
+     * Recorre el diario y decide cuándo ejecutar cada tick.
+     */
+    private static final class Player implements SessionJournalReader.Visitor {
+        private final QuaternionRingBuffer ring;
+        private final ImuAngleSource angleSource;
+        private final ClosedLoopController controller;
+        private final long periodNanos;
+        private final ArrayDeque<RecordedStep> pending = new ArrayDeque<>();
+        // muestras del brazo que aún no se han pasado al búfer (solo en replay)
+        private final ArrayDeque<ArmSample> staged = new ArrayDeque<>();
+        private final Result result = new Result();
+        private boolean started;
+        private long nextTick;
+        private long firstSample;
+        private long lastSample;
+
+        private boolean stepped;
+        private double stepAngle;
+        private final int[] stepChannels = new int[256];
+        private int stepCount;
+
+        private Player(QuaternionRingBuffer ring, ImuAngleSource angleSource, ClosedLoopController controller,
+                       long periodNanos) {
+            this.ring = ring;
+            this.angleSource = angleSource;
+            this.controller = controller;
+            this.periodNanos = periodNanos;
+        }
+
+        @Override
+        public void onImuSample(int stream, long timestampNanos, double w, double x, double y, double z) {
+            result.imuSamples++;
+            if (stream != SessionJournal.STREAM_ARM) {
+                return;
+            }
+            if (!started) {
+                started = true;
+                firstSample = timestampNanos;
+                nextTick = timestampNanos;
+            }
+            // los ticks que usaron una muestra anterior no vieron esta
+            runTicksBefore(timestampNanos);
+            if (periodNanos == 0) {
+                staged.add(new ArmSample(timestampNanos, w, x, y, z));
+                if (staged.size() > RING_CAPACITY) {
+                    moveToRing(staged.poll());
+                }
+            } else {
+                ring.add(stream, w, x, y, z, timestampNanos);
+            }
+            lastSample = timestampNanos;
+        }
+
+        @Override
+        public void onReference(int stream, long timestampNanos, double w, double x, double y, double z) {
+            if (stream == SessionJournal.STREAM_ARM) {
+                angleSource.setReference(new Quaternion(w, x, y, z));
+            }
+        }
+
+        @Override
+        public void onCommand(String command, long timestampNanos) {
+            result.commands++;
+        }
+
+        @Override
+        public void onStep(long tickNanos, long sampleNanos, double angleDegrees, int[] channels, int count) {
+            result.recordedSteps++;
+            if (periodNanos == 0) {
+                pending.add(new RecordedStep(tickNanos, sampleNanos, angleDegrees, Arrays.copyOf(channels, count)));
+            }
+        }
+
+        private void onReplayedStep(long tickNanos, long sampleNanos, double angleDegrees, int[] channels, int count) {
+            stepped = true;
+            stepAngle = angleDegrees;
+            stepCount = count;
+            System.arraycopy(channels, 0, stepChannels, 0, count);
+        }
+
+        private void runTicksBefore(long limit) {
+            if (periodNanos == 0) {
+                RecordedStep step;
+                while ((step = pending.peek()) != null && step.sampleNanos - limit < 0) {
+                    pending.poll();
+                    replayStep(step);
+                }
+            } else {
+                while (started && nextTick - limit < 0) {
+                    tick(nextTick);
+                    nextTick += periodNanos;
+                }
+            }
+        }
+
+        /**
+         * Pasa al búfer las muestras hasta la que usó el paso grabado, y
+         * ninguna posterior, y repite su tick.
+         */
+        private void replayStep(RecordedStep step) {
+            ArmSample sample;
+            while ((sample = staged.peek()) != null && sample.timestampNanos - step.sampleNanos <= 0) {
+                moveToRing(staged.poll());
+            }
+            tick(step.tickNanos);
+            compare(step);
+        }
+
+        private void moveToRing(ArmSample sample) {
+            ring.add(SessionJournal.STREAM_ARM, sample.w, sample.x, sample.y, sample.z, sample.timestampNanos);
+        }
+
+        private void tick(long t) {
+            stepped = false;
+            controller.tickAt(t);
+            if (stepped) {
+                result.replayedSteps++;
+            }
+        }
+
+        private void compare(RecordedStep step) {
+            boolean same = stepped
+                    && Double.compare(stepAngle, step.angleDegrees) == 0
+                    && Arrays.equals(stepChannels, 0, stepCount, step.channels, 0, step.channels.length);
+            if (same) {
+                result.matchingSteps++;
+                return;
+            }
+            result.mismatchedSteps++;
+            if (result.firstMismatch == null) {
+                result.firstMismatch = String.format("tick %.3f s: grabado %.4f° %s, repetido %s",
+                        (step.tickNanos - firstSample) / 1e9, step.angleDegrees, Arrays.toString(step.channels),
+                        stepped ? String.format("%.4f° %s", stepAngle, Arrays.toString(Arrays.copyOf(stepChannels, stepCount)))
+                                : "sin paso");
+            }
+        }
+
+        private void finish() {
+            if (periodNanos == 0) {
+                // los pasos que quedan ya tienen todas las muestras que vieron
+                for (RecordedStep step; (step = pending.poll()) != null; ) {
+                    replayStep(step);
+                }
+            } else {
+                runTicksBefore(lastSample + 1);
+            }
+            result.sessionNanos = started ? lastSample - firstSample : 0;
+        }
+    }
+
+    private static final class RecordedStep {
+        private final long tickNanos;
+        /**
+         * Marca de la muestra que usó el tick. Es la única referencia fiable de
+         * lo que el tick vio: una muestra adquirida antes del tick puede no
+         * haberse publicado aún, y una posterior puede haberse publicado
+         * mientras el tick empezaba.
+         */
+        private final long sampleNanos;
+        private final double angleDegrees;
+        private final int[] channels;
+
+        private RecordedStep(long tickNanos, long sampleNanos, double angleDegrees, int[] channels) {
+            this.tickNanos = tickNanos;
+            this.sampleNanos = sampleNanos;
+            this.angleDegrees = angleDegrees;
+            this.channels = channels;
+        }
+    }
+
+    private static final class ArmSample {
+        private final long timestampNanos;
+        private final double w, x, y, z;
+
+        private ArmSample(long timestampNanos, double w, double x, double y, double z) {
+            this.timestampNanos = timestampNanos;
+            this.w = w;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+    }
+
+    /**
+     * Resumen de una repetición.
+     */
+    public static final class Result {
+        private long imuSamples;
+        private long commands;
+        private long recordedSteps;
+        private long replayedSteps;
+        private long matchingSteps;
+        private long mismatchedSteps;
+        private long failures;
+        private String firstMismatch;
+        private boolean truncated;
+        private long sessionNanos;
+        private long wallNanos;
+
+        private Result() {
+        }
+
+        /**
+         * Muestras de IMU leídas, de todos los sensores.
+         */
+        public long getImuSamples() {
+            return imuSamples;
+        }
+
+        /**
+         * Comandos del estimulador grabados.
+         */
+        public long getCommands() {
+            return commands;
+        }
+
+        public long getRecordedSteps() {
+            return recordedSteps;
+        }
+
+        public long getReplayedSteps() {
+            return replayedSteps;
+        }
+
+        /**
+         * Pasos grabados que se reprodujeron con el mismo ángulo y los mismos canales.
+         */
+        public long getMatchingSteps() {
+            return matchingSteps;
+        }
+
+        public long getMismatchedSteps() {
+            return mismatchedSteps;
+        }
+
+        /**
+         * Ticks de la repetición interrumpidos por una excepción.
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        /**
+         * Descripción de la primera diferencia, o {@code null} si no la hubo.
+         */
+        public String getFirstMismatch() {
+            return firstMismatch;
+        }
+
+        /**
+         * Si el diario terminaba con un registro incompleto.
+         */
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        /**
+         * Duración de la sesión entre la primera y la última muestra del brazo.
+         */
+        public long getSessionNanos() {
+            return sessionNanos;
+        }
+
+        /**
+         * Tiempo real que tardó la repetición.
+         */
+        public long getWallNanos() {
+            return wallNanos;
+        }
+    }
+
+    /**
+     * Repite un diario por línea de comandos:
+     * {@code SessionReplay <diario> <sujeto> [periodoMs]}. El filtro se
+     * construye con {@link ClosedLoopController#newFilter} a partir de la
+     * configuración con la que se grabó la sesión. Sin periodo repite los ticks
+     * grabados y termina con código 2 si algún paso difiere.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Uso: SessionReplay <diario> <sujeto> [periodoMs]");
+            System.exit(1);
+        }
+        RuntimeConfig config = RuntimeConfig.defaultConfig();
+        FilterEngine simulation = ClosedLoopController.newFilter(config, args[1]);
+        SessionReplay replay = new SessionReplay(Path.of(args[0]), ImuAngleSource.AXIS_X);
+        Result result = args.length > 2
+                ? replay.replayAtPeriod(simulation, config, (long) (Double.parseDouble(args[2]) * 1e6), null)
+                : replay.replay(simulation, config, null);
+
+        System.out.printf("Sesión de %.1f s repetida en %.2f s (x%.0f), %d muestras IMU, %d comandos%n",
+                result.getSessionNanos() / 1e9, result.getWallNanos() / 1e9,
+                result.getSessionNanos() / (double) Math.max(1, result.getWallNanos()),
+                result.getImuSamples(), result.getCommands());
+        System.out.printf("Pasos: %d grabados, %d repetidos, %d iguales, %d distintos, %d fallos%s%n",
+                result.getRecordedSteps(), result.getReplayedSteps(), result.getMatchingSteps(),
+                result.getMismatchedSteps(), result.getFailures(), result.isTruncated() ? " (diario truncado)" : "");
+        if (result.getFirstMismatch() != null) {
+            System.out.println("Primera diferencia: " + result.getFirstMismatch());
+        }
+        if (args.length == 2 && (result.getMismatchedSteps() > 0 || result.getFailures() > 0)) {
+            System.exit(2);
+        }
+    }
+}
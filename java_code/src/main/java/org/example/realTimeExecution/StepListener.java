@@ -0,0 +1,21 @@
+package org.example.realTimeExecution;
+
+/**
+ * Recibe la salida de cada paso del filtro de {@link ClosedLoopController}. La
+ * firma coincide con {@link org.example.io.SessionJournal#recordStep}, de modo
+ * que {@code journal::recordStep} sirve como oyente.
+ * <p>
+ * Se llama desde el hilo del controlador y debe volver enseguida.
+ */
+@FunctionalInterface
+public interface StepListener {
+
+    /**
+     * @param tickNanos    inicio del tick.
+     * @param sampleNanos  marca de adquisición de la muestra usada.
+     * @param angleDegrees ángulo que recibió el filtro.
+     * @param channels     canales seleccionados en orden de lista; el array se reutiliza.
+     * @param count        número de canales válidos en {@code channels}.
+     */
+    void onStep(long tickNanos, long sampleNanos, double angleDegrees, int[] channels, int count);
+}
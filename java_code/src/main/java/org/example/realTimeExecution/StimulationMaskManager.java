@@ -0,0 +1,220 @@
+package org.example.realTimeExecution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Mantiene la lista de canales activos del estimulador y envía solo los
+ * cambios. El estimulador guarda una lista ordenada: {@code e lc <canal> <pos>}
+ * escribe el canal de la posición {@code pos} y {@code e fl <pos>} marca la
+ * última posición usada.
+ * <p>
+ * Las llamadas a {@link #setActiveChannels(int[], int)} o {@link #setMask(int[][])}
+ * solo registran el estado deseado; {@link #flush()} lo compara con el último
+ * enviado y escribe las diferencias en una sola escritura. Así varias
+ * actualizaciones dentro de un mismo tick se reducen a un envío. Los canales
+ * que siguen activos conservan su posición y los nuevos ocupan las posiciones
+ * libres, de modo que cambiar un pad de la selección cuesta un único comando.
+ * <p>
+ * Las posiciones más allá de la última marca de fin se consideran desconocidas
+ * y se reescriben al volver a usarse. Si algún comando de un envío falla o no
+ * recibe respuesta, el estado del estimulador pasa a ser desconocido y el
+ * siguiente {@link #flush()} reenvía la lista completa. La lista del
+ * estimulador no puede quedar vacía: con el conjunto deseado vacío no se envía
+ * nada y quien llame debe detener la estimulación.
+ * <p>
+ * No es seguro entre hilos; se usa desde el hilo que decide la máscara. Solo
+ * el aviso de fallo de un envío puede llegar desde otro hilo.
+ */
+public class StimulationMaskManager {
+    private final Function<List<String>, List<CompletableFuture<String>>> commandSink;
+    private final int maskLength;
+    private final int[] desired;
+    private int desiredCount;
+    private final int[] device;
+    private int deviceCount;
+    private final int[] next;
+    private final boolean[] wanted;
+    private final boolean[] placed;
+    private final int[] scratch;
+    private final List<String> commands = new ArrayList<>();
+    // lo marca el hilo que completa las respuestas de un envío fallido
+    private volatile boolean deviceUnknown;
+
+    private long flushes;
+    private long commandsSent;
+
+    /**
+     * @param fes        estimulador conectado.
+     * @param maskLength número de canales (los canales válidos son {@code 1..maskLength}).
+     */
+    public StimulationMaskManager(FESController fes, int maskLength) {
+        this(fes::submitCommands, maskLength);
+    }
+
+    StimulationMaskManager(Function<List<String>, List<CompletableFuture<String>>> commandSink, int maskLength) {
+        if (maskLength <= 0) {
+            throw new IllegalArgumentException("La longitud de la máscara debe ser positiva: " + maskLength);
+        }
+        this.commandSink = commandSink;
+        this.maskLength = maskLength;
+        this.desired = new int[maskLength];
+        this.device = new int[maskLength];
+        this.next = new int[maskLength];
+        this.wanted = new boolean[maskLength + 1];
+        this.placed = new boolean[maskLength + 1];
+        this.scratch = new int[maskLength];
+    }
+
+    /**
+     * Registra el conjunto de canales (desde 1) que deben quedar activos. El
+     * orden no importa y los repetidos se ignoran.
+     *
+     * @throws IllegalArgumentException si algún canal está fuera de la máscara.
+     */
+    public void setActiveChannels(int[] channels, int count) {
+        Arrays.fill(wanted, false);
+        desiredCount = 0;
+        for (int i = 0; i < count; i++) {
+            int channel = channels[i];
+            if (channel < 1 || channel > maskLength) {
+                throw new IllegalArgumentException("Canal fuera de la máscara: " + channel);
+            }
+            if (!wanted[channel]) {
+                wanted[channel] = true;
+                desired[desiredCount++] = channel;
+            }
+        }
+    }
+
+    /**
+     * Registra los canales activos de una máscara con el formato de
+     * {@link FESController#setMask(int[][])}; la posición indicada en
+     * {@code mask[j][1]} no se usa.
+     */
+    public void setMask(int[][] mask) {
+        int count = 0;
+        for (int j = 0; j < Math.min(mask.length, maskLength); j++) {
+            if (mask[j][0] == 1) {
+                scratch[count++] = j + 1;
+            }
+        }
+        setActiveChannels(scratch, count);
+    }
+
+    /**
+     * Deja el conjunto deseado vacío. No envía nada al estimulador.
+     */
+    public void clear() {
+        setActiveChannels(desired, 0);
+    }
+
+    /**
+     * Indica si el conjunto deseado está vacío; en ese caso {@link #flush()}
+     * no envía nada y hay que detener la estimulación.
+     */
+    public boolean isEmpty() {
+        return desiredCount == 0;
+    }
+
+    /**
+     * Olvida el estado del estimulador, de modo que el próximo {@link #flush()}
+     * reenvía la lista completa (por ejemplo tras reconectar).
+     */
+    public void invalidate() {
+        deviceCount = 0;
+    }
+
+    /**
+     * Envía las diferencias entre el conjunto deseado y el último enviado.
+     * La lista enviada se da por aplicada para calcular los siguientes envíos;
+     * si el futuro devuelto falla, el próximo envío será la lista completa.
+     *
+     * @return futuro que se completa con las respuestas de todos los comandos
+     *         enviados, o ya completado si no había cambios.
+     */
+    public CompletableFuture<Void> flush() {
+        if (deviceUnknown) {
+            deviceUnknown = false;
+            invalidate();
+        }
+        if (desiredCount == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        int n = plan();
+        commands.clear();
+        for (int k = 0; k < n; k++) {
+            if (k >= deviceCount || device[k] != next[k]) {
+                commands.add("e lc " + next[k] + " " + k + "\r");
+            }
+        }
+        if (n != deviceCount) {
+            commands.add("e fl " + (n - 1) + "\r");
+        }
+        if (commands.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<CompletableFuture<String>> responses = commandSink.apply(new ArrayList<>(commands));
+        System.arraycopy(next, 0, device, 0, n);
+        deviceCount = n;
+        flushes++;
+        commandsSent += commands.size();
+        // el aviso se registra antes de que quien espera el futuro vea el fallo
+        return CompletableFuture.allOf(responses.toArray(new CompletableFuture<?>[0]))
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        deviceUnknown = true;
+                    }
+                });
+    }
+
+    /**
+     * Coloca el conjunto deseado en {@link #next}: los canales que ya están en
+     * una posición válida la conservan y el resto llena los huecos.
+     *
+     * @return longitud de la nueva lista.
+     */
+    private int plan() {
+        int n = desiredCount;
+        Arrays.fill(placed, false);
+        Arrays.fill(next, 0, n, 0);
+        for (int k = 0; k < Math.min(n, deviceCount); k++) {
+            int channel = device[k];
+            if (wanted[channel]) {
+                next[k] = channel;
+                placed[channel] = true;
+            }
+        }
+        int free = 0;
+        for (int i = 0; i < n; i++) {
+            int channel = desired[i];
+            if (!placed[channel]) {
+                while (next[free] != 0) free++;
+                next[free] = channel;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Canales de la lista enviada al estimulador, por posición.
+     */
+    public int[] getSentChannels() {
+        return Arrays.copyOf(device, deviceCount);
+    }
+
+    /**
+     * Envíos realizados con al menos un comando.
+     */
+    public long getFlushes() {
+        return flushes;
+    }
+
+    public long getCommandsSent() {
+        return commandsSent;
+    }
+}
@@ -0,0 +1,144 @@
+package org.example.realTimeExecution;
+
+/**
+ * Calcula el ángulo de pronosupinación como el giro ("twist") de la
+ * descomposición swing-twist alrededor de un eje fijo del antebrazo, sin pasar
+ * por los tres ángulos de Euler. Para una rotación {@code q = (w, v)} el giro
+ * alrededor del eje unitario {@code a} es {@code 2 * atan2(v·a, w)}: una sola
+ * {@code atan2} por muestra y sin cuaterniones intermedios.
+ * <p>
+ * La calibración se incorpora de antemano. Para un solo IMU la rotación
+ * {@code q * inverse(R)} es lineal en {@code q}, así que sus componentes
+ * {@code w} y {@code v·a} se reducen a dos productos escalares con
+ * coeficientes precalculados. Para la rotación de la mano respecto al brazo
+ * ({@code (h * H^-1) * inverse(b * B^-1)}, como en {@link Main}) se precalcula
+ * {@code H^-1 * B}. Se usan conjugados en lugar de inversos: solo cambian la
+ * escala del cuaternión, que no afecta a {@code atan2}, de modo que las
+ * muestras tampoco necesitan estar normalizadas.
+ * <p>
+ * Si la rotación es solo alrededor del eje, el resultado coincide con el ángulo
+ * de Euler correspondiente de {@link Quaternion#toEulerAngles()}. Si además hay
+ * flexión o desviación, el giro separa esa parte ("swing") en lugar de
+ * mezclarla como los ángulos de Euler, cuyo resultado depende del orden de las
+ * rotaciones. El resultado está en {@code [-180, 180]} grados.
+ * <p>
+ * No es seguro para varios hilos: cada consumidor usa su propia instancia.
+ */
+public final class TwistAngleExtractor {
+    private final double axisX;
+    private final double axisY;
+    private final double axisZ;
+    // coeficientes de w y de v·a de q * conj(R) en función de q
+    private double ww, wx, wy, wz;
+    private double pw, px, py, pz;
+    // conj(H) * B para la rotación relativa
+    private double cw, cx, cy, cz;
+
+    /**
+     * @param axisX componente x del eje del antebrazo en el sistema del IMU.
+     * @param axisY componente y del eje.
+     * @param axisZ componente z del eje.
+     * @throws IllegalArgumentException si el eje es nulo o no es finito.
+     */
+    public TwistAngleExtractor(double axisX, double axisY, double axisZ) {
+        double norm = Math.sqrt(axisX * axisX + axisY * axisY + axisZ * axisZ);
+        if (!(norm > 0) || Double.isInfinite(norm)) {
+            throw new IllegalArgumentException("Eje no válido: (" + axisX + ", " + axisY + ", " + axisZ + ")");
+        }
+        this.axisX = axisX / norm;
+        this.axisY = axisY / norm;
+        this.axisZ = axisZ / norm;
+        setReference(new Quaternion(1, 0, 0, 0));
+        setReferences(new Quaternion(1, 0, 0, 0), new Quaternion(1, 0, 0, 0));
+    }
+
+    /**
+     * Extractor alrededor de uno de los ejes del IMU.
+     *
+     * @param axis {@link ImuAngleSource#AXIS_X}, {@link ImuAngleSource#AXIS_Y} o {@link ImuAngleSource#AXIS_Z}.
+     */
+    public static TwistAngleExtractor forAxis(int axis) {
+        if (axis < ImuAngleSource.AXIS_X || axis > ImuAngleSource.AXIS_Z) {
+            throw new IllegalArgumentException("Eje no válido: " + axis);
+        }
+        return new TwistAngleExtractor(axis == ImuAngleSource.AXIS_X ? 1 : 0,
+                axis == ImuAngleSource.AXIS_Y ? 1 : 0, axis == ImuAngleSource.AXIS_Z ? 1 : 0);
+    }
+
+    /**
+     * Fija la orientación del IMU que corresponde a 0 grados en
+     * {@link #angleDegrees(double, double, double, double)}.
+     */
+    public void setReference(Quaternion reference) {
+        // b = conj(R); q * b desarrollado por componentes de q
+        double bw = reference.getW(), bx = -reference.getX(), by = -reference.getY(), bz = -reference.getZ();
+        ww = bw;
+        wx = -bx;
+        wy = -by;
+        wz = -bz;
+        pw = axisX * bx + axisY * by + axisZ * bz;
+        px = axisX * bw - axisY * bz + axisZ * by;
+        py = axisX * bz + axisY * bw - axisZ * bx;
+        pz = -axisX * by + axisY * bx + axisZ * bw;
+    }
+
+    /**
+     * Fija las orientaciones en reposo de mano y brazo para
+     * {@link #relativeAngleDegrees(double, double, double, double, double, double, double, double)}.
+     */
+    public void setReferences(Quaternion handReference, Quaternion armReference) {
+        double hw = handReference.getW(), hx = -handReference.getX(), hy = -handReference.getY(), hz = -handReference.getZ();
+        double bw = armReference.getW(), bx = armReference.getX(), by = armReference.getY(), bz = armReference.getZ();
+        cw = hw * bw - hx * bx - hy * by - hz * bz;
+        cx = hw * bx + hx * bw + hy * bz - hz * by;
+        cy = hw * by - hx * bz + hy * bw + hz * bx;
+        cz = hw * bz + hx * by - hy * bx + hz * bw;
+    }
+
+    /**
+     * Giro de {@code q * inverse(referencia)} alrededor del eje, en grados.
+     */
+    public double angleDegrees(double qw, double qx, double qy, double qz) {
+        return twistDegrees(qw * ww + qx * wx + qy * wy + qz * wz,
+                qw * pw + qx * px + qy * py + qz * pz);
+    }
+
+    /**
+     * Giro de la mano respecto al brazo, ambos calibrados con sus referencias,
+     * alrededor del eje, en grados.
+     */
+    public double relativeAngleDegrees(double hw, double hx, double hy, double hz,
+                                       double aw, double ax, double ay, double az) {
+        // t = h * conj(H) * B
+        double tw = hw * cw - hx * cx - hy * cy - hz * cz;
+        double tx = hw * cx + hx * cw + hy * cz - hz * cy;
+        double ty = hw * cy - hx * cz + hy * cw + hz * cx;
+        double tz = hw * cz + hx * cy - hy * cx + hz * cw;
+        // t * conj(a): solo hacen falta w y la proyección sobre el eje
+        double w = tw * aw + tx * ax + ty * ay + tz * az;
+        double x = -tw * ax + tx * aw - ty * az + tz * ay;
+        double y = -tw * ay + tx * az + ty * aw - tz * ax;
+        double z = -tw * az - tx * ay + ty * ax + tz * aw;
+        return twistDegrees(w, x * axisX + y * axisY + z * axisZ);
+    }
+
+    /**
+     * Giro de la mano respecto al brazo en un fotograma fusionado.
+     */
+    public double relativeAngleDegrees(FusedImuFrame frame) {
+        return relativeAngleDegrees(frame.hand(0), frame.hand(1), frame.hand(2), frame.hand(3),
+                frame.arm(0), frame.arm(1), frame.arm(2), frame.arm(3));
+    }
+
+    /**
+     * {@code 2 * atan2(p, w)} con {@code w >= 0}, para elegir el giro equivalente
+     * en {@code [-180, 180]}.
+     */
+    private static double twistDegrees(double w, double p) {
+        if (w < 0) {
+            w = -w;
+            p = -p;
+        }
+        return Math.toDegrees(2.0 * Math.atan2(p, w));
+    }
+}
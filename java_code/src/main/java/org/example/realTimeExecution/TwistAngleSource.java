@@ -0,0 +1,53 @@
+package org.example.realTimeExecution;
+
+/**
+ * {@link AngleSource} que lee la última muestra del búfer de un IMU y devuelve
+ * su giro alrededor del eje del antebrazo con un {@link TwistAngleExtractor}.
+ * Es la alternativa de un solo ángulo a {@link ImuAngleSource}: no calcula los
+ * tres ángulos de Euler ni reserva memoria por lectura.
+ */
+public class TwistAngleSource implements AngleSource {
+    private final QuaternionRingBuffer ring;
+    private final QuaternionSnapshot latest = new QuaternionSnapshot(1);
+    private final TwistAngleExtractor extractor;
+    private double angle;
+    private long timestamp;
+
+    /**
+     * @param ring      búfer del IMU.
+     * @param extractor extractor con el eje y la referencia del IMU; lo usa solo esta fuente.
+     */
+    public TwistAngleSource(QuaternionRingBuffer ring, TwistAngleExtractor extractor) {
+        this.ring = ring;
+        this.extractor = extractor;
+    }
+
+    /**
+     * Cambia la orientación que corresponde a 0 grados. Se usa desde el mismo
+     * hilo que {@link #update()}.
+     */
+    public void setReference(Quaternion reference) {
+        extractor.setReference(reference);
+    }
+
+    @Override
+    public boolean update() {
+        ring.snapshotLatest(1, latest);
+        if (latest.size() == 0) {
+            return false;
+        }
+        angle = extractor.angleDegrees(latest.w(0), latest.x(0), latest.y(0), latest.z(0));
+        timestamp = latest.timestamp(0);
+        return true;
+    }
+
+    @Override
+    public double angleDegrees() {
+        return angle;
+    }
+
+    @Override
+    public long timestampNanos() {
+        return timestamp;
+    }
+}
@@ -4,9 +4,22 @@
  * Incluye utilidades para:
  * <ul>
  *   <li>Leer en tiempo real los cuaterniones enviados por los sensores IMU mediante {@link org.example.realTimeExecution.SerialReaderQuaternion}.</li>
+ *   <li>Decodificar las tramas {@code Q<id>,w,x,y,z} directamente desde bytes con {@link org.example.realTimeExecution.QuaternionStreamParser}.</li>
+ *   <li>Adquirir cada IMU de forma continua y consultar ventanas temporales con {@link org.example.realTimeExecution.ImuAcquisitionService}.</li>
+ *   <li>Promediar orientaciones de forma incremental, con alineación de signo y criterio de convergencia, mediante {@link org.example.realTimeExecution.OnlineQuaternionMean}.</li>
+ *   <li>Alinear mano y brazo por marca de tiempo e interpolarlos con SLERP sobre un reloj común mediante {@link org.example.realTimeExecution.ImuStreamSynchronizer}.</li>
+ *   <li>Compartir las muestras con marca de tiempo entre el hilo de captura y sus consumidores sin cerrojos mediante {@link org.example.realTimeExecution.QuaternionRingBuffer}.</li>
+ *   <li>Cerrar el lazo IMU, filtro bayesiano y estimulador a periodo fijo, con control de plazos y latencia, mediante {@link org.example.realTimeExecution.ClosedLoopController}.</li>
  *   <li>Controlar el dispositivo de estimulación a través del puerto serie con {@link org.example.realTimeExecution.FESController}.</li>
+ *   <li>Enviar al estimulador solo los cambios de la lista de canales activos, agrupados en una escritura por tick, con {@link org.example.realTimeExecution.StimulationMaskManager}.</li>
+ *   <li>Enviar comandos al estimulador sin esperas fijas, con respuestas emparejadas por {@link java.util.concurrent.CompletableFuture}, mediante {@link org.example.realTimeExecution.FesCommandPipeline} sobre un {@link org.example.realTimeExecution.SerialTransport}.</li>
+ *   <li>Grabar la sesión en un {@link org.example.io.SessionJournal} binario con {@link org.example.realTimeExecution.SessionRecorder} y repetirla más rápido que en tiempo real con {@link org.example.realTimeExecution.SessionReplay}.</li>
+ *   <li>Sustituir los sensores y el estimulador por simuladores en el propio proceso con {@link org.example.realTimeExecution.ImuSimulatorTransport}, que sintetiza o reproduce grabaciones ({@link org.example.realTimeExecution.RecordedImuSignal}), y {@link org.example.realTimeExecution.FesSimulatorTransport}.</li>
+ *   <li>Ejecutar el filtro bayesiano de forma recursiva sobre los ángulos de una sesión grabada con {@link org.example.realTimeExecution.RecordedAngleTrajectory} y {@link org.example.simulation.TrajectoryRunner}.</li>
  *   <li>Realizar la secuencia completa de medición y estimulación descrita en {@link org.example.realTimeExecution.Main}.</li>
  *   <li>Representar orientaciones mediante {@link org.example.realTimeExecution.Quaternion} y ángulos de Euler con {@link org.example.realTimeExecution.Coord}.</li>
+ *   <li>Obtener solo el ángulo de pronosupinación, como giro alrededor del eje del antebrazo, con {@link org.example.realTimeExecution.TwistAngleExtractor} y {@link org.example.realTimeExecution.TwistAngleSource}.</li>
+ *   <li>Calibrar y convertir a ángulos de Euler bloques de muestras sin crear objetos con {@link org.example.realTimeExecution.QuaternionOps}.</li>
  * </ul>
  * </p>
  */
@@ -0,0 +1,61 @@
+package org.example.simulation;
+
+/**
+ * Forward-only cursor over a time series of measured angles, consumed by
+ * {@link TrajectoryRunner}. Implementations stream their samples (from a file,
+ * a journal or an array) so the memory used does not grow with the length of
+ * the trajectory.
+ */
+public interface AngleTrajectory {
+
+    /**
+     * Advances to the next sample.
+     *
+     * @return {@code false} when there are no more samples.
+     */
+    boolean next();
+
+    /**
+     * Time of the current sample in seconds, non-decreasing.
+     */
+    double timeSeconds();
+
+    /**
+     * Current angle in degrees, relative to the resting orientation.
+     */
+    double angleDegrees();
+
+    /**
+     * Trajectory over in-memory arrays, mainly for tests and synthetic inputs.
+     *
+     * @param times  sample times in seconds.
+     * @param angles angles in degrees, same length as {@code times}.
+     */
+    static AngleTrajectory of(double[] times, double[] angles) {
+        if (times.length != angles.length) {
+            throw new IllegalArgumentException("times and angles differ in length: " + times.length + " vs " + angles.length);
+        }
+        return new AngleTrajectory() {
+            private int index = -1;
+
+            @Override
+            public boolean next() {
+                if (index + 1 >= times.length) {
+                    return false;
+                }
+                index++;
+                return true;
+            }
+
+            @Override
+            public double timeSeconds() {
+                return times[index];
+            }
+
+            @Override
+            public double angleDegrees() {
+                return angles[index];
+            }
+        };
+    }
+}
@@ -0,0 +1,214 @@
+package org.example.simulation;
+
+import org.example.config.GridConfig;
+import org.example.io.ResultWriter;
+import org.example.io.SubjectModelRepository;
+import org.example.model.SubjectModel;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the offline simulation over a subject x angle x threshold x probMin
+ * parameter grid on a {@link ForkJoinPool}.
+ * <p>
+ * Jobs sharing subject, threshold and probMin are grouped into one task that
+ * owns an isolated {@link Simulation} and resets its priors before each angle,
+ * exactly like {@link Simulation#main(String[])}. The priors and Ks table of
+ * each subject come from a {@link SubjectModelRepository}, so they are parsed
+ * once and shared read-only between all tasks. Each step is written through
+ * {@link ResultWriter}, which formats and writes on its own thread while the
+ * workers keep simulating; when the grid contains a single threshold and probMin
+ * the file names match the sequential run, otherwise a
+ * {@code _thr_<t>_pmin_<p>} tag keeps the combinations apart. The tag prints
+ * at least two decimals for the threshold and three for probMin, and as many
+ * more as needed to tell the values apart.
+ */
+public class BatchSimulationRunner {
+    private final GridConfig gridConfig;
+    private final ResultWriter resultWriter;
+    private final int parallelism;
+    private final SubjectModelRepository repository;
+
+    /**
+     * Creates a runner on the default grid using all available processors.
+     */
+    public BatchSimulationRunner(ResultWriter resultWriter) {
+        this(GridConfig.defaultConfig(), resultWriter, Runtime.getRuntime().availableProcessors(),
+                SubjectModelRepository.shared());
+    }
+
+    /**
+     * @param gridConfig   grid layout simulated by every job.
+     * @param resultWriter destination of each step; flushed at the end of
+     *                     every {@link #run(List)}.
+     * @param parallelism  number of worker threads.
+     * @param repository   source of the subject priors and Ks tables.
+     */
+    public BatchSimulationRunner(GridConfig gridConfig, ResultWriter resultWriter, int parallelism,
+                                 SubjectModelRepository repository) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.gridConfig = gridConfig;
+        this.resultWriter = resultWriter;
+        this.parallelism = parallelism;
+        this.repository = repository;
+    }
+
+    /**
+     * Expands the cartesian product of the parameter values into jobs, ordered
+     * by subject, threshold, probMin and angle.
+     */
+    public static List<Job> parameterGrid(List<String> subjects, double[] angles,
+                                          double[] movementThresholds, double[] probMins) {
+        List<Job> jobs = new ArrayList<>(subjects.size() * angles.length * movementThresholds.length * probMins.length);
+        for (String subject : subjects) {
+            for (double threshold : movementThresholds) {
+                for (double probMin : probMins) {
+                    for (double angle : angles) {
+                        jobs.add(new Job(subject, angle, threshold, probMin));
+                    }
+                }
+            }
+        }
+        return jobs;
+    }
+
+    /**
+     * Runs every job and blocks until all results have been written.
+     *
+     * @param jobs parameter combinations to simulate.
+     * @return number of steps executed.
+     * @throws IllegalArgumentException if two parameter combinations of the
+     *                                  same subject would share a file tag.
+     * @throws IllegalStateException if any job fails; the original failure is
+     *                               attached as the cause.
+     * @throws java.io.UncheckedIOException if a result could not be written.
+     */
+    public int run(List<Job> jobs) {
+        boolean tagged = needsTag(jobs);
+        Map<String, List<Job>> groups = new LinkedHashMap<>();
+        for (Job job : jobs) {
+            String key = job.getSubject() + '|' + job.getMovementThreshold() + '|' + job.getProbMin();
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(job);
+        }
+        Map<String, String> keysByTag = new HashMap<>();
+        for (Map.Entry<String, List<Job>> group : groups.entrySet()) {
+            Job first = group.getValue().get(0);
+            String previous = keysByTag.putIfAbsent(first.getSubject() + (tagged ? tag(first) : ""), group.getKey());
+            if (previous != null) {
+                throw new IllegalArgumentException("Parameter combinations " + previous + " and "
+                        + group.getKey() + " would write to the same files");
+            }
+        }
+
+        List<Callable<Integer>> tasks = new ArrayList<>(groups.size());
+        for (List<Job> group : groups.values()) {
+            tasks.add(() -> runGroup(group, tagged));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            int steps = 0;
+            for (Future<Integer> future : pool.invokeAll(tasks)) {
+                steps += future.get();
+            }
+            resultWriter.flush();
+            return steps;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Batch simulation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch simulation failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private int runGroup(List<Job> group, boolean tagged) {
+        Job first = group.get(0);
+        SubjectModel model = repository.get(first.getSubject());
+        Simulation simulation = new Simulation(gridConfig, first.getMovementThreshold(), first.getProbMin(), model);
+        String tag = tagged ? tag(first) : "";
+
+        for (Job job : group) {
+            simulation.resetToInitialProbs();
+            SimulationResult result = simulation.runStep(job.getSubject(), job.getAngle());
+            resultWriter.writeResults(result, tag);
+        }
+        return group.size();
+    }
+
+    private static String tag(Job job) {
+        return "_thr_" + formatParameter(job.getMovementThreshold(), 2)
+                + "_pmin_" + formatParameter(job.getProbMin(), 3);
+    }
+
+    /**
+     * Shortest decimal that identifies {@code value}, padded with zeros to
+     * {@code minDecimals}; {@code 1.0} gives {@code 1.00} and {@code 0.0125}
+     * keeps its four decimals.
+     */
+    private static String formatParameter(double value, int minDecimals) {
+        if (!Double.isFinite(value)) {
+            return Double.toString(value);
+        }
+        BigDecimal decimal = BigDecimal.valueOf(value);
+        if (decimal.scale() < minDecimals) {
+            decimal = decimal.setScale(minDecimals);
+        }
+        return decimal.toPlainString();
+    }
+
+    private static boolean needsTag(List<Job> jobs) {
+        for (Job job : jobs) {
+            if (job.getMovementThreshold() != jobs.get(0).getMovementThreshold()
+                    || job.getProbMin() != jobs.get(0).getProbMin()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * One parameter combination of the sweep.
+     */
+    public static final class Job {
+        private final String subject;
+        private final double angle;
+        private final double movementThreshold;
+        private final double probMin;
+
+        public Job(String subject, double angle, double movementThreshold, double probMin) {
+            this.subject = subject;
+            this.angle = angle;
+            this.movementThreshold = movementThreshold;
+            this.probMin = probMin;
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+
+        public double getAngle() {
+            return angle;
+        }
+
+        public double getMovementThreshold() {
+            return movementThreshold;
+        }
+
+        public double getProbMin() {
+            return probMin;
+        }
+    }
+}
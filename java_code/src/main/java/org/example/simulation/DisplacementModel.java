@@ -1,7 +1,5 @@
 package org.example.simulation;
 
-import java.util.List;
-
 /**
  * Calculates pad displacement distances based on rotation around the forearm
  * axis. The model leaves probability handling to {@link Simulation}.
@@ -20,15 +18,16 @@ public class DisplacementModel {
      * @param angleDiff angular displacement in degrees. Positive angles move
      *                  pads in the positive axis direction, matching the
      *                  original sign handling.
-     * @param pads      mutable list of pads whose displacement distances are
-     *                  updated in place.
+     * @param state     grid state whose displacement distances are updated
+     *                  in place from the stored radii.
      */
-    public void upadteDisplacementDistance(double angleDiff, List<Pad> pads){
+    public void upadteDisplacementDistance(double angleDiff, PadGridState state){
         double theta = Math.toRadians(angleDiff);
-        for(Pad pad: pads){
-            double radius = pad.getRadiusFromAxis();
-            double displacement = radius * theta; //si thetha > 0, displacement < 0
-            pad.setDisplacementDistance(-displacement);
+        double[] radius = state.radiusFromAxis();
+        double[] distance = state.displacement();
+        for(int i = 0; i < state.size(); i++){
+            double displacement = radius[i] * theta; //si thetha > 0, displacement < 0
+            distance[i] = -displacement;
         }
     }
 }
@@ -0,0 +1,50 @@
+package org.example.simulation;
+
+/**
+ * Step API shared by the Bayesian estimators of the stimulated pad, so the
+ * closed loop, replays and {@link TrajectoryRunner} can run either the
+ * pad-grid {@link Simulation} or the continuous {@link ParticleFilter}.
+ * <p>
+ * Every engine reports its belief per pad in a {@link StepBuffers} sized by
+ * {@link #newStepBuffers(int)} and selects the top pads with a
+ * {@link PadSelector}. Engines keep state between steps and are not
+ * thread-safe.
+ */
+public interface FilterEngine {
+
+    /**
+     * Restores the subject priors, discarding the state of previous steps.
+     */
+    void resetToInitialProbs();
+
+    /**
+     * Allocates step buffers matching this engine's grid.
+     *
+     * @param topK number of top pads to select per step.
+     */
+    StepBuffers newStepBuffers(int topK);
+
+    /**
+     * Runs one step where the movement and the observed angle are the same,
+     * as in the single-angle steps of the original implementation.
+     *
+     * @param angleDiff movement angle in degrees for this step.
+     * @param out       reusable buffers sized for this grid.
+     */
+    default void runStepInto(double angleDiff, StepBuffers out) {
+        runStepInto(angleDiff, angleDiff, out);
+    }
+
+    /**
+     * Runs one prediction with {@code movementDegrees} and one correction with
+     * {@code observedDegrees}, writing the per-pad values and top pads into
+     * {@code out}.
+     *
+     * @param movementDegrees angle change since the previous step; stored as
+     *                        {@link StepBuffers#angleDiff()}.
+     * @param observedDegrees measured angle used by the observation model.
+     * @param out             reusable buffers sized for this grid.
+     * @throws IllegalArgumentException if {@code out} is sized for another grid.
+     */
+    void runStepInto(double movementDegrees, double observedDegrees, StepBuffers out);
+}
@@ -0,0 +1,19 @@
+package org.example.simulation;
+
+/**
+ * Numeric domain in which {@link Simulation} runs the Bayesian update.
+ */
+public enum FilterMode {
+    /**
+     * Multiplies and renormalizes plain probabilities, as in the original
+     * MATLAB implementation. Suited to isolated steps from reset priors.
+     */
+    LINEAR,
+    /**
+     * Keeps log-probabilities and normalizes with log-sum-exp, so posteriors
+     * stay representable over arbitrarily long step sequences without
+     * periodic resets. Linear probabilities are still published after every
+     * step for pad selection and output.
+     */
+    LOG
+}
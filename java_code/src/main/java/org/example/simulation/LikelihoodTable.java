@@ -0,0 +1,172 @@
+package org.example.simulation;
+
+import org.example.model.SubjectModel;
+
+import java.nio.DoubleBuffer;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Angle-major view of a Ks table prepared for the correction step: for every
+ * angle sample the Ks of all pads are stored contiguously, together with the
+ * likelihoods {@code p(z|x_i) = k_i / sum_j k_j} already divided by their
+ * column sum. A lookup is then a single sequential read of one or two
+ * neighbouring columns.
+ * <p>
+ * Angles between samples are interpolated linearly; angles outside the table
+ * are clamped to its first or last column. Angles that fall exactly on a
+ * sample return that column unchanged, so results on the 5 degree grid are
+ * identical to the nearest-column lookup.
+ * <p>
+ * Instances are immutable. Tables built from a {@link SubjectModel} are cached
+ * per model so simulations sharing a subject share the normalization too.
+ */
+public final class LikelihoodTable {
+    private static final Map<SubjectModel, LikelihoodTable> CACHE = new WeakHashMap<>();
+
+    private final int nPads;
+    private final int nAngles;
+    private final double minAngle;
+    private final double angleStep;
+    private final double[] ksByAngle;
+    private final double[] likelihoodByAngle;
+
+    /**
+     * @param rowMajor  Ks values, one row per pad and one column per angle.
+     * @param nPads     number of rows.
+     * @param nAngles   number of columns.
+     * @param minAngle  angle (degrees) of the first column.
+     * @param angleStep angle (degrees) between consecutive columns.
+     */
+    LikelihoodTable(DoubleBuffer rowMajor, int nPads, int nAngles, double minAngle, double angleStep) {
+        if (nAngles > 1 && !(angleStep > 0)) {
+            throw new IllegalArgumentException("Angle step must be positive: " + angleStep);
+        }
+        this.nPads = nPads;
+        this.nAngles = nAngles;
+        this.minAngle = minAngle;
+        this.angleStep = angleStep;
+        this.ksByAngle = new double[nPads * nAngles];
+        this.likelihoodByAngle = new double[nPads * nAngles];
+
+        for (int a = 0; a < nAngles; a++) {
+            int base = a * nPads;
+            double sumK = 0;
+            for (int i = 0; i < nPads; i++) {
+                double k = rowMajor.get(i * nAngles + a);
+                ksByAngle[base + i] = k;
+                sumK += k;
+            }
+            // con sumK <= 0 la columna queda a cero, igual que antes
+            if (sumK > 0) {
+                for (int i = 0; i < nPads; i++) {
+                    likelihoodByAngle[base + i] = ksByAngle[base + i] / sumK;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the table of {@code model}, building it on first use.
+     */
+    public static LikelihoodTable of(SubjectModel model) {
+        synchronized (CACHE) {
+            LikelihoodTable table = CACHE.get(model);
+            if (table == null) {
+                table = new LikelihoodTable(model.kTable(), model.getPadCount(), model.getAngleCount(),
+                        model.getMinAngle(), model.getAngleStep());
+                CACHE.put(model, table);
+            }
+            return table;
+        }
+    }
+
+    /**
+     * Builds a table from an in-memory Ks matrix (one array per pad).
+     */
+    public static LikelihoodTable of(double[][] kTable, double minAngle, double angleStep) {
+        int rows = kTable.length;
+        int cols = rows > 0 ? kTable[0].length : 0;
+        double[] flat = new double[rows * cols];
+        for (int i = 0; i < rows; i++) {
+            System.arraycopy(kTable[i], 0, flat, i * cols, cols);
+        }
+        return new LikelihoodTable(DoubleBuffer.wrap(flat), rows, cols, minAngle, angleStep);
+    }
+
+    /**
+     * Writes the interpolated Ks of every pad at {@code angle} into {@code out}.
+     *
+     * @return {@code out}, for chaining.
+     */
+    public double[] ksAt(double angle, double[] out) {
+        return interpolate(ksByAngle, angle, out);
+    }
+
+    /**
+     * Writes the interpolated likelihood {@code p(z|x_i)} of every pad at
+     * {@code angle} into {@code out}. Being a convex combination of two
+     * normalized columns, the result already sums to one.
+     *
+     * @return {@code out}, for chaining.
+     */
+    public double[] likelihoodAt(double angle, double[] out) {
+        return interpolate(likelihoodByAngle, angle, out);
+    }
+
+    /**
+     * Fractional column index of {@code angle}, clamped to the table range.
+     *
+     * @throws IllegalArgumentException if {@code angle} is NaN.
+     */
+    public double position(double angle) {
+        if (Double.isNaN(angle)) {
+            throw new IllegalArgumentException("Angle is NaN");
+        }
+        if (nAngles <= 1) {
+            return 0;
+        }
+        double pos = (angle - minAngle) / angleStep;
+        return Math.max(0, Math.min(nAngles - 1, pos));
+    }
+
+    private double[] interpolate(double[] table, double angle, double[] out) {
+        double pos = position(angle);
+        int lower = (int) pos;
+        double frac = pos - lower;
+        int base = lower * nPads;
+        if (frac == 0) {
+            System.arraycopy(table, base, out, 0, nPads);
+        } else {
+            int next = base + nPads;
+            double keep = 1 - frac;
+            for (int i = 0; i < nPads; i++) {
+                out[i] = keep * table[base + i] + frac * table[next + i];
+            }
+        }
+        return out;
+    }
+
+    public int getPadCount() {
+        return nPads;
+    }
+
+    public int getAngleCount() {
+        return nAngles;
+    }
+
+    public double getMinAngle() {
+        return minAngle;
+    }
+
+    public double getAngleStep() {
+        return angleStep;
+    }
+
+    /**
+     * Raw Ks value of {@code pad} at angle sample {@code angle}.
+     */
+    public double getK(int pad, int angle) {
+        return ksByAngle[angle * nPads + pad];
+    }
+}
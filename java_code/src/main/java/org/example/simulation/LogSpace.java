@@ -0,0 +1,55 @@
+package org.example.simulation;
+
+/**
+ * Log-domain helpers for the Bayesian filter. Probabilities are handled as
+ * natural logarithms so long step sequences do not underflow to zero;
+ * {@link Double#NEGATIVE_INFINITY} stands for probability 0.
+ */
+final class LogSpace {
+
+    private LogSpace() {
+        // Utility class
+    }
+
+    /**
+     * {@code log(sum_i exp(v[i]))} over the first {@code n} values, computed
+     * around the maximum so no term overflows or underflows.
+     *
+     * @return {@link Double#NEGATIVE_INFINITY} when every value is.
+     */
+    static double logSumExp(double[] v, int n) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            max = Math.max(max, v[i]);
+        }
+        if (max == Double.NEGATIVE_INFINITY) {
+            return max;
+        }
+        double sum = 0.0;
+        for (int i = 0; i < n; i++) {
+            sum += Math.exp(v[i] - max);
+        }
+        return max + Math.log(sum);
+    }
+
+    /**
+     * Subtracts {@code logNorm} from the first {@code n} log values and writes
+     * their exponentials to {@code linear}.
+     */
+    static void normalize(double[] logValues, double logNorm, double[] linear, int n) {
+        for (int i = 0; i < n; i++) {
+            double v = logValues[i] - logNorm;
+            logValues[i] = v;
+            linear[i] = Math.exp(v);
+        }
+    }
+
+    /**
+     * Natural logarithm of every value of {@code in} into {@code out}.
+     */
+    static void log(double[] in, double[] out, int n) {
+        for (int i = 0; i < n; i++) {
+            out[i] = Math.log(in[i]);
+        }
+    }
+}
@@ -1,118 +1,200 @@
 package org.example.simulation;
 
-import org.example.auxiliar.Utilities;
+import org.example.io.SubjectModelRepository;
+import org.example.model.SubjectModel;
 
-import java.util.List;
+import java.nio.DoubleBuffer;
 
 /**
  * Applies the observation likelihoods read from the subject-specific Ks table
  * to correct pad probabilities after a movement. The table is expected to have
  * one row per pad and columns covering angles from {@value #MIN_ANGLE} to
  * {@value #MAX_ANGLE} in {@value #ANGLE_STEP} degree steps, matching the
- * structure used by the original MATLAB preprocessing.
+ * structure used by the original MATLAB preprocessing; tables loaded from a
+ * {@link SubjectModel} may declare a different first angle and step.
+ * <p>
+ * The table is held as a {@link LikelihoodTable}: transposed to angle-major and
+ * with every column already divided by its sum, so the correction reads one
+ * contiguous column instead of recomputing {@code sumK} each step. Angles
+ * between samples are interpolated linearly and angles outside the table are
+ * clamped to its edges.
  */
 public class ObservationModel {
-    private double[][] kTable;
-    private final int nPads;
-    private final int nAngles;
+    private LikelihoodTable table;
+    private double[] likelihoodBuffer;
+    private double[] logPosteriorBuffer;
     private static final int MIN_ANGLE = -90;
     private static final int MAX_ANGLE = 90;
     private static final int ANGLE_STEP= 5;
 
 
     public ObservationModel() {
-        this.kTable = new double[15][37];
-        this.nPads = kTable.length; //filas
-        this.nAngles = kTable[0].length; //columnas
+        int nPads = 15; //filas
+        int nAngles = 37; //columnas
+        install(new LikelihoodTable(DoubleBuffer.allocate(nPads * nAngles), nPads, nAngles, MIN_ANGLE, ANGLE_STEP));
 
     }
 
     /**
-     * Extracts the Ks column corresponding to the rounded {@code angleDiff}.
+     * Extracts the Ks of every pad at {@code angleDiff}, interpolating linearly
+     * between the two nearest angle samples.
      *
      * Preconditions:
      * <ul>
      *     <li>{@link #loadkTable(String)} has been called to populate the table.</li>
-     *     <li>{@code angleDiff} lies within [{@value #MIN_ANGLE}, {@value #MAX_ANGLE}].</li>
      * </ul>
+     * Angles outside the table range are clamped to its first or last column.
      *
      * @param angleDiff movement angle in degrees.
-     * @return likelihood values per pad for the requested angle.
+     * @return Ks values per pad for the requested angle.
+     * @throws IllegalArgumentException if {@code angleDiff} is NaN.
      */
     public double[] getAngleColumn(double angleDiff){ //para un ángulo, extrae los valores de
-        if(angleDiff < MIN_ANGLE || angleDiff > MAX_ANGLE){
-            System.out.println("ángulo debe estar en el rango de -90 a 90 grados");
-        }
+        return getAngleColumn(angleDiff, new double[table.getPadCount()]);
+    }
 
-        int a = (int)Math.round(angleDiff); //redondea el angulo al entero más cercano
-        int index = (a-MIN_ANGLE) / ANGLE_STEP; //indice de la columna que nos interesa
+    /**
+     * Same as {@link #getAngleColumn(double)} but writes the column into a
+     * caller-supplied buffer instead of allocating a new array.
+     *
+     * @param angleDiff movement angle in degrees.
+     * @param column    destination with at least one slot per pad.
+     * @return {@code column}, for chaining.
+     */
+    public double[] getAngleColumn(double angleDiff, double[] column){
+        return table.ksAt(angleDiff, column);
 
-        double[] column = new double[nPads];
-        for (int i = 0; i < nPads; i++) {
-            column[i] = kTable[i][index];
-        }
-        return column;
+    }
 
+    /**
+     * Writes the pre-normalized likelihood {@code p(z|x_i) = k_i / sum_j k_j}
+     * of every pad at {@code angleDiff} into {@code column}, as used by
+     * {@link #applyCorrectionPhase}.
+     *
+     * @param angleDiff observed angle in degrees.
+     * @param column    destination with at least one slot per pad.
+     * @return {@code column}, for chaining.
+     */
+    public double[] getLikelihoodColumn(double angleDiff, double[] column){
+        return table.likelihoodAt(angleDiff, column);
     }
 
     /**
-     * Applies the observation model: converts Ks to likelihoods, multiplies by
-     * the current prior of each pad, and renormalizes the resulting posterior.
+     * Applies the observation model: looks up the pre-normalized likelihoods
+     * {@code p(z|x_i) = k_i / sum_j k_j} at {@code angleDiff}, multiplies them
+     * by the current prior of each pad, and renormalizes the resulting
+     * posterior.
      *
-     * Side effects: mutates the probability of each pad in {@code pads} in
-     * place to store the corrected posterior distribution.
+     * Side effects: mutates the probability array of {@code state} in place
+     * to store the corrected posterior distribution.
      */
-    public void applyCorrectionPhase(List<Pad> pads, double angleDiff){
-        int n = pads.size();
-        double[] Ks = getAngleColumn(angleDiff); //extrae las ks para todos los pads del ángulo que nos inetresa
-        //k_i: que tan bien hace match el pad i con el angulo que nos interesa
-        double sumK = 0;
-        for(double k: Ks){
-            sumK += k;
-        }
+    public void applyCorrectionPhase(PadGridState state, double angleDiff){
+        int n = state.size();
+        double[] probs = state.probability();
         //modelo obs: prob de observar ese ángulo z si estuviermos en el pad i
-        //p(z|xi) = ki/sum(kj)
-        double[] l = new double[n];
-        if(sumK > 0){
-            for(int i = 0; i < n; i++){
-                l[i] = Ks[i] / sumK;  //p(z|x_i) = k_i/sumK_j
-            }
-        }
+        //p(z|xi) = ki/sum(kj), ya normalizado por columnas en LikelihoodTable
+        double[] l = table.likelihoodAt(angleDiff, likelihoodBuffer);
 
 
         //p(x_i|z) = p(z|x_i) x p(x_i)
         double sumPost = 0;
         for(int i = 0; i < n; i++){
-            Pad p = pads.get(i);
-            double prior = p.getProbability();
-            double post = prior * l[i];
-            p.setProbability(post);
+            double post = probs[i] * l[i];
+            probs[i] = post;
             sumPost += post;
 
         }
 
         if(sumPost > 0){
-            for(Pad p: pads){
-                p.setProbability(p.getProbability() / sumPost);
+            for(int i = 0; i < n; i++){
+                probs[i] = probs[i] / sumPost;
             }
         }
     }
 
 
     /**
-     * Loads the Ks observation table for the given subject from CSV.
-     * The file must contain the same shape expected by the constructor
-     * (15 pads by 37 angle samples).
+     * Log-domain counterpart of {@link #applyCorrectionPhase}: adds the log of
+     * the likelihoods to {@link PadGridState#logProbability()} and normalizes
+     * with log-sum-exp, so posteriors far below {@code Double.MIN_VALUE} keep
+     * their relative order. The linear probabilities are refreshed from the
+     * result.
+     * <p>
+     * When the observation rules out every pad (all likelihoods zero) the
+     * predicted distribution is kept instead of collapsing to zero.
+     */
+    public void applyLogCorrectionPhase(PadGridState state, double angleDiff){
+        int n = state.size();
+        double[] logProbs = state.logProbability();
+        double[] l = table.likelihoodAt(angleDiff, likelihoodBuffer);
+        double[] logPost = logPosteriorBuffer;
+
+        //log p(x_i|z) = log p(z|x_i) + log p(x_i)
+        for(int i = 0; i < n; i++){
+            logPost[i] = logProbs[i] + Math.log(l[i]);
+        }
+        double logNorm = LogSpace.logSumExp(logPost, n);
+        if(logNorm == Double.NEGATIVE_INFINITY){
+            return;
+        }
+        LogSpace.normalize(logPost, logNorm, state.probability(), n);
+        System.arraycopy(logPost, 0, logProbs, 0, n);
+    }
+
+
+    /**
+     * Loads the Ks observation table for the given subject from CSV through
+     * the shared {@link SubjectModelRepository}, so repeated loads of the same
+     * subject reuse the parsed and normalized table.
      */
     public void loadkTable(String subject) {
-        String fileName = "Kstable_" + subject + ".csv";
-        double[][] table = Utilities.readMatrix(fileName);
-        this.kTable = table;
+        loadkTable(SubjectModelRepository.shared().get(subject));
+
+
+    }
+
+    /**
+     * Uses the Ks table of an already loaded subject model; the angle-major
+     * table is shared by every simulation of that model.
+     */
+    public void loadkTable(SubjectModel model) {
+        install(LikelihoodTable.of(model));
+    }
+
+    /**
+     * Installs an already loaded Ks table (one row per pad, one column per
+     * angle sample from {@value #MIN_ANGLE} in {@value #ANGLE_STEP} degree
+     * steps) and resizes the internal scratch buffer to match.
+     */
+    public void loadkTable(double[][] table) {
+        install(LikelihoodTable.of(table, MIN_ANGLE, ANGLE_STEP));
+    }
 
+    private void install(LikelihoodTable table) {
+        this.table = table;
+        this.likelihoodBuffer = new double[table.getPadCount()];
+        this.logPosteriorBuffer = new double[table.getPadCount()];
+    }
 
+    /**
+     * Number of pads covered by the loaded table.
+     */
+    public int getPadCount() {
+        return table.getPadCount();
     }
 
+    /**
+     * Copy of the current Ks table as one array per pad.
+     */
     public double[][] getkTable() {
+        int nPads = table.getPadCount();
+        int nAngles = table.getAngleCount();
+        double[][] kTable = new double[nPads][nAngles];
+        for (int i = 0; i < nPads; i++) {
+            for (int j = 0; j < nAngles; j++) {
+                kTable[i][j] = table.getK(i, j);
+            }
+        }
         return kTable;
     }
 
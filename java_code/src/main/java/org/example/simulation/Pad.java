@@ -2,101 +2,61 @@ package org.example.simulation;
 
 import org.example.config.GridConfig;
 
+import java.util.Arrays;
+
 /**
- * Represents a single stimulation pad in the grid along with its geometric
- * relationship to the rotation axis and the Bayesian probabilities tracked
- * during the simulation. Row/column indices are immutable after construction
- * so callers can treat the identifier and grid location as stable keys while
- * freely mutating probabilities and displacement distance.
+ * Read-only view of a single stimulation pad in the grid. The geometric
+ * relationship to the rotation axis and the Bayesian probabilities are stored
+ * in a shared {@link PadGridState}; a pad only remembers its index, so callers
+ * can keep using the identifier and grid location as stable keys while the
+ * simulation updates the underlying arrays.
  */
 public class Pad {
-    private final int id;
-    private final int row;
-    private final int col;
-    private double radiusFromAxis; //distancia en cm del centro de cada pad al eje de rotacion del antebraxo
-    private double displacementDistance;
-    private double probability;
-    private double initialProb; //kflexion en la posición inicial (0 grados)
-
+    private final PadGridState state;
+    private final int index;
 
     /**
-     * Creates a pad in the default grid using the provided radial distance.
+     * Creates a view over the pad stored at {@code index} in {@code state}.
      *
-     * @param id              1-based pad identifier within the grid.
-     * @param radiusFromAxis  distance in centimeters from the rotation axis
-     *                        to the pad center.
+     * @param state shared grid state holding the pad values.
+     * @param index 0-based position of the pad ({@code padId - 1}).
      */
-    public Pad(int id, double radiusFromAxis) {
-        this(id, radiusFromAxis, GridConfig.defaultConfig());
-    }
-
-    /**
-     * Creates a pad using an explicit grid configuration.
-     *
-     * @param id             1-based pad identifier within the grid.
-     * @param radiusFromAxis distance in centimeters from the rotation axis
-     *                       to the pad center.
-     * @param gridConfig     grid layout reference used to derive row/column.
-     */
-    public Pad(int id, double radiusFromAxis, GridConfig gridConfig) {
-        this.id = id;
-        this.col = (id - 1) / gridConfig.getRows();
-        this.row = (id - 1) % gridConfig.getRows();
-        this.radiusFromAxis = radiusFromAxis;
-        this.displacementDistance = 0;
-        this.probability = 0;
-        this.initialProb = 0;
-
+    Pad(PadGridState state, int index) {
+        this.state = state;
+        this.index = index;
     }
 
 
     public int getId() {
-        return id;
+        return index + 1;
     }
     public int getRow() {
-        return row;
+        return state.rowOf(index);
     }
     public int getCol() {
-        return col;
+        return state.colOf(index);
     }
     public double getRadiusFromAxis() {
-        return radiusFromAxis;
+        return state.radiusFromAxis()[index];
     }
 
     public double getDisplacementDistance() {
-        return displacementDistance;
-    }
-
-    public double getInitialProb() { return initialProb; }
-    public double getProbability() { return probability; }
-
-    public void setDisplacementDistance(double displacementDistance) {
-        this.displacementDistance = displacementDistance;
+        return state.displacement()[index];
     }
 
-    public void setProbability(double probability) {
-        this.probability = probability;
-    }
-
-    /**
-     * Sets the initial probability and aligns the current probability with it.
-     */
-    public void setInitialProb(double initialProb) {
-        this.initialProb = initialProb;
-        this.probability = initialProb;
-    }
+    public double getInitialProb() { return state.initialProb()[index]; }
+    public double getProbability() { return state.probability()[index]; }
 
     public static void main(String[] args) {
         System.out.println("Pad ID | Row | Distance to Radius (cm)");
         System.out.println("-------------------------------------");
 
         GridConfig gridConfig = GridConfig.defaultConfig();
+        PadGridState state = new PadGridState(gridConfig);
+        Arrays.fill(state.radiusFromAxis(), 2.86);
         for (int id = 1; id <= gridConfig.getPadCount(); id++) {
-            Pad pad = new Pad(id,2.86, gridConfig);
-            int row = (id - 1) % gridConfig.getRows();
-            System.out.printf("  %2d   |  %d  |        %.2f cm\n", pad.getId(), row, pad.getRadiusFromAxis());
+            Pad pad = new Pad(state, id - 1);
+            System.out.printf("  %2d   |  %d  |        %.2f cm\n", pad.getId(), pad.getRow(), pad.getRadiusFromAxis());
         }
     }
 }
-
-
@@ -0,0 +1,181 @@
+package org.example.simulation;
+
+import org.example.config.GridConfig;
+
+import java.util.List;
+
+/**
+ * Structure-of-arrays storage for the Bayesian state of every pad in the grid.
+ * Each quantity lives in its own primitive array indexed by {@code padId - 1},
+ * so the prediction and correction phases can walk contiguous memory instead
+ * of chasing {@link Pad} objects. {@link Pad} instances are read-only views
+ * over one index of this state.
+ * <p>
+ * The arrays returned by the accessors are the live backing storage; callers
+ * in the hot path read and write them directly.
+ */
+public final class PadGridState {
+    private final GridConfig gridConfig;
+    private final int size;
+    private final double[] radiusFromAxis; //distancia en cm del centro de cada pad al eje de rotacion del antebrazo
+    private final double[] displacement;
+    private final double[] initialProb; //kflexion en la posición inicial (0 grados)
+    private final double[] probability;
+    private final double[] predictedProb;
+    private final double[] logProbability;
+    private final double[] logPredictedProb;
+    private boolean logDomain;
+
+    /**
+     * Creates an empty state for every pad in {@code gridConfig}.
+     *
+     * @param gridConfig grid layout used to derive pad count, row and column.
+     */
+    public PadGridState(GridConfig gridConfig) {
+        this.gridConfig = gridConfig;
+        this.size = gridConfig.getPadCount();
+        this.radiusFromAxis = new double[size];
+        this.displacement = new double[size];
+        this.initialProb = new double[size];
+        this.probability = new double[size];
+        this.predictedProb = new double[size];
+        this.logProbability = new double[size];
+        this.logPredictedProb = new double[size];
+    }
+
+    public GridConfig getGridConfig() {
+        return gridConfig;
+    }
+
+    /**
+     * Number of pads tracked by this state.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Row of the pad stored at {@code index} (0-based).
+     */
+    public int rowOf(int index) {
+        return index % gridConfig.getRows();
+    }
+
+    /**
+     * Column of the pad stored at {@code index} (0-based).
+     */
+    public int colOf(int index) {
+        return index / gridConfig.getRows();
+    }
+
+    /**
+     * Seeds both the initial and the current probability of every pad.
+     *
+     * @param initialProbs priors indexed by {@code padId - 1}; must contain at
+     *                     least {@link #size()} values.
+     */
+    public void setInitialProbs(double[] initialProbs) {
+        System.arraycopy(initialProbs, 0, initialProb, 0, size);
+        System.arraycopy(initialProbs, 0, probability, 0, size);
+        syncLogIfNeeded();
+    }
+
+    /**
+     * Seeds both the initial and the current probability of every pad from a
+     * boxed list, as returned by {@link org.example.auxiliar.Utilities#readProbabilities(String)}.
+     */
+    public void setInitialProbs(List<Double> initialProbs) {
+        for (int i = 0; i < size; i++) {
+            double p = initialProbs.get(i);
+            initialProb[i] = p;
+            probability[i] = p;
+        }
+        syncLogIfNeeded();
+    }
+
+    /**
+     * Restores the current probabilities to the stored priors without
+     * re-reading any file.
+     */
+    public void resetToInitialProbs() {
+        System.arraycopy(initialProb, 0, probability, 0, size);
+        syncLogIfNeeded();
+    }
+
+    /**
+     * Recomputes {@link #logProbability()} from {@link #probability()}. Called
+     * whenever the priors are (re)seeded while the log domain is enabled;
+     * callers that write {@link #probability()} directly must call it before
+     * a log-domain step.
+     */
+    public void syncLogProbability() {
+        LogSpace.log(probability, logProbability, size);
+    }
+
+    /**
+     * Enables or disables keeping {@link #logProbability()} in step with the
+     * priors when they are (re)seeded. Linear-domain steps never read the
+     * logarithms, so the {@code size} {@link Math#log} calls are skipped
+     * while it is disabled (the default). Enabling it syncs immediately.
+     */
+    public void setLogDomain(boolean logDomain) {
+        this.logDomain = logDomain;
+        if (logDomain) {
+            syncLogProbability();
+        }
+    }
+
+    public boolean isLogDomain() {
+        return logDomain;
+    }
+
+    private void syncLogIfNeeded() {
+        if (logDomain) {
+            syncLogProbability();
+        }
+    }
+
+    public double[] radiusFromAxis() {
+        return radiusFromAxis;
+    }
+
+    public double[] displacement() {
+        return displacement;
+    }
+
+    public double[] initialProb() {
+        return initialProb;
+    }
+
+    /**
+     * Current probability of each pad: the prior before a step and the
+     * corrected posterior after it.
+     */
+    public double[] probability() {
+        return probability;
+    }
+
+    /**
+     * Probability of each pad after the displacement prediction of the last
+     * step and before the observation correction.
+     */
+    public double[] predictedProb() {
+        return predictedProb;
+    }
+
+    /**
+     * Natural logarithm of {@link #probability()}, maintained by the
+     * log-domain filter, which keeps it exact even when the linear value
+     * underflows to zero.
+     */
+    public double[] logProbability() {
+        return logProbability;
+    }
+
+    /**
+     * Natural logarithm of {@link #predictedProb()} in the log-domain filter.
+     */
+    public double[] logPredictedProb() {
+        return logPredictedProb;
+    }
+}
@@ -0,0 +1,187 @@
+package org.example.simulation;
+
+import java.util.Arrays;
+
+/**
+ * Picks the pads used for stimulation from a {@link PadGridState}: among the
+ * pads whose probability reaches {@code probMin}, the {@code topK} closest to
+ * their probability-weighted centroid.
+ * <p>
+ * One pass over the primitive probability array filters the pads and
+ * accumulates the centroid; a second pass keeps the nearest candidates in a
+ * bounded max-heap of size {@code topK}, which is finally sorted in place.
+ * The cost is {@code O(n log k)} with no allocation after construction.
+ * Results are ordered by distance and ties keep pad id order, exactly like the
+ * stable sort previously used by {@link Simulation#selectPads(int)}.
+ * <p>
+ * Instances hold the result of the last call and are not thread-safe; use one
+ * per thread.
+ */
+public final class PadSelector {
+    private final int[] ids;
+    private final double[] distances;
+    private int count;
+    private double centroidX;
+    private double centroidY;
+
+    /**
+     * @param topK maximum number of pads returned by each selection.
+     */
+    public PadSelector(int topK) {
+        if (topK < 0) {
+            throw new IllegalArgumentException("topK must not be negative: " + topK);
+        }
+        this.ids = new int[topK];
+        this.distances = new double[topK];
+    }
+
+    /**
+     * Runs the selection over the current probabilities of {@code state}.
+     *
+     * @param state   pad probabilities and grid layout.
+     * @param probMin minimum probability for a pad to be considered.
+     * @return number of pads selected, at most {@link #topK()}.
+     */
+    public int select(PadGridState state, double probMin) {
+        double[] probs = state.probability();
+        int n = state.size();
+
+        //filtro y baricentro en una sola pasada
+        double sumProbs = 0.0;
+        double sumX = 0.0;
+        double sumY = 0.0;
+        for (int i = 0; i < n; i++) {
+            double prob = probs[i];
+            if (prob >= probMin) {
+                sumProbs += prob;
+                sumX += state.colOf(i) * prob;
+                sumY += state.rowOf(i) * prob;
+            }
+        }
+        centroidX = (sumProbs > 0) ? sumX / sumProbs : 0.0;
+        centroidY = (sumProbs > 0) ? sumY / sumProbs : 0.0;
+
+        int k = ids.length;
+        count = 0;
+        if (k == 0) {
+            return 0;
+        }
+        for (int i = 0; i < n; i++) {
+            if (probs[i] < probMin) {
+                continue;
+            }
+            double dist = Math.hypot(state.colOf(i) - centroidX, state.rowOf(i) - centroidY);
+            if (count < k) {
+                ids[count] = i + 1;
+                distances[count] = dist;
+                siftUp(count++);
+            } else if (dist < distances[0]) {
+                // los pads llegan en orden de id, un empate nunca desplaza al peor actual
+                ids[0] = i + 1;
+                distances[0] = dist;
+                siftDown(0, count);
+            }
+        }
+
+        // heapsort: el peor va al final en cada iteracion
+        for (int end = count - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+        return count;
+    }
+
+    /**
+     * Capacity of the selection.
+     */
+    public int topK() {
+        return ids.length;
+    }
+
+    /**
+     * Number of pads chosen by the last {@link #select} call.
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Live buffer with the 1-based ids of the last selection, closest first.
+     * Only the first {@link #count()} entries are valid.
+     */
+    public int[] ids() {
+        return ids;
+    }
+
+    /**
+     * Copy of the selected ids, sized to {@link #count()}.
+     */
+    public int[] selectedIds() {
+        return Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Live buffer with the distance of each selected pad to the centroid.
+     */
+    public double[] distances() {
+        return distances;
+    }
+
+    /**
+     * Column coordinate of the probability-weighted centroid of the last
+     * selection, in pad units; 0 when no pad passed the filter.
+     */
+    public double centroidX() {
+        return centroidX;
+    }
+
+    /**
+     * Row coordinate of the probability-weighted centroid of the last
+     * selection, in pad units; 0 when no pad passed the filter.
+     */
+    public double centroidY() {
+        return centroidY;
+    }
+
+    // orden del heap: mayor distancia primero y, a igual distancia, mayor id
+    private boolean worse(int a, int b) {
+        return distances[a] > distances[b] || (distances[a] == distances[b] && ids[a] > ids[b]);
+    }
+
+    private void siftUp(int pos) {
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (!worse(pos, parent)) {
+                return;
+            }
+            swap(pos, parent);
+            pos = parent;
+        }
+    }
+
+    private void siftDown(int pos, int size) {
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && worse(child + 1, child)) {
+                child++;
+            }
+            if (!worse(child, pos)) {
+                return;
+            }
+            swap(pos, child);
+            pos = child;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+        double d = distances[a];
+        distances[a] = distances[b];
+        distances[b] = d;
+    }
+}
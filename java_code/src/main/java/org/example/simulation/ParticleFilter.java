@@ -0,0 +1,513 @@
+package org.example.simulation;
+
+import org.example.config.GridConfig;
+import org.example.model.SubjectModel;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Particle-filter {@link FilterEngine}: the stimulated location is a cloud of
+ * weighted particles on the forearm surface instead of one probability per pad
+ * center, so it can be tracked between pads and on dense electrode arrays at a
+ * cost linear in the number of particles.
+ * <p>
+ * Particles live in the same centimeter frame as {@link Simulation#getRegion}:
+ * {@code x = col * 1.5} around the forearm and {@code y = row * 1.5} along it,
+ * clamped to the area covered by the pads. Each step:
+ * <ol>
+ *     <li>moves every particle around the forearm by the arc length
+ *     {@code -r(x) * theta} of {@link DisplacementModel}, with the radius
+ *     interpolated between the column radii of {@link Simulation#calculateRadius},
+ *     plus Gaussian noise of standard deviation {@code base + relative * |s|} on
+ *     both axes. A movement that would carry a particle off the array is not
+ *     applied, as {@link Simulation#getRegion} keeps the pad when no pad is
+ *     near its displaced position;</li>
+ *     <li>multiplies every weight by the {@link ObservationModel} likelihood of
+ *     the observed angle, interpolated bilinearly between the four surrounding
+ *     pad centers;</li>
+ *     <li>projects the weights onto the nearest pads to fill the per-pad values
+ *     of {@link StepBuffers} and selects the top pads with a
+ *     {@link PadSelector}, like the grid filter;</li>
+ *     <li>resamples systematically when the effective sample size falls below
+ *     a fraction of the particle count.</li>
+ * </ol>
+ * Propagation and weighting run over fixed chunks of particles, in parallel
+ * with a parallel stream when there is more than one chunk. Every chunk owns a
+ * {@link SplittableRandom} split from the seed, so results depend on the seed
+ * but not on the number of threads, and {@link #resetToInitialProbs()}
+ * restarts the same random sequence. The sequential path performs no heap
+ * allocation per step; the parallel one allocates only the stream pipeline.
+ */
+public final class ParticleFilter implements FilterEngine {
+    /** Particles processed by one task of the parallel step. */
+    public static final int CHUNK_SIZE = 8192;
+    /** Default noise added to every movement, in centimeters. */
+    public static final double DEFAULT_BASE_NOISE = 0.05;
+    /** Default noise per centimeter of movement. */
+    public static final double DEFAULT_RELATIVE_NOISE = 0.1;
+    /** Default effective sample size, as a fraction of the particles, that triggers resampling. */
+    public static final double DEFAULT_RESAMPLE_THRESHOLD = 0.5;
+
+    private static final double SPACING = TransitionKernel.PAD_SPACING;
+    private static final double INV_SPACING = 1.0 / SPACING;
+    // momentos ponderados acumulados por bloque
+    private static final int SUM = 0;
+    private static final int SUM_SQUARES = 1;
+    private static final int SUM_X = 2;
+    private static final int SUM_Y = 3;
+    private static final int SUM_R2 = 4;
+    private static final int MOMENTS = 5;
+
+    private final GridConfig gridConfig;
+    private final int rows;
+    private final int cols;
+    private final double probMin;
+    private final long seed;
+    private final PadGridState state;
+    private final ObservationModel obsModel = new ObservationModel();
+    private final double[] columnRadius;
+    private final double[] likelihood;
+    private final double minX, maxX, minY, maxY;
+
+    private final int particleCount;
+    private final int chunkCount;
+    private double[] x;
+    private double[] y;
+    private double[] weight;
+    private double[] nextX;
+    private double[] nextY;
+    private final double[] nextWeight;
+    private final SplittableRandom[] chunkRandom;
+    private SplittableRandom random;
+    private final double[][] chunkPredicted;
+    private final double[][] chunkCorrected;
+    private final double[][] chunkMoments;
+    private final double[] moments = new double[MOMENTS];
+
+    private double baseNoise = DEFAULT_BASE_NOISE;
+    private double relativeNoise = DEFAULT_RELATIVE_NOISE;
+    private double resampleThreshold = DEFAULT_RESAMPLE_THRESHOLD;
+    private boolean parallel = true;
+    // giro del paso en curso, leído por las tareas de cada bloque
+    private double theta;
+
+    private double meanX;
+    private double meanY;
+    private double spread;
+    private double effectiveSampleSize;
+    private long resamplings;
+
+    /**
+     * Builds the filter from priors and a Ks table that are already in memory.
+     *
+     * @param gridConfig    grid layout of the pads.
+     * @param probMin       minimum probability for a pad to be considered
+     *                      when selecting the top candidates.
+     * @param initialProbs  priors indexed by {@code padId - 1}.
+     * @param kTable        Ks table, one row per pad.
+     * @param particleCount number of particles.
+     * @param seed          seed of the random streams.
+     */
+    public ParticleFilter(GridConfig gridConfig, double probMin, double[] initialProbs, double[][] kTable,
+                          int particleCount, long seed) {
+        this(gridConfig, probMin, particleCount, seed);
+        state.setInitialProbs(initialProbs);
+        obsModel.loadkTable(kTable);
+        checkTable();
+        resetToInitialProbs();
+    }
+
+    /**
+     * Builds the filter from a subject model shared with other engines.
+     *
+     * @param gridConfig    grid layout of the pads.
+     * @param probMin       minimum probability for a pad to be considered
+     *                      when selecting the top candidates.
+     * @param model         subject priors and Ks table.
+     * @param particleCount number of particles.
+     * @param seed          seed of the random streams.
+     */
+    public ParticleFilter(GridConfig gridConfig, double probMin, SubjectModel model, int particleCount, long seed) {
+        this(gridConfig, probMin, particleCount, seed);
+        model.copyInitialProbs(state.initialProb());
+        obsModel.loadkTable(model);
+        checkTable();
+        resetToInitialProbs();
+    }
+
+    private ParticleFilter(GridConfig gridConfig, double probMin, int particleCount, long seed) {
+        if (particleCount <= 0) {
+            throw new IllegalArgumentException("Particle count must be positive: " + particleCount);
+        }
+        this.gridConfig = gridConfig;
+        this.rows = gridConfig.getRows();
+        this.cols = gridConfig.getCols();
+        this.probMin = probMin;
+        this.seed = seed;
+        this.state = new PadGridState(gridConfig);
+        this.columnRadius = new double[cols];
+        for (int c = 0; c < cols; c++) {
+            columnRadius[c] = Simulation.columnRadius(c);
+        }
+        for (int i = 0; i < state.size(); i++) {
+            state.radiusFromAxis()[i] = columnRadius[state.colOf(i)];
+        }
+        this.likelihood = new double[state.size()];
+        this.minX = -SPACING / 2;
+        this.maxX = (cols - 1) * SPACING + SPACING / 2;
+        this.minY = -SPACING / 2;
+        this.maxY = (rows - 1) * SPACING + SPACING / 2;
+
+        this.particleCount = particleCount;
+        this.chunkCount = (particleCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        this.x = new double[particleCount];
+        this.y = new double[particleCount];
+        this.weight = new double[particleCount];
+        this.nextX = new double[particleCount];
+        this.nextY = new double[particleCount];
+        this.nextWeight = new double[particleCount];
+        this.chunkRandom = new SplittableRandom[chunkCount];
+        this.chunkPredicted = new double[chunkCount][state.size()];
+        this.chunkCorrected = new double[chunkCount][state.size()];
+        this.chunkMoments = new double[chunkCount][MOMENTS];
+    }
+
+    private void checkTable() {
+        if (obsModel.getPadCount() != state.size()) {
+            throw new IllegalArgumentException("Ks table has " + obsModel.getPadCount()
+                    + " pads, grid has " + state.size());
+        }
+    }
+
+    /**
+     * Sets the movement noise: standard deviation, in centimeters, of
+     * {@code base + relative * |s|} for a movement of arc length {@code s}.
+     *
+     * @throws IllegalArgumentException if either value is negative or not finite.
+     */
+    public void setMotionNoise(double base, double relative) {
+        if (!(base >= 0) || !(relative >= 0) || Double.isInfinite(base) || Double.isInfinite(relative)) {
+            throw new IllegalArgumentException("Motion noise must be non-negative: " + base + ", " + relative);
+        }
+        this.baseNoise = base;
+        this.relativeNoise = relative;
+    }
+
+    /**
+     * Sets the effective sample size, as a fraction of the particle count,
+     * below which the particles are resampled. {@code 1} resamples every step,
+     * {@code 0} never.
+     *
+     * @throws IllegalArgumentException if {@code fraction} is outside [0, 1].
+     */
+    public void setResampleThreshold(double fraction) {
+        if (!(fraction >= 0 && fraction <= 1)) {
+            throw new IllegalArgumentException("Resample threshold must be in [0, 1]: " + fraction);
+        }
+        this.resampleThreshold = fraction;
+    }
+
+    /**
+     * Enables or disables the parallel step. Results are the same either way.
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Draws the particles again from the subject priors: each pad receives a
+     * share of particles proportional to its prior (systematic sampling),
+     * spread uniformly over the pad cell, with equal weights. The random
+     * streams restart from the seed, so the following steps repeat exactly.
+     */
+    @Override
+    public void resetToInitialProbs() {
+        random = new SplittableRandom(seed);
+        for (int c = 0; c < chunkCount; c++) {
+            chunkRandom[c] = random.split();
+        }
+        double[] prior = state.initialProb();
+        double total = 0;
+        for (double p : prior) {
+            total += p;
+        }
+        int n = state.size();
+        double stride = total / particleCount;
+        double u = random.nextDouble() * stride;
+        double cumulative = 0;
+        int pad = -1;
+        for (int k = 0; k < particleCount; k++, u += stride) {
+            while (pad < n - 1 && (pad < 0 || cumulative <= u)) {
+                cumulative += prior[++pad];
+            }
+            x[k] = state.colOf(pad) * SPACING + (random.nextDouble() - 0.5) * SPACING;
+            y[k] = state.rowOf(pad) * SPACING + (random.nextDouble() - 0.5) * SPACING;
+        }
+        Arrays.fill(weight, 1.0 / particleCount);
+        System.arraycopy(prior, 0, state.probability(), 0, n);
+        updateEstimate();
+        resamplings = 0;
+    }
+
+    @Override
+    public StepBuffers newStepBuffers(int topK) {
+        return new StepBuffers(state.size(), topK);
+    }
+
+    @Override
+    public void runStepInto(double movementDegrees, double observedDegrees, StepBuffers out) {
+        int n = state.size();
+        if (out.padCount() != n) {
+            throw new IllegalArgumentException("StepBuffers sized for " + out.padCount() + " pads, grid has " + n);
+        }
+        theta = Math.toRadians(movementDegrees);
+        obsModel.getLikelihoodColumn(observedDegrees, likelihood);
+
+        if (parallel && chunkCount > 1) {
+            IntStream.range(0, chunkCount).parallel().forEach(this::stepChunk);
+        } else {
+            for (int c = 0; c < chunkCount; c++) {
+                stepChunk(c);
+            }
+        }
+
+        // reducción secuencial, mismo orden en todas las ejecuciones
+        double[] predicted = out.predictedProb();
+        double[] corrected = state.probability();
+        Arrays.fill(predicted, 0);
+        Arrays.fill(corrected, 0);
+        double[] total = moments;
+        Arrays.fill(total, 0);
+        for (int c = 0; c < chunkCount; c++) {
+            double[] chunkPred = chunkPredicted[c];
+            double[] chunkCorr = chunkCorrected[c];
+            for (int i = 0; i < n; i++) {
+                predicted[i] += chunkPred[i];
+                corrected[i] += chunkCorr[i];
+            }
+            double[] m = chunkMoments[c];
+            for (int j = 0; j < MOMENTS; j++) {
+                total[j] += m[j];
+            }
+        }
+
+        double sum = total[SUM];
+        if (sum > 0) {
+            // p(x|z) proporcional a p(z|x) p(x); los pesos nuevos pasan a ser los actuales
+            double scale = 1.0 / sum;
+            for (int k = 0; k < particleCount; k++) {
+                weight[k] = nextWeight[k] * scale;
+            }
+            for (int i = 0; i < n; i++) {
+                corrected[i] *= scale;
+            }
+            effectiveSampleSize = sum * sum / total[SUM_SQUARES];
+            meanX = total[SUM_X] * scale;
+            meanY = total[SUM_Y] * scale;
+            spread = Math.sqrt(Math.max(0, total[SUM_R2] * scale - meanX * meanX - meanY * meanY));
+        } else {
+            // la observación descarta todas las partículas: se mantiene la predicción
+            System.arraycopy(predicted, 0, corrected, 0, n);
+            updateEstimate();
+        }
+
+        double[] displacement = state.displacement();
+        double[] radius = state.radiusFromAxis();
+        for (int i = 0; i < n; i++) {
+            displacement[i] = -radius[i] * theta;
+        }
+        System.arraycopy(state.initialProb(), 0, out.initialProb(), 0, n);
+        System.arraycopy(displacement, 0, out.displacement(), 0, n);
+        System.arraycopy(corrected, 0, out.correctedProb(), 0, n);
+        out.selector().select(state, probMin);
+        out.setAngleDiff(movementDegrees);
+
+        if (effectiveSampleSize < resampleThreshold * particleCount) {
+            resample();
+        }
+    }
+
+    /**
+     * Moves and weights the particles of chunk {@code c}, accumulating the
+     * predicted and corrected mass of each pad and the weighted moments of the
+     * positions in the chunk's own buffers.
+     */
+    private void stepChunk(int c) {
+        int from = c * CHUNK_SIZE;
+        int to = Math.min(from + CHUNK_SIZE, particleCount);
+        SplittableRandom rnd = chunkRandom[c];
+        double[] pred = chunkPredicted[c];
+        double[] corr = chunkCorrected[c];
+        Arrays.fill(pred, 0);
+        Arrays.fill(corr, 0);
+        double[] l = likelihood;
+        double[] r = columnRadius;
+        double sum = 0, sumSquares = 0, sumX = 0, sumY = 0, sumR2 = 0;
+        for (int k = from; k < to; k++) {
+            double px = x[k];
+            double py = y[k];
+            // radio interpolado entre los centros de columna
+            double u = Math.min(Math.max(px * INV_SPACING, 0), cols - 1);
+            int c0 = (int) u;
+            int c1 = Math.min(c0 + 1, cols - 1);
+            double radius = r[c0] + (u - c0) * (r[c1] - r[c0]);
+            double s = -radius * theta; //si theta > 0, s < 0, como DisplacementModel
+            double moved = px + s;
+            if (moved >= minX && moved <= maxX) {
+                // fuera de la matriz no se mueve, como getRegion devuelve el propio pad
+                px = moved;
+            }
+            double sigma = baseNoise + relativeNoise * Math.abs(s);
+            if (sigma > 0) {
+                px = Math.min(Math.max(px + sigma * rnd.nextGaussian(), minX), maxX);
+                py = Math.min(Math.max(py + sigma * rnd.nextGaussian(), minY), maxY);
+            }
+            x[k] = px;
+            y[k] = py;
+
+            // verosimilitud bilineal entre los cuatro centros de pad vecinos
+            u = Math.min(Math.max(px * INV_SPACING, 0), cols - 1);
+            double v = Math.min(Math.max(py * INV_SPACING, 0), rows - 1);
+            c0 = (int) u;
+            int r0 = (int) v;
+            c1 = Math.min(c0 + 1, cols - 1);
+            int r1 = Math.min(r0 + 1, rows - 1);
+            double fu = u - c0;
+            double fv = v - r0;
+            double l00 = l[c0 * rows + r0], l10 = l[c1 * rows + r0];
+            double l01 = l[c0 * rows + r1], l11 = l[c1 * rows + r1];
+            double top = l00 + fu * (l10 - l00);
+            double bottom = l01 + fu * (l11 - l01);
+            double likelihoodAt = top + fv * (bottom - top);
+
+            // pad cuya celda contiene la partícula
+            int pad = (fu < 0.5 ? c0 : c1) * rows + (fv < 0.5 ? r0 : r1);
+            double w = weight[k];
+            pred[pad] += w;
+            double posterior = w * likelihoodAt;
+            nextWeight[k] = posterior;
+            corr[pad] += posterior;
+            sum += posterior;
+            sumSquares += posterior * posterior;
+            sumX += posterior * px;
+            sumY += posterior * py;
+            sumR2 += posterior * (px * px + py * py);
+        }
+        double[] m = chunkMoments[c];
+        m[SUM] = sum;
+        m[SUM_SQUARES] = sumSquares;
+        m[SUM_X] = sumX;
+        m[SUM_Y] = sumY;
+        m[SUM_R2] = sumR2;
+    }
+
+    /**
+     * Systematic resampling: one uniform offset and {@code N} equally spaced
+     * pointers over the cumulative weights, in {@code O(N)}.
+     */
+    private void resample() {
+        double stride = 1.0 / particleCount;
+        double u = random.nextDouble() * stride;
+        double cumulative = weight[0];
+        int j = 0;
+        for (int k = 0; k < particleCount; k++, u += stride) {
+            while (cumulative < u && j < particleCount - 1) {
+                cumulative += weight[++j];
+            }
+            nextX[k] = x[j];
+            nextY[k] = y[j];
+        }
+        double[] swap = x;
+        x = nextX;
+        nextX = swap;
+        swap = y;
+        y = nextY;
+        nextY = swap;
+        Arrays.fill(weight, stride);
+        effectiveSampleSize = particleCount;
+        resamplings++;
+    }
+
+    /**
+     * Effective sample size, mean and spread from the current weights, for
+     * the steps where the chunk moments cannot be used.
+     */
+    private void updateEstimate() {
+        double sx = 0;
+        double sy = 0;
+        for (int k = 0; k < particleCount; k++) {
+            sx += weight[k] * x[k];
+            sy += weight[k] * y[k];
+        }
+        double variance = 0;
+        for (int k = 0; k < particleCount; k++) {
+            double dx = x[k] - sx;
+            double dy = y[k] - sy;
+            variance += weight[k] * (dx * dx + dy * dy);
+        }
+        meanX = sx;
+        meanY = sy;
+        spread = Math.sqrt(variance);
+        double squares = 0;
+        for (int k = 0; k < particleCount; k++) {
+            squares += weight[k] * weight[k];
+        }
+        effectiveSampleSize = 1.0 / squares;
+    }
+
+    /**
+     * Weighted mean of the particles around the forearm, in centimeters from
+     * the first column center; divide by {@value TransitionKernel#PAD_SPACING}
+     * for pad units.
+     */
+    public double getMeanX() {
+        return meanX;
+    }
+
+    /**
+     * Weighted mean of the particles along the forearm, in centimeters from
+     * the first row center.
+     */
+    public double getMeanY() {
+        return meanY;
+    }
+
+    /**
+     * Root-mean-square distance of the particles to their mean, in centimeters.
+     */
+    public double getSpread() {
+        return spread;
+    }
+
+    /**
+     * Effective sample size {@code 1 / sum(w^2)} after the last correction,
+     * before any resampling.
+     */
+    public double getEffectiveSampleSize() {
+        return effectiveSampleSize;
+    }
+
+    /**
+     * Number of resamplings since the last {@link #resetToInitialProbs()}.
+     */
+    public long getResamplings() {
+        return resamplings;
+    }
+
+    public int getParticleCount() {
+        return particleCount;
+    }
+
+    public GridConfig getGridConfig() {
+        return gridConfig;
+    }
+
+    /**
+     * Pad-level projection of the particles after the last step.
+     */
+    public PadGridState getState() {
+        return state;
+    }
+}
@@ -1,12 +1,13 @@
 package org.example.simulation;
 
-import org.example.auxiliar.Utilities;
 import org.example.config.GridConfig;
 import org.example.io.ResultWriter;
+import org.example.io.SubjectModelRepository;
 import org.example.model.BayesStepResult;
+import org.example.model.SubjectModel;
 
+import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Runs a Bayesian update over a fixed grid of pads combining displacement and
@@ -14,14 +15,21 @@ import java.util.stream.Collectors;
  * the per-step results required to persist the CSV output without handling IO
  * directly.
  */
-public class Simulation {
+public class Simulation implements FilterEngine {
+    /** Probability given to pads left without mass by the prediction, as in the original implementation. */
+    public static final double DEFAULT_PROBABILITY_FLOOR = 0.0001;
+
+    private final PadGridState state;
     private final List<Pad> pads;
     private final GridConfig gridConfig;
     private final DisplacementModel disModel;
     private final ObservationModel obsModel;
     private final double movementThreshold;
     private final double probMin;
-
+    private final TransitionKernelCache kernelCache;
+    private FilterMode filterMode = FilterMode.LINEAR;
+    private double probabilityFloor = DEFAULT_PROBABILITY_FLOOR;
+    private double logProbabilityFloor = Math.log(DEFAULT_PROBABILITY_FLOOR);
 
     /**
      * Builds the simulation using the default grid and loads subject-specific
@@ -34,22 +42,79 @@ public class Simulation {
      * @param subject           subject identifier used to load CSV inputs.
      */
     public Simulation(double movementThreshold, double probMin, String subject) {
-        this.gridConfig = GridConfig.defaultConfig();
+        this(GridConfig.defaultConfig(), movementThreshold, probMin, subject);
+    }
+
+    /**
+     * Builds the simulation over an explicit grid layout and loads
+     * subject-specific priors and observation tables.
+     *
+     * @param gridConfig        grid layout of the pads.
+     * @param movementThreshold threshold (cm) to determine which pads belong
+     *                          to the displacement region of the moved pad.
+     * @param probMin           minimum probability for a pad to be considered
+     *                          when selecting the top candidates.
+     * @param subject           subject identifier used to load CSV inputs.
+     */
+    public Simulation(GridConfig gridConfig, double movementThreshold, double probMin, String subject) {
+        this(gridConfig, movementThreshold, probMin);
+        loadInitialProbs(subject);
+        obsModel.loadkTable(subject);
+    }
+
+    /**
+     * Builds the simulation from priors and a Ks table that are already in
+     * memory, without reading any CSV.
+     *
+     * @param gridConfig        grid layout of the pads.
+     * @param movementThreshold threshold (cm) to determine which pads belong
+     *                          to the displacement region of the moved pad.
+     * @param probMin           minimum probability for a pad to be considered
+     *                          when selecting the top candidates.
+     * @param initialProbs      prior per pad, indexed by {@code padId - 1}.
+     * @param kTable            Ks table with one row per pad and one column per
+     *                          angle sample.
+     */
+    public Simulation(GridConfig gridConfig, double movementThreshold, double probMin,
+                      double[] initialProbs, double[][] kTable) {
+        this(gridConfig, movementThreshold, probMin);
+        state.setInitialProbs(initialProbs);
+        obsModel.loadkTable(kTable);
+    }
+
+    /**
+     * Builds the simulation from a subject model shared with other
+     * simulations; the Ks table is referenced, not copied.
+     *
+     * @param gridConfig        grid layout of the pads.
+     * @param movementThreshold threshold (cm) to determine which pads belong
+     *                          to the displacement region of the moved pad.
+     * @param probMin           minimum probability for a pad to be considered
+     *                          when selecting the top candidates.
+     * @param model             priors and Ks table of the subject.
+     */
+    public Simulation(GridConfig gridConfig, double movementThreshold, double probMin, SubjectModel model) {
+        this(gridConfig, movementThreshold, probMin);
+        model.copyInitialProbs(state.initialProb());
+        state.resetToInitialProbs();
+        obsModel.loadkTable(model);
+    }
+
+    private Simulation(GridConfig gridConfig, double movementThreshold, double probMin) {
+        this.gridConfig = gridConfig;
         this.disModel = new DisplacementModel();
         this.obsModel = new ObservationModel();
         this.movementThreshold = movementThreshold;
         this.probMin = probMin;
+        this.kernelCache = TransitionKernelCache.shared(gridConfig, movementThreshold);
 
-        this.pads = new ArrayList<>();
-        for (int id = 1; id <= gridConfig.getPadCount(); id++) {
-            int padCol = (id - 1) / gridConfig.getRows();
-            double radius = calculateRadius(padCol);
-            pads.add(new Pad(id, radius, gridConfig));
-
+        this.state = new PadGridState(gridConfig);
+        List<Pad> views = new ArrayList<>(state.size());
+        for (int i = 0; i < state.size(); i++) {
+            state.radiusFromAxis()[i] = calculateRadius(state.colOf(i));
+            views.add(new Pad(state, i));
         }
-        loadInitialProbs(subject);
-        obsModel.loadkTable(subject);
-
+        this.pads = Collections.unmodifiableList(views);
     }
 
     /**
@@ -57,6 +122,13 @@ public class Simulation {
      * forearm radius and offset detailed in the original implementation.
      */
     public double calculateRadius(int col) {
+        return columnRadius(col);
+    }
+
+    /**
+     * Same as {@link #calculateRadius(int)}, shared with {@link ParticleFilter}.
+     */
+    static double columnRadius(int col) {
         double forearmCircle = 18.0;
         double radiusCenter = forearmCircle / (2 * Math.PI); //2.86 cm
 
@@ -72,15 +144,70 @@ public class Simulation {
 
     /**
      * Loads the initial probabilities for every pad from the subject-specific
-     * CSV and seeds both the initial and current probabilities.
+     * CSV and seeds both the initial and current probabilities. The CSV is
+     * parsed once per subject by the shared {@link SubjectModelRepository}.
      */
     public void loadInitialProbs(String subject) {
-        String fileName = "initialK_values_" + subject + ".csv";
-        List<Double> initialProbs = Utilities.readProbabilities(fileName);
-        for (int i = 0; i < pads.size(); i++) {
-            pads.get(i).setInitialProb(initialProbs.get(i));
-            pads.get(i).setProbability(initialProbs.get(i));
+        SubjectModel model = SubjectModelRepository.shared().get(subject);
+        model.copyInitialProbs(state.initialProb());
+        state.resetToInitialProbs();
+    }
+
+    /**
+     * Restores the priors loaded by the last {@link #loadInitialProbs(String)}
+     * call without reading the CSV again.
+     */
+    @Override
+    public void resetToInitialProbs() {
+        state.resetToInitialProbs();
+    }
+
+    /**
+     * Selects the numeric domain of the following steps. Switching to
+     * {@link FilterMode#LOG} seeds the log-probabilities from the current
+     * probabilities, so a running session can change mode between steps.
+     */
+    public void setFilterMode(FilterMode filterMode) {
+        this.filterMode = Objects.requireNonNull(filterMode, "filterMode");
+        state.setLogDomain(filterMode == FilterMode.LOG);
+    }
+
+    public FilterMode getFilterMode() {
+        return filterMode;
+    }
+
+    /**
+     * Sets the probability given to pads that receive no mass in the
+     * prediction step, before normalization. {@code 0} disables the floor.
+     *
+     * @throws IllegalArgumentException if {@code floor} is negative, NaN or
+     *                                  not below 1.
+     */
+    public void setProbabilityFloor(double floor) {
+        if (!(floor >= 0 && floor < 1)) {
+            throw new IllegalArgumentException("Probability floor must be in [0, 1): " + floor);
         }
+        this.probabilityFloor = floor;
+        this.logProbabilityFloor = Math.log(floor);
+    }
+
+    public double getProbabilityFloor() {
+        return probabilityFloor;
+    }
+
+    /**
+     * Primitive per-pad state updated by each step. {@link #getPads()} exposes
+     * read-only views over the same storage.
+     */
+    public PadGridState getState() {
+        return state;
+    }
+
+    /**
+     * Read-only pad views in id order.
+     */
+    public List<Pad> getPads() {
+        return pads;
     }
 
 
@@ -125,37 +252,33 @@ public class Simulation {
 
     /**
      * Applies the displacement model to propagate prior probabilities across
-     * the grid after a movement angle.
+     * the grid after a movement angle. The redistribution over the regions of
+     * {@link #getRegion} is precomputed as a sparse {@link TransitionKernel}
+     * per angle, so each call is a single sparse matrix-vector product.
+     * In {@link FilterMode#LOG} the product and normalization run on
+     * log-probabilities.
      *
      * @param angleDiff angular displacement in degrees used to update pad
      *                  displacement distances and redistribute probabilities.
      */
     public void updateProbsAfterMovement(double angleDiff) {
-        int N = pads.size();
+        if (filterMode == FilterMode.LOG) {
+            updateLogProbsAfterMovement(angleDiff);
+            return;
+        }
+        int N = state.size();
 
         //cojo prior probs
-        double[] prior = new double[N];
-        for (int i = 0; i < N; i++) {
-            prior[i] = pads.get(i).getProbability();
-        }
+        double[] prior = state.probability();
 
-        disModel.upadteDisplacementDistance(angleDiff, pads);
-        double[] pred = new double[N];
-        Arrays.fill(pred, 0.0);
+        disModel.upadteDisplacementDistance(angleDiff, state);
 
-        for (int i = 0; i < N; i++) {
-            Pad src = pads.get(i);
-            List<Pad> region = getRegion(src, angleDiff, movementThreshold);
-            double share = prior[i] / region.size(); //p⁺(xᵢ) / |Rᵢ|
-            //prior[i] + prior[j]) / n
-            for (Pad padInRegion : region) {
-                int idx = padInRegion.getId() - 1;   //indice 0-based
-                pred[idx] += share;
-            }
-        }
+        //p⁻(x_j) = sum_i p⁺(x_i) / |R_i| para los i cuya region contiene a j
+        double[] pred = state.predictedProb();
+        kernelCache.kernelFor(angleDiff, state.displacement()).multiply(prior, pred);
 
-        double ep = 0.0001;
-        for (int i = 0; i < N; i++) { //para los pads que estan fuera de la region la prob va a ser 0.0001
+        double ep = probabilityFloor;
+        for (int i = 0; i < N; i++) { //para los pads que estan fuera de la region la prob va a ser el suelo (0.0001 por defecto)
             if (pred[i] == 0.0) {
                 pred[i] = ep;
             }
@@ -166,13 +289,40 @@ public class Simulation {
         for (double v : pred) sum += v;
         if (sum > 0) {
             for (int i = 0; i < N; i++) {
-                pads.get(i).setProbability(pred[i] / sum);
+                pred[i] = pred[i] / sum;
             }
         } else {
             // fallback uniforme
-            double u = 1.0 / N;
-            for (Pad p : pads) p.setProbability(u);
+            Arrays.fill(pred, 1.0 / N);
+        }
+        System.arraycopy(pred, 0, prior, 0, N);
+    }
+
+    private void updateLogProbsAfterMovement(double angleDiff) {
+        int N = state.size();
+        double[] logPrior = state.logProbability();
+        double[] logPred = state.logPredictedProb();
+        double[] pred = state.predictedProb();
+
+        disModel.upadteDisplacementDistance(angleDiff, state);
+        kernelCache.kernelFor(angleDiff, state.displacement()).multiplyLog(logPrior, logPred);
+
+        for (int i = 0; i < N; i++) {
+            if (logPred[i] == Double.NEGATIVE_INFINITY) {
+                logPred[i] = logProbabilityFloor;
+            }
+        }
+
+        double logSum = LogSpace.logSumExp(logPred, N);
+        if (logSum == Double.NEGATIVE_INFINITY) {
+            // fallback uniforme
+            Arrays.fill(logPred, -Math.log(N));
+            Arrays.fill(pred, 1.0 / N);
+        } else {
+            LogSpace.normalize(logPred, logSum, pred, N);
         }
+        System.arraycopy(logPred, 0, logPrior, 0, N);
+        System.arraycopy(pred, 0, state.probability(), 0, N);
     }
 
     //Filtra los pads que superen un umbral mínimo de probabilidad
@@ -182,36 +332,83 @@ public class Simulation {
      * closest to the probability-weighted centroid.
      */
     public List<Pad> selectPads(int topN) {
+        PadSelector selector = new PadSelector(topN);
+        int count = selectPads(selector);
+        List<Pad> selected = new ArrayList<>(count);
+        for (int j = 0; j < count; j++) {
+            selected.add(pads.get(selector.ids()[j] - 1));
+        }
+        return selected;
+    }
+
+    /**
+     * Allocation-free variant of {@link #selectPads(int)}: runs the selection
+     * into {@code selector}, which then exposes the chosen ids and the
+     * centroid.
+     *
+     * @return number of pads selected.
+     */
+    public int selectPads(PadSelector selector) {
+        return selector.select(state, probMin);
+    }
 
-        List<Pad> filteredPads = pads.stream() //inicia flujo
-                .filter(p -> p.getProbability() >= probMin) //aplica filtro que solo conserva la lista original de pads
-                .collect(Collectors.toList()); //recoge el resultado en una nueva lista
+    /**
+     * Executes a full Bayesian step and writes every per-pad value and the
+     * selected top pads into {@code out}. Once the transition kernel for
+     * {@code angleDiff} is cached, the step performs no heap allocation, which
+     * keeps the per-frame cost of closed-loop use free of GC pauses.
+     *
+     * @param angleDiff movement angle in degrees for this step.
+     * @param out       reusable buffers sized for this grid; the number of top
+     *                  pads selected is {@link StepBuffers#topK()}.
+     */
+    @Override
+    public void runStepInto(double angleDiff, StepBuffers out) {
+        runStepInto(angleDiff, angleDiff, out);
+    }
 
-        if (filteredPads.isEmpty()) {
-            filteredPads = new ArrayList<>();
+    /**
+     * Same as {@link #runStepInto(double, StepBuffers)} with separate angles
+     * for the two phases, for recursive use over a trajectory: the prediction
+     * moves the pads by the change of angle since the previous step and the
+     * correction looks up the Ks at the angle actually measured.
+     *
+     * @param movementDegrees angle change since the previous step, used by the
+     *                        displacement model; stored as
+     *                        {@link StepBuffers#angleDiff()}.
+     * @param observedDegrees measured angle used by the observation model.
+     * @param out             reusable buffers sized for this grid.
+     */
+    @Override
+    public void runStepInto(double movementDegrees, double observedDegrees, StepBuffers out) {
+        int N = state.size();
+        if (out.padCount() != N) {
+            throw new IllegalArgumentException("StepBuffers sized for " + out.padCount() + " pads, grid has " + N);
         }
 
-        //Ccalculo el baricentro
-        double sumProbs = 0.0;
-        double sumX = 0.0;
-        double sumY = 0.0;
-
-        for (Pad p : filteredPads) { //por cada pad
-            double prob = p.getProbability();
-            sumProbs += prob;
-            sumX += p.getCol() * prob;
-            sumY += p.getRow() * prob;
+        updateProbsAfterMovement(movementDegrees);
+        if (filterMode == FilterMode.LOG) {
+            obsModel.applyLogCorrectionPhase(state, observedDegrees);
+        } else {
+            obsModel.applyCorrectionPhase(state, observedDegrees);
         }
-        //calcula coordenadas del centroide
-        double centroidX = (sumProbs > 0) ? sumX / sumProbs : 0.0; //si condicion verdadera, coordenada  es la division de sumX  entre sumProbs
-        double centroidY = (sumProbs > 0) ? sumY / sumProbs : 0.0; //si la condicion es falsa, coordenada es 0.0
-
-        return filteredPads.stream()
-                .sorted(Comparator.comparingDouble(p -> //calcula distancias euclideas entre el pad y el centroide
-                        Math.hypot(p.getCol() - centroidX, p.getRow() - centroidY)
-                ))
-                .limit(topN) //deja pasar los top N pads más cercanos al centroide
-                .collect(Collectors.toList());
+
+        System.arraycopy(state.initialProb(), 0, out.initialProb(), 0, N);
+        System.arraycopy(state.displacement(), 0, out.displacement(), 0, N);
+        System.arraycopy(state.predictedProb(), 0, out.predictedProb(), 0, N);
+        System.arraycopy(state.probability(), 0, out.correctedProb(), 0, N);
+        selectPads(out.selector());
+        out.setAngleDiff(movementDegrees);
+    }
+
+    /**
+     * Allocates step buffers matching this simulation's grid.
+     *
+     * @param topK number of top pads to select per step.
+     */
+    @Override
+    public StepBuffers newStepBuffers(int topK) {
+        return new StepBuffers(state.size(), topK);
     }
 
     /**
@@ -231,56 +428,53 @@ public class Simulation {
      *         the highest-probability pads.
      */
     public SimulationResult runStep(String subject, double angleDiff) {
-        int N = pads.size();
-        Map<Integer, Double> predictedProbs = new HashMap<>();
-
-        updateProbsAfterMovement(angleDiff);
-        for (Pad pad : pads) {
-            predictedProbs.put(pad.getId(), pad.getProbability());
-        }
-
-        obsModel.applyCorrectionPhase(pads, angleDiff);
-
+        int N = state.size();
+        StepBuffers step = newStepBuffers(3);
+        runStepInto(angleDiff, step);
+
+        double[] initial = step.initialProb();
+        double[] displacement = step.displacement();
+        double[] predicted = step.predictedProb();
+        double[] corrected = step.correctedProb();
         List<BayesStepResult> bayesStepResults = new ArrayList<>(N);
-        for (Pad pad : pads) {
-            double predictedProb = predictedProbs.getOrDefault(pad.getId(), 0.0);
+        for (int i = 0; i < N; i++) {
             BayesStepResult resultRow = new BayesStepResult(
-                    pad.getId(),
-                    pad.getInitialProb(),
-                    pad.getDisplacementDistance(),
-                    predictedProb,
-                    pad.getProbability()
+                    i + 1,
+                    initial[i],
+                    displacement[i],
+                    predicted[i],
+                    corrected[i]
             );
             bayesStepResults.add(resultRow);
         }
 
-        List<Pad> top3Pads = selectPads(3);
+        List<Pad> top3Pads = new ArrayList<>(step.topPadCount());
+        for (int j = 0; j < step.topPadCount(); j++) {
+            top3Pads.add(pads.get(step.topPadIds()[j] - 1));
+        }
 
         return new SimulationResult(subject, angleDiff, bayesStepResults, top3Pads);
     }
 
+    /**
+     * Runs the default sweep of ten subjects and six angles. With an argument,
+     * all results are appended to that single CSV instead of one file per
+     * subject and angle.
+     */
     public static void main(String[] args) {
         String[] subjectNames = {"Subject1", "Subject2", "Subject3", "Subject4", "Subject5", "Subject6", "Subject7", "Subject8", "Subject9", "Subject10"};
         double movementThreshold = 1;
         double probMin = 0.05;
         double[] angles = {-90.0 ,10.0, 30.0, 45.0, 60.0, 90.0};
-        ResultWriter resultWriter = new ResultWriter();
-
-        for (String sub : subjectNames) {
-            System.out.println("\n============================================");
-            System.out.println("  Procesando: " + sub);
-            System.out.println("============================================");
-
-            Simulation s = new Simulation(movementThreshold, probMin, sub);
-
-            for (double ang : angles) {
-                s.loadInitialProbs(sub);
-                System.out.printf("\n-- %s | Ángulo: %.1f° --\n", sub, ang);
-                SimulationResult result = s.runStep(sub, ang);
-                resultWriter.writeResults(result);
-            }
 
+        try (ResultWriter resultWriter = args.length > 0 ? ResultWriter.consolidated(Path.of(args[0])) : new ResultWriter()) {
+            // cada sujeto en paralelo; los priors se recargan antes de cada ángulo como en la versión secuencial
+            BatchSimulationRunner runner = new BatchSimulationRunner(resultWriter);
+            int steps = runner.run(BatchSimulationRunner.parameterGrid(Arrays.asList(subjectNames), angles,
+                    new double[]{movementThreshold}, new double[]{probMin}));
+            System.out.println("Pasos simulados: " + steps);
         }
+
         //SIMULACION PARA UN SUJETO
         /*Simulation sim = new Simulation(1, 0.05,1);
         double[] angles = {10.0,30.0,45.0, 60.0, 90.0};
@@ -0,0 +1,102 @@
+package org.example.simulation;
+
+/**
+ * Caller-owned, preallocated destination for {@link Simulation#runStepInto(double, StepBuffers)}.
+ * Holds the same per-pad values as {@link org.example.model.BayesStepResult}
+ * in primitive arrays indexed by {@code padId - 1}, plus a {@link PadSelector}
+ * with the ids of the selected top pads and their centroid. Reusing one instance across steps
+ * keeps the steady-state step free of heap allocations.
+ */
+public final class StepBuffers {
+    private final double[] initialProb;
+    private final double[] displacement;
+    private final double[] predictedProb;
+    private final double[] correctedProb;
+    private final PadSelector selector;
+    private double angleDiff;
+
+    /**
+     * Allocates buffers for a grid with {@code padCount} pads.
+     *
+     * @param padCount number of pads in the simulated grid.
+     * @param topK     maximum number of top pads to select per step.
+     */
+    public StepBuffers(int padCount, int topK) {
+        if (padCount <= 0 || topK <= 0) {
+            throw new IllegalArgumentException("padCount and topK must be positive");
+        }
+        this.initialProb = new double[padCount];
+        this.displacement = new double[padCount];
+        this.predictedProb = new double[padCount];
+        this.correctedProb = new double[padCount];
+        this.selector = new PadSelector(topK);
+    }
+
+    public int padCount() {
+        return initialProb.length;
+    }
+
+    /**
+     * Capacity of the top-pad buffer.
+     */
+    public int topK() {
+        return selector.topK();
+    }
+
+    public double[] initialProb() {
+        return initialProb;
+    }
+
+    public double[] displacement() {
+        return displacement;
+    }
+
+    public double[] predictedProb() {
+        return predictedProb;
+    }
+
+    public double[] correctedProb() {
+        return correctedProb;
+    }
+
+    /**
+     * 1-based ids of the selected pads, closest to the centroid first. Only
+     * the first {@link #topPadCount()} entries are valid.
+     */
+    public int[] topPadIds() {
+        return selector.ids();
+    }
+
+    /**
+     * Number of valid entries in {@link #topPadIds()}.
+     */
+    public int topPadCount() {
+        return selector.count();
+    }
+
+    /**
+     * Column coordinate of the centroid used to select the top pads.
+     */
+    public double centroidX() {
+        return selector.centroidX();
+    }
+
+    /**
+     * Row coordinate of the centroid used to select the top pads.
+     */
+    public double centroidY() {
+        return selector.centroidY();
+    }
+
+    public double angleDiff() {
+        return angleDiff;
+    }
+
+    PadSelector selector() {
+        return selector;
+    }
+
+    void setAngleDiff(double angleDiff) {
+        this.angleDiff = angleDiff;
+    }
+}
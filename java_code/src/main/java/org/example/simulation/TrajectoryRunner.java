@@ -0,0 +1,137 @@
+package org.example.simulation;
+
+/**
+ * Runs a {@link FilterEngine} ({@link Simulation} or {@link ParticleFilter}) as
+ * a recursive estimator over a time series of measured angles. Unlike
+ * {@link Simulation#main(String[])} and {@link BatchSimulationRunner}, which
+ * reset the priors before every single-angle step, the posterior of each step
+ * is the prior of the next one.
+ * <p>
+ * For every sample the prediction moves the pads by the change of angle since
+ * the previous sample (the first sample moves from 0 degrees, the resting
+ * orientation) and the correction uses the measured angle itself, through
+ * {@link FilterEngine#runStepInto(double, double, StepBuffers)}. Each step is
+ * handed to a {@link StepSink} in a reused {@link StepBuffers}, so memory stays
+ * constant however long the trajectory is and nothing has to be kept once the
+ * sink has consumed it.
+ * <p>
+ * The transition kernels of {@link Simulation} are cached per movement angle.
+ * Continuous recordings rarely repeat a movement exactly, so a positive
+ * movement resolution rounds the angles used for the prediction to that grid
+ * (without drift: the rounded angles are differenced, not the rounded
+ * movements) and keeps the steady state on cached kernels. The correction always uses the exact angle.
+ * <p>
+ * Samples can also be pushed one at a time with {@link #step(double, double)},
+ * for instance from a live IMU stream. Instances are not thread-safe.
+ */
+public final class TrajectoryRunner {
+
+    /**
+     * Receives every step of a trajectory.
+     */
+    @FunctionalInterface
+    public interface StepSink {
+        /**
+         * @param index        0-based step number since the last {@link #reset()}.
+         * @param timeSeconds  time of the sample.
+         * @param angleDegrees measured angle of the sample.
+         * @param step         posteriors and top pads; reused by the next step.
+         */
+        void onStep(long index, double timeSeconds, double angleDegrees, StepBuffers step);
+    }
+
+    private final FilterEngine filter;
+    private final StepBuffers step;
+    private final double movementResolution;
+    private double lastMovementAngle;
+    private long steps;
+
+    /**
+     * Uses the exact angle change of every sample for the prediction.
+     *
+     * @param filter filter to run; its priors are reset by the constructor.
+     * @param topK   number of top pads selected per step.
+     */
+    public TrajectoryRunner(FilterEngine filter, int topK) {
+        this(filter, topK, 0);
+    }
+
+    /**
+     * @param filter                    filter to run; its priors are reset by the constructor.
+     * @param topK                      number of top pads selected per step.
+     * @param movementResolutionDegrees grid the prediction angles are rounded to;
+     *                                  {@code 0} uses the exact angles.
+     */
+    public TrajectoryRunner(FilterEngine filter, int topK, double movementResolutionDegrees) {
+        if (!(movementResolutionDegrees >= 0) || Double.isInfinite(movementResolutionDegrees)) {
+            throw new IllegalArgumentException("Movement resolution must be a non-negative number: "
+                    + movementResolutionDegrees);
+        }
+        this.filter = filter;
+        this.step = filter.newStepBuffers(topK);
+        this.movementResolution = movementResolutionDegrees;
+        reset();
+    }
+
+    /**
+     * Restores the initial priors and the resting angle, to start a new trajectory.
+     */
+    public void reset() {
+        filter.resetToInitialProbs();
+        lastMovementAngle = 0;
+        steps = 0;
+    }
+
+    /**
+     * Runs one step for a new sample, carrying the posterior of the previous one.
+     *
+     * @param timeSeconds  time of the sample; only reported to sinks.
+     * @param angleDegrees measured angle relative to the resting orientation.
+     * @return the step buffers, valid until the next call.
+     * @throws IllegalArgumentException if the angle is not finite.
+     */
+    public StepBuffers step(double timeSeconds, double angleDegrees) {
+        if (!Double.isFinite(angleDegrees)) {
+            throw new IllegalArgumentException("Angle must be finite: " + angleDegrees);
+        }
+        double movementAngle = movementResolution > 0
+                ? Math.rint(angleDegrees / movementResolution) * movementResolution
+                : angleDegrees;
+        filter.runStepInto(movementAngle - lastMovementAngle, angleDegrees, step);
+        lastMovementAngle = movementAngle;
+        steps++;
+        return step;
+    }
+
+    /**
+     * Runs every remaining sample of {@code trajectory}, continuing from the
+     * current state; call {@link #reset()} first to start from the priors.
+     *
+     * @param sink receives each step; may be {@code null}.
+     * @return number of steps run.
+     */
+    public long run(AngleTrajectory trajectory, StepSink sink) {
+        long first = steps;
+        while (trajectory.next()) {
+            double time = trajectory.timeSeconds();
+            double angle = trajectory.angleDegrees();
+            long index = steps;
+            step(time, angle);
+            if (sink != null) {
+                sink.onStep(index, time, angle, step);
+            }
+        }
+        return steps - first;
+    }
+
+    /**
+     * Steps run since the last {@link #reset()}.
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    public FilterEngine getFilter() {
+        return filter;
+    }
+}
@@ -0,0 +1,177 @@
+package org.example.simulation;
+
+import org.example.config.GridConfig;
+
+import java.util.Arrays;
+
+/**
+ * Sparse transition matrix used by the displacement prediction step, stored in
+ * CSR form with one row per destination pad. Row {@code j} lists every source
+ * pad whose displaced center falls within the movement threshold of pad
+ * {@code j}, weighted by {@code 1 / |R_i|} so that the prediction reduces to a
+ * single sparse matrix-vector product:
+ * {@code pred[j] = sum_i w(j, i) * prior[i]}.
+ * <p>
+ * Instances are immutable once built and can be shared between threads and
+ * {@link Simulation} instances through {@link TransitionKernelCache}.
+ */
+public final class TransitionKernel {
+    /** Distance (cm) between the centers of two adjacent pads (1 cm pad + 0.5 cm gap). */
+    public static final double PAD_SPACING = 1.5;
+
+    private final int size;
+    private final int[] rowOffsets;
+    private final int[] colIndices;
+    private final double[] weights;
+    private final double[] logWeights;
+
+    private TransitionKernel(int size, int[] rowOffsets, int[] colIndices, double[] weights) {
+        this.size = size;
+        this.rowOffsets = rowOffsets;
+        this.colIndices = colIndices;
+        this.weights = weights;
+        this.logWeights = new double[weights.length];
+        for (int k = 0; k < weights.length; k++) {
+            logWeights[k] = Math.log(weights[k]);
+        }
+    }
+
+    /**
+     * Builds the kernel for a grid whose pads have already been displaced.
+     * The region of each source pad matches {@link Simulation#getRegion}: all
+     * pads whose centers lie within {@code movementThreshold} of the displaced
+     * center, or the pad itself when none qualify. Only the pads in the
+     * bounding window of the threshold are inspected, so construction is
+     * linear in the number of pads for a fixed threshold.
+     *
+     * @param gridConfig        grid layout used to derive row/column of each pad.
+     * @param displacement      signed displacement (cm) of each pad, indexed by
+     *                          {@code padId - 1}.
+     * @param movementThreshold distance (cm) to include neighbors.
+     * @return the transition kernel for this displacement.
+     */
+    public static TransitionKernel build(GridConfig gridConfig, double[] displacement, double movementThreshold) {
+        int rows = gridConfig.getRows();
+        int cols = gridConfig.getCols();
+        int n = gridConfig.getPadCount();
+        if (displacement.length != n) {
+            throw new IllegalArgumentException("Expected " + n + " displacements but got " + displacement.length);
+        }
+
+        // Regiones por pad origen (formato CSR por origen)
+        int[] srcOffsets = new int[n + 1];
+        int[] srcTargets = new int[n * 4];
+        int nnz = 0;
+        for (int i = 0; i < n; i++) {
+            int col = i / rows;
+            int row = i % rows;
+            double newX = col * PAD_SPACING + displacement[i];
+            double newY = row * PAD_SPACING;
+
+            int colLo = Math.max(0, (int) Math.floor((newX - movementThreshold) / PAD_SPACING));
+            int colHi = Math.min(cols - 1, (int) Math.ceil((newX + movementThreshold) / PAD_SPACING));
+            int rowLo = Math.max(0, (int) Math.floor((newY - movementThreshold) / PAD_SPACING));
+            int rowHi = Math.min(rows - 1, (int) Math.ceil((newY + movementThreshold) / PAD_SPACING));
+
+            int start = nnz;
+            // mismo orden que getRegion: por id ascendente (columna, luego fila)
+            for (int qc = colLo; qc <= colHi; qc++) {
+                for (int qr = rowLo; qr <= rowHi; qr++) {
+                    double dist = Math.hypot(qc * PAD_SPACING - newX, qr * PAD_SPACING - newY);
+                    if (dist <= movementThreshold) {
+                        if (nnz == srcTargets.length) {
+                            srcTargets = Arrays.copyOf(srcTargets, srcTargets.length * 2);
+                        }
+                        srcTargets[nnz++] = qc * rows + qr;
+                    }
+                }
+            }
+            if (nnz == start) { //si no hay region, el propio pad
+                if (nnz == srcTargets.length) {
+                    srcTargets = Arrays.copyOf(srcTargets, srcTargets.length * 2);
+                }
+                srcTargets[nnz++] = i;
+            }
+            srcOffsets[i + 1] = nnz;
+        }
+
+        // Transpuesta: una fila por pad destino con sus origenes en orden ascendente
+        int[] rowOffsets = new int[n + 1];
+        for (int k = 0; k < nnz; k++) {
+            rowOffsets[srcTargets[k] + 1]++;
+        }
+        for (int j = 0; j < n; j++) {
+            rowOffsets[j + 1] += rowOffsets[j];
+        }
+        int[] cursor = Arrays.copyOf(rowOffsets, n);
+        int[] colIndices = new int[nnz];
+        double[] weights = new double[nnz];
+        for (int i = 0; i < n; i++) {
+            int regionSize = srcOffsets[i + 1] - srcOffsets[i];
+            double share = 1.0 / regionSize; // p(x_i) / |R_i|
+            for (int k = srcOffsets[i]; k < srcOffsets[i + 1]; k++) {
+                int pos = cursor[srcTargets[k]]++;
+                colIndices[pos] = i;
+                weights[pos] = share;
+            }
+        }
+        return new TransitionKernel(n, rowOffsets, colIndices, weights);
+    }
+
+    /**
+     * Computes {@code out = K * in}. Both arrays must have {@link #size()}
+     * entries and must not alias each other.
+     *
+     * @param in  prior probabilities indexed by {@code padId - 1}.
+     * @param out destination for the predicted (unnormalized) probabilities.
+     */
+    public void multiply(double[] in, double[] out) {
+        for (int j = 0; j < size; j++) {
+            double acc = 0.0;
+            for (int k = rowOffsets[j]; k < rowOffsets[j + 1]; k++) {
+                acc += weights[k] * in[colIndices[k]];
+            }
+            out[j] = acc;
+        }
+    }
+
+    /**
+     * Log-domain counterpart of {@link #multiply}: with {@code logIn[i] =
+     * log(in[i])}, writes {@code logOut[j] = log(sum_i w(j, i) * in[i])} using
+     * a per-row log-sum-exp, so tiny priors are propagated without underflow.
+     * Rows without mass are set to {@link Double#NEGATIVE_INFINITY}.
+     */
+    public void multiplyLog(double[] logIn, double[] logOut) {
+        for (int j = 0; j < size; j++) {
+            int from = rowOffsets[j];
+            int to = rowOffsets[j + 1];
+            double max = Double.NEGATIVE_INFINITY;
+            for (int k = from; k < to; k++) {
+                max = Math.max(max, logWeights[k] + logIn[colIndices[k]]);
+            }
+            if (max == Double.NEGATIVE_INFINITY) {
+                logOut[j] = max;
+                continue;
+            }
+            double acc = 0.0;
+            for (int k = from; k < to; k++) {
+                acc += Math.exp(logWeights[k] + logIn[colIndices[k]] - max);
+            }
+            logOut[j] = max + Math.log(acc);
+        }
+    }
+
+    /**
+     * Number of pads (rows and columns) of the square kernel.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of stored non-zero transitions.
+     */
+    public int nonZeros() {
+        return rowOffsets[size];
+    }
+}
@@ -0,0 +1,178 @@
+package org.example.simulation;
+
+import org.example.config.GridConfig;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Caches {@link TransitionKernel} instances for one grid layout and movement
+ * threshold, keyed by the movement angle. Since the displacement of every pad
+ * depends only on its column and the angle, the triple
+ * (angle, movementThreshold, {@link GridConfig}) fully determines a kernel.
+ * <p>
+ * Caches are shared per layout through {@link #shared(GridConfig, double)} so
+ * that several {@link Simulation} instances (for example one per subject)
+ * reuse the same kernels. The key is the raw angle, so callers that feed
+ * continuously varying angles should round them first, as
+ * {@link TrajectoryRunner} does with its movement resolution; otherwise almost
+ * every step misses.
+ * <p>
+ * The cache is a fixed open-addressing table of immutable entries, sized once
+ * for {@link #DEFAULT_CAPACITY} angles. Lookups take no lock and do not
+ * allocate. A miss builds the kernel without holding any lock and claims a free
+ * slot near the home slot of its angle with a compare-and-set; when none is
+ * free, the entry in the home slot is replaced. Memory therefore stays bounded
+ * and a miss only allocates the kernel and its entry, never a new table.
+ * Concurrent misses for the same angle may build it twice, but both callers end
+ * up with the first published instance unless it is evicted in between.
+ */
+public final class TransitionKernelCache {
+    /** Number of angles each layout is sized for. */
+    public static final int DEFAULT_CAPACITY = 512;
+    /** Slots probed from the home slot of an angle before evicting. */
+    private static final int PROBE_LIMIT = 8;
+
+    private static final ConcurrentHashMap<LayoutKey, TransitionKernelCache> SHARED = new ConcurrentHashMap<>();
+
+    private final GridConfig gridConfig;
+    private final double movementThreshold;
+    private final AtomicReferenceArray<Entry> entries;
+    private final int mask;
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * Creates a private cache for the given layout.
+     *
+     * @param gridConfig        grid layout of the kernels.
+     * @param movementThreshold distance (cm) used to build the regions.
+     * @param capacity          number of angles the table is sized for; the
+     *                          table holds up to twice as many.
+     */
+    public TransitionKernelCache(GridConfig gridConfig, double movementThreshold, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.gridConfig = gridConfig;
+        this.movementThreshold = movementThreshold;
+        int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        this.entries = new AtomicReferenceArray<>(tableSize);
+        this.mask = tableSize - 1;
+    }
+
+    /**
+     * Returns the process-wide cache for a layout and threshold, creating it on
+     * first use.
+     */
+    public static TransitionKernelCache shared(GridConfig gridConfig, double movementThreshold) {
+        return SHARED.computeIfAbsent(new LayoutKey(gridConfig, movementThreshold),
+                k -> new TransitionKernelCache(gridConfig, movementThreshold, DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Returns the kernel for {@code angleDiff}, building it from
+     * {@code displacement} on a miss.
+     *
+     * @param angleDiff    movement angle in degrees used as the cache key.
+     * @param displacement pad displacements (cm) produced by this angle; only
+     *                     read when the kernel is not cached yet.
+     * @return the cached or newly built kernel.
+     */
+    public TransitionKernel kernelFor(double angleDiff, double[] displacement) {
+        long bits = Double.doubleToLongBits(angleDiff);
+        int home = mix(bits) & mask;
+        for (int i = 0; i < PROBE_LIMIT; i++) {
+            Entry entry = entries.get((home + i) & mask);
+            if (entry == null) {
+                break;
+            }
+            if (entry.bits == bits) {
+                return entry.kernel;
+            }
+        }
+        // la construcción queda fuera de toda sincronización para no serializar a los hilos del lote
+        TransitionKernel kernel = TransitionKernel.build(gridConfig, displacement, movementThreshold);
+        return publish(home, bits, kernel);
+    }
+
+    private TransitionKernel publish(int home, long bits, TransitionKernel kernel) {
+        Entry created = new Entry(bits, kernel);
+        for (int i = 0; i < PROBE_LIMIT; i++) {
+            int slot = (home + i) & mask;
+            Entry entry = entries.get(slot);
+            while (entry == null) {
+                if (entries.compareAndSet(slot, null, created)) {
+                    count.incrementAndGet();
+                    return kernel;
+                }
+                entry = entries.get(slot);
+            }
+            if (entry.bits == bits) {
+                return entry.kernel;
+            }
+        }
+        entries.set(home, created);
+        return kernel;
+    }
+
+    /**
+     * Number of kernels currently cached.
+     */
+    public int size() {
+        return count.get();
+    }
+
+    /**
+     * 64-bit finalizer of MurmurHash3. Round angles such as {@code 0.5 * k}
+     * have dozens of trailing zero bits, so every input bit has to reach the
+     * low bits used as the slot index.
+     */
+    private static int mix(long bits) {
+        long h = bits;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /**
+     * Kernel of one angle, never modified once published.
+     */
+    private static final class Entry {
+        private final long bits;
+        private final TransitionKernel kernel;
+
+        private Entry(long bits, TransitionKernel kernel) {
+            this.bits = bits;
+            this.kernel = kernel;
+        }
+    }
+
+    private static final class LayoutKey {
+        private final GridConfig gridConfig;
+        private final long thresholdBits;
+
+        private LayoutKey(GridConfig gridConfig, double movementThreshold) {
+            this.gridConfig = gridConfig;
+            this.thresholdBits = Double.doubleToLongBits(movementThreshold);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof LayoutKey)) {
+                return false;
+            }
+            LayoutKey other = (LayoutKey) o;
+            return thresholdBits == other.thresholdBits && gridConfig.equals(other.gridConfig);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(gridConfig, thresholdBits);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.example.verification;
+
+import org.example.config.GridConfig;
+import org.example.simulation.Simulation;
+import org.example.simulation.StepBuffers;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Utility to verify that {@link Simulation#runStepInto(double, StepBuffers)}
+ * stays allocation-free in steady state. It builds a simulation from synthetic
+ * priors and Ks values, warms up the JIT and the transition kernel cache, and
+ * then measures the bytes allocated by the current thread over many steps
+ * using {@code com.sun.management.ThreadMXBean#getThreadAllocatedBytes}.
+ * <p>
+ * Usage: {@code java org.example.verification.AllocationCheck [rows cols]}
+ */
+public final class AllocationCheck {
+
+    private static final double[] ANGLES = {-90.0, -45.0, 10.0, 30.0, 45.0, 60.0, 90.0};
+    private static final int WARMUP_STEPS = 50_000;
+    private static final int MEASURED_STEPS = 20_000;
+
+    private AllocationCheck() {
+        // Utility class
+    }
+
+    public static void main(String[] args) {
+        GridConfig gridConfig = args.length == 2
+                ? GridConfig.of(Integer.parseInt(args[0]), Integer.parseInt(args[1]))
+                : GridConfig.defaultConfig();
+
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            System.err.println("[ERROR] This JVM does not expose per-thread allocation counters.");
+            System.exit(3);
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        if (!threadBean.isThreadAllocatedMemorySupported()) {
+            System.err.println("[ERROR] Per-thread allocation accounting is not supported.");
+            System.exit(3);
+        }
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        long allocated = measure(gridConfig, threadBean);
+        if (allocated == 0) {
+            System.out.println("[OK] runStepInto allocated 0 bytes over " + MEASURED_STEPS + " steps on " + gridConfig + ".");
+        } else {
+            System.out.println("[FAIL] runStepInto allocated " + allocated + " bytes over " + MEASURED_STEPS
+                    + " steps on " + gridConfig + ".");
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Runs the warm-up and the measured steps.
+     *
+     * @param gridConfig grid layout used to build the synthetic simulation
+     * @param threadBean allocation counter source
+     * @return bytes allocated by the current thread during the measured steps
+     */
+    public static long measure(GridConfig gridConfig, com.sun.management.ThreadMXBean threadBean) {
+        Simulation simulation = syntheticSimulation(gridConfig);
+        StepBuffers buffers = simulation.newStepBuffers(3);
+        long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARMUP_STEPS; i++) {
+            step(simulation, buffers, i);
+        }
+
+        // coste propio de la medicion, para descontarlo
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        long overhead = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_STEPS; i++) {
+            step(simulation, buffers, i);
+        }
+        long after = threadBean.getThreadAllocatedBytes(threadId);
+        return Math.max(0, after - before - overhead);
+    }
+
+    private static void step(Simulation simulation, StepBuffers buffers, int i) {
+        simulation.resetToInitialProbs();
+        simulation.runStepInto(ANGLES[i % ANGLES.length], buffers);
+    }
+
+    private static Simulation syntheticSimulation(GridConfig gridConfig) {
+        int nPads = gridConfig.getPadCount();
+        double[] priors = new double[nPads];
+        Arrays.fill(priors, 1.0 / nPads);
+        double[][] kTable = new double[nPads][37];
+        for (int i = 0; i < nPads; i++) {
+            for (int j = 0; j < 37; j++) {
+                kTable[i][j] = 0.5 + 0.5 * Math.sin(0.3 * i + 0.1 * j);
+            }
+        }
+        return new Simulation(gridConfig, 1.0, 0.05, priors, kTable);
+    }
+}
@@ -0,0 +1,202 @@
+package org.example.verification;
+
+import org.example.config.GridConfig;
+import org.example.config.RuntimeConfig;
+import org.example.io.SessionJournal;
+import org.example.realTimeExecution.ClosedLoopController;
+import org.example.realTimeExecution.FESController;
+import org.example.realTimeExecution.FesSimulatorTransport;
+import org.example.realTimeExecution.ImuAcquisitionService;
+import org.example.realTimeExecution.ImuAngleSource;
+import org.example.realTimeExecution.ImuSignal;
+import org.example.realTimeExecution.ImuSimulatorTransport;
+import org.example.realTimeExecution.ImuStreamSynchronizer;
+import org.example.realTimeExecution.Quaternion;
+import org.example.realTimeExecution.RecordedImuSignal;
+import org.example.realTimeExecution.SerialReaderQuaternion;
+import org.example.realTimeExecution.SessionRecorder;
+import org.example.realTimeExecution.SessionReplay;
+import org.example.realTimeExecution.StimulationMaskManager;
+import org.example.simulation.Simulation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Hardware-free load test of the whole real-time path. Two simulated IMUs feed
+ * {@link SerialReaderQuaternion} and {@link ImuAcquisitionService} at the given
+ * frame rate, an {@link ImuStreamSynchronizer} fuses both streams, and a
+ * {@link ClosedLoopController} with a synthetic simulation drives a simulated
+ * stimulator through {@link FESController} and {@link StimulationMaskManager}.
+ * The session is recorded in a temporary {@link SessionJournal} and then
+ * replayed with {@link SessionReplay}.
+ * <p>
+ * The check fails when frames are lost or malformed, samples are overwritten
+ * before being fused or journaled, the stimulator rejects a command, a command
+ * times out, or a replayed filter step differs from the recorded one.
+ * Deadline misses and latencies are reported but do not fail the run, since
+ * they depend on the machine.
+ * <p>
+ * Usage: {@code java org.example.verification.RealTimeLoadTest [imuRateHz [seconds [fesLatencyMicros [anglesFile]]]]}.
+ * With {@code anglesFile} (an {@code initialAngles_Channel_*.csv} or
+ * {@code finalAngles_Channel_*.csv} recording) the IMUs replay it instead of a
+ * synthetic pronation-supination movement.
+ */
+public final class RealTimeLoadTest {
+
+    private static final double DEFAULT_RATE_HZ = 1000;
+    private static final double DEFAULT_SECONDS = 10;
+    private static final long DEFAULT_FES_LATENCY_MICROS = 2000;
+    private static final int IMU_READ_TIMEOUT_MILLIS = 100;
+    private static final int FES_READ_TIMEOUT_MILLIS = 5;
+
+    private RealTimeLoadTest() {
+        // Utility class
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        double rateHz = args.length > 0 ? Double.parseDouble(args[0]) : DEFAULT_RATE_HZ;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : DEFAULT_SECONDS;
+        long latencyMicros = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_FES_LATENCY_MICROS;
+        ImuSignal handSignal;
+        ImuSignal armSignal;
+        if (args.length > 3) {
+            handSignal = RecordedImuSignal.fromPlotFile(Path.of(args[3]), true);
+            armSignal = RecordedImuSignal.fromPlotFile(Path.of(args[3]), false);
+        } else {
+            handSignal = ImuSignal.oscillation(ImuAngleSource.AXIS_Y, 30, 1.0);
+            armSignal = ImuSignal.oscillation(ImuAngleSource.AXIS_X, 80, 0.5);
+        }
+
+        RuntimeConfig config = RuntimeConfig.defaultConfig();
+        ImuSimulatorTransport handImu = new ImuSimulatorTransport("SIM-HAND", 1, handSignal, rateHz, IMU_READ_TIMEOUT_MILLIS);
+        ImuSimulatorTransport armImu = new ImuSimulatorTransport("SIM-ARM", 2, armSignal, rateHz, IMU_READ_TIMEOUT_MILLIS);
+        FesSimulatorTransport stimulator = new FesSimulatorTransport("SIM-FES", latencyMicros, FES_READ_TIMEOUT_MILLIS);
+
+        SerialReaderQuaternion handReader = new SerialReaderQuaternion(handImu, SerialReaderQuaternion.DEFAULT_RING_CAPACITY);
+        SerialReaderQuaternion armReader = new SerialReaderQuaternion(armImu, SerialReaderQuaternion.DEFAULT_RING_CAPACITY);
+        FESController fes = new FESController(stimulator);
+        handReader.openPort();
+        armReader.openPort();
+        fes.connect();
+
+        Path journalFile = Files.createTempFile("session", ".journal");
+        SessionJournal journal = SessionJournal.create(journalFile);
+        fes.setCommandListener(journal::recordCommand);
+        SessionRecorder recorder = new SessionRecorder(journal, 100);
+        recorder.addStream(SessionJournal.STREAM_HAND, handReader.getRing());
+        recorder.addStream(SessionJournal.STREAM_ARM, armReader.getRing());
+        recorder.start();
+        fes.configureChannels(config.getChannelPulseStart(), config.getChannelPulseEnd(), 300, 10);
+        fes.setFrequency(40);
+        fes.powerOn();
+
+        ImuAcquisitionService hand = new ImuAcquisitionService(handReader);
+        ImuAcquisitionService arm = new ImuAcquisitionService(armReader);
+        ImuStreamSynchronizer synchronizer = new ImuStreamSynchronizer(handReader.getRing(), armReader.getRing(),
+                TimeUnit.MILLISECONDS.toNanos(config.getFusionPeriodMillis()),
+                TimeUnit.MILLISECONDS.toNanos(config.getFusionMaxGapMillis()));
+        StimulationMaskManager masks = new StimulationMaskManager(fes, config.getMaskLength());
+        AtomicLong failedFlushes = new AtomicLong();
+        Consumer<int[][]> maskSink = mask -> {
+            masks.setMask(mask);
+            masks.flush().whenComplete((ignored, error) -> {
+                if (error != null) {
+                    failedFlushes.incrementAndGet();
+                }
+            });
+        };
+        ClosedLoopController controller = new ClosedLoopController(syntheticSimulation(GridConfig.defaultConfig()),
+                new ImuAngleSource(armReader.getRing(), new Quaternion(1, 0, 0, 0), ImuAngleSource.AXIS_X),
+                maskSink, config);
+        controller.setStepListener(journal::recordStep);
+        journal.recordReference(SessionJournal.STREAM_ARM, System.nanoTime(), 1, 0, 0, 0);
+
+        hand.start();
+        arm.start();
+        controller.start();
+        long end = System.nanoTime() + (long) (seconds * 1e9);
+        boolean stimulating = false;
+        long[] fused = new long[1];
+        while (System.nanoTime() - end < 0) {
+            synchronizer.poll(frame -> fused[0]++);
+            if (!stimulating && controller.getMaskUpdates() > 0) {
+                fes.startStimulation(); // the channel list is already on the stimulator
+                stimulating = true;
+            }
+            Thread.sleep(10);
+        }
+        controller.stop();
+        hand.stop();
+        arm.stop();
+        synchronizer.poll(frame -> fused[0]++);
+        fes.stopStimulation();
+        fes.powerOff();
+        int[] finalChannels = stimulator.getActiveChannels();
+        fes.disconnect();
+        handReader.closePort();
+        armReader.closePort();
+        recorder.stop();
+        journal.close();
+
+        SessionReplay.Result replay = new SessionReplay(journalFile, ImuAngleSource.AXIS_X)
+                .replay(syntheticSimulation(GridConfig.defaultConfig()), config, null);
+        long journalBytes = Files.size(journalFile);
+        Files.delete(journalFile);
+
+        long lostFrames = lost(handImu, handReader) + lost(armImu, armReader);
+        long malformed = handReader.getMalformedFrames() + armReader.getMalformedFrames();
+        System.out.printf("IMU: %.0f Hz x 2 for %.1f s, %d + %d frames sent, %d lost, %d malformed%n",
+                rateHz, seconds, handImu.getFramesSent(), armImu.getFramesSent(), lostFrames, malformed);
+        System.out.printf("Fusion: %d frames, %d skipped, %d samples overwritten before fusion%n",
+                fused[0], synchronizer.getSkippedFrames(), synchronizer.getLostSamples());
+        System.out.printf("Control: %d ticks, %d steps, %d deadline misses, %d stale, %d failures, max latency %.2f ms%n",
+                controller.getTicks(), controller.getSteps(), controller.getDeadlineMisses(), controller.getStaleTicks(),
+                controller.getFailures(), controller.getMaxLatencyNanos() / 1e6);
+        System.out.printf("FES: %d mask updates, %d list commands, %d commands received, %d rejected, %d failed flushes, channels %s%n",
+                controller.getMaskUpdates(), masks.getCommandsSent(), stimulator.getCommands(), stimulator.getErrors(),
+                failedFlushes.get(), Arrays.toString(finalChannels));
+        System.out.printf("Journal: %d bytes, %d samples, %d lost; replay of %.1f s took %.3f s, %d/%d steps identical%n",
+                journalBytes, recorder.getSamples(), recorder.getLostSamples(), replay.getSessionNanos() / 1e9,
+                replay.getWallNanos() / 1e9, replay.getMatchingSteps(), replay.getRecordedSteps());
+        if (replay.getFirstMismatch() != null) {
+            System.out.println("First replay mismatch: " + replay.getFirstMismatch());
+        }
+
+        if (lostFrames == 0 && malformed == 0 && synchronizer.getLostSamples() == 0 && fused[0] > 0
+                && controller.getSteps() > 0 && controller.getFailures() == 0
+                && stimulator.getErrors() == 0 && failedFlushes.get() == 0
+                && recorder.getLostSamples() == 0 && replay.getRecordedSteps() == controller.getSteps()
+                && replay.getMatchingSteps() == replay.getRecordedSteps()) {
+            System.out.println("[OK] Real-time path sustained the simulated load.");
+        } else {
+            System.out.println("[FAIL] Real-time path lost data or commands under the simulated load.");
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Frames generated by the simulator that never reached the ring buffer.
+     */
+    private static long lost(ImuSimulatorTransport imu, SerialReaderQuaternion reader) {
+        return imu.getFramesSent() - imu.getMalformedSent() - reader.getRing().writeSequence();
+    }
+
+    private static Simulation syntheticSimulation(GridConfig gridConfig) {
+        int nPads = gridConfig.getPadCount();
+        double[] priors = new double[nPads];
+        Arrays.fill(priors, 1.0 / nPads);
+        double[][] kTable = new double[nPads][37];
+        for (int i = 0; i < nPads; i++) {
+            for (int j = 0; j < 37; j++) {
+                kTable[i][j] = 0.5 + 0.5 * Math.sin(0.3 * i + 0.1 * j);
+            }
+        }
+        return new Simulation(gridConfig, 1.0, 0.05, priors, kTable);
+    }
+}